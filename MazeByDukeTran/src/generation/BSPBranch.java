@@ -57,6 +57,29 @@ public class BSPBranch extends BSPNode {
 		setLowerBoundY(Math.min(left.getLowerBoundY(), right.getLowerBoundY()));
 		setUpperBoundY(Math.max(left.getUpperBoundY(), right.getUpperBoundY()));
 	}
+	/**
+	 * Constructor for subclasses that provide their branches on demand.
+	 * As branches are not available at this point, bounds are given explicitly
+	 * and subclasses need to override getLeftBranch and getRightBranch.
+	 * @param px x coordinate
+	 * @param py y coordinate
+	 * @param pdx x direction
+	 * @param pdy y direction
+	 * @param xl lower bound for x
+	 * @param yl lower bound for y
+	 * @param xu upper bound for x
+	 * @param yu upper bound for y
+	 */
+	protected BSPBranch(int px, int py, int pdx, int pdy, int xl, int yl, int xu, int yu) {
+		x = px; 
+		y = py;
+		dx = pdx; 
+		dy = pdy;
+		setLowerBoundX(xl);
+		setUpperBoundX(xu);
+		setLowerBoundY(yl);
+		setUpperBoundY(yu);
+	}
 	/**
 	 * @return tells if object is a leaf node
 	 */
@@ -73,6 +96,20 @@ public class BSPBranch extends BSPNode {
 		return rbranch;
 	}
 
+	@Override
+	protected long addToHash(long hash) {
+		hash = super.addToHash(hash);
+		hash = ContentHash.mix(hash, getX());
+		hash = ContentHash.mix(hash, getY());
+		hash = ContentHash.mix(hash, getDx());
+		hash = ContentHash.mix(hash, getDy());
+		// use get methods as subclasses may load branches on demand, empty subtrees add a 0
+		BSPNode lbranch = getLeftBranch();
+		hash = (null == lbranch) ? ContentHash.mix(hash, 0) : lbranch.addToHash(hash);
+		BSPNode rbranch = getRightBranch();
+		return (null == rbranch) ? ContentHash.mix(hash, 0) : rbranch.addToHash(hash);
+	}
+
 	/**
 	 * Store the content of a branch node, in particular its left and right children
 	 * 
@@ -95,6 +132,9 @@ public class BSPBranch extends BSPNode {
 		MazeFileWriter.appendChild(doc, mazeXML, "dxBSPNode_" + number, getDx()) ;
 		MazeFileWriter.appendChild(doc, mazeXML, "dyBSPNode_" + number, getDy()) ;
 		// recursively store left and right branches
+		// use get methods as subclasses may load branches on demand
+		BSPNode lbranch = getLeftBranch();
+		BSPNode rbranch = getRightBranch();
 		if (lbranch == null)
 		{
 			// this is likely to be dead code as BSPBranches seem to have always 2 children
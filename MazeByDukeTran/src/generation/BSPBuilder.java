@@ -2,6 +2,7 @@ package generation;
 
 import gui.Constants;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * This class has the responsibility to obtain the tree of BSP nodes for a given maze.
@@ -24,6 +25,12 @@ public class BSPBuilder {
 	// only usage is in updateProgressBar to estimate progress made in the BSP tree construction
 	int partiters = 0 ; // relocated from MazeBuilder attribute partiters here. 
 	private final Order order ; 		// current order
+	private boolean inParallel ;	// if true, subtrees of sufficient size are computed in parallel
+	/**
+	 * Minimum number of walls for a subtree to be computed by a task of its own.
+	 * Smaller subtrees are not worth the overhead.
+	 */
+	static final int PARALLEL_THRESHOLD = 256;
 	/**
 	 * Constructor
 	 * @param order
@@ -95,10 +102,35 @@ public class BSPBuilder {
 			return new BSPLeaf(left);
 		// Case: two sided recursion, need to create a node
 		// and recursively calculate subtrees for both sides.
+		if (inParallel && walls.size() >= PARALLEL_THRESHOLD) {
+			// both lists hold distinct walls, so subtrees can be computed independently
+			ForkJoinTask<BSPNode> leftTask = ForkJoinTask.adapt(() -> genNodes(left)).fork();
+			BSPNode rightNode = genNodes(right);
+			return new BSPBranch(splitter.getStartPositionX(), splitter.getStartPositionY(), 
+					splitter.getExtensionX(), splitter.getExtensionY(), 
+					join(leftTask), rightNode); 
+		}
 		return new BSPBranch(splitter.getStartPositionX(), splitter.getStartPositionY(), 
 				splitter.getExtensionX(), splitter.getExtensionY(), 
 				genNodes(left), genNodes(right)); 
 	}
+	/**
+	 * Waits for the given task to deliver its subtree.
+	 * @param task computes a subtree
+	 * @return the root node of the subtree
+	 * @throws InterruptedException if the computation of the subtree was interrupted
+	 */
+	private static BSPNode join(ForkJoinTask<BSPNode> task) throws InterruptedException {
+		try {
+			return task.join();
+		}
+		catch (RuntimeException ex) {
+			// exceptions of the task are wrapped in a runtime exception
+			if (ex.getCause() instanceof InterruptedException)
+				throw (InterruptedException) ex.getCause();
+			throw ex;
+		}
+	}
 	/**
 	 * Partitions the given list of walls for the given wall into left and right walls
 	 * @param walls the list of walls to split
@@ -310,6 +342,18 @@ public class BSPBuilder {
 	 * @throws InterruptedException 
 	 */
 	public BSPNode generateBSPNodes() throws InterruptedException {
+		return generateBSPNodes(false);
+	}
+	/**
+	 * Generate tree of BSP nodes for a given maze.
+	 * The result is the same as for {@link #generateBSPNodes() generateBSPNodes}.
+	 * @param inParallel if true, subtrees are computed in parallel with the common fork join pool,
+	 * progress updates are then approximate
+	 * @return the root node for the BSP tree
+	 * @throws InterruptedException 
+	 */
+	public BSPNode generateBSPNodes(boolean inParallel) throws InterruptedException {
+		this.inParallel = inParallel;
 		// Binary space partitioning operates on polygons (here: walls)
 		// the floorplan only lists wallboards.
 		// We need to determine walls, i.e. wallboards over multiple cells in
@@ -34,6 +34,22 @@ public class BSPLeaf extends BSPNode {
 		updateBounds(listOfWalls);
 	}
 
+	/**
+	 * Constructor for subclasses that provide their list of walls on demand.
+	 * As walls are not available at this point, bounds are given explicitly
+	 * and subclasses need to override getSlist.
+	 * @param xl lower bound for x
+	 * @param yl lower bound for y
+	 * @param xu upper bound for x
+	 * @param yu upper bound for y
+	 */
+	protected BSPLeaf(int xl, int yl, int xu, int yu) {
+		setLowerBoundX(xl);
+		setUpperBoundX(xu);
+		setLowerBoundY(yl);
+		setUpperBoundY(yu);
+	}
+
 	/**
 	 * Update bounds based on min and max values seen in start and end positions
 	 * of a given list of walls
@@ -80,6 +96,8 @@ public class BSPLeaf extends BSPNode {
 		if (isIsleaf() == false)
 			System.out.println("WARNING: isleaf flag and class are inconsistent!");
 		// store list of walls, store total number of elements first
+		// use get method as subclasses may load walls on demand
+		ArrayList<Wall> walls = getSlist();
 		MazeFileWriter.appendChild(doc, mazeXML, "numSeg_" + number, walls.size()) ;
 		int i = 0 ;
 		for (Wall s : walls)
@@ -90,6 +108,17 @@ public class BSPLeaf extends BSPNode {
 		return number ;
 	}
 
+	@Override
+	protected long addToHash(long hash) {
+		hash = super.addToHash(hash);
+		ArrayList<Wall> walls = getSlist();
+		hash = ContentHash.mix(hash, walls.size());
+		for (Wall wall : walls) {
+			hash = ContentHash.mix(hash, wall);
+		}
+		return hash;
+	}
+
 	/**
 	 * @return the list of walls 
 	 */
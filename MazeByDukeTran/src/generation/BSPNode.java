@@ -59,6 +59,41 @@ public class BSPNode {
 		return false ;
 	}
 
+	/**
+	 * Tells if the children or walls of this node are read when they are needed,
+	 * such nodes may drop them again and should not be traversed all at once.
+	 * @return false, subclasses that load on demand return true
+	 */
+	public boolean isLoadedOnDemand() {
+		return false ;
+	}
+
+	/**
+	 * Provides a 64 bit hash of the subtree with this node as its root.
+	 * It covers the structure of the tree and all fields that are stored in a file.
+	 * The hash is computed on each call as the seen flag of walls changes during a game.
+	 * Equal subtrees have equal hashes.
+	 * @return the content hash
+	 */
+	public long getContentHash() {
+		return ContentHash.finish(addToHash(0));
+	}
+
+	/**
+	 * Adds the content of the subtree with this node as its root to the given hash,
+	 * nodes are added in preorder. Subclasses add their fields and children
+	 * after the bounds.
+	 * @param hash is the hash so far
+	 * @return the hash that includes this subtree
+	 */
+	protected long addToHash(long hash) {
+		hash = ContentHash.mix(hash, isIsleaf() ? 1 : 2);
+		hash = ContentHash.mix(hash, lowX);
+		hash = ContentHash.mix(hash, lowY);
+		hash = ContentHash.mix(hash, highX);
+		return ContentHash.mix(hash, highY);
+	}
+
 	/**
 	 * Updates internal fields for upper and lower bounds of (x,y) coordinates.
 	 * Given parameter values are taken for bounds if they exceed what is already
@@ -0,0 +1,396 @@
+/**
+ *
+ */
+package generation;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A read-only copy of a tree of BSPNodes in flat arrays of primitive values.
+ * The FirstPersonView traverses this copy instead of the tree of objects.
+ *
+ * Nodes are numbered in depth-first order, the root is 0 and the left subtree
+ * of a branch precedes its right subtree, so the left child of branch n is n+1.
+ * Each node takes {@link #STRIDE} consecutive ints in a single array: its bounds,
+ * then for a branch the splitter (x,y,dx,dy) and the number of its right child,
+ * for a leaf the index of its first wall and its number of walls.
+ * Walls of a leaf are stored next to each other in arrays for start and end
+ * positions and colors, in the order of the leaf's list of walls.
+ * The Wall objects are kept as well, only to mark walls as seen.
+ *
+ * Nodes that are loaded on demand, see BSPNode.isLoadedOnDemand, are compiled
+ * on demand as well: such a node is a stub with its bounds and splitter until
+ * its children or walls are asked for, then they are added at the end of the
+ * arrays. Nodes below it are numbered in the order they are needed and the left
+ * child of a branch is not n+1. For walls of such a leaf only the leaf is kept,
+ * so the tree of objects can still drop subtrees that are not in use.
+ *
+ * The copy reflects the tree at the time a node is compiled, later changes to
+ * nodes or to the position and color of walls are not visible in it.
+ * Nodes that have been compiled are never modified and new nodes are published
+ * with volatile writes, so it can be shared between threads.
+ *
+ * @author Duke Tran
+ */
+public final class CompiledBSPTree {
+	/**
+	 * Number of ints per node.
+	 */
+	public static final int STRIDE = 10;
+	/**
+	 * Number of ints per wall.
+	 */
+	private static final int WALL_STRIDE = 5;
+	// offsets of fields within a node
+	private static final int LOW_X = 0;
+	private static final int LOW_Y = 1;
+	private static final int HIGH_X = 2;
+	private static final int HIGH_Y = 3;
+	private static final int X = 4; // branch: splitter
+	private static final int Y = 5;
+	private static final int DX = 6;
+	private static final int DY = 7;
+	private static final int RIGHT = 8; // branch: number of the right child or STUB, leaf: LEAF
+	private static final int FIRST_WALL = 4; // leaf: index of the first wall
+	private static final int WALL_COUNT = 5; // leaf: number of walls
+	private static final int STUB_INDEX = 9; // node compiled on demand: index of its stub, otherwise -1
+	private static final int LEAF = -1;
+	private static final int STUB = -2;
+	// offsets of fields within a wall
+	private static final int START_X = 0;
+	private static final int START_Y = 1;
+	private static final int END_X = 2;
+	private static final int END_Y = 3;
+	private static final int COLOR = 4;
+
+	// arrays are replaced when they grow, the new array is published after it is filled
+	private volatile int[] nodes = new int[STRIDE*64];
+	private volatile int nodeCount;
+	private volatile int[] wallValues = new int[WALL_STRIDE*64];
+	// a Wall, or a LeafWalls for walls of a leaf that is loaded on demand
+	private volatile Object[] walls = new Object[64];
+	private volatile int wallCount;
+	// nodes that are compiled on demand and have not been expanded yet, by stub index
+	private BSPNode[] stubs = new BSPNode[16];
+	private int stubCount;
+	// children {left, right} of a branch or {first wall, wall count} of a leaf, by stub index,
+	// null until the stub is expanded
+	private volatile AtomicReferenceArray<int[]> expansions = new AtomicReferenceArray<>(16);
+
+	/**
+	 * Converts a tree of BSPNodes, subtrees that are loaded on demand are
+	 * only converted once they are needed.
+	 * @param root is the root of the tree, not null
+	 */
+	public CompiledBSPTree(BSPNode root) {
+		assert null != root : "CompiledBSPTree: tree must be present";
+		synchronized (this) {
+			add(root);
+			if (0 == stubCount) {
+				// complete, trim the arrays
+				nodes = Arrays.copyOf(nodes, nodeCount*STRIDE);
+				wallValues = Arrays.copyOf(wallValues, wallCount*WALL_STRIDE);
+				walls = Arrays.copyOf(walls, wallCount);
+			}
+		}
+	}
+
+	/**
+	 * Adds a subtree in depth-first order, a node that is loaded on demand
+	 * is added as a stub without its children or walls.
+	 * @return the number of the root of the subtree
+	 */
+	private int add(BSPNode node) {
+		final int number = nodeCount;
+		int[] array = nodes;
+		if (array.length < (number + 1)*STRIDE)
+			array = Arrays.copyOf(array, 2*array.length);
+		final int offset = number*STRIDE;
+		array[offset + LOW_X] = node.getLowerBoundX();
+		array[offset + LOW_Y] = node.getLowerBoundY();
+		array[offset + HIGH_X] = node.getUpperBoundX();
+		array[offset + HIGH_Y] = node.getUpperBoundY();
+		array[offset + STUB_INDEX] = -1;
+		if (!node.isIsleaf()) {
+			BSPBranch branch = (BSPBranch) node;
+			array[offset + X] = branch.getX();
+			array[offset + Y] = branch.getY();
+			array[offset + DX] = branch.getDx();
+			array[offset + DY] = branch.getDy();
+		}
+		if (node.isLoadedOnDemand()) {
+			array[offset + RIGHT] = (node.isIsleaf()) ? LEAF : STUB;
+			array[offset + STUB_INDEX] = addStub(node);
+			publish(array, number + 1);
+			return number;
+		}
+		if (node.isIsleaf()) {
+			array[offset + FIRST_WALL] = wallCount;
+			array[offset + RIGHT] = LEAF;
+			publish(array, number + 1);
+			for (Wall wall : ((BSPLeaf) node).getSlist()) {
+				addWall(wall, wall);
+			}
+			nodes[offset + WALL_COUNT] = wallCount - nodes[offset + FIRST_WALL];
+			return number;
+		}
+		BSPBranch branch = (BSPBranch) node;
+		assert null != branch.getLeftBranch() && null != branch.getRightBranch() :
+			"CompiledBSPTree: branches need two children";
+		publish(array, number + 1);
+		add(branch.getLeftBranch());
+		final int right = add(branch.getRightBranch());
+		// the array may have been replaced while adding the subtrees
+		nodes[offset + RIGHT] = right;
+		return number;
+	}
+
+	/**
+	 * Makes the given array and number of nodes visible to readers,
+	 * the array is written before the count.
+	 */
+	private void publish(int[] array, int count) {
+		nodes = array;
+		nodeCount = count;
+	}
+
+	private int addStub(BSPNode node) {
+		if (stubs.length == stubCount) {
+			stubs = Arrays.copyOf(stubs, 2*stubCount);
+			AtomicReferenceArray<int[]> larger = new AtomicReferenceArray<>(2*stubCount);
+			for (int i = 0; i < stubCount; i++) {
+				larger.set(i, expansions.get(i));
+			}
+			expansions = larger;
+		}
+		stubs[stubCount] = node;
+		return stubCount++;
+	}
+
+	/**
+	 * Adds a wall, the wall object is kept to give access to it later.
+	 * @param source is the wall itself or a LeafWalls
+	 */
+	private void addWall(Wall wall, Object source) {
+		int[] values = wallValues;
+		Object[] objects = walls;
+		if (objects.length == wallCount) {
+			values = Arrays.copyOf(values, 2*wallCount*WALL_STRIDE);
+			objects = Arrays.copyOf(objects, 2*wallCount);
+		}
+		final int offset = wallCount*WALL_STRIDE;
+		values[offset + START_X] = wall.getStartPositionX();
+		values[offset + START_Y] = wall.getStartPositionY();
+		values[offset + END_X] = wall.getEndPositionX();
+		values[offset + END_Y] = wall.getEndPositionY();
+		values[offset + COLOR] = wall.getColor();
+		objects[wallCount] = source;
+		wallValues = values;
+		walls = objects;
+		wallCount++;
+	}
+
+	/**
+	 * Gives the children of a branch or the walls of a leaf that is compiled on demand.
+	 * @param stub is the index of the stub of the node
+	 * @return {left, right} for a branch, {first wall, wall count} for a leaf
+	 */
+	private int[] expand(int stub) {
+		int[] expansion = expansions.get(stub);
+		if (null != expansion)
+			return expansion;
+		synchronized (this) {
+			// read the current array, it may have been replaced while waiting
+			expansion = expansions.get(stub);
+			if (null != expansion)
+				return expansion;
+			final BSPNode node = stubs[stub];
+			if (node.isIsleaf()) {
+				final List<Wall> list = ((BSPLeaf) node).getSlist();
+				final LeafWalls source = new LeafWalls((BSPLeaf) node, wallCount);
+				for (Wall wall : list) {
+					addWall(wall, source);
+				}
+				expansion = new int[] {source.first, list.size()};
+			}
+			else {
+				final BSPBranch branch = (BSPBranch) node;
+				final int left = add(branch.getLeftBranch());
+				final int right = add(branch.getRightBranch());
+				expansion = new int[] {left, right};
+			}
+			// the node is reachable through its children or walls from now on
+			stubs[stub] = null;
+			expansions.set(stub, expansion);
+			return expansion;
+		}
+	}
+
+	/**
+	 * Walls of a leaf that is loaded on demand. The leaf gives the walls
+	 * from its current list as it may have read them again in the meantime.
+	 */
+	private static final class LeafWalls {
+		final BSPLeaf leaf;
+		// index of the first wall of the leaf in the compiled tree
+		final int first;
+
+		LeafWalls(BSPLeaf leaf, int first) {
+			this.leaf = leaf;
+			this.first = first;
+		}
+	}
+
+	/**
+	 * @return the number of nodes that have been compiled so far,
+	 * all nodes of the tree unless it is loaded on demand
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+	/**
+	 * @return the number of walls in all leaves that have been compiled so far
+	 */
+	public int getWallCount() {
+		return wallCount;
+	}
+	/**
+	 * Computes a hash from the geometry of all nodes and walls, colors and
+	 * seen flags of walls are not included. Trees with the same hash have
+	 * the same nodes with high probability, e.g. to recognize data that has
+	 * been stored for a tree, see ContentHash.
+	 * For a tree that is compiled on demand only nodes that have been compiled
+	 * so far are included.
+	 * @return the hash value
+	 */
+	public synchronized long getGeometryHash() {
+		long hash = 0;
+		for (int node = 0; node < nodeCount; node++) {
+			final int offset = node*STRIDE;
+			// all fields of the node, fields that a leaf does not use are 0
+			for (int i = 0; i < STRIDE; i++) {
+				hash = ContentHash.mix(hash, nodes[offset + i]);
+			}
+		}
+		for (int wall = 0; wall < wallCount; wall++) {
+			final int offset = wall*WALL_STRIDE;
+			hash = ContentHash.mix(hash, wallValues[offset + START_X]);
+			hash = ContentHash.mix(hash, wallValues[offset + START_Y]);
+			hash = ContentHash.mix(hash, wallValues[offset + END_X]);
+			hash = ContentHash.mix(hash, wallValues[offset + END_Y]);
+		}
+		return ContentHash.finish(hash);
+	}
+
+	////////////////// nodes, given by their number //////////////////////////
+	/**
+	 * @return true if the node is a leaf
+	 */
+	public boolean isLeaf(int node) {
+		return LEAF == nodes[node*STRIDE + RIGHT];
+	}
+	public int getLowerBoundX(int node) {
+		return nodes[node*STRIDE + LOW_X];
+	}
+	public int getLowerBoundY(int node) {
+		return nodes[node*STRIDE + LOW_Y];
+	}
+	public int getUpperBoundX(int node) {
+		return nodes[node*STRIDE + HIGH_X];
+	}
+	public int getUpperBoundY(int node) {
+		return nodes[node*STRIDE + HIGH_Y];
+	}
+	/**
+	 * @return the x coordinate of the splitter of a branch
+	 */
+	public int getX(int branch) {
+		return nodes[branch*STRIDE + X];
+	}
+	/**
+	 * @return the y coordinate of the splitter of a branch
+	 */
+	public int getY(int branch) {
+		return nodes[branch*STRIDE + Y];
+	}
+	/**
+	 * @return the x direction of the splitter of a branch
+	 */
+	public int getDx(int branch) {
+		return nodes[branch*STRIDE + DX];
+	}
+	/**
+	 * @return the y direction of the splitter of a branch
+	 */
+	public int getDy(int branch) {
+		return nodes[branch*STRIDE + DY];
+	}
+	/**
+	 * Compiles the children of a stub first if needed.
+	 * @return the number of the left child of a branch
+	 */
+	public int getLeftChild(int branch) {
+		final int stub = nodes[branch*STRIDE + STUB_INDEX];
+		return (stub < 0) ? branch + 1 : expand(stub)[0];
+	}
+	/**
+	 * Compiles the children of a stub first if needed.
+	 * @return the number of the right child of a branch
+	 */
+	public int getRightChild(int branch) {
+		final int[] array = nodes;
+		final int stub = array[branch*STRIDE + STUB_INDEX];
+		return (stub < 0) ? array[branch*STRIDE + RIGHT] : expand(stub)[1];
+	}
+	/**
+	 * Compiles the walls of a stub first if needed.
+	 * @return the index of the first wall of a leaf
+	 */
+	public int getFirstWall(int leaf) {
+		final int[] array = nodes;
+		final int stub = array[leaf*STRIDE + STUB_INDEX];
+		return (stub < 0) ? array[leaf*STRIDE + FIRST_WALL] : expand(stub)[0];
+	}
+	/**
+	 * Compiles the walls of a stub first if needed.
+	 * @return the number of walls of a leaf
+	 */
+	public int getWallCount(int leaf) {
+		final int[] array = nodes;
+		final int stub = array[leaf*STRIDE + STUB_INDEX];
+		return (stub < 0) ? array[leaf*STRIDE + WALL_COUNT] : expand(stub)[1];
+	}
+
+	////////////////// walls, given by their index ////////////////////////////
+	public int getStartPositionX(int wall) {
+		return wallValues[wall*WALL_STRIDE + START_X];
+	}
+	public int getStartPositionY(int wall) {
+		return wallValues[wall*WALL_STRIDE + START_Y];
+	}
+	public int getEndPositionX(int wall) {
+		return wallValues[wall*WALL_STRIDE + END_X];
+	}
+	public int getEndPositionY(int wall) {
+		return wallValues[wall*WALL_STRIDE + END_Y];
+	}
+	public int getColor(int wall) {
+		return wallValues[wall*WALL_STRIDE + COLOR];
+	}
+	/**
+	 * The wall of a leaf that is loaded on demand is taken from the leaf,
+	 * which reads it again if it has been dropped.
+	 * @return the wall object the values of a wall have been taken from
+	 */
+	public Wall getWall(int wall) {
+		final Object source = walls[wall];
+		if (source instanceof Wall)
+			return (Wall) source;
+		final LeafWalls leafWalls = (LeafWalls) source;
+		synchronized (this) {
+			return leafWalls.leaf.getSlist().get(wall - leafWalls.first);
+		}
+	}
+}
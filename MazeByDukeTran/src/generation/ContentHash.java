@@ -0,0 +1,60 @@
+/**
+ *
+ */
+package generation;
+
+/**
+ * Arithmetic for 64 bit content hashes of floorplans, distances and BSP trees.
+ * Values are added one at a time with mix, finish spreads the bits of the result.
+ * Keys for the Zobrist hash of a Floorplan are derived from (x,y,bit) with the same
+ * mixing function instead of being drawn from a random number generator and kept in a table,
+ * so they cost no memory and do not depend on the dimensions of the floorplan.
+ * Multiplier and mixing function are taken from SplitMix64.
+ *
+ * @author Duke Tran
+ */
+final class ContentHash {
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private ContentHash() {
+		// only static methods
+	}
+
+	/**
+	 * Adds a value to a hash, the result depends on the order in which values are added.
+	 */
+	static long mix(long hash, long value) {
+		return (hash + value) * GOLDEN_GAMMA;
+	}
+	/**
+	 * Bijective function that spreads all bits of the given value.
+	 */
+	static long finish(long hash) {
+		hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+		return hash ^ (hash >>> 31);
+	}
+	/**
+	 * Provides the Zobrist key for a single bit of a cell.
+	 * Keys are distinct for all {@code 0 <= x, y < 2^26} and {@code 0 <= bit < 32}.
+	 * @param x coordinate of the cell
+	 * @param y coordinate of the cell
+	 * @param bit is the index of the bit in the cell value
+	 */
+	static long key(int x, int y, int bit) {
+		return finish((((long) x << 31) | ((long) y << 5) | bit) + GOLDEN_GAMMA);
+	}
+	/**
+	 * Adds all fields of a wall that are compared by Wall.equals.
+	 */
+	static long mix(long hash, Wall wall) {
+		hash = mix(hash, wall.getStartPositionX());
+		hash = mix(hash, wall.getStartPositionY());
+		hash = mix(hash, wall.getExtensionX());
+		hash = mix(hash, wall.getExtensionY());
+		hash = mix(hash, wall.getDistance());
+		hash = mix(hash, wall.getColor());
+		hash = mix(hash, wall.isPartition() ? 1 : 0);
+		return mix(hash, wall.isSeen() ? 1 : 0);
+	}
+}
@@ -1,5 +1,7 @@
 package generation;
 
+import java.nio.IntBuffer;
+
 /**
  * This class has the responsibility to provide the distance
  * for each cell to the exit of a maze.
@@ -48,6 +50,13 @@ public class Distance {
 	 * obtain it and manipulate its content. 
 	 */
 	private int[][] dists; 
+	/**
+	 * A read-only view on distance values at index x*height+y,
+	 * e.g. of a memory mapped file. If present, it holds the content
+	 * and dists is null. Any write access or request for the matrix
+	 * copies the content into dists and drops the view (copy on write).
+	 */
+	private IntBuffer mappedDists;
 	/** 
 	 * The exit position has a distance of 1
 	 * which is also the minimum of all values in dists.
@@ -65,6 +74,13 @@ public class Distance {
 	 * to this instance.
 	 */
 	private int[] startPosition;
+	/**
+	 * Content hash of all distance values, valid only if contentHashValid.
+	 * It is computed on demand and cached, which requires that
+	 * the array obtained with getAllDistanceValues is not modified.
+	 */
+	private long contentHash;
+	private boolean contentHashValid;
 	
 	/**
 	 * Constructor
@@ -90,6 +106,26 @@ public class Distance {
 		// exitPosition and startPosition
 		setAllDistanceValues(distances);
 	}
+	/**
+	 * Constructor that reads distance values directly from the given buffer
+	 * without copying them. The buffer is not modified, 
+	 * the values are copied into a matrix on the first modification 
+	 * or call of {@link #getAllDistanceValues() getAllDistanceValues}.
+	 * This constructor is useful to work with distances stored in a memory mapped file.
+	 * @param w is the width of the maze in the horizontal direction
+	 * @param h is the height of the maze in the vertical direction
+	 * @param distances provides w*h distance values at index x*h+y, starting at its position
+	 */
+	public Distance(int w, int h, IntBuffer distances) {
+		assert (distances.remaining() >= w*h) : "Distance: buffer too small for dimensions";
+		width = w;
+		height = h;
+		dists = null;
+		mappedDists = distances.slice();
+		exitPosition = null;
+		startPosition = null;
+		contentHashValid = false;
+	}
 	/**
 	 * Sets the internal attribute to the given parameter value.
 	 * Can be used to provide precomputed distance values to an object
@@ -104,12 +140,14 @@ public class Distance {
 		width = distances.length;
 		height = distances[0].length;
 		this.dists = distances;
+		mappedDists = null;
 		// reset exit and start positions
 		// note: lazy evaluation in the sense that positions are
 		// computed on demand and then cached on corresponding
 		// fields exitPosition and startPosition
 		exitPosition = null;
 		startPosition = null;
+		contentHashValid = false;
 	}
 	/**
 	 * Gets access to a width x height array of distances. 
@@ -119,8 +157,29 @@ public class Distance {
 	 * @return array with distance values
 	 */
 	public int[][] getAllDistanceValues() {
+		copyOnWrite();
 		return dists;
 	}
+	/**
+	 * Gives a width x height array with all distance values for read access,
+	 * e.g. to store them in a file. For a view on a buffer, the values are
+	 * read into a new array that is not kept, such that the distances remain
+	 * a view. Otherwise, this is the internal array as with
+	 * {@link #getAllDistanceValues() getAllDistanceValues}.
+	 * Do not modify entries of the returned array.
+	 * @return array with distance values
+	 */
+	public int[][] readAllDistanceValues() {
+		if (null == mappedDists)
+			return dists;
+		int[][] result = new int[width][height];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				result[x][y] = mappedDists.get(x*height+y);
+			}
+		}
+		return result;
+	}
 	/**
 	 * Gets the distance value for the given (x,y) position
 	 * @param x is the x coordinate, {@code 0 <= x < width}
@@ -128,8 +187,18 @@ public class Distance {
 	 * @return the distance value for the given (x,y) position
 	 */
 	public int getDistanceValue(int x, int y) {
+		if (null != mappedDists)
+			return mappedDists.get(x*height+y);
 		return dists[x][y] ;
 	}
+	/**
+	 * Tells if distance values are read from an external buffer
+	 * that has not been copied so far.
+	 * @return true if this is a view on a buffer, false otherwise
+	 */
+	public boolean isMapped() {
+		return null != mappedDists;
+	}
 	/**
 	 * Compute distances for given cells object of a maze.
 	 * The method determines an exit position for the maze
@@ -149,6 +218,8 @@ public class Distance {
 	 */
 	public int[] computeDistances(Floorplan cells) {
 		// constraint: cells must be of size (width x height)
+		copyOnWrite();
+		contentHashValid = false;
 		
 		// Step 1: find a suitable exit position
 		// Heuristic:
@@ -216,6 +287,26 @@ public class Distance {
 			exitPosition = getPositionWithMinDistance() ;
 		return ((x == exitPosition[0]) && (y == exitPosition[1])) ;
 	}
+	/**
+	 * Provides a 64 bit hash of dimensions and all distance values.
+	 * The hash is computed on the first call and cached until 
+	 * distance values are set or computed again.
+	 * Equal distance values have equal hashes.
+	 * @return the content hash
+	 */
+	public long getContentHash() {
+		if (!contentHashValid) {
+			long hash = ContentHash.mix(ContentHash.mix(0, width), height);
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++) {
+					hash = ContentHash.mix(hash, getDistanceValue(x, y));
+				}
+			}
+			contentHash = ContentHash.finish(hash);
+			contentHashValid = true;
+		}
+		return contentHash;
+	}
 	//////////////////////////////////////////////////////////////////////////
 	//////////////// private, internal methods ///////////////////////////////
 	//////////////////////////////////////////////////////////////////////////
@@ -268,10 +359,10 @@ public class Distance {
 	 * @return the new maximum distance after the comparison
 	 */
 	private int keepMaxDistance(int x, int y, int d, int[] result) {
-		if (dists[x][y] > d) {
+		if (getDistanceValue(x, y) > d) {
 			result[0] = x;
 			result[1] = y;
-			d = dists[x][y];
+			d = getDistanceValue(x, y);
 		}
 		return d;
 	}
@@ -286,10 +377,10 @@ public class Distance {
 		int[] result = new int[2] ;
 		for (int x = 0; x != width; x++)
 			for (int y = 0; y != height; y++) {
-				if (dists[x][y] < d) {
+				if (getDistanceValue(x, y) < d) {
 					result[0] = x;
 					result[1] = y;
-					d = dists[x][y];
+					d = getDistanceValue(x, y);
 				}
 			}
 		return result ;
@@ -372,6 +463,22 @@ public class Distance {
 	}
 
 	
+	/**
+	 * Copies distance values from the buffer into the matrix 
+	 * before the first modification of an object that is a view on a buffer.
+	 */
+	private void copyOnWrite() {
+		if (null == mappedDists)
+			return;
+		int[][] copy = new int[width][height];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				copy[x][y] = mappedDists.get(x*height+y);
+			}
+		}
+		dists = copy;
+		mappedDists = null;
+	}
 	/**
 	 * Sets all values in dists to given value
 	 * @param value
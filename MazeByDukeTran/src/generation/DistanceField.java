@@ -0,0 +1,110 @@
+package generation;
+
+/**
+ * A DistanceField holds the number of steps from each cell of a maze
+ * to a single goal cell, the goal itself has distance 0.
+ * In contrast to {@link Distance}, which is tied to the exit of a maze,
+ * the goal can be any cell, e.g., the center of a room or a checkpoint.
+ *
+ * Values are stored in a one dimensional array with index x*height+y.
+ * If all distances fit into 16 bits, a char array is used which
+ * halves the memory footprint compared to an int array.
+ * Instances are immutable and are obtained from a {@link DistanceFieldService}.
+ *
+ * @author Duke Tran
+ */
+public class DistanceField {
+	/**
+	 * Define a readable constant for cells that can not reach the goal.
+	 * Same value as for Distance.
+	 */
+	static final int INFINITY = Integer.MAX_VALUE;
+	/**
+	 * Marker for unreachable cells in the compact representation.
+	 */
+	private static final char UNREACHABLE = Character.MAX_VALUE;
+
+	private final int goalX;
+	private final int goalY;
+	private final int width;
+	private final int height;
+	// exactly one of both arrays is used, the other one is null
+	private final char[] compactDists;
+	private final int[] dists;
+
+	/**
+	 * Constructor that converts the given distances into the most compact representation.
+	 * @param goalX is the x coordinate of the goal
+	 * @param goalY is the y coordinate of the goal
+	 * @param width is the width of the maze
+	 * @param height is the height of the maze
+	 * @param values holds distances at index x*height+y, INFINITY for unreachable cells
+	 */
+	DistanceField(int goalX, int goalY, int width, int height, int[] values) {
+		assert (values.length == width*height) : "DistanceField: values do not match dimensions";
+		this.goalX = goalX;
+		this.goalY = goalY;
+		this.width = width;
+		this.height = height;
+		int max = 0;
+		for (int value : values) {
+			if (INFINITY != value && value > max)
+				max = value;
+		}
+		if (max < UNREACHABLE) {
+			compactDists = new char[values.length];
+			for (int i = 0; i < values.length; i++) {
+				compactDists[i] = (INFINITY == values[i]) ? UNREACHABLE : (char) values[i];
+			}
+			dists = null;
+		}
+		else {
+			compactDists = null;
+			dists = values;
+		}
+	}
+	/**
+	 * @return the x coordinate of the goal
+	 */
+	public int getGoalX() {
+		return goalX;
+	}
+	/**
+	 * @return the y coordinate of the goal
+	 */
+	public int getGoalY() {
+		return goalY;
+	}
+	/**
+	 * @return the width of the maze
+	 */
+	public int getWidth() {
+		return width;
+	}
+	/**
+	 * @return the height of the maze
+	 */
+	public int getHeight() {
+		return height;
+	}
+	/**
+	 * Gives the number of steps from (x,y) to the goal.
+	 * @param x is on the horizontal axis, {@code 0 <= x < width}
+	 * @param y is on the vertical axis, {@code 0 <= y < height}
+	 * @return the number of steps, INFINITY if the goal can not be reached
+	 */
+	public int getDistance(int x, int y) {
+		if (null != compactDists) {
+			char value = compactDists[x*height+y];
+			return (UNREACHABLE == value) ? INFINITY : value;
+		}
+		return dists[x*height+y];
+	}
+	/**
+	 * Tells if values are held in the 16 bit representation.
+	 * @return true if compact, false otherwise
+	 */
+	public boolean isCompact() {
+		return null != compactDists;
+	}
+}
@@ -0,0 +1,208 @@
+package generation;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * A DistanceFieldService computes distance fields for arbitrary goal cells
+ * of a floorplan with a breadth-first search and keeps the most recently
+ * used fields in a cache of bounded size.
+ * Repeated requests for the same goal are answered from the cache,
+ * the least recently used field is dropped when the cache is full.
+ *
+ * The service can be shared between threads, access to the cache is
+ * synchronized while the breadth-first search itself runs without a lock.
+ * {@link #getDistanceFields(int[][]) getDistanceFields} computes
+ * missing fields for a set of goals in parallel.
+ *
+ * The cache reflects the floorplan at the time a field is computed,
+ * call {@link #clear() clear} after wallboards are added or deleted.
+ *
+ * @author Duke Tran
+ */
+public class DistanceFieldService {
+	/**
+	 * Default number of distance fields kept in the cache.
+	 */
+	public static final int DEFAULT_CAPACITY = 32;
+
+	private final Floorplan floorplan;
+	private final int width;
+	private final int height;
+	private final int capacity;
+	// cache of fields by goal index x*height+y, iteration order is least recently used first
+	private final LinkedHashMap<Integer, DistanceField> cache;
+	// statistics on cache use, guarded by cache
+	private int hits;
+	private int misses;
+
+	// (dx,dy) pairs indexed by CardinalDirection ordinal as in CardinalDirection.getDirection()
+	private static final int[] DIRS_X = { 0, 1, 0, -1 }; // North, East, South, West
+	private static final int[] DIRS_Y = { -1, 0, 1, 0 };
+	private static final CardinalDirection[] DIRECTIONS = CardinalDirection.values();
+
+	/**
+	 * Constructor with the default capacity.
+	 * @param floorplan provides the wallboards, must not be null
+	 */
+	public DistanceFieldService(Floorplan floorplan) {
+		this(floorplan, DEFAULT_CAPACITY);
+	}
+	/**
+	 * Constructor.
+	 * @param floorplan provides the wallboards, must not be null
+	 * @param capacity is the maximum number of fields kept in the cache, {@code 0 < capacity}
+	 */
+	public DistanceFieldService(Floorplan floorplan, final int capacity) {
+		assert (null != floorplan) : "DistanceFieldService: floorplan must be present";
+		assert (0 < capacity) : "DistanceFieldService: capacity must be positive";
+		this.floorplan = floorplan;
+		this.width = floorplan.getWidth();
+		this.height = floorplan.getHeight();
+		this.capacity = capacity;
+		// access order makes the map evict the least recently used entry
+		cache = new LinkedHashMap<Integer, DistanceField>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, DistanceField> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+	/**
+	 * Provides the distance field for the given goal, computes it if it is not cached.
+	 * @param goalX is on the horizontal axis, {@code 0 <= goalX < width}
+	 * @param goalY is on the vertical axis, {@code 0 <= goalY < height}
+	 * @return distances from all cells to the goal
+	 */
+	public DistanceField getDistanceField(int goalX, int goalY) {
+		assert (0 <= goalX && goalX < width && 0 <= goalY && goalY < height) : "DistanceFieldService: goal out of range";
+		final Integer key = goalX*height+goalY;
+		synchronized (cache) {
+			DistanceField field = cache.get(key);
+			if (null != field) {
+				hits++;
+				return field;
+			}
+			misses++;
+		}
+		// concurrent requests for the same goal may compute it twice, both results are equal
+		DistanceField field = computeDistanceField(goalX, goalY);
+		synchronized (cache) {
+			cache.put(key, field);
+		}
+		return field;
+	}
+	/**
+	 * Provides distance fields for a number of goals,
+	 * fields that are not cached are computed in parallel.
+	 * If there are more goals than the capacity, only the last ones
+	 * remain in the cache but all fields are returned.
+	 * @param goals holds (x,y) coordinates for each goal
+	 * @return distance fields in the same order as goals
+	 */
+	public DistanceField[] getDistanceFields(int[][] goals) {
+		final DistanceField[] result = new DistanceField[goals.length];
+		IntStream.range(0, goals.length).parallel().forEach(i -> result[i] = getDistanceField(goals[i][0], goals[i][1]));
+		return result;
+	}
+	/**
+	 * Tells how many steps it is from (x,y) to the goal.
+	 * @param x is on the horizontal axis, {@code 0 <= x < width}
+	 * @param y is on the vertical axis, {@code 0 <= y < height}
+	 * @param goalX is on the horizontal axis, {@code 0 <= goalX < width}
+	 * @param goalY is on the vertical axis, {@code 0 <= goalY < height}
+	 * @return the number of steps, Integer.MAX_VALUE if the goal can not be reached
+	 */
+	public int getDistance(int x, int y, int goalX, int goalY) {
+		return getDistanceField(goalX, goalY).getDistance(x, y);
+	}
+	/**
+	 * Drops all cached fields, needed if the floorplan changed.
+	 */
+	public void clear() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+	/**
+	 * @return the maximum number of fields kept in the cache
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	/**
+	 * @return the current number of fields in the cache
+	 */
+	public int size() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+	/**
+	 * @return the number of requests answered from the cache
+	 */
+	public int getHits() {
+		synchronized (cache) {
+			return hits;
+		}
+	}
+	/**
+	 * @return the number of requests that required a computation
+	 */
+	public int getMisses() {
+		synchronized (cache) {
+			return misses;
+		}
+	}
+	/**
+	 * Computes a single distance field without a service and its cache,
+	 * e.g. for distances to the exit of a maze that is loaded from a file.
+	 * @param floorplan provides the wallboards, must not be null
+	 * @param goalX is on the horizontal axis, {@code 0 <= goalX < width}
+	 * @param goalY is on the vertical axis, {@code 0 <= goalY < height}
+	 * @return distances from all cells to the goal
+	 */
+	public static DistanceField computeDistanceField(Floorplan floorplan, int goalX, int goalY) {
+		assert (null != floorplan) : "DistanceFieldService: floorplan must be present";
+		return computeDistanceField(floorplan, floorplan.getWidth(), floorplan.getHeight(), goalX, goalY);
+	}
+	/**
+	 * Breadth-first search from the goal over all cells that are not separated by a wallboard.
+	 * @param goalX is on the horizontal axis, {@code 0 <= goalX < width}
+	 * @param goalY is on the vertical axis, {@code 0 <= goalY < height}
+	 * @return the distance field for the goal
+	 */
+	private DistanceField computeDistanceField(int goalX, int goalY) {
+		return computeDistanceField(floorplan, width, height, goalX, goalY);
+	}
+	private static DistanceField computeDistanceField(Floorplan floorplan, int width, int height, int goalX, int goalY) {
+		final int[] dists = new int[width*height];
+		Arrays.fill(dists, DistanceField.INFINITY);
+		final int[] queue = new int[dists.length];
+		int head = 0;
+		int tail = 0;
+		dists[goalX*height+goalY] = 0;
+		queue[tail++] = goalX*height+goalY;
+		while (head < tail) {
+			int index = queue[head++];
+			int x = index / height;
+			int y = index % height;
+			for (int d = 0; d < DIRECTIONS.length; d++) {
+				int nx = x + DIRS_X[d];
+				int ny = y + DIRS_Y[d];
+				if (0 <= nx && nx < width && 0 <= ny && ny < height && floorplan.hasNoWall(x, y, DIRECTIONS[d])) {
+					int next = nx*height+ny;
+					if (DistanceField.INFINITY == dists[next]) {
+						dists[next] = dists[index] + 1;
+						queue[tail++] = next;
+					}
+				}
+			}
+		}
+		return new DistanceField(goalX, goalY, width, height, dists);
+	}
+}
@@ -2,6 +2,8 @@ package generation;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -91,6 +93,9 @@ public class Floorplan {
 	private int width;
 	private int height ;
 	private int[][] cells; // width x height array of cells, cells[width][height]
+	private IntBuffer mappedCells; // read-only view on cell values at index x*height+y, e.g. of a memory mapped file
+	// if mappedCells is not null, it holds the content and cells is null,
+	// the first modification copies the content into cells and drops the view (copy on write)
 	// each cell contains an integer which encodes presence/absence of wallboards
 	// cells[i][j] can be read as (i,j) coordinates much like (x,y) coordinates
 	// where the first dimension x grows towards the right and 
@@ -100,6 +105,13 @@ public class Floorplan {
 	// as position (i,j) would be column i and row j which is opposite to the normal  
 	// use of rows and columns indices for matrices.
 	
+	private long zobrist; // XOR of ContentHash.key(x,y,bit) over all bits that are set in any cell
+	// updated in O(1) by setBitToOne and setBitToZero, which carry out all modifications of cells
+	private boolean zobristValid; // false if zobrist has not been computed yet for given initial values
+	
+	private int[] changedCells; // positions x*height+y of cells whose value changed, null if changes are not tracked
+	private int changedCount; // number of valid entries in changedCells
+	
 	/**
 	 * Constructor
 	 * @param w width, {@code 0 < w}
@@ -109,6 +121,9 @@ public class Floorplan {
 		width = w ;
 		height = h ;
 		cells = new int[w][h];
+		// no bits are set
+		zobrist = 0 ;
+		zobristValid = true ;
 	}
 
 	/**
@@ -134,6 +149,22 @@ public class Floorplan {
 		*/
 	}
 	
+	/**
+	 * Constructor for a floorplan that reads cell values directly from the given buffer
+	 * without copying them. The buffer is not modified, the first method call that 
+	 * changes a cell copies all values into an internal matrix.
+	 * This constructor is useful to work with a floorplan stored in a memory mapped file.
+	 * @param w width, {@code 0 < w}
+	 * @param h height, {@code 0 < h}
+	 * @param values provides w*h cell values at index x*h+y, starting at its position
+	 */
+	public Floorplan(int w, int h, IntBuffer values) {
+		assert (values.remaining() >= w*h) : "Floorplan: buffer too small for dimensions";
+		width = w ;
+		height = h ;
+		mappedCells = values.slice();
+	}
+	
 	/**
 	 * Initialize floorplan such that all cells have not been visited,
 	 * all wallboards inside the maze are up,
@@ -181,21 +212,53 @@ public class Floorplan {
 			return false ;
 		for (int i = 0; i < width; i++) {
 			for (int j = 0; j < height; j++) {
-				if (cells[i][j] != o.cells[i][j])
+				if (getValueOfCell(i, j) != o.getValueOfCell(i, j))
 					return false ;
 			}
 		}
 		return true ;
 	}
 	/**
-	 * Hashcode method is not implemented as it is not needed here.
-	 * Dummy method to recognize common pitfall from overriding equals() but 
-	 * not hashcode() method.
+	 * Hashcode method that is consistent with equals and takes constant time,
+	 * see {@link #getContentHash() getContentHash}.
 	 */
 	@Override
 	public int hashCode() {
-		  assert false : "hashCode not designed";
-		  return 42; // any arbitrary constant will do
+		long hash = getContentHash();
+		return (int) (hash ^ (hash >>> 32));
+	}
+	/**
+	 * Provides a 64 bit hash of dimensions and content of all cells.
+	 * The hash is a Zobrist hash that is maintained incrementally 
+	 * with every modification of a cell, so it takes constant time
+	 * except for the first call on a floorplan that has been created
+	 * with given cell values, which computes it once.
+	 * Equal floorplans have equal hashes.
+	 * @return the content hash
+	 */
+	public long getContentHash() {
+		if (!zobristValid) {
+			zobrist = 0 ;
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++) {
+					zobrist ^= getZobristKeys(x, y, getValueOfCell(x, y));
+				}
+			}
+			zobristValid = true ;
+		}
+		return ContentHash.finish(ContentHash.mix(ContentHash.mix(zobrist, width), height));
+	}
+	/**
+	 * @return the width of the floorplan, such that for any (x,y), {@code 0 <= x < width}
+	 */
+	public int getWidth() {
+		return width;
+	}
+	/**
+	 * @return the height of the floorplan, such that for any (x,y), {@code 0 <= y < height}
+	 */
+	public int getHeight() {
+		return height;
 	}
 	/**
 	 * Get the value of a cell at the given position (x,y).
@@ -206,8 +269,18 @@ public class Floorplan {
 	 */
 	public int getValueOfCell( int x, int y )
 	{
+		if (null != mappedCells)
+			return mappedCells.get(x*height+y);
 		return cells[x][y] ;
 	}
+	/**
+	 * Tells if cell values are read from an external buffer
+	 * that has not been copied so far.
+	 * @return true if the floorplan is a view on a buffer, false otherwise
+	 */
+	public boolean isMapped() {
+		return null != mappedCells;
+	}
 	
 	/**
 	 * checks if cell (x,y) and adjacent neighbor in the given direction are not separated by a border 
@@ -685,6 +758,33 @@ public class Floorplan {
             sy += sdsy;
         }    
     }
+	/**
+	 * Switches the log of changed cells on or off.
+	 * While it is on, every modification that changes the value of a cell
+	 * appends the cell to the log, so clients that keep a picture of
+	 * this floorplan, like the map of seen walls, only need to update
+	 * the cells that changed.
+	 * Switching it off drops the log.
+	 * @param on is true to keep a log of changed cells
+	 */
+	public void setChangeTracking(boolean on) {
+		changedCells = on ? new int[16] : null;
+		changedCount = 0;
+	}
+	/**
+	 * Provides all cells that changed since the last call of this method
+	 * or since change tracking was switched on and clears the log.
+	 * A cell that changed several times may be listed several times.
+	 * @return positions x*height+y of changed cells, empty if there are none
+	 * or if changes are not tracked
+	 */
+	public int[] takeChangedCells() {
+		if (0 == changedCount)
+			return new int[0];
+		int[] result = Arrays.copyOf(changedCells, changedCount);
+		changedCount = 0;
+		return result;
+	}
 	//////////////////// get methods (is..., has...) for various attributes ///////////////////////
 	/**
 	 * Tells if the given position has a wallboard in the given direction.
@@ -905,6 +1005,11 @@ public class Floorplan {
 	 * @param cw_bit like CW_LEFT, CW_RIGHT, CW_TOP, CW_BOTTOM
 	 */
 	private void setBitToZero(int x, int y, int cw_bit) {
+		copyOnWrite();
+		if (zobristValid)
+			zobrist ^= getZobristKeys(x, y, cells[x][y] & cw_bit);
+		if (null != changedCells && 0 != (cells[x][y] & cw_bit))
+			logChange(x, y);
 		cells[x][y] &= ~cw_bit;
 	}
 	/**
@@ -922,10 +1027,10 @@ public class Floorplan {
 	// better to directly change client classes
 	//
 	protected boolean hasMaskedBitsTrue(int x, int y, int bitmask) {
-		return (cells[x][y] & bitmask) != 0;
+		return (getValueOfCell(x, y) & bitmask) != 0;
 	}
 	protected boolean hasMaskedBitsFalse(int x, int y, int bitmask) {
-		return (cells[x][y] & bitmask) == 0;
+		return (getValueOfCell(x, y) & bitmask) == 0;
 	}
 
 	/**
@@ -957,8 +1062,55 @@ public class Floorplan {
 	 * @param bitmask
 	 */
 	private void setBitToOne(int x, int y, int bitmask) {
+		copyOnWrite();
+		if (zobristValid)
+			zobrist ^= getZobristKeys(x, y, ~cells[x][y] & bitmask);
+		if (null != changedCells && 0 != (~cells[x][y] & bitmask))
+			logChange(x, y);
 		cells[x][y] |= bitmask ;
 	}
+	/**
+	 * Appends a cell to the log of changed cells.
+	 * @param x coordinate of cell, {@code 0 <= x < width}
+	 * @param y coordinate of cell, {@code 0 <= y < height}
+	 */
+	private void logChange(int x, int y) {
+		if (changedCount == changedCells.length)
+			changedCells = Arrays.copyOf(changedCells, 2*changedCells.length);
+		changedCells[changedCount++] = x*height+y;
+	}
+	/**
+	 * Combines the Zobrist keys of the given bits of a cell.
+	 * Modifications set or clear only a few bits at a time, so this takes constant time.
+	 * @param x coordinate of cell, {@code 0 <= x < width}
+	 * @param y coordinate of cell, {@code 0 <= y < height}
+	 * @param bits that change their value
+	 * @return XOR of the keys of all given bits
+	 */
+	private static long getZobristKeys(int x, int y, int bits) {
+		long keys = 0 ;
+		while (0 != bits) {
+			keys ^= ContentHash.key(x, y, Integer.numberOfTrailingZeros(bits));
+			bits &= bits - 1 ; // clear lowest bit
+		}
+		return keys ;
+	}
+	/**
+	 * Copies cell values from the buffer into the internal matrix
+	 * before the first modification of a floorplan that is a view on a buffer.
+	 */
+	private void copyOnWrite() {
+		if (null == mappedCells)
+			return;
+		int[][] copy = new int[width][height];
+		for (int i = 0; i < width; i++) {
+			for (int j = 0; j < height; j++) {
+				copy[i][j] = mappedCells.get(i*height+j);
+			}
+		}
+		cells = copy;
+		mappedCells = null;
+	}
 
 	///////////////// code for debugging ///////////////////////////////////////
 	private void dbg(String str) {
@@ -975,7 +1127,7 @@ public class Floorplan {
 		{
 			prefix = " i:" + i + " j:";
 			for (int j = 0 ; j < height ; j++)
-				s += prefix + j + "=" + cells[i][j] ;
+				s += prefix + j + "=" + getValueOfCell(i, j) ;
 			s += "\n" ;
 		}
 		return s ;
@@ -0,0 +1,389 @@
+package generation;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A HierarchicalPathIndex answers point-to-point shortest path queries
+ * on a floorplan without a full width*height distance matrix.
+ *
+ * The floorplan is partitioned into square clusters of clusterSize x clusterSize cells.
+ * A portal is a cell on the border of a cluster that has an open passage
+ * (no wallboard) into a cell of a neighboring cluster.
+ * The index is an abstract graph over all portals with two kinds of edges:
+ * intra-cluster edges between portals of the same cluster, weighted with
+ * their shortest distance inside the cluster, and inter-cluster edges of weight 1
+ * between portals on both sides of a passage.
+ * Intra-cluster distances are computed with a breadth-first search per portal
+ * restricted to its cluster, clusters are processed in parallel.
+ *
+ * A query runs a breadth-first search inside the cluster of the source and
+ * the cluster of the target and connects both with a Dijkstra search
+ * on the abstract graph. Results are exact, i.e. they match a breadth-first
+ * search on the complete floorplan.
+ * Work arrays for queries are kept per thread and only the portals
+ * a search reaches are reset afterwards, such that the cost of a query
+ * depends on the part of the abstract graph it explores and not on the
+ * total number of portals.
+ *
+ * The index reflects the floorplan at construction time, it needs to
+ * be rebuilt if wallboards are added or deleted afterwards.
+ * Queries do not modify the index and can run concurrently.
+ *
+ * @author Duke Tran
+ */
+public class HierarchicalPathIndex implements PathQuery {
+	/**
+	 * Default edge length of a cluster in cells.
+	 */
+	public static final int DEFAULT_CLUSTER_SIZE = 16;
+
+	private final Floorplan floorplan;
+	private final int width;
+	private final int height;
+	private final int clusterSize;
+	private final int clustersX; // number of clusters in horizontal direction
+	private final int clustersY; // number of clusters in vertical direction
+
+	// portals of cluster c are nodes portalStart[c] ... portalStart[c+1]-1 in the abstract graph,
+	// clusterPortals[c] holds their local index (x-x0)*clusterSize+(y-y0) in ascending order
+	private final int[][] clusterPortals;
+	private final int[] portalStart;
+	// abstract graph in compressed sparse row format,
+	// edges of node n are at index edgeStart[n] ... edgeStart[n+1]-1
+	private final int[] edgeStart;
+	private final int[] edgeTarget;
+	private final int[] edgeWeight;
+	// work arrays for queries, one set per thread
+	private final ThreadLocal<Search> searches = ThreadLocal.withInitial(Search::new);
+
+	// (dx,dy) pairs indexed by CardinalDirection ordinal as in CardinalDirection.getDirection()
+	private static final int[] DIRS_X = { 0, 1, 0, -1 }; // North, East, South, West
+	private static final int[] DIRS_Y = { -1, 0, 1, 0 };
+	private static final CardinalDirection[] DIRECTIONS = CardinalDirection.values();
+
+	/**
+	 * Constructor that builds the index with the default cluster size.
+	 * @param floorplan provides the wallboards, must not be null
+	 */
+	public HierarchicalPathIndex(Floorplan floorplan) {
+		this(floorplan, DEFAULT_CLUSTER_SIZE);
+	}
+	/**
+	 * Constructor that builds the index.
+	 * @param floorplan provides the wallboards, must not be null
+	 * @param clusterSize is the edge length of a cluster, {@code 0 < clusterSize}
+	 */
+	public HierarchicalPathIndex(Floorplan floorplan, int clusterSize) {
+		assert (null != floorplan) : "HierarchicalPathIndex: floorplan must be present";
+		assert (0 < clusterSize) : "HierarchicalPathIndex: cluster size must be positive";
+		this.floorplan = floorplan;
+		this.width = floorplan.getWidth();
+		this.height = floorplan.getHeight();
+		this.clusterSize = clusterSize;
+		this.clustersX = (width + clusterSize - 1) / clusterSize;
+		this.clustersY = (height + clusterSize - 1) / clusterSize;
+		final int clusters = clustersX * clustersY;
+
+		// Step 1: identify portals for each cluster
+		clusterPortals = new int[clusters][];
+		IntStream.range(0, clusters).parallel().forEach(c -> clusterPortals[c] = findPortals(c));
+		portalStart = new int[clusters + 1];
+		for (int c = 0; c < clusters; c++) {
+			portalStart[c + 1] = portalStart[c] + clusterPortals[c].length;
+		}
+		// Step 2: compute edges for each cluster, intra-cluster distances dominate the cost
+		final int[][][] edges = new int[clusters][][];
+		IntStream.range(0, clusters).parallel().forEach(c -> edges[c] = computeEdges(c));
+		// Step 3: assemble edges into a single graph
+		final int nodes = portalStart[clusters];
+		edgeStart = new int[nodes + 1];
+		for (int c = 0; c < clusters; c++) {
+			int[] counts = edges[c][0];
+			for (int i = 0; i < counts.length; i++) {
+				edgeStart[portalStart[c] + i + 1] = edgeStart[portalStart[c] + i] + counts[i];
+			}
+		}
+		edgeTarget = new int[edgeStart[nodes]];
+		edgeWeight = new int[edgeStart[nodes]];
+		for (int c = 0; c < clusters; c++) {
+			int offset = edgeStart[portalStart[c]];
+			System.arraycopy(edges[c][1], 0, edgeTarget, offset, edges[c][1].length);
+			System.arraycopy(edges[c][2], 0, edgeWeight, offset, edges[c][2].length);
+		}
+	}
+	/**
+	 * @return the edge length of a cluster in cells
+	 */
+	public int getClusterSize() {
+		return clusterSize;
+	}
+	/**
+	 * @return the number of portals, i.e., the number of nodes in the abstract graph
+	 */
+	public int getPortalCount() {
+		return portalStart[portalStart.length - 1];
+	}
+	/**
+	 * @return the number of edges in the abstract graph, each direction counts separately
+	 */
+	public int getEdgeCount() {
+		return edgeTarget.length;
+	}
+
+	@Override
+	public int getDistance(int fromX, int fromY, int toX, int toY) {
+		assert (isValid(fromX, fromY) && isValid(toX, toY)) : "HierarchicalPathIndex: position out of range";
+		if (fromX == toX && fromY == toY)
+			return 0;
+		final int source = getCluster(fromX, fromY);
+		final int target = getCluster(toX, toY);
+		final Search search = searches.get();
+		final int[] queue = search.queue;
+		// local search from the source, covers paths that stay inside a single cluster
+		final int[] fromDists = search.fromDists;
+		searchCluster(source, fromX, fromY, fromDists, queue);
+		int best = INFINITY;
+		if (source == target) {
+			best = fromDists[getLocalIndex(source, toX, toY)];
+		}
+		// local search from the target, graph is undirected so distances are symmetric
+		final int[] toDists = search.toDists;
+		searchCluster(target, toX, toY, toDists, queue);
+		final int[] targetPortals = clusterPortals[target];
+		final int targetStart = portalStart[target];
+		// Dijkstra on the abstract graph, heap entries encode (distance << 32 | node)
+		final int[] dists = search.dists;
+		final int[] sourcePortals = clusterPortals[source];
+		for (int i = 0; i < sourcePortals.length; i++) {
+			int d = fromDists[sourcePortals[i]];
+			if (INFINITY != d) {
+				search.update(portalStart[source] + i, d);
+			}
+		}
+		while (!search.isEmpty()) {
+			long entry = search.poll();
+			int d = (int) (entry >>> 32);
+			int node = (int) entry;
+			if (d >= best)
+				break; // all remaining candidates are at least as long
+			if (d > dists[node])
+				continue; // outdated entry
+			if (targetStart <= node && node < targetStart + targetPortals.length) {
+				int rest = toDists[targetPortals[node - targetStart]];
+				if (INFINITY != rest && d + rest < best)
+					best = d + rest;
+			}
+			for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+				int next = edgeTarget[e];
+				int nd = d + edgeWeight[e];
+				if (nd < dists[next]) {
+					search.update(next, nd);
+				}
+			}
+		}
+		search.reset();
+		return best;
+	}
+
+	////////////////////////////// private methods ///////////////////////////////////
+
+	private boolean isValid(int x, int y) {
+		return 0 <= x && x < width && 0 <= y && y < height;
+	}
+	/**
+	 * Gives the index of the cluster that contains (x,y).
+	 */
+	private int getCluster(int x, int y) {
+		return (x / clusterSize) * clustersY + (y / clusterSize);
+	}
+	/**
+	 * Gives the index of (x,y) inside the given cluster.
+	 */
+	private int getLocalIndex(int cluster, int x, int y) {
+		return (x - (cluster / clustersY) * clusterSize) * clusterSize + (y - (cluster % clustersY) * clusterSize);
+	}
+	/**
+	 * Tells if one can go from (x,y) into the given direction and stay on the floorplan.
+	 */
+	private boolean canMove(int x, int y, int d) {
+		return isValid(x + DIRS_X[d], y + DIRS_Y[d]) && floorplan.hasNoWall(x, y, DIRECTIONS[d]);
+	}
+	/**
+	 * Lists all cells of the given cluster that have a passage into a neighboring cluster.
+	 * @return local indices of portals in ascending order
+	 */
+	private int[] findPortals(int cluster) {
+		final int x0 = (cluster / clustersY) * clusterSize;
+		final int y0 = (cluster % clustersY) * clusterSize;
+		final int x1 = Math.min(x0 + clusterSize, width);
+		final int y1 = Math.min(y0 + clusterSize, height);
+		int[] portals = new int[clusterSize * clusterSize];
+		int count = 0;
+		for (int x = x0; x < x1; x++) {
+			for (int y = y0; y < y1; y++) {
+				if (x != x0 && x != x1 - 1 && y != y0 && y != y1 - 1)
+					continue; // inner cells can not be portals
+				for (int d = 0; d < DIRECTIONS.length; d++) {
+					if (canMove(x, y, d) && getCluster(x + DIRS_X[d], y + DIRS_Y[d]) != cluster) {
+						portals[count++] = (x - x0) * clusterSize + (y - y0);
+						break;
+					}
+				}
+			}
+		}
+		return Arrays.copyOf(portals, count);
+	}
+	/**
+	 * Computes the edges that start at portals of the given cluster.
+	 * @return three arrays: number of edges per portal, targets and weights of all edges
+	 */
+	private int[][] computeEdges(int cluster) {
+		final int x0 = (cluster / clustersY) * clusterSize;
+		final int y0 = (cluster % clustersY) * clusterSize;
+		final int[] portals = clusterPortals[cluster];
+		final int[] counts = new int[portals.length];
+		// upper bound: every other portal of this cluster plus 4 crossings
+		int[] targets = new int[portals.length * (portals.length + 3)];
+		int[] weights = new int[targets.length];
+		int count = 0;
+		final int[] dists = new int[clusterSize * clusterSize];
+		final int[] queue = new int[dists.length];
+		for (int i = 0; i < portals.length; i++) {
+			int x = x0 + portals[i] / clusterSize;
+			int y = y0 + portals[i] % clusterSize;
+			int first = count;
+			// intra-cluster edges
+			searchCluster(cluster, x, y, dists, queue);
+			for (int j = 0; j < portals.length; j++) {
+				if (i != j && INFINITY != dists[portals[j]]) {
+					targets[count] = portalStart[cluster] + j;
+					weights[count++] = dists[portals[j]];
+				}
+			}
+			// inter-cluster edges
+			for (int d = 0; d < DIRECTIONS.length; d++) {
+				int nx = x + DIRS_X[d];
+				int ny = y + DIRS_Y[d];
+				if (canMove(x, y, d) && getCluster(nx, ny) != cluster) {
+					int neighbor = getCluster(nx, ny);
+					int k = Arrays.binarySearch(clusterPortals[neighbor], getLocalIndex(neighbor, nx, ny));
+					assert (0 <= k) : "HierarchicalPathIndex: passage without portal on the other side";
+					targets[count] = portalStart[neighbor] + k;
+					weights[count++] = 1;
+				}
+			}
+			counts[i] = count - first;
+		}
+		return new int[][] { counts, Arrays.copyOf(targets, count), Arrays.copyOf(weights, count) };
+	}
+	/**
+	 * Breadth-first search from (x,y) that does not leave the given cluster.
+	 * @param dists is filled with distances per local index, INFINITY if not reachable
+	 * @param queue is a work array of the same length as dists
+	 */
+	private void searchCluster(int cluster, int x, int y, int[] dists, int[] queue) {
+		final int x0 = (cluster / clustersY) * clusterSize;
+		final int y0 = (cluster % clustersY) * clusterSize;
+		Arrays.fill(dists, INFINITY);
+		int head = 0;
+		int tail = 0;
+		int local = (x - x0) * clusterSize + (y - y0);
+		dists[local] = 0;
+		queue[tail++] = local;
+		while (head < tail) {
+			local = queue[head++];
+			int cx = x0 + local / clusterSize;
+			int cy = y0 + local % clusterSize;
+			for (int d = 0; d < DIRECTIONS.length; d++) {
+				int nx = cx + DIRS_X[d];
+				int ny = cy + DIRS_Y[d];
+				if (canMove(cx, cy, d) && getCluster(nx, ny) == cluster) {
+					int next = (nx - x0) * clusterSize + (ny - y0);
+					if (INFINITY == dists[next]) {
+						dists[next] = dists[local] + 1;
+						queue[tail++] = next;
+					}
+				}
+			}
+		}
+	}
+	/**
+	 * Work arrays for a query. Distances of portals are kept in an array
+	 * over all portals that is allocated once per thread, portals that
+	 * have been reached are recorded such that only their entries
+	 * need to be reset for the next query. 
+	 * Pending portals are kept in a binary heap of primitive long values.
+	 */
+	private final class Search {
+		final int[] dists = new int[getPortalCount()];
+		final int[] touched = new int[dists.length];
+		int touchedCount;
+		long[] heap = new long[16];
+		int heapSize;
+		final int[] queue = new int[clusterSize * clusterSize];
+		final int[] fromDists = new int[queue.length];
+		final int[] toDists = new int[queue.length];
+
+		Search() {
+			Arrays.fill(dists, INFINITY);
+		}
+		/**
+		 * Sets a shorter distance for the given portal and schedules it.
+		 */
+		void update(int node, int d) {
+			if (INFINITY == dists[node])
+				touched[touchedCount++] = node;
+			dists[node] = d;
+			push(((long) d << 32) | node);
+		}
+		boolean isEmpty() {
+			return 0 == heapSize;
+		}
+		/**
+		 * Adds an entry to the heap and moves it up to its position.
+		 */
+		void push(long entry) {
+			if (heapSize == heap.length)
+				heap = Arrays.copyOf(heap, 2 * heap.length);
+			int i = heapSize++;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (heap[parent] <= entry)
+					break;
+				heap[i] = heap[parent];
+				i = parent;
+			}
+			heap[i] = entry;
+		}
+		/**
+		 * Removes the smallest entry from the heap.
+		 */
+		long poll() {
+			long result = heap[0];
+			long last = heap[--heapSize];
+			int i = 0;
+			int child;
+			while ((child = 2 * i + 1) < heapSize) {
+				if (child + 1 < heapSize && heap[child + 1] < heap[child])
+					child++;
+				if (last <= heap[child])
+					break;
+				heap[i] = heap[child];
+				i = child;
+			}
+			heap[i] = last;
+			return result;
+		}
+		/**
+		 * Restores the initial state for the next query.
+		 */
+		void reset() {
+			for (int i = 0; i < touchedCount; i++) {
+				dists[touched[i]] = INFINITY;
+			}
+			touchedCount = 0;
+			heapSize = 0;
+		}
+	}
+}
@@ -69,7 +69,8 @@ public interface Maze {
 	/**
 	 * Gets access to a tree of nodes for segments of wallboards which is
 	 * used for drawing the currently visible part.
-	 * @return the rootnode
+	 * @return the rootnode, null if the maze was generated without a tree
+	 * for the RaycastFirstPersonView
 	 */
 	BSPNode getRootnode();
 
@@ -114,6 +115,59 @@ public interface Maze {
 	 * @return int array of length 2 with (x',y') coordinates for neighbor
 	 */
 	public int[] getNeighborCloserToExit(int x, int y);
+	/**
+	 * Provides coordinates of a position adjacent to the given (x,y)
+	 * position that has a distance to the exit that is less than
+	 * the distance for the given (x,y) position. 
+	 * Same as {@link #getNeighborCloserToExit(int, int)} but the result
+	 * is written into the given array such that no memory is allocated.
+	 * @param x is on the horizontal axis, {@code 0 <= x < width}
+	 * @param y is on the vertical axis, {@code 0 <= y < height}
+	 * @param neighbor array of length 2 to hold the (x',y') coordinates
+	 * @return true if such a neighbor exists, false otherwise, e.g. at the exit
+	 */
+	public boolean getNeighborCloserToExit(int x, int y, int[] neighbor);
+	/**
+	 * Provides the direction to go from the given (x,y) position
+	 * to reach a neighbor that is closer to the exit.
+	 * @param x is on the horizontal axis, {@code 0 <= x < width}
+	 * @param y is on the vertical axis, {@code 0 <= y < height}
+	 * @return direction towards the exit, null if (x,y) is the exit position
+	 */
+	public CardinalDirection getDirectionCloserToExit(int x, int y);
+	/**
+	 * Provides the complete path from the given (x,y) position to the exit
+	 * as a run-length encoded sequence of (direction, length) segments.
+	 * The result for the most recent starting position is cached.
+	 * @param x is on the horizontal axis, {@code 0 <= x < width}
+	 * @param y is on the vertical axis, {@code 0 <= y < height}
+	 * @return path to the exit, has no segments if (x,y) is the exit position
+	 */
+	public SolutionPath getSolutionPath(int x, int y);
+	/**
+	 * Drops the cached solution path such that subsequent calls
+	 * of {@link #getSolutionPath(int, int) getSolutionPath} recompute them.
+	 */
+	public void invalidateSolutionPaths();
+	/**
+	 * Provides shortest path distances between arbitrary positions,
+	 * not just towards the exit as {@link #getDistanceToExit(int, int) getDistanceToExit}.
+	 * The underlying index is built on first use.
+	 * @return query object for point-to-point distances
+	 */
+	public PathQuery getPathQuery();
+	/**
+	 * Provides the value that was used to choose the colors of walls,
+	 * see P5Panel.getWallColor. With this value, walls can be drawn in their 
+	 * colors without a BSP tree.
+	 * @return the value, -1 if it is not known, e.g. for a maze loaded from a file
+	 */
+	public int getColorChange();
+	/**
+	 * Sets the value that was used to choose the colors of walls.
+	 * @param colorChange is in the range 0 to 255, -1 if it is not known
+	 */
+	public void setColorChange(int colorChange);
 	/**
 	 * Provides coordinates (x,y) of the starting position for this maze.
 	 * Maze generation algorithms are expected to use the position
@@ -130,4 +184,11 @@ public interface Maze {
 	 * @param y is on the vertical axis, {@code 0 <= y < height}
 	 */
 	public void setStartingPosition(int x, int y);
+	/**
+	 * Provides a 64 bit hash that covers dimensions, starting position,
+	 * floorplan, distances and BSP tree. Mazes with equal content have equal hashes,
+	 * so the hash can be used as a key for caches and to find duplicates.
+	 * @return the content hash
+	 */
+	public long getContentHash();
 }
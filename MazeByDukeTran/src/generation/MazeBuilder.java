@@ -39,6 +39,7 @@ public class MazeBuilder implements Runnable {
 	static final int MAX_TRIES = 250 ; // room generation: max number of tries to find a random location for a room
 	static final int MIN_ROOM_DIMENSION = 3; // room generation: min dimension
 	static final int MAX_ROOM_DIMENSION = 8; // room generation: max dimension
+	static final int MAX_ATTEMPTS = 3; // acceptance check: max number of mazes generated for a single order
 
 	/**
 	 * Constructor for a randomized maze generation
@@ -75,30 +76,54 @@ public class MazeBuilder implements Runnable {
 	public void run() {
 		// try-catch block to recognize if thread is interrupted
 		try {
-			// create an initial invalid maze where all wallboards and borders are up
-			floorplan.initialize();
-			// place rooms in maze as needed
-			if (rooms > 0)
-				generateRooms();
-			
-			Thread.sleep(SLEEP_INTERVAL) ; // test if thread has been interrupted, i.e. notified to stop
+			// generate a maze and check it, a maze that fails the check is replaced by a new one
+			boolean accepted = false;
+			for (int attempt = 0; attempt < MAX_ATTEMPTS && !accepted; attempt++) {
+				if (0 < attempt) {
+					dbg("generating a new maze, attempt " + (attempt+1));
+					floorplan = new Floorplan(width, height);
+					dists = new Distance(width, height);
+				}
+				// create an initial invalid maze where all wallboards and borders are up
+				floorplan.initialize();
+				// place rooms in maze as needed
+				if (rooms > 0)
+					generateRooms();
 
-			// put pathways into the maze, determine its starting and end position and calculate distances
-			generate();
+				Thread.sleep(SLEEP_INTERVAL) ; // test if thread has been interrupted, i.e. notified to stop
 
-			Thread.sleep(SLEEP_INTERVAL) ; // test if thread has been interrupted, i.e. notified to stop
+				// put pathways into the maze, determine its starting and end position and calculate distances
+				generate();
+
+				Thread.sleep(SLEEP_INTERVAL) ; // test if thread has been interrupted, i.e. notified to stop
+
+				// acceptance check: all cells must be reachable and a perfect maze must not have loops,
+				// a single union-find pass is cheap enough to run on every maze
+				accepted = isAcceptable();
+			}
+			if (!accepted) {
+				order.fail("generated maze has isolated regions or loops after " + MAX_ATTEMPTS + " attempts");
+				reset();
+				return;
+			}
 
 			final int colchange = random.nextIntWithinInterval(0, 255); // used in the constructor for Segments  class Seg
-			final BSPBuilder b = new BSPBuilder(order, dists, floorplan, width, height, colchange, expectedPartiters) ;
-			BSPNode root = b.generateBSPNodes(); // takes a long time, updates progressbar, 
-			// it also internally checks for cancel requests
-			// and throws an interrupted exception if that happens
+			BSPNode root = null; // mazes for the raycasting view go without a tree
+			if (order.isBSPTreeNeeded()) {
+				final BSPBuilder b = new BSPBuilder(order, dists, floorplan, width, height, colchange, expectedPartiters) ;
+				root = b.generateBSPNodes(); // takes a long time, updates progressbar, 
+				// it also internally checks for cancel requests
+				// and throws an interrupted exception if that happens
+			}
 
 			Thread.sleep(SLEEP_INTERVAL) ; // test if thread has been interrupted, i.e. notified to stop
 
 			// communicate results back to Controller
 			order.updateProgress(100); // Order interface promises to communicate 100% upon delivery
-			order.deliver(new MazeContainer(width, height, floorplan, dists, root, startx, starty));
+			MazeContainer maze = new MazeContainer(width, height, floorplan, dists, root, startx, starty);
+			// the walls of a tree can be recreated with the same colors
+			maze.setColorChange(colchange);
+			order.deliver(maze);
             // reset order and other fields for safe repeated operation and garbage collection
 			reset() ;
 		}
@@ -113,6 +138,22 @@ public class MazeBuilder implements Runnable {
 		}
 	}
 	
+	/**
+	 * Validates the floorplan with a single union-find pass.
+	 * @return true if the maze is connected and, if a perfect maze was ordered, has no loops
+	 */
+	private boolean isAcceptable() {
+		MazeValidator validator = new MazeValidator(floorplan).validate();
+		if (!validator.isConnected()) {
+			dbg("isolated regions: " + validator.getIsolatedRegions().length);
+			return false;
+		}
+		if (order.isPerfect() && !validator.isPerfect()) {
+			dbg("loops in perfect maze: " + validator.getCycleCount());
+			return false;
+		}
+		return true;
+	}
 	/**
 	 * Reset all fields to initial values
 	 */
@@ -3,6 +3,8 @@
  */
 package generation;
 
+import java.util.Arrays;
+
 import gui.Constants;
 
 /**
@@ -48,6 +50,18 @@ public class MazeContainer implements Maze {
 	// a subset of segments need to be quickly identified for drawing
 	// the BSP tree partitions the set of all segments and provides a binary search tree for the partitions
 	
+	private byte[] nextHop ; // for each cell (x,y) at index x*height+y, the ordinal of the
+	// CardinalDirection that leads to a neighbor closer to the exit, or NO_NEXT_HOP
+	// computed once when floorplan and distances are set, see computeNextHops(),
+	// or cell by cell on first use if they are mapped from a file, see getNextHop()
+	private volatile SolutionPath solutionPath ; // path for the position that was asked for last
+	// the map asks for the current position in each frame, which may be on the render thread,
+	// computed on demand and dropped with invalidateSolutionPaths()
+	private volatile PathQuery pathQuery ; // index for shortest paths between arbitrary positions
+	// built on demand from the floorplan, dropped when the floorplan is replaced,
+	// callers may be on any thread, see getPathQuery()
+	private int colorChange = -1 ; // value that determined the colors of walls, -1 if unknown
+	
 	private int[] start ; // the starting position (x,y) for the game
 	// this position should be in in range: 0 <= x < width, 0 <= y < height
 	// it should be consistent with mazedists.getStartPosition() 
@@ -55,6 +69,21 @@ public class MazeContainer implements Maze {
 	// to be fully initialized, we need all other fields being set consistently
 	private boolean fullyInitialized;
 	
+	/**
+	 * Entry in the next hop table for cells that have no neighbor closer to the exit,
+	 * which is the exit position itself.
+	 */
+	static final byte NO_NEXT_HOP = -1;
+	/**
+	 * Entry in the next hop table for cells that have not been looked at yet.
+	 */
+	private static final byte UNKNOWN_NEXT_HOP = -2;
+	// (dx,dy) pairs indexed by CardinalDirection ordinal as in CardinalDirection.getDirection()
+	// kept as constants to avoid allocating an array for each lookup
+	private static final int[] DIRS_X = { 0, 1, 0, -1 }; // North, East, South, West
+	private static final int[] DIRS_Y = { -1, 0, 1, 0 };
+	private static final CardinalDirection[] DIRECTIONS = CardinalDirection.values();
+	
 	/**
 	 * Default constructor leaves object in an state that requires a series of set methods
 	 * to be called for proper initialization.
@@ -62,7 +91,8 @@ public class MazeContainer implements Maze {
 	 * {@link #setHeight(int) setHeight}, {@link #setFloorplan(Floorplan) setMazecells}, 
 	 * {@link #setMazedists(Distance) setMazedists}, 
 	 * {@link #setRootnode(BSPNode) setRootnode}, and 
-	 * {@link #setStartingPosition(int, int) setStartingPosition}
+	 * {@link #setStartingPosition(int, int) setStartingPosition}.
+	 * The tree may be null for a maze that is only drawn by the RaycastFirstPersonView.
 	 */
 	public MazeContainer() {
 		// can not set up object to a meaningful start
@@ -74,7 +104,7 @@ public class MazeContainer implements Maze {
 	 * @param height is the height of the maze, must conform with Constants.SKILL_Y values
 	 * @param floorplan the floorplan to set, must not be null
 	 * @param mazedists the mazedists to set, must be not null
-	 * @param rootnode the rootnode to set, must be not null
+	 * @param rootnode the rootnode to set, null if the maze has no BSP tree
 	 * @param startingPositionX is on the horizontal axis, {@code 0 <= x < width}
 	 * @param startingPositionY is on the vertical axis, {@code 0 <= y < height}
 	 * 
@@ -139,6 +169,8 @@ public class MazeContainer implements Maze {
 	 */
 	public void setFloorplan(Floorplan floorplan) {
 		this.floorplan = floorplan;
+		pathQuery = null;
+		computeNextHops();
 	}
 
 	/**
@@ -158,6 +190,7 @@ public class MazeContainer implements Maze {
 	 */
 	public void setMazedists(Distance mazedists) {
 		this.mazedists = mazedists;
+		computeNextHops();
 	}
 
 	/**
@@ -213,38 +246,227 @@ public class MazeContainer implements Maze {
 	/**
 	 * Gives a (x',y') neighbor for given (x,y) that is closer to exit
 	 * if it exists. 
+	 * The neighbor is looked up in the next hop table that is computed
+	 * once when the floorplan and the distances are set.
 	 * @param x is on the horizontal axis, {@code 0 <= x < width}
 	 * @param y is on the vertical axis, {@code 0 <= y < height}
 	 * @return array with neighbor coordinates if neighbor exists, null otherwise
 	 */
 	public int[] getNeighborCloserToExit(int x, int y) {
+		int[] result = new int[2] ;
+		return getNeighborCloserToExit(x, y, result) ? result : null;
+	}
+	/**
+	 * Gives a (x',y') neighbor for given (x,y) that is closer to exit
+	 * if it exists and writes its coordinates into the given array.
+	 * This variant does not allocate any memory such that it can be
+	 * called once per cell along the path to the exit in each frame.
+	 * @param x is on the horizontal axis, {@code 0 <= x < width}
+	 * @param y is on the vertical axis, {@code 0 <= y < height}
+	 * @param neighbor array of length 2 to hold the (x',y') coordinates, not null
+	 * @return true if neighbor exists and its coordinates are stored in neighbor, false otherwise
+	 */
+	public boolean getNeighborCloserToExit(int x, int y, int[] neighbor) {
 		assert isValidPosition(x,y) : "Invalid position";
+		assert (null != nextHop) : "next hop table requires floorplan and distances to be set";
+		final int hop = getNextHop(x, y);
+		if (NO_NEXT_HOP == hop) {
+			// expectation: only the exit has no neighbor that is closer
+			assert(floorplan.isExitPosition(x, y)) : 
+				"cannot identify direction towards solution: stuck at: " + x + ", "+ y ;
+			return false;
+		}
+		neighbor[0] = x + DIRS_X[hop];
+		neighbor[1] = y + DIRS_Y[hop];
+		return true;
+	}
+	/**
+	 * Gives the direction one needs to go from (x,y) to reach
+	 * a neighbor that is closer to the exit.
+	 * @param x is on the horizontal axis, {@code 0 <= x < width}
+	 * @param y is on the vertical axis, {@code 0 <= y < height}
+	 * @return the direction towards the exit, null if (x,y) is the exit position
+	 */
+	public CardinalDirection getDirectionCloserToExit(int x, int y) {
+		assert isValidPosition(x,y) : "Invalid position";
+		assert (null != nextHop) : "next hop table requires floorplan and distances to be set";
+		final int hop = getNextHop(x, y);
+		return (NO_NEXT_HOP == hop) ? null : DIRECTIONS[hop];
+	}
+	/**
+	 * Gives the path from (x,y) to the exit as a run-length encoded
+	 * sequence of segments. The path follows the next hop table, so 
+	 * it is the same path one gets by repeatedly calling getNeighborCloserToExit.
+	 * Only the path for the most recent starting position is cached,
+	 * such that memory does not grow with the number of positions
+	 * a player has visited.
+	 * @param x is on the horizontal axis, {@code 0 <= x < width}
+	 * @param y is on the vertical axis, {@code 0 <= y < height}
+	 * @return the path to the exit, an empty path if (x,y) is the exit
+	 */
+	public SolutionPath getSolutionPath(int x, int y) {
+		assert isValidPosition(x,y) : "Invalid position";
+		assert (null != nextHop) : "solution paths require floorplan and distances to be set";
+		SolutionPath result = solutionPath;
+		if (null == result || result.getStartX() != x || result.getStartY() != y) {
+			// paths are immutable, so it is safe to hand them to another thread
+			result = computeSolutionPath(x, y);
+			solutionPath = result;
+		}
+		return result;
+	}
+	/**
+	 * Drops the cached solution path. 
+	 * Needs to be called if the floorplan or the distances change
+	 * after they have been set, which happens automatically
+	 * with setFloorplan and setMazedists.
+	 */
+	public void invalidateSolutionPaths() {
+		solutionPath = null;
+	}
+	/**
+	 * Provides the index for point-to-point distances.
+	 * The index is built once on first use, double-checked locking
+	 * makes sure that concurrent callers share a single index.
+	 * @return query object for point-to-point distances
+	 */
+	public PathQuery getPathQuery() {
+		assert (null != floorplan) : "path queries require the floorplan to be set";
+		PathQuery result = pathQuery;
+		if (null == result) {
+			synchronized (this) {
+				result = pathQuery;
+				if (null == result) {
+					result = new HierarchicalPathIndex(floorplan);
+					pathQuery = result;
+				}
+			}
+		}
+		return result;
+	}
+	public int getColorChange() {
+		return colorChange;
+	}
+	public void setColorChange(int colorChange) {
+		assert -1 <= colorChange && colorChange <= 255 : "color change must be in [-1,255]";
+		this.colorChange = colorChange;
+	}
+	/**
+	 * Walks along the next hop table from (x,y) to the exit and
+	 * merges consecutive steps into the same direction.
+	 * @param x is on the horizontal axis, {@code 0 <= x < width}
+	 * @param y is on the vertical axis, {@code 0 <= y < height}
+	 * @return the path to the exit
+	 */
+	private SolutionPath computeSolutionPath(int x, int y) {
+		// Step 1: count segments to allocate arrays of the exact size
+		int segments = 0;
+		int sx = x;
+		int sy = y;
+		int last = NO_NEXT_HOP;
+		int hop;
+		while (NO_NEXT_HOP != (hop = getNextHop(sx, sy))) {
+			if (hop != last)
+				segments++;
+			last = hop;
+			sx += DIRS_X[hop];
+			sy += DIRS_Y[hop];
+		}
+		// Step 2: walk the same path again and fill in the segments
+		byte[] directions = new byte[segments];
+		int[] lengths = new int[segments];
+		int i = -1;
+		sx = x;
+		sy = y;
+		last = NO_NEXT_HOP;
+		while (NO_NEXT_HOP != (hop = getNextHop(sx, sy))) {
+			if (hop != last) {
+				i++;
+				directions[i] = (byte) hop;
+			}
+			lengths[i]++;
+			last = hop;
+			sx += DIRS_X[hop];
+			sy += DIRS_Y[hop];
+		}
+		return new SolutionPath(x, y, directions, lengths);
+	}
+	/**
+	 * Computes the next hop table for all cells. 
+	 * For each cell, the table holds the direction to the neighbor with
+	 * the smallest distance to the exit that is not separated by a wallboard
+	 * and that is closer to the exit than the cell itself. 
+	 * Ties are broken in the order of CardinalDirection.values() which is
+	 * how getNeighborCloserToExit used to search for a neighbor. 
+	 * If the floorplan or the distances are views on a memory mapped file,
+	 * entries are left for getNextHop to compute on first use, as reading
+	 * all values right away would load the whole file into memory.
+	 * The method does nothing if the floorplan or the distances are not set yet.
+	 */
+	private void computeNextHops() {
+		invalidateSolutionPaths();
+		if (null == floorplan || null == mazedists || width <= 0 || height <= 0) {
+			nextHop = null;
+			return;
+		}
+		byte[] table = new byte[width*height];
+		if (floorplan.isMapped() || mazedists.isMapped()) {
+			Arrays.fill(table, UNKNOWN_NEXT_HOP);
+		}
+		else {
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++) {
+					table[x*height+y] = computeNextHop(x, y);
+				}
+			}
+		}
+		nextHop = table;
+	}
+	/**
+	 * Gives the entry of the next hop table for (x,y) and computes it if needed.
+	 * Threads that compute the same entry concurrently store the same value.
+	 * @param x is on the horizontal axis, {@code 0 <= x < width}
+	 * @param y is on the vertical axis, {@code 0 <= y < height}
+	 * @return ordinal of the direction to go, NO_NEXT_HOP if there is none
+	 */
+	private int getNextHop(int x, int y) {
+		int hop = nextHop[x*height+y];
+		if (UNKNOWN_NEXT_HOP == hop) {
+			hop = computeNextHop(x, y);
+			nextHop[x*height+y] = (byte) hop;
+		}
+		return hop;
+	}
+	/**
+	 * Finds the best candidate to get closer to the exit from (x,y).
+	 * @param x is on the horizontal axis, {@code 0 <= x < width}
+	 * @param y is on the vertical axis, {@code 0 <= y < height}
+	 * @return ordinal of the direction to go, NO_NEXT_HOP if there is none
+	 */
+	private byte computeNextHop(int x, int y) {
 		// corner case, (x,y) is exit position
 		if (floorplan.isExitPosition(x, y))
-			return null;
-		// find best candidate
-		int dnext = getDistanceToExit(x, y) ;
-		int[] result = new int[2] ;
-		int[] dir;
-		for (CardinalDirection cd: CardinalDirection.values()) {
-			if (hasWall(x, y, cd)) 
+			return NO_NEXT_HOP;
+		int dnext = mazedists.getDistanceValue(x, y);
+		byte result = NO_NEXT_HOP;
+		for (CardinalDirection cd: DIRECTIONS) {
+			if (floorplan.hasWall(x, y, cd)) 
 				continue; // there is a wallboard in the way
 			// no wallboard, let's check the distance
-			dir = cd.getDirection();
-			int dn = getDistanceToExit(x+dir[0], y+dir[1]);
+			int nx = x + DIRS_X[cd.ordinal()];
+			int ny = y + DIRS_Y[cd.ordinal()];
+			if (!isValidPosition(nx, ny))
+				continue;
+			int dn = mazedists.getDistanceValue(nx, ny);
 			if (dn < dnext) {
-				// update neighbor position with min distance
-				result[0] = x+dir[0] ;
-				result[1] = y+dir[1] ;
+				// update neighbor direction with min distance
+				result = (byte) cd.ordinal();
 				dnext = dn ;
 			}	
 		}
-		// expectation: we found a neighbor that is closer
-		assert(getDistanceToExit(x, y) > dnext) : 
-			"cannot identify direction towards solution: stuck at: " + x + ", "+ y ;
-		// since assert statements need not be executed, check it 
-		// to avoid giving back wrong result
-		return (getDistanceToExit(x, y) > dnext) ? result : null;
+		// if no neighbor is closer, result remains NO_NEXT_HOP,
+		// this is checked when the table is queried
+		return result;
 	}
 
 	/**
@@ -278,6 +500,17 @@ public class MazeContainer implements Maze {
 		start[0] = x ;
 		start[1] = y ;
 	}
+	@Override
+	public long getContentHash() {
+		assert(isOperational()) : "accessing content before object is fully initialized!";
+		// the floorplan hash is maintained incrementally, distances are cached,
+		// only the BSP tree is traversed
+		long hash = ContentHash.mix(floorplan.getContentHash(), start[0]);
+		hash = ContentHash.mix(hash, start[1]);
+		hash = ContentHash.mix(hash, mazedists.getContentHash());
+		hash = ContentHash.mix(hash, (null == rootnode) ? 0 : rootnode.getContentHash());
+		return ContentHash.finish(hash);
+	}
 	/**
 	 * Checks if object is fully initialized and in a valid state.
 	 * The object creation relies on a sequence of set methods being called,
@@ -298,8 +531,9 @@ public class MazeContainer implements Maze {
 		if (!(Constants.SKILL_Y[0] <= height && height <= Constants.SKILL_Y[last])) {
 			return false;
 		}
-		// check existence of cells, distances, bsp tree and starting position
-		if (null == floorplan || null == mazedists || null == rootnode || null == start)
+		// check existence of cells, distances and starting position,
+		// the bsp tree is optional
+		if (null == floorplan || null == mazedists || null == start)
 			return false;
 		// the starting position must be 
 		fullyInitialized = true;
@@ -0,0 +1,194 @@
+package generation;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * A MazeValidator checks structural properties of a floorplan:
+ * whether all cells are reachable from each other, how many
+ * independent cycles the open pathways contain and which regions
+ * are isolated from the region that contains the exit.
+ * A maze is perfect if it is connected and has no cycles,
+ * i.e., there is exactly one path between any two cells.
+ *
+ * The validator considers the cells as nodes of a graph and each
+ * missing wallboard between two adjacent cells as an edge.
+ * It counts edges and merges cells with a union-find data structure
+ * in a single pass, such that the number of independent cycles
+ * follows as {@code edges - cells + components}.
+ * The pass can be split into vertical stripes that are processed in parallel,
+ * edges that cross the border between two stripes are merged afterwards.
+ *
+ * Results reflect the floorplan at the time of the call to
+ * {@link #validate() validate}.
+ *
+ * @author Duke Tran
+ */
+public class MazeValidator {
+	private final Floorplan floorplan;
+	private final int width;
+	private final int height;
+	private final int stripes;
+
+	// results of the last validation
+	private long openEdges;
+	private int componentCount;
+	private int[][] isolatedRegions;
+
+	/**
+	 * Constructor that validates in parallel with a stripe per available processor.
+	 * @param floorplan provides the wallboards, must not be null
+	 */
+	public MazeValidator(Floorplan floorplan) {
+		this(floorplan, Runtime.getRuntime().availableProcessors());
+	}
+	/**
+	 * Constructor.
+	 * @param floorplan provides the wallboards, must not be null
+	 * @param stripes is the number of stripes to process in parallel, 1 for a sequential pass
+	 */
+	public MazeValidator(Floorplan floorplan, int stripes) {
+		assert (null != floorplan) : "MazeValidator: floorplan must be present";
+		assert (0 < stripes) : "MazeValidator: number of stripes must be positive";
+		this.floorplan = floorplan;
+		this.width = floorplan.getWidth();
+		this.height = floorplan.getHeight();
+		this.stripes = Math.min(stripes, width);
+	}
+	/**
+	 * Runs the validation and keeps the results for the get methods.
+	 * @return this validator for chained calls
+	 */
+	public MazeValidator validate() {
+		final int[] parent = new int[width*height];
+		for (int i = 0; i < parent.length; i++) {
+			parent[i] = i;
+		}
+		final AtomicLong edges = new AtomicLong();
+		// Step 1: each stripe covers columns [first,last) and only touches its own cells in parent
+		IntStream.range(0, stripes).parallel().forEach(s -> {
+			int first = getFirstColumn(s);
+			int last = getFirstColumn(s + 1);
+			long count = 0;
+			for (int x = first; x < last; x++) {
+				for (int y = 0; y < height; y++) {
+					// consider only the edges to the east and south to count each edge once
+					if (x < width-1 && floorplan.hasNoWall(x, y, CardinalDirection.East)) {
+						count++;
+						if (x < last-1)
+							union(parent, x*height+y, (x+1)*height+y);
+					}
+					if (y < height-1 && floorplan.hasNoWall(x, y, CardinalDirection.South)) {
+						count++;
+						union(parent, x*height+y, x*height+y+1);
+					}
+				}
+			}
+			edges.addAndGet(count);
+		});
+		// Step 2: merge edges that cross the border between two stripes
+		for (int s = 1; s < stripes; s++) {
+			int x = getFirstColumn(s) - 1;
+			for (int y = 0; y < height; y++) {
+				if (floorplan.hasNoWall(x, y, CardinalDirection.East))
+					union(parent, x*height+y, (x+1)*height+y);
+			}
+		}
+		// Step 3: count components and collect a representative cell for each isolated region
+		int exitRoot = -1;
+		for (int x = 0; x < width && exitRoot < 0; x++) {
+			for (int y = 0; y < height; y++) {
+				if (floorplan.isExitPosition(x, y)) {
+					exitRoot = find(parent, x*height+y);
+					break;
+				}
+			}
+		}
+		if (exitRoot < 0)
+			exitRoot = find(parent, 0); // no exit, compare against the region of (0,0)
+		ArrayList<int[]> isolated = new ArrayList<int[]>();
+		int components = 0;
+		for (int i = 0; i < parent.length; i++) {
+			if (parent[i] == i) {
+				components++;
+				if (i != exitRoot)
+					isolated.add(new int[] {i / height, i % height});
+			}
+		}
+		openEdges = edges.get();
+		componentCount = components;
+		isolatedRegions = isolated.toArray(new int[isolated.size()][]);
+		return this;
+	}
+	/**
+	 * @return the number of missing wallboards between two adjacent cells
+	 */
+	public long getOpenEdgeCount() {
+		return openEdges;
+	}
+	/**
+	 * @return the number of connected components, 1 for a connected maze
+	 */
+	public int getComponentCount() {
+		return componentCount;
+	}
+	/**
+	 * Gives the number of independent cycles, which is 0 for a perfect maze.
+	 * Rooms contribute many cycles as all wallboards inside a room are missing.
+	 * @return the cyclomatic number of the graph of cells and open edges
+	 */
+	public long getCycleCount() {
+		return openEdges - (long) width*height + componentCount;
+	}
+	/**
+	 * @return true if every cell can be reached from every other cell
+	 */
+	public boolean isConnected() {
+		return 1 == componentCount;
+	}
+	/**
+	 * @return true if connected and without cycles
+	 */
+	public boolean isPerfect() {
+		return isConnected() && 0 == getCycleCount();
+	}
+	/**
+	 * Gives one cell (x,y) for each region that can not be reached from the exit,
+	 * or from (0,0) if the floorplan has no exit.
+	 * @return array of (x,y) coordinates, empty if the maze is connected
+	 */
+	public int[][] getIsolatedRegions() {
+		return isolatedRegions;
+	}
+
+	////////////////////////////// private methods ///////////////////////////////////
+
+	/**
+	 * Gives the first column of the given stripe, stripe count gives width.
+	 */
+	private int getFirstColumn(int stripe) {
+		return (int) ((long) stripe * width / stripes);
+	}
+	/**
+	 * Finds the root of the set of i with path halving.
+	 */
+	private static int find(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+	/**
+	 * Merges the sets of i and j, the smaller index becomes the root.
+	 */
+	private static void union(int[] parent, int i, int j) {
+		int ri = find(parent, i);
+		int rj = find(parent, j);
+		if (ri < rj)
+			parent[rj] = ri;
+		else if (rj < ri)
+			parent[ri] = rj;
+	}
+}
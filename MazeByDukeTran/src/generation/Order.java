@@ -52,4 +52,23 @@ public interface Order {
 	 * @param current percentage of job completion
 	 */
 	void updateProgress(int percentage) ;
+	/**
+	 * Tells if the maze needs a BSP tree for the FirstPersonView.
+	 * Building the tree takes most of the time of the generation,
+	 * mazes that are drawn by the RaycastFirstPersonView do without.
+	 * @return true if the tree is built, the default
+	 */
+	default boolean isBSPTreeNeeded() {
+		return true;
+	}
+	/**
+	 * Tells that the order can not be delivered.
+	 * This method is called by the factory instead of 
+	 * {@link #deliver(Maze) deliver} if it gives up on the order,
+	 * e.g., because a generated maze did not pass the acceptance check.
+	 * @param message describes why the order failed
+	 */
+	default void fail(String message) {
+		System.out.println("Order failed: " + message);
+	}
 }
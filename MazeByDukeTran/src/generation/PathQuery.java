@@ -0,0 +1,41 @@
+package generation;
+
+/**
+ * A PathQuery answers questions about shortest paths between
+ * two arbitrary positions of a maze.
+ * It complements {@link Maze#getDistanceToExit(int, int) Maze.getDistanceToExit}
+ * which is limited to the single exit position of a maze.
+ *
+ * Distances count the number of steps between adjacent cells
+ * that are not separated by a wallboard, so the distance of
+ * a position to itself is 0.
+ *
+ * @author Duke Tran
+ */
+public interface PathQuery {
+	/**
+	 * Define a readable constant to express that there is no path
+	 * between two positions. Same value as for Distance.
+	 */
+	static final int INFINITY = Integer.MAX_VALUE;
+	/**
+	 * Gives the length of a shortest path from (fromX,fromY) to (toX,toY).
+	 * @param fromX is on the horizontal axis, {@code 0 <= fromX < width}
+	 * @param fromY is on the vertical axis, {@code 0 <= fromY < height}
+	 * @param toX is on the horizontal axis, {@code 0 <= toX < width}
+	 * @param toY is on the vertical axis, {@code 0 <= toY < height}
+	 * @return number of steps, INFINITY if (toX,toY) can not be reached
+	 */
+	int getDistance(int fromX, int fromY, int toX, int toY);
+	/**
+	 * Tells if there is a path from (fromX,fromY) to (toX,toY).
+	 * @param fromX is on the horizontal axis, {@code 0 <= fromX < width}
+	 * @param fromY is on the vertical axis, {@code 0 <= fromY < height}
+	 * @param toX is on the horizontal axis, {@code 0 <= toX < width}
+	 * @param toY is on the vertical axis, {@code 0 <= toY < height}
+	 * @return true if (toX,toY) can be reached, false otherwise
+	 */
+	default boolean isReachable(int fromX, int fromY, int toX, int toY) {
+		return INFINITY != getDistance(fromX, fromY, toX, toY);
+	}
+}
@@ -0,0 +1,109 @@
+package generation;
+
+/**
+ * A SolutionPath describes the route from a starting cell to the exit
+ * of a maze in a compact, run-length encoded form.
+ * The route is a sequence of segments, each segment is a direction
+ * together with the number of steps to go straight into that direction.
+ * Consecutive steps into the same direction are merged into a single segment,
+ * so the number of segments is the number of turns plus one.
+ *
+ * Instances are immutable and are obtained from
+ * {@link Maze#getSolutionPath(int, int) Maze.getSolutionPath}
+ * which caches the path for the most recent starting position.
+ * Clients can iterate over the segments with
+ * {@link #getDirection(int) getDirection} and {@link #getLength(int) getLength}
+ * without creating any further objects.
+ *
+ * @author Duke Tran
+ */
+public class SolutionPath {
+	/**
+	 * Starting position (x,y) of the path.
+	 */
+	private final int startX;
+	private final int startY;
+	/**
+	 * Ordinal values of the CardinalDirection for each segment.
+	 */
+	private final byte[] directions;
+	/**
+	 * Number of steps for each segment, {@code 0 < lengths[i]}.
+	 */
+	private final int[] lengths;
+	/**
+	 * Total number of steps, the sum of all lengths.
+	 */
+	private final int totalLength;
+
+	private static final CardinalDirection[] DIRECTIONS = CardinalDirection.values();
+
+	/**
+	 * Constructor that takes ownership of the given arrays.
+	 * @param startX is the x coordinate of the starting position
+	 * @param startY is the y coordinate of the starting position
+	 * @param directions holds the ordinal of the direction for each segment
+	 * @param lengths holds the number of steps for each segment, same length as directions
+	 */
+	SolutionPath(int startX, int startY, byte[] directions, int[] lengths) {
+		assert (directions.length == lengths.length) : "SolutionPath: each segment needs a direction and a length";
+		this.startX = startX;
+		this.startY = startY;
+		this.directions = directions;
+		this.lengths = lengths;
+		int sum = 0;
+		for (int length : lengths) {
+			sum += length;
+		}
+		totalLength = sum;
+	}
+	/**
+	 * @return the x coordinate of the starting position
+	 */
+	public int getStartX() {
+		return startX;
+	}
+	/**
+	 * @return the y coordinate of the starting position
+	 */
+	public int getStartY() {
+		return startY;
+	}
+	/**
+	 * Gives the number of segments. It is 0 if the path starts at the exit.
+	 * @return the number of segments
+	 */
+	public int getSegmentCount() {
+		return lengths.length;
+	}
+	/**
+	 * Gives the direction for the i-th segment.
+	 * @param i is the index of the segment, {@code 0 <= i < getSegmentCount()}
+	 * @return the direction to go for this segment
+	 */
+	public CardinalDirection getDirection(int i) {
+		return DIRECTIONS[directions[i]];
+	}
+	/**
+	 * Gives the number of steps for the i-th segment.
+	 * @param i is the index of the segment, {@code 0 <= i < getSegmentCount()}
+	 * @return the number of steps, at least 1
+	 */
+	public int getLength(int i) {
+		return lengths[i];
+	}
+	/**
+	 * Gives the total number of steps to go from the starting position to the exit.
+	 * @return the number of steps
+	 */
+	public int getTotalLength() {
+		return totalLength;
+	}
+	/**
+	 * Gives the number of turns along the path.
+	 * @return the number of changes in direction
+	 */
+	public int getTurnCount() {
+		return (lengths.length > 0) ? lengths.length - 1 : 0;
+	}
+}
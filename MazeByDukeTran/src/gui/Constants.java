@@ -13,6 +13,10 @@ public class Constants {
 	public static final int MAP_UNIT = 128;
 	public static final int VIEW_OFFSET = MAP_UNIT/8;
 	public static final int STEP_SIZE = MAP_UNIT/4;
+	// The playing screen is drawn at most FRAME_RATE times per second,
+	// a rotation or a step takes MOTION_TIME milliseconds independent of the frame rate
+	public static final int FRAME_RATE = 60;
+	public static final int MOTION_TIME = 100;
 	// Skill-level 
 	// The user picks a skill level between 0 - 9, a-f 
 	// The following arrays transform this into corresponding dimensions (x,y)
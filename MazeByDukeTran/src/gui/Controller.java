@@ -94,6 +94,21 @@ public class Controller {
      * builder, and perfect remain the same.
      */
     boolean deterministic;
+    /**
+     * The file that caches the potentially visible set for the
+     * first person view, null if no such set is computed.
+     */
+    String visibilityFile;
+    /**
+     * The number of vertical strips the first person view is
+     * split into to draw them in parallel, 1 to draw on the render thread.
+     */
+    int stripCount;
+    /**
+     * Tells if the first person view casts rays through the floorplan
+     * instead of traversing a BSP tree, generated mazes then come without a tree.
+     */
+    boolean raycasting;
     
     final int MEAN_TIME_BETWEEN_FAILURES = 4000;
     final int MEAN_TIME_TO_REPAIR = 2000;
@@ -111,6 +126,7 @@ public class Controller {
         perfect = false; // default
         seed = 13; // default
         deterministic = false; // default is true
+        stripCount = 1; // default
     }
     
     public void setFileName(String fileName) {
@@ -128,11 +144,52 @@ public class Controller {
     public void setDeterministic(boolean deterministic) {
     	this.deterministic = deterministic;
     }
+    /**
+     * Makes the first person view skip parts of the maze that are not
+     * visible from the current cell, see PotentiallyVisibleSet.
+     * @param visibilityFile caches the set between runs, null to traverse the whole maze
+     */
+    public void setVisibilityFile(String visibilityFile) {
+    	this.visibilityFile = visibilityFile;
+    }
+    public String getVisibilityFile() {
+    	return visibilityFile;
+    }
+    /**
+     * Makes the first person view draw vertical strips in parallel,
+     * which requires a RasterPanel, see FirstPersonView.setStrips.
+     * @param stripCount is the number of strips, 1 to draw on the render thread
+     */
+    public void setStripCount(int stripCount) {
+    	this.stripCount = stripCount;
+    }
+    public int getStripCount() {
+    	return stripCount;
+    }
+    /**
+     * Selects the RaycastFirstPersonView, which needs no BSP tree,
+     * instead of the FirstPersonView.
+     * @param raycasting is true for the RaycastFirstPersonView
+     */
+    public void setRaycasting(boolean raycasting) {
+    	this.raycasting = raycasting;
+    }
+    public boolean isRaycasting() {
+    	return raycasting;
+    }
     
     
     public MazePanel getPanel() {
         return panel;
     }
+    /**
+     * Replaces the panel to draw on, e.g. with a RasterPanel.
+     * Must be called before the panel is put on display.
+     * @param panel to draw on, not null
+     */
+    public void setPanel(MazePanel panel) {
+        this.panel = panel;
+    }
     /**
      * Starts the controller and begins the game 
      * with the title screen.
@@ -0,0 +1,26 @@
+/**
+ *
+ */
+package gui;
+
+/**
+ * A drawing agent for the first person view while the user plays.
+ * The FirstPersonView traverses the BSP tree of a maze,
+ * the RaycastFirstPersonView casts rays through its floorplan.
+ * Both draw the same walls with the same colors and record
+ * which walls have been on display for the map.
+ *
+ * @author Duke Tran
+ */
+public interface FirstPersonDrawer {
+	/**
+	 * Draws the first person view on the screen during the game
+	 * @param mazePanel for drawing on the buffer image
+	 * @param x coordinate of current position
+	 * @param y coordinate of current position
+	 * @param walkStep is the number of intermediate steps towards the next cell
+	 * @param ang gives the current viewing angle
+	 * @param percentToExit gives the distance to exit as a percentage
+	 */
+	void draw(MazePanel mazePanel, int x, int y, int walkStep, int ang, float percentToExit);
+}
@@ -3,11 +3,12 @@
  */
 package gui;
 
-import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
-import generation.BSPBranch;
-import generation.BSPLeaf;
 import generation.BSPNode;
+import generation.CompiledBSPTree;
 import generation.Floorplan;
 import generation.Wall;
 
@@ -22,7 +23,7 @@ import generation.Wall;
  * Paul Falstad granted permission to modify and use code for teaching purposes.
  * Refactored by Peter Kemper
  */
-public class FirstPersonView {
+public class FirstPersonView implements FirstPersonDrawer {
 	// Constants
 	final int viewZ = 50;  // constant from StatePlaying.java
 	// Instance variables set once and for all in constructor call
@@ -46,14 +47,15 @@ public class FirstPersonView {
 	final private Floorplan seenWalls;
 	
 	/** 
-	 * The root node to a tree with walls (Wall objects) in its leaves.
+	 * The tree with walls (Wall objects) in its leaves.
 	 * This data structure carries the information about walls
 	 * to draw. Walls are drawn as filled polygons. 
 	 * The content for this tree is determined in MazeBuilder
-	 * when the maze is created. 
+	 * when the maze is created, it is traversed in its compiled form
+	 * with nodes and walls in flat arrays. 
 	 * It also used to decide visibility of walls.
 	 */
-	final private BSPNode bspRoot;
+	final private CompiledBSPTree bspTree;
 	
 	/** 
 	 * The current viewing angle. This information is used in rotations
@@ -93,8 +95,43 @@ public class FirstPersonView {
 	 * shorten overlapping intervals in rset or split an existing 
 	 * interval.
 	 * The rset allows us to omit walls that are not needed.
+	 * It is a bitmap over the columns of the view such that
+	 * drawing a frame does not allocate any intervals.
 	 */
-	private RangeSet rSet; 
+	private OcclusionBuffer rSet; 
+	// corner points of the polygon for a wall, reused for all walls
+	private final int[] xps = new int[4];
+	private final int[] yps = new int[4];
+	
+	/**
+	 * Optional set of BSP nodes that contribute to the view for each cell.
+	 * If present, subtrees without such a node are skipped for views
+	 * the set covers. It may be set by another thread once it has been computed.
+	 */
+	private volatile PotentiallyVisibleSet visibleSet;
+	// set that is used for the current view, null to traverse all visible bounding boxes
+	private PotentiallyVisibleSet currentSet;
+	// current cell (x,y), only used with currentSet
+	private int currentX;
+	private int currentY;
+	// receives the visible nodes in collectVisibleNodes, null while drawing
+	private BitSet collectedNodes;
+	
+	/**
+	 * Optional views that draw vertical strips of this view in parallel.
+	 * Each strip covers a range of columns with an occlusion buffer and a 
+	 * traversal of the BSP tree of its own, see setStrips.
+	 */
+	private FirstPersonView[] strips;
+	private ForkJoinPool pool;
+	// columns [firstColumn,lastColumn] a strip draws on
+	private int firstColumn;
+	private int lastColumn;
+	// strips only: indices of walls drawn in the current frame, 
+	// they are marked as seen by the view that owns the strips
+	private BitSet drawnWalls;
+	// strips only: panel for the current frame, null while not drawing
+	private RasterPanel stripPanel;
 	
 	// debug stuff
 	private boolean deepDebug = false;
@@ -113,22 +150,39 @@ public class FirstPersonView {
 	 * @param mapUnit current scaling factor
 	 * @param stepSize
 	 * @param seenWalls to store which walls were put on display
-	 * @param bspRoot
+	 * @param bspRoot is compiled once for this view, subtrees that are loaded on demand as they are drawn
+	 * @param panel may be null for a view that only collects visible nodes
 	 */
 	public FirstPersonView(MazePanel panel, int width, int height, int mapUnit, int stepSize, Floorplan seenWalls, BSPNode bspRoot) {
+		this(panel, width, height, mapUnit, stepSize, seenWalls, new CompiledBSPTree(bspRoot));
+	}
+	/**
+	 * Constructor for a tree that has been compiled before, e.g. to share it between views
+	 * @param width of display
+	 * @param height of display
+	 * @param mapUnit current scaling factor
+	 * @param stepSize
+	 * @param seenWalls to store which walls were put on display
+	 * @param bspTree is the compiled tree
+	 * @param panel may be null for a view that only collects visible nodes
+	 */
+	public FirstPersonView(MazePanel panel, int width, int height, int mapUnit, int stepSize, Floorplan seenWalls, CompiledBSPTree bspTree) {
 		// store given parameter values
 		viewWidth = width;
 		viewHeight = height;
-		panel.setViewDimensions(viewWidth, viewHeight);
+		if (null != panel)
+			panel.setViewDimensions(viewWidth, viewHeight);
 		this.mapUnit = mapUnit;
 		this.stepSize = stepSize;
 		this.seenWalls = seenWalls;
-		this.bspRoot = bspRoot; 
+		this.bspTree = bspTree; 
 		// constants and derived values
 		angle = 0; // angle for initial setting of direction is 0 == East, hidden constraint across classes
 		scaleZ = viewHeight/2;
 		// initialize fields
-		rSet = new RangeSet();
+		rSet = new OcclusionBuffer(viewWidth);
+		firstColumn = 0;
+		lastColumn = viewWidth-1;
 	}
 	/**
 	 * Draws the first person view on the screen during the game
@@ -140,6 +194,7 @@ public class FirstPersonView {
 	 * @param walkStep, only used to set viewX and viewY
 	 * 
 	 */
+	@Override
 	public void draw(MazePanel mazePanel, int x, int y, int walkStep, int ang, float percentToExit) {
         // viewers draw on the buffer graphics
         if (!mazePanel.isOperational()) return;
@@ -154,6 +209,11 @@ public class FirstPersonView {
         // set color to white and draw what ever can be seen from the current position
         //g.setColor(Color.white);
         mazePanel.setColor(MazePanel.WHITE);
+        // strips can only draw concurrently on the pixels of a RasterPanel
+        if (null != strips && mazePanel instanceof RasterPanel) {
+        	drawStrips((RasterPanel) mazePanel, x, y, walkStep, ang);
+        	return;
+        }
         // reset the set of ranges to a single new element (0,width-1)
         // to cover the full width of the view 
         // as we have not drawn any polygons (walls) yet.
@@ -163,11 +223,110 @@ public class FirstPersonView {
         traverseNodeCounter = traverseWallSectorCounter =
         		drawRectCounter = drawRectLateCounter = drawRectWallCounter = 0;
         //
-        drawAllVisibleSectors(mazePanel, bspRoot);
+        // skip subtrees that are not visible from this cell if possible
+        currentSet = visibleSet;
+        if (null != currentSet && !currentSet.covers(x, y, walkStep, ang))
+        	currentSet = null;
+        currentX = x;
+        currentY = y;
+        drawAllVisibleSectors(mazePanel, 0);
+	}
+	/**
+	 * Sets the potentially visible set that is used to skip subtrees of the BSP tree.
+	 * @param visibleSet has been computed for the tree of this view, null to traverse all subtrees
+	 */
+	public void setPotentiallyVisibleSet(PotentiallyVisibleSet visibleSet) {
+		this.visibleSet = visibleSet;
+	}
+	/**
+	 * Splits the view into vertical strips that are drawn in parallel on the given pool.
+	 * Strips are only used with a RasterPanel, other panels are drawn on the calling thread.
+	 * The columns of a strip get the same walls as they would get without strips,
+	 * but polygons that span several strips are cut at the strip borders.
+	 * As top and bottom edges are interpolated between the ends of each polygon,
+	 * they may be off by a pixel or two for polygons that are cut. 
+	 * Must not be called while the view draws.
+	 * @param count is the number of strips, 1 to draw on the calling thread
+	 * @param pool runs the strips, may be null if count is 1
+	 */
+	public void setStrips(int count, ForkJoinPool pool) {
+		assert 0 < count && count <= viewWidth : "FirstPersonView.setStrips: count must be in [1,width]";
+		assert 1 == count || null != pool : "FirstPersonView.setStrips: strips need a pool";
+		if (1 == count) {
+			strips = null;
+			this.pool = null;
+			return;
+		}
+		strips = new FirstPersonView[count];
+		for (int i = 0; i < count; i++) {
+			FirstPersonView strip = new FirstPersonView(null, viewWidth, viewHeight, mapUnit, stepSize, seenWalls, bspTree);
+			strip.firstColumn = i*viewWidth/count;
+			strip.lastColumn = (i+1)*viewWidth/count - 1;
+			strip.drawnWalls = new BitSet(bspTree.getWallCount());
+			strips[i] = strip;
+		}
+		this.pool = pool;
+	}
+	/**
+	 * Finds the nodes of the BSP tree that contribute to the view for the given position
+	 * and viewing angle, i.e. the leaves with at least one wall that would be drawn
+	 * and all their ancestors. Nothing is drawn and walls are not marked as seen.
+	 * @param x coordinate of current position
+	 * @param y coordinate of current position
+	 * @param walkStep is the number of intermediate steps towards the next cell
+	 * @param ang gives the viewing angle
+	 * @param nodes receives the numbers of the nodes in the compiled tree, nodes already in it are kept
+	 */
+	void collectVisibleNodes(int x, int y, int walkStep, int ang, BitSet nodes) {
+		angle = ang;
+		setView(x, y, walkStep);
+		rSet.set(0, viewWidth-1);
+		currentSet = null;
+		collectedNodes = nodes;
+		try {
+			drawAllVisibleSectors(null, 0);
+		} finally {
+			collectedNodes = null;
+		}
 	}
 
 
 	////////////////////////////// internal, private methods ///////////////////////////////
+	/**
+	 * Draws all strips on the pool and marks the walls they have drawn as seen.
+	 * The background has been requested before.
+	 */
+	private void drawStrips(RasterPanel panel, int x, int y, int walkStep, int ang) {
+		PotentiallyVisibleSet set = visibleSet;
+		if (null != set && !set.covers(x, y, walkStep, ang))
+			set = null;
+		pool.invoke(new StripTask(panel, x, y, walkStep, ang, set, 0, strips.length));
+		// seenWalls is not thread safe, so walls are marked here
+		for (FirstPersonView strip : strips) {
+			for (int w = strip.drawnWalls.nextSetBit(0); w >= 0; w = strip.drawnWalls.nextSetBit(w+1)) {
+				markSeen(w);
+			}
+			strip.drawnWalls.clear();
+		}
+	}
+	/**
+	 * Draws the columns of this strip, called on a thread of the pool.
+	 * @param visibleSet is used for this view, null to traverse all visible bounding boxes
+	 */
+	private void drawStrip(RasterPanel panel, int x, int y, int walkStep, int ang, PotentiallyVisibleSet visibleSet) {
+		angle = ang;
+		setView(x, y, walkStep);
+		rSet.set(firstColumn, lastColumn);
+		currentSet = visibleSet;
+		currentX = x;
+		currentY = y;
+		stripPanel = panel;
+		try {
+			drawAllVisibleSectors(null, 0);
+		} finally {
+			stripPanel = null;
+		}
+	}
 	private int getViewDX(int angle) {
 		return (int) (Math.cos(radify(angle))*(1<<16));
 	}
@@ -203,54 +362,64 @@ public class FirstPersonView {
 	/**
 	 * Recursive method to explore tree of BSP nodes and draw all walls in leaf nodes 
 	 * where the bounding box is visible
-	 * @param node is the current node of interest
+	 * @param node is the number of the current node of interest in the compiled tree
+	 * @return true if at least one polygon has been drawn for a wall in this subtree
 	 */
-	private void drawAllVisibleSectors(MazePanel mazePanel, BSPNode node) {
+	private boolean drawAllVisibleSectors(MazePanel mazePanel, int node) {
+		// skip subtrees that do not contribute to any view from the current cell
+		if (null != currentSet && !currentSet.contains(currentX, currentY, node))
+			return false;
 		traverseNodeCounter++; // debug
 		
 		// Anchor, stop recursion at leaf nodes
-		if (node.isIsleaf()) {
-			drawAllWallsOfASector(mazePanel, (BSPLeaf) node);
-			return;
+		if (bspTree.isLeaf(node)) {
+			boolean drawn = drawAllWallsOfASector(mazePanel, node);
+			if (drawn && null != collectedNodes)
+				collectedNodes.set(node);
+			return drawn;
 		}
 		
 		// for intermediate nodes proceed recursively through all visible branches
-		BSPBranch n = (BSPBranch) node;
+		final CompiledBSPTree n = bspTree;
 		
 		// debug code
 		if (deepDebug) {
 			dbg("                               ".substring(0, nesting) +
-					"traverse_node "+n.getX()+" "+n.getY()+" "+n.getDx()+" "+n.getDy()+" "+
-					n.getLowerBoundX()+" "+n.getLowerBoundY()+" "+n.getUpperBoundX()+" "+n.getUpperBoundY());
+					"traverse_node "+n.getX(node)+" "+n.getY(node)+" "+n.getDx(node)+" "+n.getDy(node)+" "+
+					n.getLowerBoundX(node)+" "+n.getLowerBoundY(node)+" "+n.getUpperBoundX(node)+" "+n.getUpperBoundY(node));
 		}
 		nesting++; // debug
+		boolean drawn = false;
 		
-		final int dot = (viewX-n.getX())*n.getDy() - (viewY-n.getY())*n.getDx();
+		final int dot = (viewX-n.getX(node))*n.getDy(node) - (viewY-n.getY(node))*n.getDx(node);
 		// The type of tree traversal depends on the value of dot
 		// either do right before left or vice versa
 		// but only if node is visible at all
 		
 		// if dot >= 0 consider right node before left node
-		BSPNode right = n.getRightBranch();
+		final int right = n.getRightChild(node);
 		if ((dot >= 0) && (boundingBoxIsVisible(right))) {
-			drawAllVisibleSectors(mazePanel, right);
+			drawn |= drawAllVisibleSectors(mazePanel, right);
 		}
 		// consider left node
-		BSPNode left = n.getLeftBranch();
+		final int left = n.getLeftChild(node);
 		if (boundingBoxIsVisible(left))
-			drawAllVisibleSectors(mazePanel, left);
+			drawn |= drawAllVisibleSectors(mazePanel, left);
 		// if dot < 0 consider right node now (after left node)
 		if ((dot < 0) && (boundingBoxIsVisible(right))) {
-			drawAllVisibleSectors(mazePanel, right);
+			drawn |= drawAllVisibleSectors(mazePanel, right);
 		}
 		nesting--; // debug
+		if (drawn && null != collectedNodes)
+			collectedNodes.set(node);
+		return drawn;
 	}
 	/**
 	 * Decide if the bounding box is visible
-	 * @param node the current node
+	 * @param node the number of the current node
 	 * @return true if node should be drawn, false otherwise
 	 */
-	private boolean boundingBoxIsVisible(BSPNode node) {
+	private boolean boundingBoxIsVisible(int node) {
 		
 		if (allVisible) // unused feature, presumably for debugging
 			return true;
@@ -265,10 +434,10 @@ public class FirstPersonView {
 		// to check for an intersection with the range set
 		// calculate 2 intermediate points (p1x,p1y) and (p2x,p2y) first
 		// then derive x1 and x2
-		final int xmin = node.getLowerBoundX() - viewX;
-		final int ymin = node.getLowerBoundY() - viewY;
-		final int xmax = node.getUpperBoundX() - viewX;
-		final int ymax = node.getUpperBoundY() - viewY;
+		final int xmin = bspTree.getLowerBoundX(node) - viewX;
+		final int ymin = bspTree.getLowerBoundY(node) - viewY;
+		final int xmax = bspTree.getUpperBoundX(node) - viewX;
+		final int ymax = bspTree.getUpperBoundY(node) - viewY;
 		// initialize (p1x,p1y) and (p2x,p2y) with bounds
 		int p1x = xmin; 
 		int p2x = xmax;
@@ -308,7 +477,7 @@ public class FirstPersonView {
 		// if interval [x1,x2] intersects with any of the intervals on 
 		// the x-axis that have not been covered with a wall (a polygon)
 		// yet, then this node might be needed.
-		return (null != rSet.getIntersection(x1, x2));
+		return rSet.intersects(x1, x2);
 	}
 	/**
 	 * Instantiates a new RangePair for the given parameters.
@@ -335,66 +504,73 @@ public class FirstPersonView {
 	 * @param node the current node
 	 * @return true if any of the special cases match, false otherwise
 	 */
-	private boolean isOutOfView(BSPNode node) {
-		if (angle >= 45 && angle <= 135 && viewY > node.getUpperBoundY())
+	private boolean isOutOfView(int node) {
+		if (angle >= 45 && angle <= 135 && viewY > bspTree.getUpperBoundY(node))
 			return true;
-		if (angle >= 225 && angle <= 315 && viewY < node.getLowerBoundY())
+		if (angle >= 225 && angle <= 315 && viewY < bspTree.getLowerBoundY(node))
 			return true;
-		if (angle >= 135 && angle <= 225 && viewX < node.getLowerBoundX())
+		if (angle >= 135 && angle <= 225 && viewX < bspTree.getLowerBoundX(node))
 			return true;
-		if ((angle >= 315 || angle <= 45) && viewX > node.getUpperBoundX())
+		if ((angle >= 315 || angle <= 45) && viewX > bspTree.getUpperBoundX(node))
 			return true;
 		return false;
 	}
 
 	/**
 	 * Traverses all walls of this leaf and draws corresponding rectangles on screen
-	 * @param node is the leaf node
+	 * @param node is the number of the leaf node
+	 * @return true if at least one polygon has been drawn
 	 */
-	private void drawAllWallsOfASector(MazePanel mazePanel, BSPLeaf node) {
-		ArrayList<Wall> sl = node.getSlist();
+	private boolean drawAllWallsOfASector(MazePanel mazePanel, int node) {
+		// walls of a leaf are stored next to each other
+		final int first = bspTree.getFirstWall(node);
+		final int count = bspTree.getWallCount(node);
 		// debug
 		traverseWallSectorCounter++;
 		if (deepDebug) {
 			dbg("                               ".substring(0, nesting) +
-					"traverseWallSector "+node.getLowerBoundX()+" "+node.getLowerBoundY()+
-					" "+node.getUpperBoundX()+" "+node.getUpperBoundY());
+					"traverseWallSector "+bspTree.getLowerBoundX(node)+" "+bspTree.getLowerBoundY(node)+
+					" "+bspTree.getUpperBoundX(node)+" "+bspTree.getUpperBoundY(node));
 		}
+		boolean drawn = false;
 		// for all walls of this node
-		for (int i = 0; i != sl.size(); i++) {
-			Wall w = (Wall) sl.get(i);
+		for (int i = 0; i != count; i++) {
+			final int w = first + i;
 			// draw rectangle
-			drawWall(mazePanel, w);
+			drawn |= drawWall(mazePanel, w);
 			// debug
 			if (deepDebug) {
 				dbg("                               ".substring(0, nesting) +
 						" traverseWallSector(" + i +") "+
-						w.getStartPositionX()+" "+w.getStartPositionY()+" "+
-						w.getExtensionX()+" "+w.getExtensionY());
+						bspTree.getStartPositionX(w)+" "+bspTree.getStartPositionY(w)+" "+
+						(bspTree.getEndPositionX(w)-bspTree.getStartPositionX(w))+" "+
+						(bspTree.getEndPositionY(w)-bspTree.getStartPositionY(w)));
 			}
 
 		}
+		return drawn;
 	}
 
 	/**
 	 * Draws wall on screen.
 	 * Helper method for drawAllWallsOfASector.
-	 * @param wall whose seen attribute may be set to true
+	 * @param wall is the index of the wall in the compiled tree, its seen attribute may be set to true
+	 * @return true if at least one polygon has been drawn
 	 */
-	private void drawWall(MazePanel mazePanel, Wall wall) {
+	private boolean drawWall(MazePanel mazePanel, int wall) {
 		drawRectCounter++; // debug, counter
 		
 		// some notes: 
 		// perspective centers on (centerX,centerY) = (view_width/2,view_height/2)
 		// initialization part for x1, x2, y11, y12, y21, y22
-		final int ox1 = wall.getStartPositionX() - viewX;
-		final int ox2 = wall.getEndPositionX()   - viewX;
-		final int y1  = wall.getStartPositionY() - viewY;
-		final int y2  = wall.getEndPositionY()   - viewY;
+		final int ox1 = bspTree.getStartPositionX(wall) - viewX;
+		final int ox2 = bspTree.getEndPositionX(wall)   - viewX;
+		final int y1  = bspTree.getStartPositionY(wall) - viewY;
+		final int y2  = bspTree.getEndPositionY(wall)   - viewY;
 		
 		RangePair rp = getNewRangePair(ox1, ox2, y1, y2);
 		if (!rp.clip3d())
-			return;
+			return false;
 		// note: viewZ == 50 is a constant
 		// note: scaleZ == view_height/2 is constant
 		final int y11 = viewZ *scaleZ/rp.z1        +(viewHeight/2); 
@@ -407,21 +583,37 @@ public class FirstPersonView {
 		rp = null; // added just for clarity, rp not used anymore 
 		
 		if (x1 >= x2) /* reject backfaces */
-			return;
+			return false;
 		
 		// moved code for drawing bits and pieces into yet another method to 
 		// gain more clarity on what information is actually needed
 		//gc.setColor(wall.getColor());
-	    int newColor = wall.getColor();
-		mazePanel.setColor(newColor);
-		boolean drawn = drawPolygons(mazePanel, x1, x2, y11, y12, y21, y22);
+	    int newColor = bspTree.getColor(wall);
+	    if (null != mazePanel)
+	    	mazePanel.setColor(newColor);
+		boolean drawn = drawPolygons(mazePanel, newColor, x1, x2, y11, y12, y21, y22);
 		
-		if (drawn && !wall.isSeen()) {
-			wall.setSeen(true); // updates the wall
-			// set the seenWalls bit for all wallboards of a wall
-			// the wall parameter given is not modified
-			seenWalls.addWall(wall, mapUnit); // updates seenWalls
+		// walls are only seen if they are actually drawn, not while collecting nodes
+		if (drawn && null == collectedNodes) {
+			if (null != drawnWalls)
+				drawnWalls.set(wall); // strip, the owner marks it
+			else
+				markSeen(wall);
 		}
+		return drawn;
+	}
+	/**
+	 * Marks a wall and all its wallboards as seen.
+	 * @param wall is the index of the wall in the compiled tree
+	 */
+	private void markSeen(int wall) {
+		Wall w = bspTree.getWall(wall);
+		if (w.isSeen())
+			return;
+		w.setSeen(true); // updates the wall
+		// set the seenWalls bit for all wallboards of a wall
+		// the wall parameter given is not modified
+		seenWalls.addWall(w, mapUnit); // updates seenWalls
 	}
 	
 	/**
@@ -430,6 +622,7 @@ public class FirstPersonView {
 	 * x-axis, e.g. if there is a room with 2 doors on one side
 	 * and the same single long wall may be seen through both
 	 * doors.
+	 * @param color is the color of the wall, only used for strips
 	 * @param x1 is the low end of the interval {@code x1 < x2}
 	 * @param x2 is the high end of the interval
 	 * @param y11
@@ -438,7 +631,7 @@ public class FirstPersonView {
 	 * @param y22
 	 * @return true if at least one polygon has been drawn, false otherwise
 	 */
-	private boolean drawPolygons(MazePanel mazePanel, int x1, int x2, int y11, int y12, int y21, int y22) {
+	private boolean drawPolygons(MazePanel mazePanel, int color, int x1, int x2, int y11, int y12, int y21, int y22) {
 		// debugging
 		//System.out.println(drawrect_late_ct + " drawPieces: " + x1 + ", " + x2 
 		//		+ ", " + y11 + ", " + y12 + ", " + y21 + ", " + y22 );
@@ -456,7 +649,6 @@ public class FirstPersonView {
 		// Loop variable is x1i, starts at x1, upper limit x2 is fixed
 		int x1i = x1; // init loop variable
 		int x2i;      // initialized inside loop
-		int[] intersect;
 		while (x1i <= x2) {
 			// check if there is an intersection, 
 			// if there is none, done, exit the loop, 
@@ -464,11 +656,10 @@ public class FirstPersonView {
 			// rset represents the to-do list of intervals on the x-axis
 			// that are not covered by a polygon yet
 			// get one intersection for our interval[x1i,x2] with rset
-			intersect = rSet.getIntersection(x1i, x2);
-			if (null == intersect)
+			x1i = rSet.getFirst(x1i, x2); // progress: can not be less than previous x1i
+			if (x1i < 0)
 				break; // exit point for loop
-			x1i = intersect[0]; // progress: can not be less than previous x1i
-			x2i = intersect[1]; // x1i <= x2i 
+			x2i = rSet.getLast(x1i, x2); // x1i <= x2i 
 			// draw polygon for intersection (x1i,x2i) on x-axis
 			// 4 points needed for polygon, 
 			// case 1: blocking wallboard: 
@@ -482,18 +673,24 @@ public class FirstPersonView {
 			// constant xd == x2-x1, yd1 = y21-y11, and yd2 = y22-y12
 			// the additive term for the y coordinate depends on the point's x coordinate
 			// polygon covers interval [x1i, x2i] on the x-axis
-			int[] xps = { x1i, x1i, x2i+1, x2i+1 };
+			xps[0] = x1i;
+			xps[1] = x1i;
+			xps[2] = x2i+1;
+			xps[3] = x2i+1;
 			// (x1i-x1)/xd is the percentage of what's left of [x1i,x2i] in [x1,x2]
 			// (x2i-x2)/xd is the percentage of what's right of [x1i,x2i] in [x1,x2]
 			// memo: warning for refactoring: this is integer division
-			int[] yps = { y11+(x1i-x1)*yd1/xd,
-					y12+(x1i-x1)*yd2/xd+1,
-					y22+(x2i-x2)*yd2/xd+1,
-					y21+(x2i-x2)*yd1/xd };
+			yps[0] = y11+(x1i-x1)*yd1/xd;
+			yps[1] = y12+(x1i-x1)*yd2/xd+1;
+			yps[2] = y22+(x2i-x2)*yd2/xd+1;
+			yps[3] = y21+(x2i-x2)*yd1/xd;
 			// debug
 			//System.out.println("polygon-x: " + xps[0] + ", " + xps[1] + ", " + xps[2] + ", " + xps[3]) ;
 			//System.out.println("polygon-y: " + yps[0] + ", " + yps[1] + ", " + yps[2] + ", " + yps[3]) ;
-			mazePanel.addFilledPolygon(xps, yps, 4);
+			if (null != stripPanel)
+				stripPanel.addFilledTrapezoid(color, xps, yps);
+			else if (null != mazePanel)
+				mazePanel.addFilledPolygon(xps, yps, 4);
 			// for debugging purposes, code will draw a red line around polygon
 			// this makes individual walls visible
 			/*
@@ -534,6 +731,39 @@ public class FirstPersonView {
 		System.out.println("FirstPersonDrawer:"+ str);
 	}
 
+	/**
+	 * Draws a range of strips, splits the range in halves until a single strip is left.
+	 */
+	private class StripTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final RasterPanel panel;
+		private final int x, y, walkStep, ang;
+		private final PotentiallyVisibleSet visibleSet;
+		// strips [from,to)
+		private final int from, to;
+
+		StripTask(RasterPanel panel, int x, int y, int walkStep, int ang, PotentiallyVisibleSet visibleSet, int from, int to) {
+			this.panel = panel;
+			this.x = x;
+			this.y = y;
+			this.walkStep = walkStep;
+			this.ang = ang;
+			this.visibleSet = visibleSet;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (1 == to - from) {
+				strips[from].drawStrip(panel, x, y, walkStep, ang, visibleSet);
+				return;
+			}
+			final int middle = (from + to) >>> 1;
+			invokeAll(new StripTask(panel, x, y, walkStep, ang, visibleSet, from, middle),
+					new StripTask(panel, x, y, walkStep, ang, visibleSet, middle, to));
+		}
+	}
 	/**
 	 * Trivial class to hold 4 integer values. Used only in FirstPersonDrawer.
 	 */
@@ -0,0 +1,308 @@
+/**
+ *
+ */
+package gui;
+
+import java.util.ArrayDeque;
+
+/**
+ * Render thread for the playing screen.
+ *
+ * StatePlaying updates position and direction as soon as an input is handled
+ * and posts the corresponding motion to this loop, i.e. the input thread
+ * never waits for the screen. The loop draws frames paced to a target frame rate
+ * on its own thread. While a motion is in progress, the viewing angle and the walk step
+ * of each frame are interpolated from the time that has elapsed since the motion started,
+ * so a rotation or a step takes the same time whatever the frame rate is.
+ * Motions are shown one after the other in the order in which they were posted,
+ * if inputs arrive faster than motions are shown, pending motions are shown faster
+ * to catch up. A robot driver posts its motions without any pacing, so it waits
+ * with {@link #awaitIdle() awaitIdle} instead and each motion is shown at normal speed.
+ * Without a motion and without a request to redraw the thread sleeps.
+ *
+ * All drawing for the playing screen happens on this thread once it is started.
+ *
+ * @author Duke Tran
+ */
+class GameLoop implements Runnable {
+	/**
+	 * Receives the frames computed by the game loop.
+	 */
+	interface Scene {
+		/**
+		 * Draws the first person view and the map for the given view.
+		 * @param x coordinate of the current cell
+		 * @param y coordinate of the current cell
+		 * @param angle is the viewing angle in degrees, east == 0
+		 * @param walkStep is the number of intermediate steps towards the next cell
+		 */
+		void drawFrame(int x, int y, int angle, int walkStep);
+		/**
+		 * Draws a visual cue on top of the last frame once a motion is complete.
+		 * @param x coordinate of the current cell
+		 * @param y coordinate of the current cell
+		 * @param angle is the viewing angle in degrees, east == 0
+		 */
+		void drawHint(int x, int y, int angle);
+	}
+
+	/**
+	 * A rotation, a step or a jump from one view to another.
+	 */
+	static final class Motion {
+		// number of intermediate walk steps of a step from one cell to the next
+		static final int WALK_STEPS = 4;
+
+		final int fromX, fromY, fromAngle;
+		final int toX, toY, toAngle;
+		// 1 or -1 for a rotation, 0 otherwise
+		final int turn;
+		// 1 or -1 for a step, 0 otherwise
+		final int walk;
+		// duration in milliseconds if shown at normal speed
+		final int duration;
+
+		private Motion(int fromX, int fromY, int fromAngle, int toX, int toY, int toAngle,
+				int turn, int walk, int duration) {
+			this.fromX = fromX;
+			this.fromY = fromY;
+			this.fromAngle = fromAngle;
+			this.toX = toX;
+			this.toY = toY;
+			this.toAngle = toAngle;
+			this.turn = turn;
+			this.walk = walk;
+			this.duration = duration;
+		}
+		/**
+		 * A rotation by 90 degrees at the given position.
+		 * @param dir is 1 for a counterclockwise rotation (left), -1 for a clockwise rotation (right)
+		 */
+		static Motion rotate(int x, int y, int angle, int dir) {
+			return new Motion(x, y, angle, x, y, (angle + dir*90 + 360) % 360, dir, 0, Constants.MOTION_TIME);
+		}
+		/**
+		 * A step from one cell to an adjacent cell without a change of direction.
+		 * @param dir is 1 for a step forward, -1 for a step backward
+		 */
+		static Motion walk(int fromX, int fromY, int toX, int toY, int angle, int dir) {
+			return new Motion(fromX, fromY, angle, toX, toY, angle, 0, dir, Constants.MOTION_TIME);
+		}
+		/**
+		 * An immediate change of position or a redraw if the position stays the same.
+		 */
+		static Motion jump(int fromX, int fromY, int toX, int toY, int angle) {
+			return new Motion(fromX, fromY, angle, toX, toY, angle, 0, 0, 0);
+		}
+		/**
+		 * Calculates the viewing angle at the given point in time.
+		 * @param t is the share of the motion that is complete, 0 <= t < 1
+		 */
+		int getAngle(double t) {
+			return (fromAngle + turn*(int) (90*t) + 360) % 360;
+		}
+		/**
+		 * Calculates the walk step at the given point in time.
+		 * @param t is the share of the motion that is complete, 0 <= t < 1
+		 */
+		int getWalkStep(double t) {
+			return walk*(int) (WALK_STEPS*t);
+		}
+	}
+
+	private final Scene scene;
+	// time between frames in nanoseconds
+	private final long framePeriod;
+	// motions that have been posted but not started yet, guarded by this
+	private final ArrayDeque<Motion> motions = new ArrayDeque<Motion>();
+	// motion that is currently shown, only accessed by the render thread
+	private Motion current;
+	// start time and duration of the current motion in nanoseconds
+	private long currentStart;
+	private long currentDuration;
+	// the view at the end of the last complete motion, only accessed by the render thread
+	private int viewX, viewY, viewAngle;
+	// true if the screen needs to be drawn even without a motion, guarded by this
+	private boolean dirty;
+	// false once the loop is asked to stop, guarded by this
+	private boolean running;
+	private Thread thread;
+
+	/**
+	 * Constructor
+	 * @param scene draws the frames, not null
+	 * @param framesPerSecond is the target frame rate, at least 1
+	 * @param x coordinate of the initial cell
+	 * @param y coordinate of the initial cell
+	 * @param angle is the initial viewing angle
+	 */
+	GameLoop(Scene scene, int framesPerSecond, int x, int y, int angle) {
+		assert null != scene : "GameLoop: scene must be present";
+		assert framesPerSecond > 0 : "GameLoop: frame rate must be positive";
+		this.scene = scene;
+		framePeriod = 1000000000L / framesPerSecond;
+		viewX = x;
+		viewY = y;
+		viewAngle = angle;
+	}
+
+	/**
+	 * Starts the render thread.
+	 */
+	synchronized void start() {
+		assert null == thread : "GameLoop.start: loop runs already";
+		running = true;
+		thread = new Thread(this, "GameLoop");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	/**
+	 * Adds a motion to be shown after all motions posted before.
+	 * @param motion to show, not null
+	 */
+	synchronized void post(Motion motion) {
+		motions.add(motion);
+		notifyAll();
+	}
+	/**
+	 * Requests a new frame for the current view, e.g. after a change of the map settings.
+	 */
+	synchronized void redraw() {
+		dirty = true;
+		notifyAll();
+	}
+	/**
+	 * Waits until all posted motions have been shown or the loop is stopped.
+	 * Must not be called on the render thread.
+	 */
+	synchronized void awaitIdle() {
+		while (running && (!motions.isEmpty() || null != current)) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+	/**
+	 * Stops the render thread once all posted motions have been shown.
+	 * Waits for the thread to terminate such that no more frames are drawn
+	 * after this method returns.
+	 */
+	void finish() {
+		awaitIdle();
+		stop();
+	}
+	/**
+	 * Stops the render thread right away, pending motions are dropped.
+	 * Waits for the thread to terminate such that no more frames are drawn
+	 * after this method returns.
+	 */
+	void stop() {
+		Thread t;
+		synchronized (this) {
+			running = false;
+			motions.clear();
+			notifyAll();
+			t = thread;
+			thread = null;
+		}
+		if (null == t || Thread.currentThread() == t)
+			return;
+		try {
+			t.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Draws frames until the loop is stopped. A frame is drawn at most once
+	 * per frame period, if drawing takes longer the next frame starts right away.
+	 */
+	@Override
+	public void run() {
+		try {
+			loop();
+		} finally {
+			// release threads that wait in finish even if drawing failed
+			synchronized (this) {
+				running = false;
+				current = null;
+				notifyAll();
+			}
+		}
+	}
+
+	private void loop() {
+		long next = System.nanoTime();
+		while (awaitWork()) {
+			long now = System.nanoTime();
+			// after a pause or if behind schedule, do not try to make up for lost frames
+			if (now - next > framePeriod)
+				next = now;
+			drawFrame(now);
+			next += framePeriod;
+			long delay = next - System.nanoTime();
+			if (delay <= 0)
+				continue;
+			try {
+				Thread.sleep(delay / 1000000, (int) (delay % 1000000));
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Blocks until there is something to draw and picks the next motion if necessary.
+	 * @return false if the loop has been stopped
+	 */
+	private synchronized boolean awaitWork() {
+		while (running && null == current && motions.isEmpty() && !dirty) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				return false;
+			}
+		}
+		if (!running)
+			return false;
+		if (null == current && !motions.isEmpty()) {
+			current = motions.poll();
+			currentStart = System.nanoTime();
+			// show pending motions faster if inputs arrive faster than motions are shown
+			currentDuration = current.duration * 1000000L / (1 + motions.size());
+		}
+		dirty = false;
+		return true;
+	}
+
+	/**
+	 * Draws the frame for the given point in time.
+	 */
+	private void drawFrame(long now) {
+		if (null == current) {
+			scene.drawFrame(viewX, viewY, viewAngle, 0);
+			return;
+		}
+		long elapsed = now - currentStart;
+		if (elapsed < currentDuration) {
+			double t = (double) elapsed / currentDuration;
+			scene.drawFrame(current.fromX, current.fromY, current.getAngle(t), current.getWalkStep(t));
+			return;
+		}
+		// motion is complete, show the final view with a hint after a rotation or a step
+		viewX = current.toX;
+		viewY = current.toY;
+		viewAngle = current.toAngle;
+		scene.drawFrame(viewX, viewY, viewAngle, 0);
+		if (0 != current.turn || 0 != current.walk)
+			scene.drawHint(viewX, viewY, viewAngle);
+		synchronized (this) {
+			current = null;
+			notifyAll();
+		}
+	}
+}
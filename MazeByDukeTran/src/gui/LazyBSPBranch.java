@@ -0,0 +1,126 @@
+/**
+ *
+ */
+package gui;
+
+import generation.BSPBranch;
+import generation.BSPNode;
+
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A branch of a BSP tree that is loaded from a binary maze file with an indexed tree
+ * as written by MazeBinaryFileWriter. Only the data of the branch itself is read
+ * when it is created, each child is read from the file the first time
+ * getLeftBranch or getRightBranch is called, e.g. when FirstPersonView.drawAllVisibleSectors
+ * reaches this branch. Leaves are represented by LazyBSPLeaf and read their walls on demand as well.
+ *
+ * Children are only softly reachable, so the garbage collector can evict subtrees
+ * that have not been used recently if memory runs short. An evicted subtree is read
+ * from the file again the next time it is needed. The seen attribute of walls
+ * is not part of the evicted objects, all nodes of a tree share a set of seen walls,
+ * see LazyBSPLeaf.
+ *
+ * @author Duke Tran
+ */
+public class LazyBSPBranch extends BSPBranch {
+	// file content, node data is read with absolute positions only
+	private final ByteBuffer buffer;
+	// positions of the left and right child in the buffer
+	private final int left;
+	private final int right;
+	// positions of all walls of the tree that have been seen
+	private final Set<Integer> seenWalls;
+	// children that have been loaded so far
+	private SoftReference<BSPNode> lbranch;
+	private SoftReference<BSPNode> rbranch;
+
+	/**
+	 * Constructor with values for all internal fields
+	 */
+	private LazyBSPBranch(ByteBuffer buffer, int left, int right, Set<Integer> seenWalls,
+			int px, int py, int pdx, int pdy, int xl, int yl, int xu, int yu) {
+		super(px, py, pdx, pdy, xl, yl, xu, yu);
+		this.buffer = buffer;
+		this.left = left;
+		this.right = right;
+		this.seenWalls = seenWalls;
+	}
+
+	/**
+	 * Reads a single node of an indexed tree from the given buffer.
+	 * @param buffer holds the content of a binary maze file, its position is not changed
+	 * @param position is the position of the tag byte of the node
+	 * @return a LazyBSPBranch or LazyBSPLeaf for the node, null for an empty subtree
+	 */
+	static BSPNode load(ByteBuffer buffer, int position) {
+		return load(buffer, position, ConcurrentHashMap.<Integer>newKeySet());
+	}
+	/**
+	 * Reads a single node of an indexed tree that shares the given set of seen walls.
+	 */
+	private static BSPNode load(ByteBuffer buffer, int position, Set<Integer> seenWalls) {
+		byte tag = buffer.get(position);
+		if (MazeBinaryFileWriter.TAG_NONE == tag)
+			return null;
+		assert (MazeBinaryFileWriter.TAG_LEAF_INDEXED == tag || MazeBinaryFileWriter.TAG_BRANCH_INDEXED == tag) :
+			"LazyBSPBranch: tree at position " + position + " is not indexed";
+		int xl = buffer.getInt(position + 1);
+		int yl = buffer.getInt(position + 5);
+		int xu = buffer.getInt(position + 9);
+		int yu = buffer.getInt(position + 13);
+		if (MazeBinaryFileWriter.TAG_LEAF_INDEXED == tag)
+			return new LazyBSPLeaf(buffer, position + 17, seenWalls, xl, yl, xu, yu);
+		int x = buffer.getInt(position + 17);
+		int y = buffer.getInt(position + 21);
+		int dx = buffer.getInt(position + 25);
+		int dy = buffer.getInt(position + 29);
+		int right = buffer.getInt(position + 33);
+		return new LazyBSPBranch(buffer, position + 37, right, seenWalls, x, y, dx, dy, xl, yl, xu, yu);
+	}
+
+	@Override
+	public BSPNode getLeftBranch() {
+		BSPNode node = (null == lbranch) ? null : lbranch.get();
+		if (null == node) {
+			node = load(buffer, left, seenWalls);
+			lbranch = new SoftReference<BSPNode>(node);
+		}
+		return node;
+	}
+
+	@Override
+	public BSPNode getRightBranch() {
+		BSPNode node = (null == rbranch) ? null : rbranch.get();
+		if (null == node) {
+			node = load(buffer, right, seenWalls);
+			rbranch = new SoftReference<BSPNode>(node);
+		}
+		return node;
+	}
+
+	@Override
+	public boolean isLoadedOnDemand() {
+		return true;
+	}
+
+	/**
+	 * Tells if both children are currently in memory.
+	 * @return true if neither child needs to be read from the file
+	 */
+	public boolean isLoaded() {
+		return null != lbranch && null != lbranch.get() && null != rbranch && null != rbranch.get();
+	}
+
+	/**
+	 * Drops all loaded subtrees below this branch such that they are read
+	 * from the file again when needed.
+	 */
+	public void evict() {
+		lbranch = null;
+		rbranch = null;
+	}
+}
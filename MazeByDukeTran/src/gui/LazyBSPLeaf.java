@@ -0,0 +1,105 @@
+/**
+ *
+ */
+package gui;
+
+import generation.BSPLeaf;
+import generation.Wall;
+
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Set;
+
+/**
+ * A leaf of a BSP tree that is loaded from a binary maze file with an indexed tree.
+ * Bounds are known from the start, the list of walls is read from the file
+ * the first time getSlist is called and can be evicted just as subtrees
+ * of a LazyBSPBranch.
+ *
+ * Walls of a leaf are instances of {@link SeenWall}, which record their seen flag
+ * in a set shared by the whole tree. A wall that is read again after an eviction
+ * takes its flag from that set, so the flag survives as long as the tree.
+ *
+ * @author Duke Tran
+ */
+public class LazyBSPLeaf extends BSPLeaf {
+	// file content, walls are read from a duplicate to leave its position unchanged
+	private final ByteBuffer buffer;
+	// position of the number of walls in the buffer
+	private final int position;
+	// positions of all walls of the tree that have been seen
+	private final Set<Integer> seenWalls;
+	// walls that have been loaded
+	private SoftReference<ArrayList<Wall>> walls;
+
+	/**
+	 * Constructor with values for all internal fields
+	 */
+	LazyBSPLeaf(ByteBuffer buffer, int position, Set<Integer> seenWalls, int xl, int yl, int xu, int yu) {
+		super(xl, yl, xu, yu);
+		this.buffer = buffer;
+		this.position = position;
+		this.seenWalls = seenWalls;
+	}
+
+	@Override
+	public ArrayList<Wall> getSlist() {
+		ArrayList<Wall> list = (null == walls) ? null : walls.get();
+		if (null == list) {
+			ByteBuffer source = buffer.duplicate();
+			source.position(position);
+			list = MazeBinaryFileReader.readWalls(source, seenWalls);
+			walls = new SoftReference<ArrayList<Wall>>(list);
+		}
+		return list;
+	}
+
+	@Override
+	public boolean isLoadedOnDemand() {
+		return true;
+	}
+
+	/**
+	 * Tells if the list of walls is currently in memory.
+	 * @return true if walls need not be read from the file
+	 */
+	public boolean isLoaded() {
+		return null != walls && null != walls.get();
+	}
+
+	/**
+	 * Drops the list of walls such that it is read from the file again when needed.
+	 * Walls that have been seen are still seen after they are read again.
+	 */
+	public void evict() {
+		walls = null;
+	}
+
+	/**
+	 * A wall of a lazily loaded tree. Its seen flag is kept in a set of the tree
+	 * as well, with the position of the wall in the file as the key, such that a
+	 * wall that is read again can restore it.
+	 */
+	static class SeenWall extends Wall {
+		// positions of all walls of the tree that have been seen
+		private final Set<Integer> seenWalls;
+		// position of the wall in the file
+		private final int position;
+
+		SeenWall(int x, int y, int dx, int dy, int dist, Set<Integer> seenWalls, int position) {
+			super(x, y, dx, dy, dist, 0);
+			this.seenWalls = seenWalls;
+			this.position = position;
+		}
+
+		@Override
+		public void setSeen(final boolean seen) {
+			super.setSeen(seen);
+			if (seen)
+				seenWalls.add(position);
+			else
+				seenWalls.remove(position);
+		}
+	}
+}
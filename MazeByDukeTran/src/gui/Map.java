@@ -3,9 +3,25 @@
  */
 package gui;
 
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
 import generation.CardinalDirection;
 import generation.Floorplan;
 import generation.Maze;
+import generation.SolutionPath;
 
 /**
  * This class encapsulates all functionality to draw a map of the overall maze,
@@ -21,6 +37,20 @@ import generation.Maze;
  * It is possible to zoom in and out of the map by increasing or decreasing
  * the map scale.
  * 
+ * The walls of the maze are drawn into square images with a transparent
+ * background, the tiles, which are copied to the screen for each frame.
+ * Together the tiles of a map scale form the layer, an image of the whole maze
+ * at this scale. Tiles are drawn on a background thread when they are
+ * first needed and kept for each map scale and setting for showing the whole maze,
+ * the tiles that have not been used for the longest time are dropped
+ * if there are too many. So zooming and moving around only copy tiles.
+ * Until the tiles for a new map scale are ready, the tiles of the last
+ * scale that was shown completely are stretched to fill in, 
+ * if there are none, walls are drawn directly on the screen. 
+ * Walls that become visible in the first person view
+ * only update the few pixels around them in all tiles, the seen walls keep a log of
+ * changed cells for this purpose.
+ * 
  * This code is refactored code from Maze.java by Paul Falstad,
  * www.falstad.com, Copyright (C) 1998, all rights reserved
  * Paul Falstad granted permission to modify and use code for teaching purposes.
@@ -39,6 +69,8 @@ public class Map {
 	 * The user can increment or decrement the scale of the map.
 	 * map_scale is used to keep track of the current setting.
 	 * Minimum value is 1.
+	 * It is read several times per frame, so only the thread that draws
+	 * the map changes it.
 	 */
 	int mapScale;
 	
@@ -58,6 +90,57 @@ public class Map {
 	 */
 	final Maze maze;
 	
+	/**
+	 * (dx,dy) pairs indexed by CardinalDirection ordinal, 
+	 * obtained once to avoid allocations while drawing the solution.
+	 */
+	private static final int[][] DIRS = {
+			CardinalDirection.North.getDirection(), CardinalDirection.East.getDirection(),
+			CardinalDirection.South.getDirection(), CardinalDirection.West.getDirection() };
+	
+	/**
+	 * Width and height of a tile in pixels.
+	 */
+	static final int TILE_SIZE = 128;
+	/**
+	 * Default limit for the number of tiles, 16 MB of memory.
+	 */
+	static final int MAX_TILES = 256;
+	private static final Color WHITE = new Color(MazePanel.WHITE);
+	private static final Color GRAY = new Color(MazePanel.GRAY);
+	/**
+	 * Draws tiles for all maps in the order they are requested,
+	 * a daemon thread does not keep the application alive.
+	 */
+	private static final ExecutorService TILE_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Map");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	/**
+	 * Limit for the number of tiles that are kept,
+	 * walls are drawn directly on the screen if a frame needs more tiles.
+	 */
+	int maxTiles = MAX_TILES;
+	/**
+	 * Draws the tiles, tests may draw them on the calling thread.
+	 */
+	Executor tileExecutor = TILE_EXECUTOR;
+	/**
+	 * Tiles by key in the order of their last use, the first one is dropped first.
+	 */
+	private final LinkedHashMap<Long, Tile> tiles = new LinkedHashMap<Long, Tile>(16, 0.75f, true);
+	/**
+	 * Map scale of the last frame that was drawn from tiles of its own scale only,
+	 * 0 if there is none.
+	 */
+	private int completeScale;
+	/**
+	 * Is notified on the background thread whenever a tile is ready, may be null.
+	 */
+	private Runnable tileListener;
+	
 	/**
 	 * Constructor 
 	 * @param width of display
@@ -80,6 +163,8 @@ public class Map {
 		// correctness considerations
 		assert maze != null : "MapDrawer: maze configuration can't be null at instantiation!" ;
 		assert seenWalls != null : "MapDrawer: seencells can't be null at instantiation!" ;
+		// tiles are updated with walls that are seen from now on
+		seenWalls.setChangeTracking(true);
 	}
 	
 	/**
@@ -94,6 +179,20 @@ public class Map {
     			Constants.STEP_SIZE, seenCells, mapScale, maze);
 	}
 	
+	/**
+	 * Sets a listener that is notified whenever a tile that was missing
+	 * for a frame is ready, such that the map can be drawn again.
+	 * The listener is called on a background thread.
+	 * @param listener is called for each tile, null for none
+	 */
+	public void setTileListener(Runnable listener) {
+		tileListener = listener;
+	}
+	
+	public int getMapScale() {
+		return mapScale;
+	}
+	
 	public void incrementMapScale() {
 		mapScale += 1 ;
 	}
@@ -148,17 +247,33 @@ public class Map {
 	 */
 	private void drawMap(MazePanel mazePanel, int px, int py, int walkStep, 
 			int viewDX, int viewDY, boolean showMaze, boolean showSolution) {
-		// dimensions of the maze in terms of cell ids
-		final int mazeWidth = maze.getWidth() ;
-		final int mazeHeight = maze.getHeight() ;
-		
-		mazePanel.setColor(MazePanel.WHITE);
-		
 		// note: 1/2 of width and height is the center of the screen
 		// the whole map is centered at the current position
 		final int offsetX = getOffset(px, walkStep, viewDX, viewWidth);
 		final int offsetY = getOffset(py, walkStep, viewDY, viewHeight);
 		
+		updateTiles();
+		// the top left corner of the layer such that its lines end up where drawWalls puts them
+		if (!drawTiles(mazePanel, offsetX, mapToCoordinateY(maze.getHeight(), offsetY), showMaze)) {
+			drawWalls(mazePanel, offsetX, offsetY, showMaze);
+		}
+		
+		if (showSolution) {
+			drawSolution(mazePanel, offsetX, offsetY, px, py) ;
+		}
+	}
+	/**
+	 * Draws the lines for all walls that are on the screen.
+	 * This is done if the tiles do not cover the screen.
+	 * @param offsetX is the offset for x coordinates
+	 * @param offsetY is the offset for y coordinates
+	 * @param showMaze if true, also draws walls that have not been seen in gray
+	 */
+	private void drawWalls(MazePanel mazePanel, int offsetX, int offsetY, boolean showMaze) {
+		// dimensions of the maze in terms of cell ids
+		final int mazeWidth = maze.getWidth() ;
+		final int mazeHeight = maze.getHeight() ;
+		
 		// We need to calculate bounds for cell indices to consider
 		// for drawing. Since not the whole maze may be visible
 		// for the given screen size and the current position (px,py)
@@ -179,26 +294,316 @@ public class Map {
 				int startY = mapToCoordinateY(y, offsetY);
 				
 				// draw horizontal line
-				boolean theCondition = (x >= mazeWidth) ? false : ((y < mazeHeight) ?
-						maze.hasWall(x,y, CardinalDirection.North) :
-							maze.hasWall(x,y-1, CardinalDirection.South));
-
 				mazePanel.setColor(seenWalls.hasWall(x,y, CardinalDirection.North) ? MazePanel.WHITE : MazePanel.GRAY);
-				if ((seenWalls.hasWall(x,y, CardinalDirection.North) || showMaze) && theCondition)
+				if ((seenWalls.hasWall(x,y, CardinalDirection.North) || showMaze) && hasHorizontalWall(x, y))
 					mazePanel.addLine(startX, startY, startX + mapScale, startY); // y coordinate same
 				
 				// draw vertical line
-				theCondition = (y >= mazeHeight) ? false : ((x < mazeWidth) ?
-						maze.hasWall(x,y, CardinalDirection.West) :
-							maze.hasWall((x-1),y, CardinalDirection.East));
-
 				mazePanel.setColor(seenWalls.hasWall(x,y, CardinalDirection.West) ? MazePanel.WHITE : MazePanel.GRAY);
-				if ((seenWalls.hasWall(x,y, CardinalDirection.West) || showMaze) && theCondition)
+				if ((seenWalls.hasWall(x,y, CardinalDirection.West) || showMaze) && hasVerticalWall(x, y))
 					mazePanel.addLine(startX, startY, startX, startY - mapScale); // x coordinate same
 			}
+	}
+	/**
+	 * Tells if there is a wall on the horizontal line at the top of cell (x,y).
+	 * @param x is in {@code 0 <= x <= width}
+	 * @param y is in {@code 0 <= y <= height}, height denotes the line below the last row
+	 */
+	private boolean hasHorizontalWall(int x, int y) {
+		return (x >= maze.getWidth()) ? false : ((y < maze.getHeight()) ?
+				maze.hasWall(x,y, CardinalDirection.North) :
+					maze.hasWall(x,y-1, CardinalDirection.South));
+	}
+	/**
+	 * Tells if there is a wall on the vertical line to the left of cell (x,y).
+	 * @param x is in {@code 0 <= x <= width}, width denotes the line right of the last column
+	 * @param y is in {@code 0 <= y <= height}
+	 */
+	private boolean hasVerticalWall(int x, int y) {
+		return (y >= maze.getHeight()) ? false : ((x < maze.getWidth()) ?
+				maze.hasWall(x,y, CardinalDirection.West) :
+					maze.hasWall((x-1),y, CardinalDirection.East));
+	}
+	/**
+	 * Copies the tiles that are on the screen to the panel.
+	 * Missing tiles are requested from the background thread and
+	 * filled in with tiles of the last scale that was shown completely.
+	 * @param left is the x coordinate of the top left corner of the layer on the screen
+	 * @param top is the y coordinate of the top left corner of the layer on the screen
+	 * @param showMaze if true, tiles also show walls that have not been seen
+	 * @return true if the tiles cover the screen, false if walls need to be drawn directly
+	 */
+	private boolean drawTiles(MazePanel mazePanel, int left, int top, boolean showMaze) {
+		// part of the layer that is on the screen, lines of the last row and column end at the border
+		final int layerLeft = Math.max(0, -left);
+		final int layerTop = Math.max(0, -top);
+		final int layerRight = Math.min(maze.getWidth()*mapScale + 1, viewWidth - left);
+		final int layerBottom = Math.min(maze.getHeight()*mapScale + 1, viewHeight - top);
+		if (layerRight <= layerLeft || layerBottom <= layerTop)
+			return true; // the maze is not on the screen
+		// range of tiles that intersect the screen
+		final int minX = layerLeft / TILE_SIZE;
+		final int minY = layerTop / TILE_SIZE;
+		final int maxX = (layerRight - 1) / TILE_SIZE;
+		final int maxY = (layerBottom - 1) / TILE_SIZE;
+		final int columns = maxX - minX + 1;
+		final Tile[] visible = new Tile[columns*(maxY - minY + 1)];
+		if (visible.length > maxTiles)
+			return false;
+		dropPendingTiles(showMaze);
+		boolean complete = true;
+		for (int i = 0; i < visible.length; i++) {
+			visible[i] = getTile(minX + i % columns, minY + i / columns, showMaze);
+			complete &= visible[i].isReady();
+		}
+		if (complete) {
+			completeScale = mapScale;
+		}
+		else {
+			// fill in with stretched tiles, if that leaves a gap, draw the walls
+			for (Tile tile : visible) {
+				if (!tile.isReady() && !drawFallback(null, tile, left, top, showMaze))
+					return false;
+			}
+		}
+		for (Tile tile : visible) {
+			if (tile.isReady())
+				mazePanel.addImage(tile.image, left + tile.x*TILE_SIZE, top + tile.y*TILE_SIZE);
+			else
+				drawFallback(mazePanel, tile, left, top, showMaze);
+		}
+		return true;
+	}
+	/**
+	 * Draws the parts of the ready tiles of the last complete scale 
+	 * that cover the given missing tile, stretched to the current scale.
+	 * Coordinates of both scales are the same after multiplying with the ratio of scales.
+	 * @param mazePanel to draw on, null to only check if some tile covers the missing tile
+	 * @param missing is a tile of the current scale that is not ready
+	 * @param left is the x coordinate of the top left corner of the layer on the screen
+	 * @param top is the y coordinate of the top left corner of the layer on the screen
+	 * @param showMaze tells which tiles may be used
+	 * @return true if there is a tile that covers part of the missing tile
+	 */
+	private boolean drawFallback(MazePanel mazePanel, Tile missing, int left, int top, boolean showMaze) {
+		if (0 == completeScale || mapScale == completeScale)
+			return false;
+		final double ratio = mapScale / (double) completeScale;
+		// part of the screen that the missing tile covers
+		final int minX = Math.max(0, left + missing.x*TILE_SIZE);
+		final int minY = Math.max(0, top + missing.y*TILE_SIZE);
+		final int maxX = Math.min(viewWidth, left + (missing.x + 1)*TILE_SIZE);
+		final int maxY = Math.min(viewHeight, top + (missing.y + 1)*TILE_SIZE);
+		boolean found = false;
+		for (Tile tile : tiles.values()) {
+			if (tile.scale != completeScale || tile.showMaze != showMaze || !tile.isReady())
+				continue;
+			// intersection with the part of the screen the tile covers at the current scale
+			final int x1 = Math.max(minX, left + (int) Math.round(tile.x*TILE_SIZE*ratio));
+			final int y1 = Math.max(minY, top + (int) Math.round(tile.y*TILE_SIZE*ratio));
+			final int x2 = Math.min(maxX, left + (int) Math.round((tile.x + 1)*TILE_SIZE*ratio));
+			final int y2 = Math.min(maxY, top + (int) Math.round((tile.y + 1)*TILE_SIZE*ratio));
+			if (x1 >= x2 || y1 >= y2)
+				continue;
+			found = true;
+			if (null == mazePanel)
+				break;
+			mazePanel.addImage(tile.image, x1, y1, x2, y2,
+					(int) Math.round((x1 - left)/ratio) - tile.x*TILE_SIZE, (int) Math.round((y1 - top)/ratio) - tile.y*TILE_SIZE,
+					(int) Math.round((x2 - left)/ratio) - tile.x*TILE_SIZE, (int) Math.round((y2 - top)/ratio) - tile.y*TILE_SIZE);
+		}
+		return found;
+	}
+	/**
+	 * Provides the tile at the given position for the current scale, 
+	 * requests it from the background thread if it is not there yet.
+	 * Drops the tiles that have not been used for the longest time if there are too many.
+	 */
+	private Tile getTile(int x, int y, boolean showMaze) {
+		final Long key = getKey(mapScale, showMaze, x, y);
+		Tile tile = tiles.get(key);
+		if (null == tile) {
+			tile = new Tile(mapScale, showMaze, x, y);
+			tiles.put(key, tile);
+			Iterator<Tile> iterator = tiles.values().iterator();
+			while (tiles.size() > maxTiles) {
+				iterator.next().cancel();
+				iterator.remove();
+			}
+			tileExecutor.execute(tile.task);
+		}
+		return tile;
+	}
+	/**
+	 * Drops tiles that have not been drawn yet for other scales or settings,
+	 * so the background thread does not work on tiles that are no longer needed.
+	 */
+	private void dropPendingTiles(boolean showMaze) {
+		Iterator<Tile> iterator = tiles.values().iterator();
+		while (iterator.hasNext()) {
+			Tile tile = iterator.next();
+			if ((tile.scale != mapScale || tile.showMaze != showMaze) && !tile.isReady()) {
+				tile.cancel();
+				iterator.remove();
+			}
+		}
+	}
+	/**
+	 * Updates all tiles with the walls that have been seen since the last frame.
+	 */
+	private void updateTiles() {
+		for (int cell : seenWalls.takeChangedCells()) {
+			final int x = cell / seenWalls.getHeight();
+			final int y = cell % seenWalls.getHeight();
+			for (Tile tile : tiles.values()) {
+				tile.update(x, y);
+			}
+		}
+	}
+	/**
+	 * Combines scale, setting and position of a tile into a key.
+	 */
+	private static Long getKey(int scale, boolean showMaze, int x, int y) {
+		return ((long) scale << 41) | ((showMaze ? 1L : 0L) << 40) | ((long) x << 20) | y;
+	}
+	/**
+	 * Draws the lines of cells in the given range with the same order and 
+	 * colors as drawWalls, such that the top left corner of the layer is at (0,0).
+	 * @param graphics to draw on
+	 * @param scale is the map scale of the layer
+	 * @param showMaze if true, also draws walls that have not been seen in gray
+	 */
+	private void drawLayer(Graphics2D graphics, int scale, boolean showMaze, 
+			int minX, int minY, int maxX, int maxY) {
+		for (int y = minY; y <= maxY; y++)
+			for (int x = minX; x <= maxX; x++) {
+				int startX = x*scale;
+				int startY = (maze.getHeight() - y)*scale;
+				
+				boolean seen = seenWalls.hasWall(x,y, CardinalDirection.North);
+				if ((seen || showMaze) && hasHorizontalWall(x, y)) {
+					graphics.setColor(seen ? WHITE : GRAY);
+					graphics.drawLine(startX, startY, startX + scale, startY);
+				}
+				
+				seen = seenWalls.hasWall(x,y, CardinalDirection.West);
+				if ((seen || showMaze) && hasVerticalWall(x, y)) {
+					graphics.setColor(seen ? WHITE : GRAY);
+					graphics.drawLine(startX, startY, startX, startY - scale);
+				}
+			}
+	}
+	/**
+	 * A square part of the layer for a given scale and setting.
+	 * The tile is drawn by a task on the background thread, once the task is done,
+	 * the tile is only accessed by the thread that draws the map.
+	 * Walls that are seen while the task is running are recorded and
+	 * drawn again when the tile is ready, as the task may have missed them.
+	 */
+	private class Tile {
+		final int scale;
+		final boolean showMaze;
+		// position in units of tiles
+		final int x;
+		final int y;
+		final BufferedImage image;
+		// graphics of the image, translated to layer coordinates and clipped to the tile
+		private Graphics2D graphics;
+		// draws the tile, null once the tile is ready
+		private FutureTask<Void> task;
+		// cells with walls that were seen while the task was running
+		private int[] pendingCells = new int[0];
+		private int pendingCount;
 		
-		if (showSolution) {
-			drawSolution(mazePanel, offsetX, offsetY, px, py) ;
+		Tile(int scale, boolean showMaze, int x, int y) {
+			this.scale = scale;
+			this.showMaze = showMaze;
+			this.x = x;
+			this.y = y;
+			image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+			task = new FutureTask<Void>(() -> draw(), null) {
+				@Override
+				protected void done() {
+					// the task counts as done by now, so a frame drawn for the listener shows the tile
+					Runnable listener = tileListener;
+					if (null != listener && !isCancelled())
+						listener.run();
+				}
+			};
+		}
+		/**
+		 * Draws all lines that touch the tile.
+		 */
+		private void draw() {
+			graphics = image.createGraphics();
+			// same settings as for the graphics of the MazePanel
+			graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.translate(-x*TILE_SIZE, -y*TILE_SIZE);
+			graphics.clipRect(x*TILE_SIZE, y*TILE_SIZE, TILE_SIZE, TILE_SIZE);
+			// cells whose lines may touch the tile, the clip takes care of the rest
+			final int height = maze.getHeight();
+			drawLayer(graphics, scale, showMaze, 
+					Math.max(0, x*TILE_SIZE/scale - 1), Math.max(0, height - (y + 1)*TILE_SIZE/scale - 1),
+					Math.min(maze.getWidth(), (x + 1)*TILE_SIZE/scale + 1), Math.min(height, height - y*TILE_SIZE/scale + 1));
+		}
+		/**
+		 * Tells if the tile is ready to be shown, draws walls that were seen while 
+		 * the task was running when the task is done.
+		 */
+		boolean isReady() {
+			if (null == task)
+				return true;
+			if (!task.isDone())
+				return false;
+			try {
+				task.get();
+			} catch (InterruptedException | ExecutionException e) {
+				e.printStackTrace();
+			}
+			task = null;
+			for (int i = 0; i < pendingCount; i++) {
+				update(pendingCells[i] / seenWalls.getHeight(), pendingCells[i] % seenWalls.getHeight());
+			}
+			pendingCells = null;
+			return true;
+		}
+		/**
+		 * Stops the task if it has not started yet.
+		 */
+		void cancel() {
+			if (null != task)
+				task.cancel(false);
+		}
+		/**
+		 * Draws the lines of cell (x,y) again if they are on this tile.
+		 * The square from the bottom left to the top right corner of the cell is cleared
+		 * and all lines that touch it are drawn again in the same order as before,
+		 * such that pixels where lines meet end up with the same color.
+		 * If the tile is not ready, the cell is recorded for later.
+		 * @param cellX is in {@code 0 <= cellX <= width}
+		 * @param cellY is in {@code 0 <= cellY <= height}
+		 */
+		void update(int cellX, int cellY) {
+			final int left = cellX*scale;
+			final int top = (maze.getHeight() - cellY - 1)*scale;
+			if (left > (x + 1)*TILE_SIZE - 1 || left + scale < x*TILE_SIZE ||
+					top > (y + 1)*TILE_SIZE - 1 || top + scale < y*TILE_SIZE)
+				return; // not on this tile
+			if (null != task) {
+				if (pendingCount == pendingCells.length)
+					pendingCells = Arrays.copyOf(pendingCells, 2*pendingCount + 4);
+				pendingCells[pendingCount++] = cellX*seenWalls.getHeight() + cellY;
+				return;
+			}
+			final Shape clip = graphics.getClip();
+			graphics.clipRect(left, top, scale + 1, scale + 1);
+			graphics.setComposite(AlphaComposite.Clear);
+			graphics.fillRect(left, top, scale + 1, scale + 1);
+			graphics.setComposite(AlphaComposite.SrcOver);
+			drawLayer(graphics, scale, showMaze, Math.max(0, cellX-1), Math.max(0, cellY-1), 
+					Math.min(maze.getWidth(), cellX+1), Math.min(maze.getHeight(), cellY+1));
+			graphics.setClip(clip);
 		}
 	}
 	/**
@@ -381,48 +786,34 @@ public class Map {
 					maze.getHeight()) ;
 			return ;
 		}
+		// the solution path comes as a sequence of straight segments
+		// such that we draw a single line per segment
+		final SolutionPath path = maze.getSolutionPath(px, py);
 		// current position on the solution path (sx,sy)
 		int sx = px;
 		int sy = py;
-		int distance = maze.getDistanceToExit(sx, sy);
 		
 		mazePanel.setColor(MazePanel.YELLOW);
 		
-		// while we are more than 1 step away from the final position
-		while (distance > 1) {
-			// find neighbor closer to exit (with no wallboard in between)
-			int[] neighbor = maze.getNeighborCloserToExit(sx, sy) ;
-			if (null == neighbor)
-				return ; // error
-			// scale coordinates, original calculation:
-			// x-coordinates
-			// nx1     == sx*map_scale + offx + map_scale/2;
-			// nx1+ndx == sx*map_scale + offx + map_scale/2 + dx*map_scale == (sx+dx)*map_scale + offx + map_scale/2;
-			// y-coordinates
-			// ny1     == view_height-1-(sy*map_scale + offy) - map_scale/2;
-			// ny1+ndy == view_height-1-(sy*map_scale + offy) - map_scale/2 + -dy * map_scale == view_height-1 -((sy+dy)*map_scale + offy) - map_scale/2
-			// current position coordinates
-			//int nx1 = sx*map_scale + offx + map_scale/2;
-			//int ny1 = view_height-1-(sy*map_scale + offy) - map_scale/2;
-			//
+		for (int i = 0; i < path.getSegmentCount(); i++) {
+			// find end of segment, (sx,sy) plus length steps into the segment's direction
+			final int[] dir = DIRS[path.getDirection(i).ordinal()];
+			final int length = path.getLength(i);
+			final int ex = sx + dir[0]*length;
+			final int ey = sy + dir[1]*length;
 			// we need to translate the cell indices x and y into
 			// coordinates for drawing, the yellow lines is centered
 			// so 1/2 of the size of the cell needs to be added to the
 			// top left corner of a cell which is + or - map_scale/2.
 			int nx1 = mapToCoordinateX(sx,offsetX) + mapScale/2;
 			int ny1 = mapToCoordinateY(sy,offsetY) - mapScale/2;
-			// neighbor position coordinates
-			//int nx2 = neighbor[0]*map_scale + offx + map_scale/2;
-			//int ny2 = view_height-1-(neighbor[1]*map_scale + offy) - map_scale/2;
-			int nx2 = mapToCoordinateX(neighbor[0],offsetX) + mapScale/2;
-			int ny2 = mapToCoordinateY(neighbor[1],offsetY) - mapScale/2;
+			int nx2 = mapToCoordinateX(ex,offsetX) + mapScale/2;
+			int ny2 = mapToCoordinateY(ey,offsetY) - mapScale/2;
 			mazePanel.addLine(nx1, ny1, nx2, ny2);
 			
 			// update loop variables for current position (sx,sy)
-			// and distance d for next iteration
-			sx = neighbor[0];
-			sy = neighbor[1];
-			distance = maze.getDistanceToExit(sx, sy) ;
+			sx = ex;
+			sy = ey;
 		}
 	}
 	
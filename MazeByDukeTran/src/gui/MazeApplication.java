@@ -64,17 +64,19 @@ public class MazeApplication extends JFrame {
 	    	return result;
 	    }
 	    if (parameters.length % 2 != 0) {
-	    	System.err.println("Usage: MazeByDukeTran [-f file] [-g algorithm] [-d driver] [-r flrb]");
+	    	System.err.println("Usage: MazeByDukeTran [-f file] [-g algorithm] [-d driver] [-r flrb] [-p panel] [-v file] [-m view]");
 	    	System.exit(0);
 	    }
 	    int i = 0;
 	    while (i < parameters.length && parameters[i].startsWith("-")) {
 	    	String arg = parameters[i++];
-	    	if (arg == "-f") {
+	    	if ("-f".equals(arg)) {
 	    		String fileName = parameters[i++];
 	    		File f = new File(fileName) ;
 		        if (f.exists() && f.canRead()) {
-		            msg = "MazeApplication: loading maze from file: " + fileName + "\n";
+		            // format is detected when the file is loaded
+		            msg = "MazeApplication: loading maze from " + 
+		            		(MazeBinaryFileReader.isBinaryFile(fileName) ? "binary" : "XML") + " file: " + fileName + "\n";
 		            result.setFileName(fileName);
 		    		file = true;
 		        }
@@ -131,6 +133,42 @@ public class MazeApplication extends JFrame {
 	    				msg += "No driver selected, you have to solve the maze!\n";
 	    			}
 	    			break;
+	    		case "-p":
+	    			String panel = parameters[i++];
+	    			// Case 1: software rasterizer for the first person view
+	    			if ("Raster".equalsIgnoreCase(panel)) {
+	    				msg += "Drawing the first person view with the software rasterizer.\n";
+	    				result.setPanel(new RasterPanel());
+	    			}
+	    			// Case 2: software rasterizer that draws strips of the first person view in parallel
+	    			else if ("Parallel".equalsIgnoreCase(panel)) {
+	    				int strips = 2*Runtime.getRuntime().availableProcessors();
+	    				msg += "Drawing the first person view with the software rasterizer in " + strips + " parallel strips.\n";
+	    				result.setPanel(new RasterPanel());
+	    				result.setStripCount(strips);
+	    			}
+	    			// Case 3: no input or default
+	    			else {
+	    				msg += "Drawing with the default panel.\n";
+	    			}
+	    			break;
+	    		case "-v":
+	    			String visibilityFile = parameters[i++];
+	    			msg += "Skipping walls that are not visible, visibility is cached in " + visibilityFile + ".\n";
+	    			result.setVisibilityFile(visibilityFile);
+	    			break;
+	    		case "-m":
+	    			String view = parameters[i++];
+	    			// Case 1: cast rays through the floorplan, no BSP tree
+	    			if ("Raycast".equalsIgnoreCase(view)) {
+	    				msg += "Drawing the first person view by casting rays, mazes are generated without a BSP tree.\n";
+	    				result.setRaycasting(true);
+	    			}
+	    			// Case 2: no input or default
+	    			else {
+	    				msg += "Drawing the first person view with the BSP tree.\n";
+	    			}
+	    			break;
 	    		case "-r":
 	    			String sensors = parameters[i++];
 	    			int[] operationalSensors = new int[4];
@@ -165,7 +203,7 @@ public class MazeApplication extends JFrame {
 	    }
 	    //System.out.println(i+" "+(parameters.length));
 	    if (i != parameters.length) {
-	    	System.err.println("Usage: MazeByDukeTran [-f file] [-g algorithm] [-d driver] [-r flrb]");
+	    	System.err.println("Usage: MazeByDukeTran [-f file] [-g algorithm] [-d driver] [-r flrb] [-p panel] [-v file] [-m view]");
 	    	System.exit(0);
 	    }
 	    else
@@ -211,8 +249,8 @@ public class MazeApplication extends JFrame {
 	 * The application can be operated in three ways. 
 	 * 1) The intended normal operation is to provide no parameters
 	 * and the maze will be generated by a randomized DFS algorithm (default). 
-	 * 2) If a filename is given that contains a maze stored in xml format. 
-	 * The maze will be loaded from that file. 
+	 * 2) If a filename is given that contains a maze stored in xml or binary format. 
+	 * The maze will be loaded from that file, the format is detected automatically. 
 	 * This option is useful during development to test with a particular maze.
 	 * 3) A predefined constant string is given to select a maze
 	 * generation algorithm, currently supported is "Prim".
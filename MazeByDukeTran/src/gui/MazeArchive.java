@@ -0,0 +1,570 @@
+/**
+ *
+ */
+package gui;
+
+import generation.Maze;
+import generation.Order;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An archive holds many mazes in a single file such that a level pack
+ * does not need thousands of separate files.
+ * Each maze is identified by a {@link Key} made of builder, skill level, perfect flag and seed.
+ *
+ * The file layout is as follows, all numbers are in big endian byte order:
+ * <ol>
+ * <li>a header of {@link #HEADER_SIZE} bytes: magic number, version, number of entries,
+ * offset of the index</li>
+ * <li>entries, each one is a maze in the binary format of MazeBinaryFileWriter
+ * compressed with a Deflater</li>
+ * <li>the index, one record of {@link #RECORD_SIZE} bytes per entry sorted by key:
+ * builder, perfect flag, skill level, seed, offset, compressed and uncompressed size of the entry</li>
+ * </ol>
+ * As index records have a fixed size, a lookup is a binary search with O(log n) reads
+ * of single records through a FileChannel, the index is never read as a whole.
+ * Appending writes new entries after the current index, followed by the merged index.
+ * The header is written last, so an interrupted append leaves the previous content readable.
+ * An entry with a key that is already present replaces the older one.
+ *
+ * The previous index and replaced entries remain in the file as unused space,
+ * so each append makes the file grow by more than its new entries.
+ * Once the unused space exceeds the space in use, append calls {@link #compact() compact},
+ * which copies the entries in use into a new file that replaces the archive.
+ * This keeps the file at most about twice as large as its content, and as each
+ * byte of unused space is copied over at most once, it does not change the cost
+ * of appends by more than a constant factor. The index is still rewritten with
+ * each append, so appending n mazes one by one takes O(n^2) time, use
+ * {@link #append(Map) append} with many mazes at once where possible.
+ *
+ * All public methods are synchronized as an append changes the position of the index.
+ * An iterator should not be used across an append.
+ *
+ * @author Duke Tran
+ */
+public class MazeArchive implements Closeable, Iterable<MazeArchive.Entry> {
+	/**
+	 * Magic number at the beginning of each archive, reads as "MAZA".
+	 */
+	public static final int MAGIC = 0x4D415A41;
+	/**
+	 * Version of the file layout, to be increased with each incompatible change.
+	 */
+	public static final short VERSION = 1;
+	/**
+	 * Number of bytes in the header.
+	 */
+	public static final int HEADER_SIZE = 24;
+	/**
+	 * Number of bytes of a single index record.
+	 */
+	public static final int RECORD_SIZE = 1 + 1 + 4 + 4 + 8 + 4 + 4;
+
+	/**
+	 * Identifies a maze in an archive. Keys are ordered by builder,
+	 * skill level, perfect flag and seed in this order.
+	 */
+	public static class Key implements Comparable<Key> {
+		private final Order.Builder builder;
+		private final int skillLevel;
+		private final boolean perfect;
+		private final int seed;
+
+		/**
+		 * Constructor with values for all fields
+		 */
+		public Key(Order.Builder builder, int skillLevel, boolean perfect, int seed) {
+			this.builder = builder;
+			this.skillLevel = skillLevel;
+			this.perfect = perfect;
+			this.seed = seed;
+		}
+		public Order.Builder getBuilder() {
+			return builder;
+		}
+		public int getSkillLevel() {
+			return skillLevel;
+		}
+		public boolean isPerfect() {
+			return perfect;
+		}
+		public int getSeed() {
+			return seed;
+		}
+		@Override
+		public int compareTo(Key other) {
+			int result = builder.compareTo(other.builder);
+			if (0 == result)
+				result = Integer.compare(skillLevel, other.skillLevel);
+			if (0 == result)
+				result = Boolean.compare(perfect, other.perfect);
+			if (0 == result)
+				result = Integer.compare(seed, other.seed);
+			return result;
+		}
+		@Override
+		public boolean equals(Object other) {
+			if (this == other)
+				return true;
+			if (!(other instanceof Key))
+				return false;
+			return 0 == compareTo((Key) other);
+		}
+		@Override
+		public int hashCode() {
+			return ((builder.hashCode() * 31 + skillLevel) * 31 + (perfect ? 1 : 0)) * 31 + seed;
+		}
+		@Override
+		public String toString() {
+			return builder + "/" + skillLevel + "/" + (perfect ? "perfect" : "rooms") + "/" + seed;
+		}
+	}
+
+	/**
+	 * A maze together with its key as delivered by the iterator.
+	 */
+	public static class Entry {
+		private final Key key;
+		private final Maze maze;
+
+		Entry(Key key, Maze maze) {
+			this.key = key;
+			this.maze = maze;
+		}
+		public Key getKey() {
+			return key;
+		}
+		public Maze getMaze() {
+			return maze;
+		}
+	}
+
+	/**
+	 * Location of an entry in the file as given by its index record.
+	 */
+	private static class Record {
+		final Key key;
+		final long offset;
+		final int compressedSize;
+		final int size;
+
+		Record(Key key, long offset, int compressedSize, int size) {
+			this.key = key;
+			this.offset = offset;
+			this.compressedSize = compressedSize;
+			this.size = size;
+		}
+	}
+
+	private final Path path;
+	// replaced by compact
+	private FileChannel channel;
+	// number of entries and position of the index, as in the header
+	private int count;
+	private long indexOffset;
+
+	/**
+	 * Opens the archive with the given name, a new archive is created if the file does not exist.
+	 * @param filename of the archive
+	 * @throws IOException if the file exists but is not an archive
+	 */
+	public MazeArchive(String filename) throws IOException {
+		path = Paths.get(filename);
+		open();
+	}
+
+	/**
+	 * @return the number of mazes in the archive
+	 */
+	public synchronized int size() {
+		return count;
+	}
+
+	/**
+	 * Tells if the archive holds a maze for the given key.
+	 * @param key of the maze
+	 * @return true if present, false otherwise
+	 */
+	public synchronized boolean contains(Key key) throws IOException {
+		return null != find(key);
+	}
+
+	/**
+	 * Reads the maze for the given key.
+	 * @param key of the maze
+	 * @return the maze, null if the archive holds no maze for the key
+	 * @throws IOException if reading the file fails
+	 */
+	public synchronized Maze get(Key key) throws IOException {
+		Record record = find(key);
+		return (null == record) ? null : readMaze(record);
+	}
+
+	/**
+	 * Adds a single maze to the archive.
+	 * Use {@link #append(Map) append} for many mazes as the index is rewritten with each call.
+	 * @param key of the maze
+	 * @param maze to store
+	 * @throws IOException if writing the file fails
+	 */
+	public void append(Key key, Maze maze) throws IOException {
+		TreeMap<Key, Maze> mazes = new TreeMap<Key, Maze>();
+		mazes.put(key, maze);
+		append(mazes);
+	}
+
+	/**
+	 * Adds the given mazes to the archive, entries for keys that are already present are replaced.
+	 * @param mazes to store by their keys
+	 * @throws IOException if writing the file fails
+	 */
+	public synchronized void append(Map<Key, Maze> mazes) throws IOException {
+		// existing index, new entries replace old ones with the same key
+		TreeMap<Key, Record> index = new TreeMap<Key, Record>();
+		for (Record record : readIndex()) {
+			index.put(record.key, record);
+		}
+		// new entries go after the current index which stays valid until the header is written
+		long position = indexOffset + (long) count * RECORD_SIZE;
+		Deflater deflater = new Deflater();
+		try {
+			for (Map.Entry<Key, Maze> e : mazes.entrySet()) {
+				ByteBuffer content = store(e.getKey(), e.getValue());
+				final int size = content.remaining();
+				ByteBuffer compressed = compress(deflater, content);
+				final int compressedSize = compressed.remaining();
+				write(position, compressed);
+				index.put(e.getKey(), new Record(e.getKey(), position, compressedSize, size));
+				position += compressedSize;
+			}
+		} finally {
+			deflater.end();
+		}
+		// index in order of keys
+		write(position, toBuffer(index.values()));
+		channel.truncate(position + index.size() * RECORD_SIZE);
+		channel.force(false);
+		// header last such that an interrupted append leaves the old index in place
+		count = index.size();
+		indexOffset = position;
+		writeHeader();
+		channel.force(false);
+		if (getUsedSize(index.values()) < getUnusedSize(index.values()))
+			compact();
+	}
+
+	/**
+	 * Gives the number of bytes in the file that are no longer used,
+	 * i.e., old indices and entries that have been replaced.
+	 * @return the number of unused bytes
+	 * @throws IOException if reading the file fails
+	 */
+	public synchronized long getUnusedSize() throws IOException {
+		return getUnusedSize(Arrays.asList(readIndex()));
+	}
+
+	/**
+	 * Removes all unused space from the archive.
+	 * Entries in use are copied in the order of their keys into a new file
+	 * next to the archive, which then replaces the archive. An interrupted
+	 * compaction leaves the archive as it was.
+	 * @throws IOException if reading or writing a file fails
+	 */
+	public synchronized void compact() throws IOException {
+		Record[] index = readIndex();
+		Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				long position = HEADER_SIZE;
+				for (int i = 0; i < index.length; i++) {
+					Record record = index[i];
+					write(out, position, read(record.offset, record.compressedSize));
+					index[i] = new Record(record.key, position, record.compressedSize, record.size);
+					position += record.compressedSize;
+				}
+				write(out, position, toBuffer(Arrays.asList(index)));
+				write(out, 0, toHeader(index.length, position));
+				out.force(false);
+			}
+			channel.close();
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+			if (!channel.isOpen())
+				open();
+		}
+	}
+
+	/**
+	 * Provides all mazes in the order of their keys.
+	 * Mazes are read one at a time, so memory use does not depend on the size of the archive.
+	 * Errors while reading are reported as unchecked exceptions.
+	 */
+	@Override
+	public Iterator<Entry> iterator() {
+		final int total;
+		synchronized (this) {
+			total = count;
+		}
+		return new Iterator<Entry>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < total;
+			}
+
+			@Override
+			public Entry next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				try {
+					synchronized (MazeArchive.this) {
+						Record record = readRecord(next++);
+						return new Entry(record.key, readMaze(record));
+					}
+				} catch (IOException ioe) {
+					throw new IllegalStateException("MazeArchive: failed to read entry " + (next-1), ioe);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Provides the keys of all mazes in ascending order.
+	 * @return list of keys
+	 * @throws IOException if reading the file fails
+	 */
+	public synchronized ArrayList<Key> getKeys() throws IOException {
+		ArrayList<Key> keys = new ArrayList<Key>(count);
+		for (int i = 0; i < count; i++) {
+			keys.add(readRecord(i).key);
+		}
+		return keys;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Opens the channel and reads the header, writes the header of an empty archive to a new file.
+	 */
+	private void open() throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		if (0 == channel.size()) {
+			count = 0;
+			indexOffset = HEADER_SIZE;
+			writeHeader();
+			return;
+		}
+		ByteBuffer header = read(0, HEADER_SIZE);
+		if (MAGIC != header.getInt()) {
+			channel.close();
+			throw new IOException("MazeArchive: not an archive: " + path);
+		}
+		short version = header.getShort();
+		if (VERSION != version) {
+			channel.close();
+			throw new IOException("MazeArchive: unsupported version " + version);
+		}
+		header.getShort(); // reserved
+		count = header.getInt();
+		indexOffset = header.getLong();
+	}
+	/**
+	 * Reads all index records with a single read.
+	 * @return records in the order of keys
+	 */
+	private Record[] readIndex() throws IOException {
+		ByteBuffer buffer = read(indexOffset, count * RECORD_SIZE);
+		Record[] index = new Record[count];
+		for (int i = 0; i < count; i++) {
+			index[i] = getRecord(buffer);
+		}
+		return index;
+	}
+	/**
+	 * Gives the number of bytes of the header, the given entries and their index.
+	 */
+	private static long getUsedSize(Iterable<Record> index) {
+		long size = HEADER_SIZE;
+		for (Record record : index) {
+			size += record.compressedSize + RECORD_SIZE;
+		}
+		return size;
+	}
+	private long getUnusedSize(Iterable<Record> index) throws IOException {
+		return channel.size() - getUsedSize(index);
+	}
+	/**
+	 * Binary search over the index records in the file.
+	 * @return the record for the given key, null if there is none
+	 */
+	private Record find(Key key) throws IOException {
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			Record record = readRecord(mid);
+			int c = record.key.compareTo(key);
+			if (c < 0)
+				low = mid + 1;
+			else if (c > 0)
+				high = mid - 1;
+			else
+				return record;
+		}
+		return null;
+	}
+	/**
+	 * Reads the index record with the given number.
+	 */
+	private Record readRecord(int i) throws IOException {
+		return getRecord(read(indexOffset + (long) i * RECORD_SIZE, RECORD_SIZE));
+	}
+	/**
+	 * Gets the index record at the position of the given buffer.
+	 */
+	private static Record getRecord(ByteBuffer buffer) {
+		Order.Builder builder = Order.Builder.values()[buffer.get()];
+		boolean perfect = (1 == buffer.get());
+		int skill = buffer.getInt();
+		int seed = buffer.getInt();
+		return new Record(new Key(builder, skill, perfect, seed), buffer.getLong(), buffer.getInt(), buffer.getInt());
+	}
+	/**
+	 * Gives the index records for the given entries.
+	 * @return a heap buffer positioned at 0
+	 */
+	private static ByteBuffer toBuffer(Collection<Record> index) {
+		ByteBuffer buffer = ByteBuffer.allocate(index.size() * RECORD_SIZE);
+		for (Record record : index) {
+			buffer.put((byte) record.key.getBuilder().ordinal());
+			buffer.put((byte) (record.key.isPerfect() ? 1 : 0));
+			buffer.putInt(record.key.getSkillLevel());
+			buffer.putInt(record.key.getSeed());
+			buffer.putLong(record.offset);
+			buffer.putInt(record.compressedSize);
+			buffer.putInt(record.size);
+		}
+		buffer.flip();
+		return buffer;
+	}
+	/**
+	 * Reads and decompresses the maze of the given record.
+	 */
+	private Maze readMaze(Record record) throws IOException {
+		ByteBuffer compressed = read(record.offset, record.compressedSize);
+		byte[] content = new byte[record.size];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed.array(), 0, record.compressedSize);
+			int n = 0;
+			while (n < content.length && !inflater.finished()) {
+				n += inflater.inflate(content, n, content.length - n);
+			}
+			if (n != content.length)
+				throw new IOException("MazeArchive: entry " + record.key + " is truncated");
+		} catch (DataFormatException dfe) {
+			throw new IOException("MazeArchive: entry " + record.key + " is corrupt", dfe);
+		} finally {
+			inflater.end();
+		}
+		MazeBinaryFileReader reader = new MazeBinaryFileReader();
+		reader.load(ByteBuffer.wrap(content));
+		return reader.getMazeConfiguration();
+	}
+	/**
+	 * Gives the maze in the binary format of MazeBinaryFileWriter.
+	 * Rooms and partiters are not kept with a maze, values are derived from the key.
+	 */
+	private static ByteBuffer store(Key key, Maze maze) {
+		int[] start = maze.getStartingPosition();
+		int rooms = (key.isPerfect()) ? 0 : Constants.SKILL_ROOMS[key.getSkillLevel()];
+		return MazeBinaryFileWriter.storeMaze(maze.getWidth(), maze.getHeight(), rooms, Constants.SKILL_PARTCT[key.getSkillLevel()],
+				maze.getRootnode(), maze.getFloorplan(), maze.getMazedists().readAllDistanceValues(), start[0], start[1], false, false);
+	}
+	/**
+	 * Compresses the content of the given heap buffer.
+	 */
+	private static ByteBuffer compress(Deflater deflater, ByteBuffer content) {
+		deflater.reset();
+		deflater.setInput(content.array(), content.position(), content.remaining());
+		deflater.finish();
+		byte[] output = new byte[Math.max(64, content.remaining() / 2)];
+		int n = 0;
+		while (!deflater.finished()) {
+			if (n == output.length)
+				output = Arrays.copyOf(output, 2 * output.length);
+			n += deflater.deflate(output, n, output.length - n);
+		}
+		return ByteBuffer.wrap(output, 0, n);
+	}
+	/**
+	 * Writes the header with the current number of entries and index offset.
+	 */
+	private void writeHeader() throws IOException {
+		write(0, toHeader(count, indexOffset));
+	}
+	/**
+	 * Gives the header for the given number of entries and index offset.
+	 * @return a heap buffer positioned at 0
+	 */
+	private static ByteBuffer toHeader(int count, long indexOffset) {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC);
+		header.putShort(VERSION);
+		header.putShort((short) 0); // reserved
+		header.putInt(count);
+		header.putLong(indexOffset);
+		header.putInt(0); // reserved
+		header.flip();
+		return header;
+	}
+	/**
+	 * Reads the given number of bytes at the given position.
+	 * @return a heap buffer positioned at 0
+	 */
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new IOException("MazeArchive: unexpected end of file");
+		}
+		buffer.flip();
+		return buffer;
+	}
+	/**
+	 * Writes the content of the given buffer at the given position.
+	 */
+	private void write(long position, ByteBuffer buffer) throws IOException {
+		write(channel, position, buffer);
+	}
+	private static void write(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+		long p = position;
+		while (buffer.hasRemaining()) {
+			p += channel.write(buffer, p);
+		}
+	}
+}
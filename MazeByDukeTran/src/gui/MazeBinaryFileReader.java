@@ -0,0 +1,533 @@
+/**
+ *
+ */
+package gui;
+
+import generation.BSPBranch;
+import generation.BSPBuilder;
+import generation.BSPLeaf;
+import generation.BSPNode;
+import generation.Distance;
+import generation.DistanceField;
+import generation.DistanceFieldService;
+import generation.Floorplan;
+import generation.Maze;
+import generation.MazeContainer;
+import generation.Order;
+import generation.Wall;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * This class provides functionality to read the content of a Maze object from a file
+ * in the binary format produced with MazeBinaryFileWriter.
+ * It offers the same get methods as MazeFileReader does for the XML format.
+ * Use {@link #isBinaryFile(String) isBinaryFile} to decide which reader to use
+ * for a given file.
+ *
+ * Files in the minimal format hold no distances and no BSP tree,
+ * both are rebuilt from the floorplan when the file is loaded.
+ * Blocks of files in the compressed format are decompressed in parallel,
+ * a block table that does not fit the file or a block whose checksum does
+ * not match is reported with an IOException.
+ * So is a header with dimensions or a starting position out of range or
+ * with more cells than the file can hold, before anything is allocated.
+ *
+ * @author Duke Tran
+ */
+public class MazeBinaryFileReader {
+	// number of bytes of a wall in a leaf: x, y, dx, dy, distance, color and flags
+	private static final int WALL_SIZE = 6 * 4 + 1;
+
+	// fields of maze configuration object
+	private int width ;
+	private int height ;
+	private int rooms ;
+	private int[][] dists ;
+	private int expected_partiters ;
+	private Floorplan cells ;
+	private int startx ;
+	private int starty ;
+	private BSPNode root ;
+	// value that determined the colors of walls, only known for the minimal format
+	private int colchange = -1 ;
+
+	/**
+	 * Constructor reads maze data from given file. The file format is the binary format produced by the MazeBinaryFileWriter class.
+	 *
+	 * @param filename with data of a Maze object
+	 * @throws UncheckedIOException if the file can not be read or does not hold a binary maze
+	 */
+	public MazeBinaryFileReader(String filename) {
+		load(filename);
+	}
+	/**
+	 * Constructor for an empty reader, use {@link #load(ByteBuffer) load} to fill it.
+	 */
+	MazeBinaryFileReader() {
+	}
+
+	/**
+	 * Tells if the given file starts with the magic number of the binary format.
+	 * @param filename of an existing file
+	 * @return true if the file is a binary maze file, false otherwise
+	 */
+	public static boolean isBinaryFile(String filename) {
+		try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+			return file.length() >= MazeBinaryFileWriter.HEADER_SIZE && MazeBinaryFileWriter.MAGIC == file.readInt();
+		} catch (IOException ioe) {
+			return false;
+		}
+	}
+
+	/**
+	 * Provides the data loaded from file wrapped in a MazeConfiguration.
+	 * @return maze configuration loaded from file
+	 */
+	Maze getMazeConfiguration() {
+		Maze mazeConfig = new MazeContainer() ;
+		mazeConfig.setHeight(getHeight());
+		mazeConfig.setWidth(getWidth());
+		mazeConfig.setFloorplan(getCells());
+		Distance dists = new Distance(getDistances()) ;
+		mazeConfig.setMazedists(dists);
+		mazeConfig.setRootnode(getRootNode());
+		mazeConfig.setStartingPosition(getStartX(), getStartY());
+		mazeConfig.setColorChange(colchange);
+		return mazeConfig;
+	}
+	/////////////////// set of straightforward get methods //////////////
+	int getWidth() {
+		return width ;
+	}
+	int getHeight() {
+		return height ;
+	}
+	int getRooms() {
+		return rooms ;
+	}
+	int[][] getDistances() {
+		return dists ;
+	}
+	int getExpectedPartiters() {
+		return expected_partiters ;
+	}
+	Floorplan getCells() {
+		return cells ;
+	}
+	int getStartX() {
+		return startx ;
+	}
+	int getStartY() {
+		return starty ;
+	}
+	BSPNode getRootNode() {
+		return root ;
+	}
+
+	/**
+	 * Method provides main functionality to read all attributes of maze object from the given file
+	 * @param filename gives the input file
+	 * @throws UncheckedIOException if the file can not be read or does not hold a binary maze
+	 */
+	private void load(String filename) {
+		try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+			FileChannel channel = file.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				// keep reading until buffer is full
+			}
+			buffer.flip();
+			load(buffer);
+		} catch (IOException ioe) {
+			// a half initialized reader must not be used, so there is nothing to return
+			throw new UncheckedIOException("MazeBinaryFileReader: can not load " + filename, ioe);
+		} catch (BufferUnderflowException e) {
+			// the header fits the file but the BSP tree is cut off
+			throw new UncheckedIOException("MazeBinaryFileReader: can not load " + filename,
+					new IOException("MazeBinaryFileReader: file is truncated", e));
+		}
+	}
+	/**
+	 * Reads all attributes of a maze object from the given buffer.
+	 * The header is checked against the size of the buffer before anything is allocated,
+	 * a buffer that ends within the BSP tree gives a BufferUnderflowException.
+	 * @param buffer is positioned at the beginning of the header
+	 * @throws IOException if the buffer does not hold a supported binary maze
+	 */
+	void load(ByteBuffer buffer) throws IOException {
+		load(buffer, null);
+	}
+	/**
+	 * Reads all attributes of a maze object from the given buffer and reports
+	 * the progress of rebuilding omitted data to the given order, as the BSPBuilder
+	 * does when a maze is generated. With an order, the rebuild also stops once the
+	 * current thread is interrupted.
+	 * @param buffer is positioned at the beginning of the header
+	 * @param order receives progress of the rebuild for the minimal format, may be null
+	 * @throws InterruptedIOException if the rebuild is interrupted
+	 * @throws IOException if the buffer does not hold a supported binary maze
+	 */
+	void load(ByteBuffer buffer, Order order) throws IOException {
+		// header
+		if (buffer.remaining() < MazeBinaryFileWriter.HEADER_SIZE)
+			throw new IOException("MazeBinaryFileReader: header is truncated");
+		if (MazeBinaryFileWriter.MAGIC != buffer.getInt())
+			throw new IOException("MazeBinaryFileReader: not a binary maze file");
+		short version = buffer.getShort();
+		if (MazeBinaryFileWriter.VERSION != version)
+			throw new IOException("MazeBinaryFileReader: unsupported version " + version);
+		int planes = buffer.get();
+		int distBytes = buffer.get();
+		width = buffer.getInt();
+		height = buffer.getInt();
+		rooms = buffer.getInt();
+		expected_partiters = buffer.getInt();
+		startx = buffer.getInt();
+		starty = buffer.getInt();
+		checkHeader(planes, distBytes, buffer.remaining());
+		if (MazeBinaryFileWriter.COMPRESSED == planes) {
+			readCompressed(inflate(buffer));
+			return;
+		}
+		cells = readCells(buffer, planes);
+		if (MazeBinaryFileWriter.DISTANCES_OMITTED == distBytes) {
+			colchange = buffer.getInt();
+			int exitX = buffer.getInt();
+			int exitY = buffer.getInt();
+			if (colchange < 0 || 255 < colchange)
+				throw new IOException("MazeBinaryFileReader: color change " + colchange + " out of range");
+			if (exitX < 0 || width <= exitX || exitY < 0 || height <= exitY)
+				throw new IOException("MazeBinaryFileReader: exit position out of range");
+			rebuild(colchange, exitX, exitY, order);
+			return;
+		}
+		dists = readDistances(buffer, distBytes);
+		root = readBSPNode(buffer);
+	}
+	/**
+	 * Checks the header before anything is allocated, such that a damaged header
+	 * neither exhausts memory nor ends in a runtime exception.
+	 * Requires that fields width, height, startx and starty have been set.
+	 * @param remaining is the number of bytes after the header
+	 * @throws IOException if the header does not fit the file
+	 */
+	private void checkHeader(int planes, int distBytes, int remaining) throws IOException {
+		if (width <= 0 || height <= 0)
+			throw new IOException("MazeBinaryFileReader: dimensions " + width + "x" + height + " out of range");
+		if (startx < 0 || width <= startx || starty < 0 || height <= starty)
+			throw new IOException("MazeBinaryFileReader: starting position out of range");
+		if (MazeBinaryFileWriter.COMPRESSED == planes) {
+			// the block table is checked by inflate, sizes by readCompressed
+			return;
+		}
+		if (planes < 0 || 32 < planes)
+			throw new IOException("MazeBinaryFileReader: number of bitplanes " + planes + " out of range");
+		final long cellCount = (long) width * height;
+		long size = (MazeBinaryFileWriter.CELLS_UNPACKED == planes) ? 4 * cellCount : planes * ((cellCount + 7) / 8);
+		if (MazeBinaryFileWriter.DISTANCES_OMITTED == distBytes)
+			size += 3 * 4; // color change and exit position
+		else if (1 == distBytes || 2 == distBytes || 4 == distBytes)
+			size += distBytes * cellCount + 1; // at least the tag of the root
+		else
+			throw new IOException("MazeBinaryFileReader: bytes per distance " + distBytes + " out of range");
+		if (remaining < size)
+			throw new IOException("MazeBinaryFileReader: file is truncated, " + size + " bytes expected after the header, "
+					+ remaining + " found");
+	}
+	/**
+	 * Computes distances and the BSP tree for a file in the minimal format.
+	 * Distances come from a single breadth-first search from the exit,
+	 * the BSP tree is built with independent subtrees in parallel.
+	 * Requires that fields width, height, expected_partiters and cells have been set.
+	 * @param colchange is the color change value for walls
+	 * @param exitX is the x coordinate of the exit
+	 * @param exitY is the y coordinate of the exit
+	 * @param order receives progress of building the BSP tree, may be null
+	 * @throws InterruptedIOException if the rebuild is interrupted
+	 */
+	private void rebuild(int colchange, int exitX, int exitY, Order order) throws IOException {
+		// Distance counts the exit as 1, the distance field counts the goal as 0
+		DistanceField field = DistanceFieldService.computeDistanceField(cells, exitX, exitY);
+		dists = new int[width][height];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int distance = field.getDistance(x, y);
+				// a cell that is cut off from the exit keeps its infinite distance
+				dists[x][y] = (Integer.MAX_VALUE == distance) ? Integer.MAX_VALUE : distance + 1;
+			}
+		}
+		BSPBuilder builder = new BSPBuilder(order, new Distance(dists), cells, width, height, colchange, expected_partiters);
+		try {
+			root = builder.generateBSPNodes(true);
+		} catch (InterruptedException e) {
+			// keep the thread marked as interrupted for the caller that cancelled the load
+			Thread.currentThread().interrupt();
+			InterruptedIOException interrupted = new InterruptedIOException("MazeBinaryFileReader: rebuild of BSP tree interrupted");
+			interrupted.initCause(e);
+			throw interrupted;
+		}
+	}
+	/**
+	 * Checks and decompresses all blocks of a compressed file in parallel.
+	 * @param buffer is positioned after the header, it is positioned after the last block on return
+	 * @return the uncompressed content
+	 * @throws IOException if the block table or a block is corrupted
+	 */
+	static ByteBuffer inflate(ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() < 3 * 4)
+			throw new IOException("MazeBinaryFileReader: block table is truncated");
+		final int blockSize = buffer.getInt();
+		final int length = buffer.getInt();
+		final int count = buffer.getInt();
+		// the table comes before any allocation, a corrupted table must not exhaust memory
+		if (blockSize <= 0 || length < 0 || count != ((long) length + blockSize - 1) / blockSize)
+			throw new IOException("MazeBinaryFileReader: block table is corrupted, block size " + blockSize
+					+ ", length " + length + ", " + count + " blocks");
+		if (buffer.remaining() < (long) count * 2 * 4)
+			throw new IOException("MazeBinaryFileReader: block table is truncated, " + count + " blocks");
+		final byte[] content = new byte[length];
+		ArrayList<ForkJoinTask<Void>> blocks = new ArrayList<ForkJoinTask<Void>>(count);
+		int position = buffer.position() + count * 2 * 4;
+		for (int i = 0; i < count; i++) {
+			final int block = i;
+			final int offset = position;
+			final int size = buffer.getInt();
+			final int crc = buffer.getInt();
+			if (size < 0 || buffer.limit() - offset < size)
+				throw new IOException("MazeBinaryFileReader: block " + block + " is corrupted, size " + size
+						+ " at offset " + offset + " exceeds the file");
+			blocks.add(ForkJoinTask.adapt(() -> {
+				inflate(buffer, block, offset, size, crc, content, block * blockSize, Math.min(blockSize, length - block * blockSize));
+				return null;
+			}));
+			position += size;
+		}
+		try {
+			ForkJoinTask.invokeAll(blocks);
+		} catch (RuntimeException e) {
+			// checked exceptions of blocks are wrapped, possibly twice if rethrown in another thread
+			for (Throwable cause = e.getCause(); null != cause; cause = cause.getCause()) {
+				if (cause instanceof IOException)
+					throw (IOException) cause;
+			}
+			throw e;
+		}
+		buffer.position(position);
+		return ByteBuffer.wrap(content);
+	}
+	/**
+	 * Checks and decompresses a single block into its range of the content.
+	 * @param buffer holds the compressed file, its position is not changed
+	 * @param block is the number of the block
+	 * @param offset is the position of the block in the buffer
+	 * @param size is the number of compressed bytes
+	 * @param crc is the expected checksum of the compressed bytes
+	 * @param content receives the uncompressed bytes
+	 * @param start is the position of the block in the content
+	 * @param length is the number of uncompressed bytes
+	 * @throws IOException if the checksum does not match or the block does not decompress to the expected length
+	 */
+	private static void inflate(ByteBuffer buffer, int block, int offset, int size, int crc, byte[] content, int start, int length)
+			throws IOException {
+		byte[] data = new byte[size];
+		ByteBuffer source = buffer.duplicate();
+		source.position(offset);
+		source.get(data);
+		CRC32 checksum = new CRC32();
+		checksum.update(data, 0, size);
+		if (crc != (int) checksum.getValue())
+			throw new IOException("MazeBinaryFileReader: block " + block + " is corrupted, checksum does not match");
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data);
+			int n = 0;
+			while (n < length && !inflater.finished() && !inflater.needsInput()) {
+				n += inflater.inflate(content, start + n, length - n);
+			}
+			if (n != length || !inflater.finished())
+				throw new IOException("MazeBinaryFileReader: block " + block + " is corrupted, wrong length");
+		} catch (DataFormatException e) {
+			throw new IOException("MazeBinaryFileReader: block " + block + " is corrupted", e);
+		} finally {
+			inflater.end();
+		}
+	}
+	/**
+	 * Reads the uncompressed content of a compressed file.
+	 * Requires that fields width and height have been set.
+	 * @throws IOException if the content does not fit width and height
+	 */
+	private void readCompressed(ByteBuffer content) throws IOException {
+		// cells as indices into a dictionary of values
+		final int count = (content.remaining() < 4) ? -1 : content.getInt();
+		if (count <= 0 || content.remaining() / 4 < count)
+			throw new IOException("MazeBinaryFileReader: dictionary of " + count + " cell values does not fit the file");
+		int[] values = new int[count];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = content.getInt();
+		}
+		final int indexBytes = MazeBinaryFileWriter.getBytesPerIndex(values.length);
+		// an index and at least one byte for the distance of each cell, at least the tag of the root
+		if (content.remaining() < (long) width * height * (indexBytes + 1) + 1)
+			throw new IOException("MazeBinaryFileReader: content is truncated for " + width + "x" + height + " cells");
+		int[][] cellValue = new int[width][height];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				final int index = (1 == indexBytes) ? content.get() & 0xFF : content.getShort() & 0xFFFF;
+				if (values.length <= index)
+					throw new IOException("MazeBinaryFileReader: cell value " + index + " is not in the dictionary");
+				cellValue[x][y] = values[index];
+			}
+		}
+		cells = new Floorplan(cellValue);
+		// distances as differences to the previous value
+		dists = new int[width][height];
+		int previous = 0;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				previous += getVarInt(content);
+				dists[x][y] = previous;
+			}
+		}
+		root = readBSPNode(content);
+	}
+	/**
+	 * Reads a signed number as stored by MazeBinaryFileWriter.putVarInt.
+	 */
+	static int getVarInt(ByteBuffer buffer) {
+		int bits = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			bits |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return (bits >>> 1) ^ -(bits & 1);
+	}
+	/**
+	 * Reads the floorplan from its bitplanes.
+	 * Requires that fields width and height have been set.
+	 */
+	private Floorplan readCells(ByteBuffer buffer, int planes) {
+		int[][] cellValue = new int[width][height];
+		if (MazeBinaryFileWriter.CELLS_UNPACKED == planes) {
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++) {
+					cellValue[x][y] = buffer.getInt();
+				}
+			}
+		}
+		for (int plane = 0; plane < planes; plane++) {
+			int current = 0;
+			int bits = 8;
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++) {
+					if (bits == 8) {
+						current = buffer.get();
+						bits = 0;
+					}
+					cellValue[x][y] |= ((current >>> bits++) & 1) << plane;
+				}
+			}
+		}
+		return new Floorplan(cellValue);
+	}
+	/**
+	 * Reads distance values that are stored as unsigned numbers with the given number of bytes.
+	 * Requires that fields width and height have been set.
+	 */
+	private int[][] readDistances(ByteBuffer buffer, int distBytes) {
+		int[][] result = new int[width][height];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				switch (distBytes) {
+				case 1:
+					result[x][y] = buffer.get() & 0xFF;
+					break;
+				case 2:
+					result[x][y] = buffer.getShort() & 0xFFFF;
+					break;
+				default:
+					result[x][y] = buffer.getInt();
+					break;
+				}
+			}
+		}
+		return result;
+	}
+	/**
+	 * Reads a BSPNode and its subtree in preorder.
+	 * @return a new BSPNode, fully initialized with all necessary data, null for an empty subtree
+	 */
+	static BSPNode readBSPNode(ByteBuffer buffer) {
+		byte tag = buffer.get();
+		if (MazeBinaryFileWriter.TAG_NONE == tag)
+			return null;
+		if (MazeBinaryFileWriter.TAG_LEAF_INDEXED == tag || MazeBinaryFileWriter.TAG_BRANCH_INDEXED == tag) {
+			// bounds are recomputed by the constructors
+			buffer.position(buffer.position() + 4 * 4);
+		}
+		if (MazeBinaryFileWriter.TAG_LEAF == tag || MazeBinaryFileWriter.TAG_LEAF_INDEXED == tag)
+			return new BSPLeaf(readWalls(buffer));
+		int x = buffer.getInt();
+		int y = buffer.getInt();
+		int dx = buffer.getInt();
+		int dy = buffer.getInt();
+		if (MazeBinaryFileWriter.TAG_BRANCH_INDEXED == tag) {
+			// offset of right child is not needed as it follows the left subtree
+			buffer.getInt();
+		}
+		// read left branch before right branch
+		BSPNode l = readBSPNode(buffer);
+		BSPNode r = readBSPNode(buffer);
+		return new BSPBranch(x, y, dx, dy, l, r);
+	}
+	/**
+	 * Reads the list of walls of a leaf node.
+	 */
+	static ArrayList<Wall> readWalls(ByteBuffer buffer) {
+		return readWalls(buffer, null);
+	}
+	/**
+	 * Reads the list of walls of a leaf node of a lazily loaded tree.
+	 * @param seenWalls holds the positions of walls that have been seen, null for plain walls
+	 */
+	static ArrayList<Wall> readWalls(ByteBuffer buffer, Set<Integer> seenWalls) {
+		int n = buffer.getInt();
+		// a corrupted count must not exhaust memory, reading walls beyond the buffer fails anyway
+		ArrayList<Wall> slist = new ArrayList<Wall>(Math.max(0, Math.min(n, buffer.remaining() / WALL_SIZE)));
+		for (int i = 0; i < n; i++) {
+			int position = buffer.position();
+			int x = buffer.getInt();
+			int y = buffer.getInt();
+			int dx = buffer.getInt();
+			int dy = buffer.getInt();
+			int dist = buffer.getInt();
+			int col = buffer.getInt();
+			int flags = buffer.get();
+			// color is explicitly set below
+			Wall wall = (null == seenWalls) ? new Wall(x, y, dx, dy, dist, 0) :
+				new LazyBSPLeaf.SeenWall(x, y, dx, dy, dist, seenWalls, position);
+			wall.setColor(col);
+			wall.setPartition(0 != (flags & MazeBinaryFileWriter.FLAG_PARTITION));
+			boolean seen = 0 != (flags & MazeBinaryFileWriter.FLAG_SEEN);
+			wall.setSeen(seen || (null != seenWalls && seenWalls.contains(position)));
+			slist.add(wall);
+		}
+		return slist;
+	}
+}
@@ -0,0 +1,655 @@
+/**
+ *
+ */
+package gui;
+
+import generation.BSPBranch;
+import generation.BSPLeaf;
+import generation.BSPNode;
+import generation.Distance;
+import generation.Floorplan;
+import generation.Wall;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * This class provides functionality to write a maze configuration to a file in a compact binary format.
+ * It stores the same information as MazeFileWriter does with XML,
+ * but a skill level 15 maze takes a few hundred kilobytes instead of megabytes
+ * and can be read back without parsing.
+ *
+ * The file layout is as follows, all numbers are in big endian byte order:
+ * <ol>
+ * <li>a header of {@link #HEADER_SIZE} bytes: magic number, version, number of bitplanes,
+ * bytes per distance value, width, height, rooms, partiters, startX, startY</li>
+ * <li>the floorplan as bitplanes, one bit per cell and plane, cells in the order x*height+y,
+ * each plane padded to full bytes</li>
+ * <li>distance values in the order x*height+y with 1, 2 or 4 bytes per value</li>
+ * <li>the BSP tree in preorder, each node starts with a tag byte,
+ * branches continue with x, y, dx, dy, leaves with the number of walls followed
+ * by x, y, dx, dy, distance, color and a flags byte for each wall</li>
+ * </ol>
+ * Bounds of BSP nodes are not stored as they are recomputed by the BSPNode constructors.
+ *
+ * With an indexed tree, each node additionally stores its bounds after the tag byte
+ * and each branch stores the offset of its right child in the file after x, y, dx, dy.
+ * This allows to load a single node without its subtrees, see LazyBSPBranch.
+ *
+ * A file with a fixed layout stores 0 as the number of bitplanes, each cell value
+ * as a 4 byte integer and 4 bytes per distance value. Cells start at offset
+ * {@link #HEADER_SIZE} and distances directly after the cells, so both can be
+ * accessed in place, see MazeMappedFileReader.
+ *
+ * A minimal file stores 0 as the number of bytes per distance value and omits
+ * distances and the BSP tree, which can both be derived from the floorplan.
+ * The bitplanes are followed by the color change value that was used for walls
+ * and the exit position. MazeBinaryFileReader rebuilds the omitted data on load,
+ * which trades a much smaller file for more work when loading.
+ *
+ * A compressed file stores {@link #COMPRESSED} as the number of bitplanes and as
+ * the number of bytes per distance value. The header is followed by the block size,
+ * the total number of uncompressed bytes, the number of blocks, and for each block
+ * its compressed length and the CRC32 checksum of its compressed bytes.
+ * Then follow the blocks, each compressed on its own with a Deflater such that
+ * blocks can be checked and decompressed in parallel. Uncompressed, the content is
+ * a dictionary of all distinct cell values with the index of each cell's value
+ * in 1 or 2 bytes, distances as differences to the previous value in the order
+ * x*height+y with a variable number of bytes, and the BSP tree as in the default layout.
+ * As with MazeFileWriter, all methods are static.
+ *
+ * @author Duke Tran
+ */
+public class MazeBinaryFileWriter {
+	/**
+	 * Magic number at the beginning of each binary maze file, reads as "MAZB".
+	 */
+	public static final int MAGIC = 0x4D415A42;
+	/**
+	 * Version of the file layout, to be increased with each incompatible change.
+	 */
+	public static final short VERSION = 1;
+	/**
+	 * Number of bytes in the header.
+	 */
+	public static final int HEADER_SIZE = 32;
+	/**
+	 * Number of bitplanes in the header of a file with a fixed layout.
+	 */
+	public static final byte CELLS_UNPACKED = 0;
+	/**
+	 * Number of bytes per distance value in the header of a minimal file.
+	 */
+	public static final byte DISTANCES_OMITTED = 0;
+	/**
+	 * Number of bitplanes and of bytes per distance value in the header of a compressed file.
+	 */
+	public static final byte COMPRESSED = -1;
+	/**
+	 * Number of uncompressed bytes per block in a compressed file.
+	 */
+	static final int BLOCK_SIZE = 1 << 16;
+	// tags for nodes of the BSP tree
+	static final byte TAG_LEAF = 0;
+	static final byte TAG_BRANCH = 1;
+	static final byte TAG_NONE = 2;
+	static final byte TAG_LEAF_INDEXED = 3;
+	static final byte TAG_BRANCH_INDEXED = 4;
+	// bits in the flags byte of a wall
+	static final int FLAG_PARTITION = 1;
+	static final int FLAG_SEEN = 2;
+
+	/**
+	 * Write maze content to a file
+	 */
+	public static void store(String filename, int width, int height, int rooms, int expected_partiters, BSPNode root, Floorplan cells, int[][] dists, int startX, int startY)
+	{
+		store(filename, width, height, rooms, expected_partiters, root, cells, dists, startX, startY, false);
+	}
+	/**
+	 * Write maze content to a file
+	 * @param fixedLayout selects the fixed layout with 4 bytes per cell and distance value
+	 * that can be memory mapped, otherwise cells and distances are packed
+	 */
+	public static void store(String filename, int width, int height, int rooms, int expected_partiters, BSPNode root, Floorplan cells, int[][] dists, int startX, int startY, boolean fixedLayout)
+	{
+		store(filename, width, height, rooms, expected_partiters, root, cells, dists, startX, startY, fixedLayout, false);
+	}
+	/**
+	 * Write maze content to a file
+	 * @param fixedLayout selects the fixed layout with 4 bytes per cell and distance value
+	 * that can be memory mapped, otherwise cells and distances are packed
+	 * @param indexedTree selects the BSP tree with bounds and offsets that can be loaded on demand
+	 */
+	public static void store(String filename, int width, int height, int rooms, int expected_partiters, BSPNode root, Floorplan cells, int[][] dists, int startX, int startY,
+			boolean fixedLayout, boolean indexedTree)
+	{
+		write(filename, storeMaze(width, height, rooms, expected_partiters, root, cells, dists, startX, startY, fixedLayout, indexedTree));
+	}
+	/**
+	 * Write maze content to a file in the minimal format that omits distances and the BSP tree.
+	 * @param colorChange is the value that determined the colors of walls, see Maze.getColorChange,
+	 * -1 if it is not known, then walls get the colors of value 0 when the file is loaded
+	 */
+	public static void storeMinimal(String filename, int width, int height, int rooms, int expected_partiters, int colorChange, Floorplan cells, int[][] dists, int startX, int startY)
+	{
+		write(filename, storeMinimalMaze(width, height, rooms, expected_partiters, colorChange, cells, dists, startX, startY));
+	}
+	/**
+	 * Write maze content to a file in the compressed format.
+	 */
+	public static void storeCompressed(String filename, int width, int height, int rooms, int expected_partiters, BSPNode root, Floorplan cells, int[][] dists, int startX, int startY)
+	{
+		write(filename, storeCompressedMaze(width, height, rooms, expected_partiters, root, cells, dists, startX, startY, BLOCK_SIZE));
+	}
+	/**
+	 * Writes the content of the given buffer to a file, an existing file is overwritten.
+	 */
+	private static void write(String filename, ByteBuffer buffer) {
+		try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+			FileChannel channel = file.getChannel();
+			channel.truncate(0);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+		}
+	}
+	/**
+	 * Store given objects in a buffer that has exactly the size needed.
+	 * @return buffer positioned at 0 with the file content
+	 */
+	static ByteBuffer storeMaze(int width, int height, int rooms,
+			int expected_partiters, BSPNode root, Floorplan cells, int[][] dists,
+			int startX, int startY, boolean fixedLayout, boolean indexedTree) {
+		final int planes = (fixedLayout) ? CELLS_UNPACKED : getNumberOfPlanes(width, height, cells);
+		final int distBytes = (fixedLayout) ? 4 : getBytesPerDistance(width, height, dists);
+		final int cellSize = (fixedLayout) ? width * height * 4 : planes * getPlaneSize(width, height);
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + cellSize
+				+ width * height * distBytes + getSize(root, indexedTree));
+		putHeader(buffer, planes, distBytes, width, height, rooms, expected_partiters, startX, startY);
+		// floorplan, either unpacked or one bitplane after the other
+		if (fixedLayout) {
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++) {
+					buffer.putInt(cells.getValueOfCell(x, y));
+				}
+			}
+		}
+		putBitplanes(buffer, planes, width, height, cells);
+		// distances
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				switch (distBytes) {
+				case 1:
+					buffer.put((byte) dists[x][y]);
+					break;
+				case 2:
+					buffer.putShort((short) dists[x][y]);
+					break;
+				default:
+					buffer.putInt(dists[x][y]);
+					break;
+				}
+			}
+		}
+		// BSP nodes
+		if (null == root)
+			System.out.println("MazeBinaryFileWriter.store: root node of BSP tree is null");
+		if (indexedTree)
+			storeIndexedBSPNode(buffer, root);
+		else
+			storeBSPNode(buffer, root);
+		assert (!buffer.hasRemaining()) : "MazeBinaryFileWriter: size computation does not match content";
+		buffer.flip();
+		return buffer;
+	}
+	/**
+	 * Store given objects in the minimal format in a buffer that has exactly the size needed.
+	 * @return buffer positioned at 0 with the file content
+	 */
+	static ByteBuffer storeMinimalMaze(int width, int height, int rooms,
+			int expected_partiters, int colorChange, Floorplan cells, int[][] dists,
+			int startX, int startY) {
+		final int planes = getNumberOfPlanes(width, height, cells);
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + planes * getPlaneSize(width, height) + 3 * 4);
+		putHeader(buffer, planes, DISTANCES_OMITTED, width, height, rooms, expected_partiters, startX, startY);
+		putBitplanes(buffer, planes, width, height, cells);
+		// data to rebuild distances and BSP tree
+		int colchange = colorChange;
+		if (colchange < 0) {
+			System.out.println("MazeBinaryFileWriter.storeMinimal: color change value of walls is not known, using 0");
+			colchange = 0;
+		}
+		int[] exit = new Distance(dists).getExitPosition();
+		buffer.putInt(colchange);
+		buffer.putInt(exit[0]);
+		buffer.putInt(exit[1]);
+		assert (!buffer.hasRemaining()) : "MazeBinaryFileWriter: size computation does not match content";
+		buffer.flip();
+		return buffer;
+	}
+	/**
+	 * Store given objects in the compressed format in a buffer that has exactly the size needed.
+	 * @param blockSize is the number of uncompressed bytes per block
+	 * @return buffer positioned at 0 with the file content
+	 */
+	static ByteBuffer storeCompressedMaze(int width, int height, int rooms,
+			int expected_partiters, BSPNode root, Floorplan cells, int[][] dists,
+			int startX, int startY, int blockSize) {
+		if (null == root)
+			System.out.println("MazeBinaryFileWriter.storeCompressed: root node of BSP tree is null");
+		final byte[] content = encode(width, height, root, cells, dists);
+		final int count = (content.length + blockSize - 1) / blockSize;
+		// blocks are independent of each other, compress them in parallel
+		ArrayList<ForkJoinTask<byte[]>> blocks = new ArrayList<ForkJoinTask<byte[]>>(count);
+		for (int i = 0; i < count; i++) {
+			final int offset = i * blockSize;
+			final int length = Math.min(blockSize, content.length - offset);
+			blocks.add(ForkJoinTask.adapt(() -> deflate(content, offset, length)));
+		}
+		ForkJoinTask.invokeAll(blocks);
+		int size = HEADER_SIZE + 3 * 4 + count * 2 * 4;
+		for (ForkJoinTask<byte[]> block : blocks) {
+			size += block.join().length;
+		}
+		final ByteBuffer buffer = ByteBuffer.allocate(size);
+		putHeader(buffer, COMPRESSED, COMPRESSED, width, height, rooms, expected_partiters, startX, startY);
+		buffer.putInt(blockSize);
+		buffer.putInt(content.length);
+		buffer.putInt(count);
+		CRC32 crc = new CRC32();
+		for (ForkJoinTask<byte[]> block : blocks) {
+			byte[] data = block.join();
+			crc.reset();
+			crc.update(data, 0, data.length);
+			buffer.putInt(data.length);
+			buffer.putInt((int) crc.getValue());
+		}
+		for (ForkJoinTask<byte[]> block : blocks) {
+			buffer.put(block.join());
+		}
+		assert (!buffer.hasRemaining()) : "MazeBinaryFileWriter: size computation does not match content";
+		buffer.flip();
+		return buffer;
+	}
+	/**
+	 * Encodes cells with a dictionary, distances as differences and the BSP tree
+	 * as in the default layout, this is the uncompressed content of a compressed file.
+	 * @return the encoded content
+	 */
+	private static byte[] encode(int width, int height, BSPNode root, Floorplan cells, int[][] dists) {
+		// dictionary of cell values, the bits in use allow for at most a few hundred distinct values
+		HashMap<Integer, Integer> index = new HashMap<Integer, Integer>();
+		ArrayList<Integer> values = new ArrayList<Integer>();
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				Integer value = cells.getValueOfCell(x, y);
+				if (!index.containsKey(value)) {
+					index.put(value, values.size());
+					values.add(value);
+				}
+			}
+		}
+		assert (values.size() <= 0x10000) : "MazeBinaryFileWriter: too many distinct cell values";
+		final int indexBytes = getBytesPerIndex(values.size());
+		// variable length numbers take at most 5 bytes
+		final ByteBuffer buffer = ByteBuffer.allocate(4 + values.size() * 4
+				+ width * height * (indexBytes + 5) + getSize(root, false));
+		buffer.putInt(values.size());
+		for (int value : values) {
+			buffer.putInt(value);
+		}
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int i = index.get(cells.getValueOfCell(x, y));
+				if (1 == indexBytes)
+					buffer.put((byte) i);
+				else
+					buffer.putShort((short) i);
+			}
+		}
+		// neighbors mostly differ by one, so differences fit into a single byte
+		int previous = 0;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				putVarInt(buffer, dists[x][y] - previous);
+				previous = dists[x][y];
+			}
+		}
+		storeBSPNode(buffer, root);
+		byte[] content = new byte[buffer.position()];
+		buffer.flip();
+		buffer.get(content);
+		return content;
+	}
+	/**
+	 * Compresses a range of the given content.
+	 * @return the compressed bytes
+	 */
+	private static byte[] deflate(byte[] content, int offset, int length) {
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		deflater.setInput(content, offset, length);
+		deflater.finish();
+		// incompressible data grows by a few bytes per 16K
+		byte[] output = new byte[length + length / 1000 + 64];
+		int size = 0;
+		while (!deflater.finished()) {
+			if (size == output.length)
+				output = Arrays.copyOf(output, 2 * output.length);
+			size += deflater.deflate(output, size, output.length - size);
+		}
+		deflater.end();
+		return Arrays.copyOf(output, size);
+	}
+	/**
+	 * Stores a signed number in zigzag encoding with 7 bits per byte,
+	 * the highest bit of a byte tells if more bytes follow.
+	 */
+	static void putVarInt(ByteBuffer buffer, int value) {
+		int bits = (value << 1) ^ (value >> 31);
+		while ((bits & ~0x7F) != 0) {
+			buffer.put((byte) ((bits & 0x7F) | 0x80));
+			bits >>>= 7;
+		}
+		buffer.put((byte) bits);
+	}
+	/**
+	 * Gives the number of bytes for an index into a dictionary of the given size, 1 or 2.
+	 */
+	static int getBytesPerIndex(int size) {
+		return (size <= 0x100) ? 1 : 2;
+	}
+	/**
+	 * Stores the header.
+	 */
+	private static void putHeader(ByteBuffer buffer, int planes, int distBytes, int width, int height,
+			int rooms, int expected_partiters, int startX, int startY) {
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.put((byte) planes);
+		buffer.put((byte) distBytes);
+		buffer.putInt(width);
+		buffer.putInt(height);
+		buffer.putInt(rooms);
+		buffer.putInt(expected_partiters);
+		buffer.putInt(startX);
+		buffer.putInt(startY);
+	}
+	/**
+	 * Stores the floorplan one bitplane after the other.
+	 */
+	private static void putBitplanes(ByteBuffer buffer, int planes, int width, int height, Floorplan cells) {
+		for (int plane = 0; plane < planes; plane++) {
+			int current = 0;
+			int bits = 0;
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++) {
+					current |= ((cells.getValueOfCell(x, y) >>> plane) & 1) << bits;
+					if (++bits == 8) {
+						buffer.put((byte) current);
+						current = 0;
+						bits = 0;
+					}
+				}
+			}
+			if (bits > 0)
+				buffer.put((byte) current);
+		}
+	}
+	/**
+	 * Converts a maze file in the XML format of MazeFileWriter into the binary format.
+	 * @param xmlFilename is the name of the existing XML file
+	 * @param binaryFilename is the name of the binary file to write
+	 */
+	public static void convert(String xmlFilename, String binaryFilename) {
+		convert(xmlFilename, binaryFilename, false);
+	}
+	/**
+	 * Converts a maze file in the XML format of MazeFileWriter into the binary format.
+	 * @param xmlFilename is the name of the existing XML file
+	 * @param binaryFilename is the name of the binary file to write
+	 * @param fixedLayout selects the fixed layout that can be memory mapped
+	 */
+	public static void convert(String xmlFilename, String binaryFilename, boolean fixedLayout) {
+		convert(xmlFilename, binaryFilename, fixedLayout, false);
+	}
+	/**
+	 * Converts a maze file in the XML format of MazeFileWriter into the binary format.
+	 * @param xmlFilename is the name of the existing XML file
+	 * @param binaryFilename is the name of the binary file to write
+	 * @param fixedLayout selects the fixed layout that can be memory mapped
+	 * @param indexedTree selects the BSP tree that can be loaded on demand
+	 */
+	public static void convert(String xmlFilename, String binaryFilename, boolean fixedLayout, boolean indexedTree) {
+		MazeFileStreamReader mfr = new MazeFileStreamReader(xmlFilename);
+		store(binaryFilename, mfr.getWidth(), mfr.getHeight(), mfr.getRooms(), mfr.getExpectedPartiters(),
+				mfr.getRootNode(), mfr.getCells(), mfr.getDistances(), mfr.getStartX(), mfr.getStartY(), fixedLayout, indexedTree);
+	}
+	/**
+	 * Converts a maze file in the XML format of MazeFileWriter into the minimal binary format.
+	 * XML files do not keep the color change value of walls, so walls
+	 * get the colors of value 0 when the minimal file is loaded.
+	 * @param xmlFilename is the name of the existing XML file
+	 * @param binaryFilename is the name of the binary file to write
+	 */
+	public static void convertMinimal(String xmlFilename, String binaryFilename) {
+		MazeFileStreamReader mfr = new MazeFileStreamReader(xmlFilename);
+		storeMinimal(binaryFilename, mfr.getWidth(), mfr.getHeight(), mfr.getRooms(), mfr.getExpectedPartiters(),
+				-1, mfr.getCells(), mfr.getDistances(), mfr.getStartX(), mfr.getStartY());
+	}
+	/**
+	 * Converts a maze file in the XML format of MazeFileWriter into the compressed binary format.
+	 * @param xmlFilename is the name of the existing XML file
+	 * @param binaryFilename is the name of the binary file to write
+	 */
+	public static void convertCompressed(String xmlFilename, String binaryFilename) {
+		MazeFileStreamReader mfr = new MazeFileStreamReader(xmlFilename);
+		storeCompressed(binaryFilename, mfr.getWidth(), mfr.getHeight(), mfr.getRooms(), mfr.getExpectedPartiters(),
+				mfr.getRootNode(), mfr.getCells(), mfr.getDistances(), mfr.getStartX(), mfr.getStartY());
+	}
+	/**
+	 * Converts XML maze files into the binary format.
+	 * @param args are pairs of filenames, an XML input file followed by a binary output file,
+	 * optionally preceded by -fixed to select the fixed layout, -indexed to select the indexed tree,
+	 * -minimal to select the minimal format, -compressed to select the compressed format
+	 * and -timings to report size and load time of the full, the minimal and the compressed format
+	 */
+	public static void main(String[] args) {
+		boolean fixedLayout = false;
+		boolean indexedTree = false;
+		boolean minimal = false;
+		boolean compressed = false;
+		boolean timings = false;
+		int first = 0;
+		for (; first < args.length && args[first].startsWith("-"); first++) {
+			if ("-fixed".equals(args[first]))
+				fixedLayout = true;
+			else if ("-indexed".equals(args[first]))
+				indexedTree = true;
+			else if ("-minimal".equals(args[first]))
+				minimal = true;
+			else if ("-compressed".equals(args[first]))
+				compressed = true;
+			else if ("-timings".equals(args[first]))
+				timings = true;
+			else
+				break;
+		}
+		if (args.length == first || (args.length - first) % 2 != 0 || ((minimal || compressed) && (fixedLayout || indexedTree)) || (minimal && compressed)) {
+			System.err.println("Usage: MazeBinaryFileWriter [-fixed] [-indexed] [-timings] input.xml output.mazb [input.xml output.mazb ...]");
+			System.err.println("       MazeBinaryFileWriter -minimal [-timings] input.xml output.mazb [input.xml output.mazb ...]");
+			System.err.println("       MazeBinaryFileWriter -compressed [-timings] input.xml output.mazb [input.xml output.mazb ...]");
+			return;
+		}
+		for (int i = first; i < args.length; i += 2) {
+			if (minimal)
+				convertMinimal(args[i], args[i+1]);
+			else if (compressed)
+				convertCompressed(args[i], args[i+1]);
+			else
+				convert(args[i], args[i+1], fixedLayout, indexedTree);
+			System.out.println("MazeBinaryFileWriter: converted " + args[i] + " to " + args[i+1]);
+			if (timings)
+				printTimings(args[i]);
+		}
+	}
+	/**
+	 * Prints size and load time of the full, the minimal and the compressed binary format for the given maze.
+	 * Both formats are loaded from memory such that timings do not depend on the file system.
+	 * @param xmlFilename is the name of the existing XML file
+	 */
+	private static void printTimings(String xmlFilename) {
+		MazeFileStreamReader mfr = new MazeFileStreamReader(xmlFilename);
+		ByteBuffer full = storeMaze(mfr.getWidth(), mfr.getHeight(), mfr.getRooms(), mfr.getExpectedPartiters(),
+				mfr.getRootNode(), mfr.getCells(), mfr.getDistances(), mfr.getStartX(), mfr.getStartY(), false, false);
+		ByteBuffer minimal = storeMinimalMaze(mfr.getWidth(), mfr.getHeight(), mfr.getRooms(), mfr.getExpectedPartiters(),
+				-1, mfr.getCells(), mfr.getDistances(), mfr.getStartX(), mfr.getStartY());
+		ByteBuffer compressed = storeCompressedMaze(mfr.getWidth(), mfr.getHeight(), mfr.getRooms(), mfr.getExpectedPartiters(),
+				mfr.getRootNode(), mfr.getCells(), mfr.getDistances(), mfr.getStartX(), mfr.getStartY(), BLOCK_SIZE);
+		printTiming("full", full);
+		printTiming("minimal", minimal);
+		printTiming("compressed", compressed);
+	}
+	/**
+	 * Loads the given file content and prints its size and the time it took.
+	 */
+	private static void printTiming(String format, ByteBuffer content) {
+		final int size = content.remaining();
+		long start = System.nanoTime();
+		try {
+			new MazeBinaryFileReader().load(content);
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+			return;
+		}
+		long millis = (System.nanoTime() - start) / 1000000;
+		System.out.println("MazeBinaryFileWriter: " + format + " format has " + size + " bytes, loading takes " + millis + " ms");
+	}
+	/**
+	 * Gives the number of bytes for a single bitplane.
+	 */
+	static int getPlaneSize(int width, int height) {
+		return (width * height + 7) / 8;
+	}
+	/**
+	 * Gives the number of bitplanes that are needed to store all bits that are set in cells.
+	 */
+	private static int getNumberOfPlanes(int width, int height, Floorplan cells) {
+		int bits = 0;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				bits |= cells.getValueOfCell(x, y);
+			}
+		}
+		return 32 - Integer.numberOfLeadingZeros(bits);
+	}
+	/**
+	 * Gives the number of bytes that suffice to store each distance value as an unsigned number,
+	 * one of 1, 2 or 4.
+	 */
+	private static int getBytesPerDistance(int width, int height, int[][] dists) {
+		int max = 0;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				if (dists[x][y] < 0)
+					return 4;
+				max = Math.max(max, dists[x][y]);
+			}
+		}
+		if (max <= 0xFF)
+			return 1;
+		if (max <= 0xFFFF)
+			return 2;
+		return 4;
+	}
+	/**
+	 * Gives the number of bytes needed to store the given subtree.
+	 * @param indexed tells if bounds and offsets are included
+	 */
+	private static int getSize(BSPNode node, boolean indexed) {
+		if (null == node)
+			return 1;
+		final int bounds = (indexed) ? 4 * 4 : 0;
+		if (node.isIsleaf())
+			return 1 + bounds + 4 + ((BSPLeaf) node).getSlist().size() * (6 * 4 + 1);
+		BSPBranch b = (BSPBranch) node;
+		final int offset = (indexed) ? 4 : 0;
+		return 1 + bounds + 4 * 4 + offset + getSize(b.getLeftBranch(), indexed) + getSize(b.getRightBranch(), indexed);
+	}
+	/**
+	 * Stores the given subtree in preorder.
+	 */
+	private static void storeBSPNode(ByteBuffer buffer, BSPNode node) {
+		if (null == node) {
+			buffer.put(TAG_NONE);
+			return;
+		}
+		if (node.isIsleaf()) {
+			buffer.put(TAG_LEAF);
+			storeWalls(buffer, (BSPLeaf) node);
+			return;
+		}
+		BSPBranch b = (BSPBranch) node;
+		buffer.put(TAG_BRANCH);
+		buffer.putInt(b.getX());
+		buffer.putInt(b.getY());
+		buffer.putInt(b.getDx());
+		buffer.putInt(b.getDy());
+		storeBSPNode(buffer, b.getLeftBranch());
+		storeBSPNode(buffer, b.getRightBranch());
+	}
+	/**
+	 * Stores the given subtree in preorder with bounds for each node
+	 * and the offset of the right child for each branch.
+	 */
+	private static void storeIndexedBSPNode(ByteBuffer buffer, BSPNode node) {
+		if (null == node) {
+			buffer.put(TAG_NONE);
+			return;
+		}
+		buffer.put((node.isIsleaf()) ? TAG_LEAF_INDEXED : TAG_BRANCH_INDEXED);
+		buffer.putInt(node.getLowerBoundX());
+		buffer.putInt(node.getLowerBoundY());
+		buffer.putInt(node.getUpperBoundX());
+		buffer.putInt(node.getUpperBoundY());
+		if (node.isIsleaf()) {
+			storeWalls(buffer, (BSPLeaf) node);
+			return;
+		}
+		BSPBranch b = (BSPBranch) node;
+		buffer.putInt(b.getX());
+		buffer.putInt(b.getY());
+		buffer.putInt(b.getDx());
+		buffer.putInt(b.getDy());
+		// the left child follows directly, the right child after the left subtree
+		final int offset = buffer.position() + 4;
+		buffer.putInt(offset + getSize(b.getLeftBranch(), true));
+		storeIndexedBSPNode(buffer, b.getLeftBranch());
+		storeIndexedBSPNode(buffer, b.getRightBranch());
+	}
+	/**
+	 * Stores the list of walls of a leaf node.
+	 */
+	private static void storeWalls(ByteBuffer buffer, BSPLeaf leaf) {
+		buffer.putInt(leaf.getSlist().size());
+		for (Wall w : leaf.getSlist()) {
+			buffer.putInt(w.getStartPositionX());
+			buffer.putInt(w.getStartPositionY());
+			buffer.putInt(w.getExtensionX());
+			buffer.putInt(w.getExtensionY());
+			buffer.putInt(w.getDistance());
+			buffer.putInt(w.getColor());
+			buffer.put((byte) ((w.isPartition() ? FLAG_PARTITION : 0) | (w.isSeen() ? FLAG_SEEN : 0)));
+		}
+	}
+}
@@ -0,0 +1,306 @@
+/**
+ *
+ */
+package gui;
+
+import generation.BSPBranch;
+import generation.BSPLeaf;
+import generation.BSPNode;
+import generation.Distance;
+import generation.Floorplan;
+import generation.Maze;
+import generation.Wall;
+
+import java.util.ArrayList;
+
+/**
+ * This class compares two mazes component by component and reports the first difference.
+ * It replaces the field by field comparison of MazeFileReader.compare that prints as it goes.
+ *
+ * Each component, i.e. dimensions and starting position, floorplan, distances and BSP tree,
+ * is summarized by its 64 bit content hash in a Fingerprint. Components with the same hash
+ * are considered equal, only a component with a different hash is searched for its
+ * first divergent cell or node. For regression checks against golden files the fingerprint
+ * of the expected maze can be computed once and kept. The hash of a floorplan is
+ * maintained incrementally and the one of distances is cached, so the common case
+ * of equal mazes costs a traversal of the actual BSP tree and a hash comparison.
+ *
+ * A MazeDiff is the result of a comparison. It names the component that differs,
+ * the position of the first difference and both values, toString provides
+ * the same information as a single line of key=value pairs.
+ *
+ * @author Duke Tran
+ */
+public class MazeDiff {
+	/**
+	 * Components of a maze in the order in which they are compared.
+	 */
+	public enum Component { NONE, DIMENSIONS, START, CELLS, DISTANCES, BSP }
+
+	// result for equal mazes
+	private static final MazeDiff EQUAL = new MazeDiff(Component.NONE, -1, -1, -1, null, 0, 0);
+
+	// component with the first difference, NONE if mazes are equal
+	private final Component component;
+	// position of the difference in the floorplan or distances, -1 if not applicable
+	private final int x;
+	private final int y;
+	// number of the BSP node in preorder as in MazeFileWriter, -1 if not applicable
+	private final int node;
+	// name of the field that differs, null if mazes are equal
+	private final String field;
+	// values of the field in the expected and the actual maze
+	private final long expected;
+	private final long actual;
+
+	/**
+	 * Constructor with values for all internal fields
+	 */
+	private MazeDiff(Component component, int x, int y, int node, String field, long expected, long actual) {
+		this.component = component;
+		this.x = x;
+		this.y = y;
+		this.node = node;
+		this.field = field;
+		this.expected = expected;
+		this.actual = actual;
+	}
+
+	/**
+	 * Content hashes of all components of a maze.
+	 */
+	public static final class Fingerprint {
+		private final int width;
+		private final int height;
+		private final int startX;
+		private final int startY;
+		private final long cells;
+		private final long distances;
+		private final long tree;
+
+		private Fingerprint(Maze maze) {
+			width = maze.getWidth();
+			height = maze.getHeight();
+			int[] start = maze.getStartingPosition();
+			startX = start[0];
+			startY = start[1];
+			cells = maze.getFloorplan().getContentHash();
+			distances = maze.getMazedists().getContentHash();
+			tree = (null == maze.getRootnode()) ? 0 : maze.getRootnode().getContentHash();
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other)
+				return true;
+			if (!(other instanceof Fingerprint))
+				return false;
+			Fingerprint o = (Fingerprint) other;
+			return width == o.width && height == o.height && startX == o.startX && startY == o.startY
+					&& cells == o.cells && distances == o.distances && tree == o.tree;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (cells ^ (cells >>> 32) ^ distances ^ (distances >>> 32) ^ tree ^ (tree >>> 32));
+		}
+
+		@Override
+		public String toString() {
+			return String.format("width=%d height=%d startX=%d startY=%d cells=%016x distances=%016x bsp=%016x",
+					width, height, startX, startY, cells, distances, tree);
+		}
+	}
+
+	/**
+	 * Computes the content hashes of all components of the given maze.
+	 * @param maze is fully initialized, not null
+	 * @return the fingerprint of the maze
+	 */
+	public static Fingerprint fingerprint(Maze maze) {
+		return new Fingerprint(maze);
+	}
+
+	/**
+	 * Compares two mazes and reports the first difference.
+	 * @param expected is the reference maze, not null
+	 * @param actual is the maze to check, not null
+	 * @return the first difference, a result that tells isEqual if there is none
+	 */
+	public static MazeDiff diff(Maze expected, Maze actual) {
+		return diff(expected, fingerprint(expected), actual);
+	}
+
+	/**
+	 * Compares two mazes and reports the first difference, where the fingerprint
+	 * of the expected maze is already known. The expected maze is only
+	 * accessed if some component differs.
+	 * @param expected is the reference maze, not null
+	 * @param print is the fingerprint of the expected maze
+	 * @param actual is the maze to check, not null
+	 * @return the first difference, a result that tells isEqual if there is none
+	 */
+	public static MazeDiff diff(Maze expected, Fingerprint print, Maze actual) {
+		Fingerprint other = fingerprint(actual);
+		if (print.width != other.width)
+			return new MazeDiff(Component.DIMENSIONS, -1, -1, -1, "width", print.width, other.width);
+		if (print.height != other.height)
+			return new MazeDiff(Component.DIMENSIONS, -1, -1, -1, "height", print.height, other.height);
+		if (print.startX != other.startX)
+			return new MazeDiff(Component.START, -1, -1, -1, "x", print.startX, other.startX);
+		if (print.startY != other.startY)
+			return new MazeDiff(Component.START, -1, -1, -1, "y", print.startY, other.startY);
+		if (print.cells != other.cells) {
+			MazeDiff result = diffCells(expected.getFloorplan(), actual.getFloorplan(), print.width, print.height);
+			if (null != result)
+				return result;
+		}
+		if (print.distances != other.distances) {
+			MazeDiff result = diffDistances(expected.getMazedists(), actual.getMazedists(), print.width, print.height);
+			if (null != result)
+				return result;
+		}
+		if (print.tree != other.tree) {
+			MazeDiff result = new TreeDiff().diff(expected.getRootnode(), actual.getRootnode());
+			if (null != result)
+				return result;
+		}
+		return EQUAL;
+	}
+
+	/////////////////// set of straightforward get methods //////////////
+	/**
+	 * @return true if no difference has been found
+	 */
+	public boolean isEqual() {
+		return Component.NONE == component;
+	}
+	public Component getComponent() {
+		return component;
+	}
+	public int getX() {
+		return x;
+	}
+	public int getY() {
+		return y;
+	}
+	public int getNode() {
+		return node;
+	}
+	public String getField() {
+		return field;
+	}
+	public long getExpected() {
+		return expected;
+	}
+	public long getActual() {
+		return actual;
+	}
+
+	@Override
+	public String toString() {
+		if (isEqual())
+			return "component=NONE";
+		StringBuilder result = new StringBuilder("component=").append(component);
+		if (x >= 0)
+			result.append(" x=").append(x).append(" y=").append(y);
+		if (node >= 0)
+			result.append(" node=").append(node);
+		return result.append(" field=").append(field)
+				.append(" expected=").append(expected)
+				.append(" actual=").append(actual).toString();
+	}
+
+	///////////////////////// drill down into components ///////////////////////
+	/**
+	 * Finds the first cell in column major order whose value differs.
+	 * @return the difference, null if there is none despite different hashes
+	 */
+	private static MazeDiff diffCells(Floorplan expected, Floorplan actual, int width, int height) {
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int a = expected.getValueOfCell(x, y);
+				int b = actual.getValueOfCell(x, y);
+				if (a != b)
+					return new MazeDiff(Component.CELLS, x, y, -1, "value", a, b);
+			}
+		}
+		return null;
+	}
+	/**
+	 * Finds the first position in column major order whose distance differs.
+	 * @return the difference, null if there is none despite different hashes
+	 */
+	private static MazeDiff diffDistances(Distance expected, Distance actual, int width, int height) {
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int a = expected.getDistanceValue(x, y);
+				int b = actual.getDistanceValue(x, y);
+				if (a != b)
+					return new MazeDiff(Component.DISTANCES, x, y, -1, "distance", a, b);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Walks two BSP trees in preorder and stops at the first node that differs.
+	 * Nodes are numbered in the same way as in MazeFileWriter.
+	 */
+	private static class TreeDiff {
+		// number of the current node
+		private int number;
+
+		/**
+		 * @return the first difference in the given subtrees, null if there is none
+		 */
+		MazeDiff diff(BSPNode a, BSPNode b) {
+			if (null == a || null == b)
+				return (a == b) ? null : node("defined", (null == a) ? 0 : 1, (null == b) ? 0 : 1);
+			if (a.isIsleaf() != b.isIsleaf())
+				return node("isleaf", a.isIsleaf() ? 1 : 0, b.isIsleaf() ? 1 : 0);
+			if (a.getLowerBoundX() != b.getLowerBoundX())
+				return node("xl", a.getLowerBoundX(), b.getLowerBoundX());
+			if (a.getLowerBoundY() != b.getLowerBoundY())
+				return node("yl", a.getLowerBoundY(), b.getLowerBoundY());
+			if (a.getUpperBoundX() != b.getUpperBoundX())
+				return node("xu", a.getUpperBoundX(), b.getUpperBoundX());
+			if (a.getUpperBoundY() != b.getUpperBoundY())
+				return node("yu", a.getUpperBoundY(), b.getUpperBoundY());
+			if (a.isIsleaf())
+				return diffWalls(((BSPLeaf) a).getSlist(), ((BSPLeaf) b).getSlist());
+			BSPBranch p = (BSPBranch) a;
+			BSPBranch q = (BSPBranch) b;
+			if (p.getX() != q.getX())
+				return node("x", p.getX(), q.getX());
+			if (p.getY() != q.getY())
+				return node("y", p.getY(), q.getY());
+			if (p.getDx() != q.getDx())
+				return node("dx", p.getDx(), q.getDx());
+			if (p.getDy() != q.getDy())
+				return node("dy", p.getDy(), q.getDy());
+			number++;
+			MazeDiff result = diff(p.getLeftBranch(), q.getLeftBranch());
+			if (null != result)
+				return result;
+			number++;
+			return diff(p.getRightBranch(), q.getRightBranch());
+		}
+
+		private MazeDiff diffWalls(ArrayList<Wall> a, ArrayList<Wall> b) {
+			if (a.size() != b.size())
+				return node("walls", a.size(), b.size());
+			for (int i = 0; i < a.size(); i++) {
+				Wall u = a.get(i);
+				Wall v = b.get(i);
+				if (!u.equals(v))
+					return node("wall_" + i, u.hashCode(), v.hashCode());
+			}
+			return null;
+		}
+
+		private MazeDiff node(String field, long expected, long actual) {
+			return new MazeDiff(Component.BSP, -1, -1, number, field, expected, actual);
+		}
+	}
+}
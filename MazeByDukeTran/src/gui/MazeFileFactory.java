@@ -0,0 +1,319 @@
+/**
+ *
+ */
+package gui;
+
+import generation.Factory;
+import generation.Maze;
+import generation.Order;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * This class loads and stores mazes in the background such that large files
+ * do not block the user interface. It is the counterpart of MazeFactory for mazes
+ * that come from a file: an order is accepted right away, progress is reported
+ * with the updateProgress method of the order while the file is read and the maze
+ * is handed over with the deliver method of the order just as for a generated maze.
+ *
+ * Files are read and written on a shared executor with daemon threads.
+ * Each load or store returns a Future that completes when the work is done,
+ * cancelling the Future interrupts the worker thread which stops at the next
+ * chunk of input or column of output. A cancelled load does not deliver,
+ * a cancelled store removes the partially written file.
+ *
+ * Mazes are loaded from files in the XML or any binary format, they are stored
+ * in the XML format of MazeFileWriter.
+ *
+ * @author Duke Tran
+ */
+public class MazeFileFactory implements Factory {
+	// worker threads for all file operations, daemon threads do not keep the application alive
+	private static final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "MazeFileFactory");
+		thread.setDaemon(true);
+		return thread;
+	});
+	// share of progress for reading the file, the rest is for building the maze
+	private static final int READ_PERCENTAGE = 90;
+
+	// file to load mazes from
+	private final String filename;
+	// factory takes at most one order at a time
+	private Future<Maze> current;
+
+	/**
+	 * Constructor for a factory that delivers the maze stored in the given file.
+	 * @param filename of a maze file in the XML or binary format, not null
+	 */
+	public MazeFileFactory(String filename) {
+		this.filename = filename;
+	}
+
+	//////////////////////// Factory interface //////////////////////////////////
+	@Override
+	public synchronized boolean order(Order order) {
+		// check if factory is busy
+		if (null != current && !current.isDone()) {
+			System.out.println("MazeFileFactory.order: refusing to take order, too busy with current order");
+			return false;
+		}
+		current = load(filename, order);
+		return true;
+	}
+	@Override
+	public synchronized void cancel() {
+		System.out.println("MazeFileFactory.cancel: called");
+		if (null != current) {
+			current.cancel(true);
+			current = null;
+		}
+		else {
+			System.out.println("MazeFileFactory.cancel: no order to cancel");
+		}
+	}
+	@Override
+	public void waitTillDelivered() {
+		Future<Maze> future;
+		synchronized (this) {
+			future = current;
+		}
+		if (null == future) {
+			System.out.println("MazeFileFactory.waitTillDelivered: no order to wait for");
+			return;
+		}
+		try {
+			future.get();
+		} catch (Exception e) {
+			System.out.println("MazeFileFactory.waitTillDelivered: loading ended with an exception: " + e);
+		}
+	}
+
+	//////////////////////// asynchronous loading and storing ///////////////////
+	/**
+	 * Loads the maze from the given file in the background. Progress is reported
+	 * to the order while the file is read, the maze is delivered to the order
+	 * once it is complete unless the returned Future is cancelled before.
+	 * If the file can not be read or does not hold a maze, the order is told
+	 * with its fail method and the Future completes with the exception.
+	 * @param filename of a maze file in the XML or binary format, not null
+	 * @param order receives progress updates and the maze, not null
+	 * @return a Future that holds the maze once it has been delivered
+	 */
+	public static Future<Maze> load(String filename, Order order) {
+		return executor.submit(() -> {
+			Maze maze;
+			try {
+				maze = read(filename, order);
+			} catch (InterruptedIOException e) {
+				System.out.println("MazeFileFactory.load: loading " + filename + " has been cancelled");
+				throw e;
+			} catch (IOException | XMLStreamException | RuntimeException e) {
+				if (Thread.currentThread().isInterrupted()) {
+					// cancelled, e.g. a mapping ends in a ClosedByInterruptException,
+					// the order may already be busy with a new maze
+					System.out.println("MazeFileFactory.load: loading " + filename + " has been cancelled");
+					throw e;
+				}
+				// the order is waiting for a maze, so it needs to know that none comes,
+				// readers report a missing file with an UncheckedIOException and a
+				// truncated binary file may end in a BufferUnderflowException
+				System.out.println("MazeFileFactory.load: can not load " + filename + ": " + e);
+				order.fail("can not load " + filename + ": " + e.getMessage());
+				throw e;
+			}
+			if (Thread.currentThread().isInterrupted()) {
+				System.out.println("MazeFileFactory.load: loading " + filename + " has been cancelled");
+				throw new InterruptedException();
+			}
+			order.updateProgress(100);
+			order.deliver(maze);
+			return maze;
+		});
+	}
+	/**
+	 * Stores the given maze in the XML format in the background. Progress is
+	 * reported to the order while the file is written. Number of rooms and
+	 * partition iterations are taken from the skill level and type of the order.
+	 * @param filename of the file to write, an existing file is overwritten
+	 * @param maze to store, not null
+	 * @param order receives progress updates, nothing is delivered, not null
+	 * @return a Future that completes once the file has been written
+	 */
+	public static Future<Void> store(String filename, Maze maze, Order order) {
+		return executor.submit(() -> {
+			int skill = order.getSkillLevel();
+			int rooms = (order.isPerfect()) ? 0 : Constants.SKILL_ROOMS[skill];
+			int[] start = maze.getStartingPosition();
+			try (OutputStream out = new BufferedOutputStream(new FileOutputStream(filename))) {
+				MazeFileStreamWriter.store(out, maze.getWidth(), maze.getHeight(), rooms, Constants.SKILL_PARTCT[skill],
+						maze.getRootnode(), maze.getFloorplan(), maze.getMazedists().readAllDistanceValues(), start[0], start[1], order);
+			} catch (InterruptedIOException e) {
+				System.out.println("MazeFileFactory.store: storing " + filename + " has been cancelled");
+				new File(filename).delete();
+				throw e;
+			} catch (IOException | XMLStreamException e) {
+				e.printStackTrace();
+				throw e;
+			}
+			order.updateProgress(100);
+			return null;
+		});
+	}
+
+	///////////////////////// private methods ///////////////////////////////////
+	/**
+	 * Reads the maze from the given file, binary files are recognized by their magic number.
+	 * Binary files with a fixed layout are mapped and need no reading,
+	 * other files are read through a stream that reports progress.
+	 * @throws InterruptedIOException if the current thread is interrupted while reading
+	 */
+	private static Maze read(String filename, Order order) throws IOException, XMLStreamException {
+		if (MazeMappedFileReader.isMappable(filename)) {
+			return new MazeMappedFileReader(filename).getMazeConfiguration();
+		}
+		long length = new File(filename).length();
+		if (MazeBinaryFileReader.isBinaryFile(filename)) {
+			byte[] content = new byte[(int) length];
+			try (InputStream in = new ProgressInputStream(new FileInputStream(filename), length, order)) {
+				int n = 0;
+				while (n < content.length) {
+					int count = in.read(content, n, content.length - n);
+					if (count < 0)
+						throw new IOException("MazeFileFactory: unexpected end of file " + filename);
+					n += count;
+				}
+			}
+			MazeBinaryFileReader reader = new MazeBinaryFileReader();
+			// the minimal format rebuilds the BSP tree, which takes the rest of the progress
+			reader.load(ByteBuffer.wrap(content), new BuildProgressOrder(order));
+			return reader.getMazeConfiguration();
+		}
+		MazeFileStreamReader reader = new MazeFileStreamReader();
+		try (InputStream in = new BufferedInputStream(new ProgressInputStream(new FileInputStream(filename), length, order))) {
+			reader.load(in);
+		} catch (XMLStreamException e) {
+			// the parser wraps exceptions of the underlying stream
+			if (Thread.currentThread().isInterrupted())
+				throw new InterruptedIOException("MazeFileFactory: reading has been interrupted");
+			throw e;
+		}
+		return reader.getMazeConfiguration();
+	}
+
+	/**
+	 * Passes all calls to an order, progress of building the maze after the
+	 * file has been read is scaled into the share that is left after reading.
+	 */
+	private static class BuildProgressOrder implements Order {
+		// receives the scaled progress
+		private final Order order;
+
+		BuildProgressOrder(Order order) {
+			this.order = order;
+		}
+
+		@Override
+		public void updateProgress(int percentage) {
+			order.updateProgress(READ_PERCENTAGE + percentage * (100 - READ_PERCENTAGE) / 100);
+		}
+		@Override
+		public int getSkillLevel() {
+			return order.getSkillLevel();
+		}
+		@Override
+		public Builder getBuilder() {
+			return order.getBuilder();
+		}
+		@Override
+		public boolean isPerfect() {
+			return order.isPerfect();
+		}
+		@Override
+		public int getSeed() {
+			return order.getSeed();
+		}
+		@Override
+		public void deliver(Maze mazeConfig) {
+			order.deliver(mazeConfig);
+		}
+		@Override
+		public boolean isBSPTreeNeeded() {
+			return order.isBSPTreeNeeded();
+		}
+		@Override
+		public void fail(String message) {
+			order.fail(message);
+		}
+	}
+
+	/**
+	 * A stream that reports the share of bytes read so far as progress
+	 * and stops with an InterruptedIOException once the current thread is interrupted.
+	 */
+	private static class ProgressInputStream extends FilterInputStream {
+		// number of bytes in the underlying stream
+		private final long length;
+		// receives progress updates
+		private final Order order;
+		// number of bytes read so far
+		private long count;
+
+		ProgressInputStream(InputStream in, long length, Order order) {
+			super(in);
+			this.length = Math.max(1, length);
+			this.order = order;
+		}
+
+		@Override
+		public int read() throws IOException {
+			checkInterrupted();
+			int b = super.read();
+			if (b >= 0)
+				advance(1);
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			checkInterrupted();
+			int n = super.read(b, off, Math.min(len, 1 << 16));
+			if (n > 0)
+				advance(n);
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			checkInterrupted();
+			long skipped = super.skip(n);
+			advance(skipped);
+			return skipped;
+		}
+
+		private void checkInterrupted() throws InterruptedIOException {
+			if (Thread.currentThread().isInterrupted())
+				throw new InterruptedIOException("MazeFileFactory: reading has been interrupted");
+		}
+
+		private void advance(long n) {
+			count += n;
+			order.updateProgress((int) (READ_PERCENTAGE * count / length));
+		}
+	}
+}
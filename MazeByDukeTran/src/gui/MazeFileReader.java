@@ -297,10 +297,9 @@ public class MazeFileReader {
 	}
 
 	/////////////////////////////////// internal methods used in testing /////////////////////////////////////////
-	// TODO: change these into equals and compare methods for the corresponding Maze and BSPNode classes
-	// TODO: create junit test class that is a subclass of MazeFileReader that takes this code and performs unit tests
 	/**
-	 * compares given data with maze data read from file
+	 * compares given data with maze data read from file and prints the first difference.
+	 * Floorplan, distances and BSP tree are compared with MazeDiff.
 	 * @param mazew
 	 * @param mazeh
 	 * @param rooms2
@@ -314,102 +313,20 @@ public class MazeFileReader {
 	public void compare(int mazew, int mazeh, int rooms2,
 			int expected_partiters2, BSPNode root2, Floorplan mazecells,
 			int[][] mazedists, int px, int py) {
-		if (mazew != this.width)
-			System.out.println("MazeFileReader.compare: width mismatch");
-		if (mazeh != this.height)
-			System.out.println("MazeFileReader.compare: height mismatch");
 		if (rooms2 != this.rooms)
 			System.out.println("MazeFileReader.compare: rooms mismatch");
 		if (expected_partiters2 != this.expected_partiters)
 			System.out.println("MazeFileReader.compare: expected partiters mismatch");
-		if (px != this.startx)
-			System.out.println("MazeFileReader.compare: start x mismatch");
-		if (py != this.starty)
-			System.out.println("MazeFileReader.compare: start y mismatch");
-		compareCells(mazecells) ;
-		compareDistances(mazedists) ;
-		System.out.println("Start comparing BSP nodes") ;
-		compareBSPNodes(root, root2) ;
-		
-	}
-
-	private static void compareBSPNodes(BSPNode root, BSPNode root2) {
-		
-		// compare BSPNode fields
-		if (root.isIsleaf() != root2.isIsleaf()) 
-			System.out.println("MazeFileReader.compareBSPNodes:isleaf mismatch");
-		if (root.getLowerBoundX() != root2.getLowerBoundX()) 
-			System.out.println("MazeFileReader.compareBSPNodes:xl mismatch");
-		if (root.getUpperBoundX() != root2.getUpperBoundX()) 
-			System.out.println("MazeFileReader.compareBSPNodes:xu mismatch");
-		if (root.getLowerBoundY() != root2.getLowerBoundY()) 
-			System.out.println("MazeFileReader.compareBSPNodes:yl mismatch");
-		if (root.getUpperBoundY() != root2.getUpperBoundY()) 
-			System.out.println("MazeFileReader.compareBSPNodes:yu mismatch");
-		// if Leaf nodes compare seqment lists
-		//System.out.println("Start recursion for comparing BSP nodes") ;
-		if (BSPLeaf.class == root.getClass())
-		{
-			if (BSPLeaf.class != root2.getClass()) 
-				System.out.println("MazeFileReader.compareBSPNodes: type of nodes mismatch, root node has leaf, other node as branch");
-			compareWalls(((BSPLeaf)root).getSlist(),((BSPLeaf)root2).getSlist()) ;
-		}
-		// if Branch nodes compare attributes and branches
-		if (BSPBranch.class == root.getClass())
-		{
-			if (BSPBranch.class != root2.getClass()) 
-				System.out.println("MazeFileReader.compare: mismatch");
-
-			BSPBranch b = (BSPBranch)root ;
-			BSPBranch b2 = (BSPBranch)root2 ;
-			
-			if(b.getX() != b2.getX()) 
-				System.out.println("MazeFileReader.compare: mismatch");
-			if(b.getY() != b2.getY()) 
-				System.out.println("MazeFileReader.compare: mismatch");
-			if(b.getDx() != b2.getDx()) 
-				System.out.println("MazeFileReader.compare: mismatch");
-			if(b.getDy() != b2.getDy()) 
-				System.out.println("MazeFileReader.compare: mismatch");
-			compareBSPNodes(b.getLeftBranch(), b2.getLeftBranch()) ;
-			compareBSPNodes(b.getRightBranch(), b2.getRightBranch()) ;
-		}
-
-	}
-
-	private static void compareWalls(ArrayList<Wall> slist, ArrayList<Wall> slist2) {
-		int n = slist.size() ;
-		if (n != slist2.size()) 
-			System.out.println("MazeFileReader.compare walls: length mismatch, " + n + " vs " + slist2.size());
-		Wall s ;
-		//Seg s2 ;
-		for (int i = 0 ; i < n ; i++)
-		{
-			s = slist.get(i) ;
-			if (!s.equals(slist2.get(i))) {
-				assert false : "MazeFileReader.compare walls do not mismatch" ;
-				// if assert not enabled during execution, at least print a waring
-				System.out.println("MazeFileReader.compare walls do not match"); 
-			}
-		}
-
-	}
-	private void compareDistances(int[][] mazedists) {
-		int[][] dists2 = mazedists ;
-		for (int i = 0 ; i < width ; i++)
-		{
-			for (int j = 0 ; j < height ; j++)
-			{
-				if (dists[i][j] != dists2[i][j]) 
-					System.out.println("MazeFileReader.compare distances: mismatch");
-			}
-		}
-		
-	}
-
-	private void compareCells(Floorplan mazecells) {
-		if (!cells.equals(mazecells))
-			System.out.println("MazeFileReader.compare cells: mismatch");
+		Maze other = new MazeContainer() ;
+		other.setWidth(mazew);
+		other.setHeight(mazeh);
+		other.setFloorplan(mazecells);
+		other.setMazedists(new Distance(mazedists));
+		other.setRootnode(root2);
+		other.setStartingPosition(px, py);
+		MazeDiff diff = MazeDiff.diff(getMazeConfiguration(), other) ;
+		if (!diff.isEqual())
+			System.out.println("MazeFileReader.compare: mismatch " + diff);
 	}
 
 }
@@ -0,0 +1,277 @@
+/**
+ *
+ */
+package gui;
+
+import generation.BSPBranch;
+import generation.BSPLeaf;
+import generation.BSPNode;
+import generation.Distance;
+import generation.Floorplan;
+import generation.Maze;
+import generation.MazeContainer;
+import generation.Wall;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * This class provides functionality to read the content of a Maze object from a file
+ * in the XML format produced with MazeFileWriter or MazeFileStreamWriter.
+ * In contrast to MazeFileReader, it does not build a DOM tree but processes
+ * elements one by one as they are streamed from the file with StAX.
+ * Cells and distances go directly into their arrays, data for BSP nodes is collected
+ * per node number and turned into a tree once the end of the file is reached.
+ * It offers the same get methods as MazeFileReader.
+ *
+ * @author Duke Tran
+ */
+public class MazeFileStreamReader {
+
+	// fields of maze configuration object
+	private int width ;
+	private int height ;
+	private int rooms ;
+	private int[][] dists ;
+	private int expected_partiters ;
+	private int[][] cellValues ;
+	private Floorplan cells ;
+	private int startx ;
+	private int starty ;
+	private BSPNode root ;
+
+	/**
+	 * Data for a single BSP node as it is found in the file.
+	 */
+	private static class NodeData {
+		boolean defined;
+		boolean isleaf;
+		int x, y, dx, dy;
+		// for each wall: dist, dx, dy, partition, seen, x, y, color
+		ArrayList<int[]> walls = new ArrayList<int[]>();
+	}
+	// position of each attribute of a wall in NodeData.walls
+	private static final String[] WALL_ATTRIBUTES = { "distSeg", "dxSeg", "dySeg", "partitionSeg", "seenSeg", "xSeg", "ySeg", "colSeg" };
+	// BSP nodes indexed by their number in the file
+	private ArrayList<NodeData> nodes ;
+
+	/**
+	 * Constructor reads maze data from given file. The file format is the XML format produced by the MazeFileWriter class.
+	 *
+	 * @param filename with data of a Maze object
+	 * @throws UncheckedIOException if the file can not be read or is not a valid maze file
+	 */
+	public MazeFileStreamReader(String filename) {
+		// a half initialized reader must not be used, so there is nothing to return
+		try (InputStream in = new BufferedInputStream(new FileInputStream(filename))) {
+			load(in);
+		} catch (IOException ioe) {
+			throw new UncheckedIOException("MazeFileStreamReader: can not load " + filename, ioe);
+		} catch (XMLStreamException xse) {
+			throw new UncheckedIOException("MazeFileStreamReader: can not load " + filename, new IOException(xse));
+		}
+	}
+
+	/**
+	 * Constructor for a reader that is filled by calling load, used by MazeFileFactory
+	 * to read from a stream that reports progress.
+	 */
+	MazeFileStreamReader() {
+		// nothing to do
+	}
+
+	/**
+	 * Provides the data loaded from file wrapped in a MazeConfiguration.
+	 * @return maze configuration loaded from file
+	 */
+	Maze getMazeConfiguration() {
+		Maze mazeConfig = new MazeContainer() ;
+		mazeConfig.setHeight(getHeight());
+		mazeConfig.setWidth(getWidth());
+		mazeConfig.setFloorplan(getCells());
+		Distance dists = new Distance(getDistances()) ;
+		mazeConfig.setMazedists(dists);
+		mazeConfig.setRootnode(getRootNode());
+		mazeConfig.setStartingPosition(getStartX(), getStartY());
+		return mazeConfig;
+	}
+	/////////////////// set of straightforward get methods //////////////
+	int getWidth() {
+		return width ;
+	}
+	int getHeight() {
+		return height ;
+	}
+	int getRooms() {
+		return rooms ;
+	}
+	int[][] getDistances() {
+		return dists ;
+	}
+	int getExpectedPartiters() {
+		return expected_partiters ;
+	}
+	Floorplan getCells() {
+		return cells ;
+	}
+	int getStartX() {
+		return startx ;
+	}
+	int getStartY() {
+		return starty ;
+	}
+	BSPNode getRootNode() {
+		return root ;
+	}
+
+	/**
+	 * Reads all attributes of a maze object from the given stream.
+	 * @param in provides the XML content
+	 */
+	void load(InputStream in) throws XMLStreamException {
+		nodes = new ArrayList<NodeData>();
+		XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+		while (reader.hasNext()) {
+			if (XMLStreamConstants.START_ELEMENT == reader.next() && !"Maze".equals(reader.getLocalName())) {
+				String name = reader.getLocalName();
+				readElement(name, reader.getElementText());
+			}
+		}
+		reader.close();
+		cells = new Floorplan(cellValues);
+		cellValues = null;
+		number = 0 ;
+		root = (nodes.isEmpty()) ? null : readBSPNode();
+		nodes = null;
+	}
+	/**
+	 * Stores the value of a single element in the corresponding field.
+	 * Requires that sizeX and sizeY precede cells and distances as in files written by MazeFileWriter.
+	 * Unknown elements are ignored.
+	 * @param name of the element
+	 * @param text content of the element
+	 */
+	private void readElement(String name, String text) {
+		int separator = name.indexOf('_');
+		if (separator < 0) {
+			switch (name) {
+			case "sizeX":
+				width = Integer.parseInt(text);
+				break;
+			case "sizeY":
+				height = Integer.parseInt(text);
+				cellValues = new int[width][height];
+				dists = new int[width][height];
+				break;
+			case "roomNum":
+				rooms = Integer.parseInt(text);
+				break;
+			case "partiters":
+				expected_partiters = Integer.parseInt(text);
+				break;
+			case "startX":
+				startx = Integer.parseInt(text);
+				break;
+			case "startY":
+				starty = Integer.parseInt(text);
+				break;
+			default:
+				break;
+			}
+			return;
+		}
+		String prefix = name.substring(0, separator);
+		String suffix = name.substring(separator + 1);
+		switch (prefix) {
+		case "cell":
+			int index = Integer.parseInt(suffix);
+			cellValues[index / height][index % height] = Integer.parseInt(text);
+			return;
+		case "dists":
+			index = Integer.parseInt(suffix);
+			dists[index / height][index % height] = Integer.parseInt(text);
+			return;
+		case "isleafBSPNode":
+			NodeData node = getNode(Integer.parseInt(suffix));
+			node.defined = true;
+			node.isleaf = Boolean.valueOf(text).booleanValue();
+			return;
+		case "xBSPNode":
+			getNode(Integer.parseInt(suffix)).x = Integer.parseInt(text);
+			return;
+		case "yBSPNode":
+			getNode(Integer.parseInt(suffix)).y = Integer.parseInt(text);
+			return;
+		case "dxBSPNode":
+			getNode(Integer.parseInt(suffix)).dx = Integer.parseInt(text);
+			return;
+		case "dyBSPNode":
+			getNode(Integer.parseInt(suffix)).dy = Integer.parseInt(text);
+			return;
+		default:
+			break;
+		}
+		// attributes of walls carry two indices: node number and wall number
+		for (int k = 0; k < WALL_ATTRIBUTES.length; k++) {
+			if (WALL_ATTRIBUTES[k].equals(prefix)) {
+				int second = suffix.indexOf('_');
+				NodeData owner = getNode(Integer.parseInt(suffix.substring(0, second)));
+				int i = Integer.parseInt(suffix.substring(second + 1));
+				while (owner.walls.size() <= i)
+					owner.walls.add(new int[WALL_ATTRIBUTES.length]);
+				owner.walls.get(i)[k] = ("partitionSeg".equals(prefix) || "seenSeg".equals(prefix)) ?
+						(Boolean.valueOf(text).booleanValue() ? 1 : 0) : Integer.parseInt(text);
+				return;
+			}
+		}
+		// remaining elements such as bounds of BSP nodes and numSeg are recomputed
+	}
+	/**
+	 * Provides the data for the node with the given number, creates it if necessary.
+	 */
+	private NodeData getNode(int n) {
+		while (nodes.size() <= n)
+			nodes.add(new NodeData());
+		return nodes.get(n);
+	}
+
+	// shared index number for nodes in the tree of BSPNodes, same numbering scheme as in MazeFileReader
+	private int number ;
+	/**
+	 * Builds a BSPNode from the collected node data.
+	 * The method recursively builds the left and right branches.
+	 * @return a new BSPNode, fully initialized with all necessary data, null for an empty subtree
+	 */
+	private BSPNode readBSPNode() {
+		// an empty subtree is stored with a bound only, see BSPBranch.store
+		if (number >= nodes.size() || !nodes.get(number).defined)
+			return null;
+		NodeData data = nodes.get(number);
+		if (data.isleaf) {
+			ArrayList<Wall> slist = new ArrayList<Wall>(data.walls.size());
+			for (int[] w : data.walls) {
+				Wall wall = new Wall(w[5], w[6], w[1], w[2], w[0], 0); // color is explicitly set below
+				wall.setColor(w[7]);
+				wall.setPartition(1 == w[3]);
+				wall.setSeen(1 == w[4]);
+				slist.add(wall);
+			}
+			return new BSPLeaf(slist);
+		}
+		// read left branch before right branch, increment index number for next node to visit
+		number++ ;
+		BSPNode l = readBSPNode() ;
+		number++ ;
+		BSPNode r = readBSPNode() ;
+		return new BSPBranch(data.x, data.y, data.dx, data.dy, l, r) ;
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ *
+ */
+package gui;
+
+import generation.BSPBranch;
+import generation.BSPLeaf;
+import generation.BSPNode;
+import generation.Floorplan;
+import generation.Order;
+import generation.Wall;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * This class provides functionality to write a maze configuration to a file in the XML format
+ * of MazeFileWriter, but it streams elements to the file with StAX instead of building
+ * a DOM tree first. The output is byte for byte identical to the one of MazeFileWriter,
+ * in particular it has the same XML declaration and no whitespace between elements.
+ * Memory use does not depend on the size of the maze.
+ * All methods are static.
+ *
+ * @author Duke Tran
+ */
+public class MazeFileStreamWriter {
+	/**
+	 * XML declaration as written by the default Transformer used in MazeFileWriter.
+	 */
+	static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+
+	/**
+	 * Write maze content to a file
+	 */
+	public static void store(String filename, int width, int height, int rooms, int expected_partiters, BSPNode root, Floorplan cells, int[][] dists, int startX, int startY)
+	{
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(filename))) {
+			store(out, width, height, rooms, expected_partiters, root, cells, dists, startX, startY);
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+		} catch (XMLStreamException xse) {
+			xse.printStackTrace();
+		}
+	}
+	/**
+	 * Write maze content to the given stream, the stream is flushed but not closed.
+	 */
+	static void store(OutputStream out, int width, int height, int rooms, int expected_partiters, BSPNode root, Floorplan cells, int[][] dists, int startX, int startY)
+			throws IOException, XMLStreamException {
+		store(out, width, height, rooms, expected_partiters, root, cells, dists, startX, startY, null);
+	}
+	/**
+	 * Write maze content to the given stream, the stream is flushed but not closed.
+	 * Progress is reported after each column of cells and distances, writing stops
+	 * with an InterruptedIOException if the current thread is interrupted.
+	 * @param progress receives updates on progress in the range [0,90], can be null
+	 */
+	static void store(OutputStream out, int width, int height, int rooms, int expected_partiters, BSPNode root, Floorplan cells, int[][] dists, int startX, int startY,
+			Order progress) throws IOException, XMLStreamException {
+		// the declaration is written directly as StAX does not produce the standalone attribute
+		out.write(DECLARATION.getBytes(StandardCharsets.UTF_8));
+		XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+		writer.writeStartElement("Maze");
+		// store fields of Maze class
+		writeElement(writer, "sizeX", width);
+		writeElement(writer, "sizeY", height);
+		writeElement(writer, "roomNum", rooms);
+		writeElement(writer, "partiters", expected_partiters);
+		// cells
+		int number = 0 ;
+		for ( int x = 0; x != width; x++) {
+			for ( int y = 0; y != height; y++) {
+				writeElement(writer, "cell_" + number, cells.getValueOfCell(x, y));
+				number++;
+			}
+			updateProgress(progress, 45 * (x + 1) / width);
+		}
+		// distances
+		number = 0 ;
+		for ( int x = 0; x != width; x++) {
+			for ( int y = 0; y != height; y++) {
+				writeElement(writer, "dists_" + number, dists[x][y]);
+				number++;
+			}
+			updateProgress(progress, 45 + 45 * (x + 1) / width);
+		}
+		// start position
+		writeElement(writer, "startX", startX);
+		writeElement(writer, "startY", startY);
+		// BSPnodes
+		if (null != root)
+		{
+			storeBSPNode(writer, root, 0);
+		}
+		else
+		{
+			System.out.println("MazeFileStreamWriter.store: root node of BSP tree is null");
+		}
+		writer.writeEndElement();
+		writer.flush();
+		writer.close();
+		out.flush();
+	}
+	/**
+	 * Reports progress if there is an order to report to and checks for cancellation.
+	 * @throws InterruptedIOException if the current thread has been interrupted
+	 */
+	private static void updateProgress(Order progress, int percentage) throws InterruptedIOException {
+		if (Thread.currentThread().isInterrupted())
+			throw new InterruptedIOException("MazeFileStreamWriter: writing has been interrupted");
+		if (null != progress)
+			progress.updateProgress(percentage);
+	}
+	/**
+	 * Store the content of a BSPNode including data of branches and leaves as special cases.
+	 * Element names and numbering are the same as in BSPNode.store and its subclasses.
+	 * @return the highest used index number
+	 */
+	private static int storeBSPNode(XMLStreamWriter writer, BSPNode node, int number) throws XMLStreamException {
+		writeElement(writer, "xlBSPNode_" + number, node.getLowerBoundX());
+		writeElement(writer, "ylBSPNode_" + number, node.getLowerBoundY());
+		writeElement(writer, "xuBSPNode_" + number, node.getUpperBoundX());
+		writeElement(writer, "yuBSPNode_" + number, node.getUpperBoundY());
+		writeElement(writer, "isleafBSPNode_" + number, node.isIsleaf());
+		if (node.isIsleaf()) {
+			BSPLeaf leaf = (BSPLeaf) node;
+			writeElement(writer, "numSeg_" + number, leaf.getSlist().size());
+			int i = 0 ;
+			for (Wall w : leaf.getSlist()) {
+				String suffix = "_" + number + "_" + i;
+				writeElement(writer, "distSeg" + suffix, w.getDistance());
+				writeElement(writer, "dxSeg" + suffix, w.getExtensionX());
+				writeElement(writer, "dySeg" + suffix, w.getExtensionY());
+				writeElement(writer, "partitionSeg" + suffix, w.isPartition());
+				writeElement(writer, "seenSeg" + suffix, w.isSeen());
+				writeElement(writer, "xSeg" + suffix, w.getStartPositionX());
+				writeElement(writer, "ySeg" + suffix, w.getStartPositionY());
+				writeElement(writer, "colSeg" + suffix, w.getColor());
+				i++ ;
+			}
+			return number ;
+		}
+		BSPBranch b = (BSPBranch) node;
+		writeElement(writer, "xBSPNode_" + number, b.getX());
+		writeElement(writer, "yBSPNode_" + number, b.getY());
+		writeElement(writer, "dxBSPNode_" + number, b.getDx());
+		writeElement(writer, "dyBSPNode_" + number, b.getDy());
+		// left branch first, recursion updates the number for the right branch
+		number++ ;
+		if (null == b.getLeftBranch())
+			writeElement(writer, "xlBSPNode_" + number, Integer.MIN_VALUE);
+		else
+			number = storeBSPNode(writer, b.getLeftBranch(), number);
+		number++ ;
+		if (null == b.getRightBranch())
+			writeElement(writer, "xlBSPNode_" + number, Integer.MAX_VALUE);
+		else
+			number = storeBSPNode(writer, b.getRightBranch(), number);
+		return number ;
+	}
+	/**
+	 * Writes an element with the given name and value.
+	 */
+	private static void writeElement(XMLStreamWriter writer, String name, int value) throws XMLStreamException {
+		writer.writeStartElement(name);
+		writer.writeCharacters(Integer.toString(value));
+		writer.writeEndElement();
+	}
+	/**
+	 * Writes an element with the given name and value.
+	 */
+	private static void writeElement(XMLStreamWriter writer, String name, boolean value) throws XMLStreamException {
+		writer.writeStartElement(name);
+		writer.writeCharacters(Boolean.toString(value));
+		writer.writeEndElement();
+	}
+}
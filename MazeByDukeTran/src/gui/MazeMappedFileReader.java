@@ -0,0 +1,190 @@
+/**
+ *
+ */
+package gui;
+
+import generation.BSPNode;
+import generation.Distance;
+import generation.Floorplan;
+import generation.Maze;
+import generation.MazeContainer;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class provides functionality to load a maze from a binary file with a fixed layout
+ * as written by MazeBinaryFileWriter without copying cells and distances.
+ * The file is memory mapped and the Floorplan and Distance objects are views
+ * that read their values directly from the mapped buffer.
+ * The operating system loads pages of the file on demand, so opening
+ * a large maze takes about as long as reading its header and BSP tree.
+ *
+ * The mapping is read only. If the game modifies the floorplan or distances,
+ * these objects copy their values into regular arrays first (copy on write),
+ * the file is never changed.
+ *
+ * If the file holds an indexed tree, the BSP tree is loaded on demand as well,
+ * see LazyBSPBranch, so the resident set stays small even for huge mazes.
+ *
+ * @author Duke Tran
+ */
+public class MazeMappedFileReader {
+
+	// fields of maze configuration object
+	private int width ;
+	private int height ;
+	private int rooms ;
+	private Distance dists ;
+	private int expected_partiters ;
+	private Floorplan cells ;
+	private int startx ;
+	private int starty ;
+	private BSPNode root ;
+
+	/**
+	 * Constructor maps the given file and reads maze data from it.
+	 *
+	 * @param filename of a binary maze file with a fixed layout, see {@link #isMappable(String) isMappable}
+	 * @throws UncheckedIOException if the file can not be mapped or does not have a fixed layout
+	 */
+	public MazeMappedFileReader(String filename) {
+		load(filename);
+	}
+
+	/**
+	 * Tells if the given file is a binary maze file with a fixed layout
+	 * such that cells and distances can be used in place.
+	 * @param filename of an existing file
+	 * @return true if the file can be memory mapped, false otherwise
+	 */
+	public static boolean isMappable(String filename) {
+		try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+			return file.length() >= MazeBinaryFileWriter.HEADER_SIZE
+					&& MazeBinaryFileWriter.MAGIC == file.readInt()
+					&& MazeBinaryFileWriter.VERSION == file.readShort()
+					&& MazeBinaryFileWriter.CELLS_UNPACKED == file.readByte()
+					&& 4 == file.readByte();
+		} catch (IOException ioe) {
+			return false;
+		}
+	}
+
+	/**
+	 * Provides the data loaded from file wrapped in a MazeConfiguration.
+	 * @return maze configuration loaded from file
+	 */
+	Maze getMazeConfiguration() {
+		Maze mazeConfig = new MazeContainer() ;
+		mazeConfig.setHeight(getHeight());
+		mazeConfig.setWidth(getWidth());
+		mazeConfig.setFloorplan(getCells());
+		mazeConfig.setMazedists(getDistances());
+		mazeConfig.setRootnode(getRootNode());
+		mazeConfig.setStartingPosition(getStartX(), getStartY());
+		return mazeConfig;
+	}
+	/////////////////// set of straightforward get methods //////////////
+	int getWidth() {
+		return width ;
+	}
+	int getHeight() {
+		return height ;
+	}
+	int getRooms() {
+		return rooms ;
+	}
+	Distance getDistances() {
+		return dists ;
+	}
+	int getExpectedPartiters() {
+		return expected_partiters ;
+	}
+	Floorplan getCells() {
+		return cells ;
+	}
+	int getStartX() {
+		return startx ;
+	}
+	int getStartY() {
+		return starty ;
+	}
+	BSPNode getRootNode() {
+		return root ;
+	}
+
+	/**
+	 * Method provides main functionality to map the given file and read all attributes of maze object
+	 * @param filename gives the input file
+	 * @throws UncheckedIOException if the file can not be mapped or does not have a fixed layout
+	 */
+	private void load(String filename) {
+		try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+			// the mapping stays valid after the channel is closed
+			MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+			load(buffer);
+		} catch (IOException ioe) {
+			// a half initialized reader must not be used, so there is nothing to return
+			throw new UncheckedIOException("MazeMappedFileReader: can not load " + filename, ioe);
+		} catch (BufferUnderflowException e) {
+			// the layout fits the file but the BSP tree is cut off
+			throw new UncheckedIOException("MazeMappedFileReader: can not load " + filename,
+					new IOException("MazeMappedFileReader: file is truncated", e));
+		}
+	}
+	/**
+	 * Reads all attributes of a maze object from the given buffer,
+	 * cells and distances remain in the buffer.
+	 * The size of the layout that the header gives is checked against the buffer,
+	 * which holds the whole file, before any view on it is created.
+	 * @param buffer is positioned at the beginning of the header
+	 * @throws IOException if the buffer does not hold a binary maze with a fixed layout
+	 */
+	void load(ByteBuffer buffer) throws IOException {
+		// header
+		if (buffer.remaining() < MazeBinaryFileWriter.HEADER_SIZE)
+			throw new IOException("MazeMappedFileReader: header is truncated");
+		if (MazeBinaryFileWriter.MAGIC != buffer.getInt())
+			throw new IOException("MazeMappedFileReader: not a binary maze file");
+		short version = buffer.getShort();
+		if (MazeBinaryFileWriter.VERSION != version)
+			throw new IOException("MazeMappedFileReader: unsupported version " + version);
+		if (MazeBinaryFileWriter.CELLS_UNPACKED != buffer.get() || 4 != buffer.get())
+			throw new IOException("MazeMappedFileReader: file does not have a fixed layout");
+		width = buffer.getInt();
+		height = buffer.getInt();
+		rooms = buffer.getInt();
+		expected_partiters = buffer.getInt();
+		startx = buffer.getInt();
+		starty = buffer.getInt();
+		if (width <= 0 || height <= 0)
+			throw new IOException("MazeMappedFileReader: dimensions " + width + "x" + height + " out of range");
+		if (startx < 0 || width <= startx || starty < 0 || height <= starty)
+			throw new IOException("MazeMappedFileReader: starting position out of range");
+		// cells and distances with 4 bytes each and at least the tag of the root
+		final long size = 2L * width * height * 4 + 1;
+		if (buffer.remaining() < size)
+			throw new IOException("MazeMappedFileReader: file is truncated, " + size + " bytes expected after the header, "
+					+ buffer.remaining() + " found");
+		// views on cells and distances, 4 bytes per value each
+		final int n = width * height;
+		IntBuffer values = buffer.slice().asIntBuffer();
+		values.limit(n);
+		cells = new Floorplan(width, height, values);
+		values.clear().position(n).limit(2 * n);
+		dists = new Distance(width, height, values);
+		// BSP tree follows the distances, an indexed tree is loaded on demand
+		buffer.position(buffer.position() + 2 * n * 4);
+		byte tag = buffer.get(buffer.position());
+		if (MazeBinaryFileWriter.TAG_LEAF_INDEXED == tag || MazeBinaryFileWriter.TAG_BRANCH_INDEXED == tag)
+			root = LazyBSPBranch.load(buffer, buffer.position());
+		else
+			root = MazeBinaryFileReader.readBSPNode(buffer);
+	}
+}
@@ -109,7 +109,7 @@ public class MazePanel extends Panel implements P5Panel  {
 		// if necessary instantiate and store a graphics object for later use
 		if (null == graphics) { 
 			if (null == bufferImage) {
-				bufferImage = createImage(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT);
+				bufferImage = createBufferImage();
 				if (null == bufferImage)
 				{
 					System.out.println("Error: creation of buffered image failed, presumedly container not displayable");
@@ -135,6 +135,15 @@ public class MazePanel extends Panel implements P5Panel  {
 		return graphics;
 	}
 
+	/**
+	 * Creates the image that all drawing operations go to.
+	 * Subclasses may provide an image with a particular memory layout.
+	 * @return the image, null if the container is not displayable
+	 */
+	protected Image createBufferImage() {
+		return createImage(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT);
+	}
+
 	/**
 	 * Commits all accumulated drawings to the UI.
 	 * Substitute for MazePanel.update method. 
@@ -237,7 +246,7 @@ public class MazePanel extends Panel implements P5Panel  {
 	 * @param top is true for the top triangle, false for the bottom
 	 * @return the color to use for the background rectangle
 	 */
-	private int getBackgroundColor(float percentToExit, boolean top) {
+	protected int getBackgroundColor(float percentToExit, boolean top) {
 		return top ? blend(MazePanel.yellowWM, MazePanel.goldWM, percentToExit) : 
 			blend(MazePanel.LIGHT_GRAY, MazePanel.greenWM, percentToExit);
 	}
@@ -337,6 +346,35 @@ public class MazePanel extends Panel implements P5Panel  {
 		graphics.drawLine(startX, startY, endX, endY);		
 	}
 
+	/**
+     * Adds an image with its top left corner at the given position.
+     * Transparent pixels of the image leave the drawing underneath unchanged.
+     * Substitute for Graphics.drawImage method
+     * @param image is the image to draw
+     * @param x is the x-coordinate of the top left corner
+     * @param y is the y-coordinate of the top left corner
+     */
+	public void addImage(Image image, int x, int y) {
+		graphics.drawImage(image, x, y, null);
+	}
+
+	/**
+     * Adds a rectangular part of an image, scaled to fit the given rectangle.
+     * Substitute for Graphics.drawImage method
+     * @param image is the image to draw
+     * @param dx1 is the x-coordinate of the first corner of the destination rectangle
+     * @param dy1 is the y-coordinate of the first corner of the destination rectangle
+     * @param dx2 is the x-coordinate of the second corner of the destination rectangle
+     * @param dy2 is the y-coordinate of the second corner of the destination rectangle
+     * @param sx1 is the x-coordinate of the first corner of the source rectangle
+     * @param sy1 is the y-coordinate of the first corner of the source rectangle
+     * @param sx2 is the x-coordinate of the second corner of the source rectangle
+     * @param sy2 is the y-coordinate of the second corner of the source rectangle
+     */
+	public void addImage(Image image, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2) {
+		graphics.drawImage(image, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null);
+	}
+
 	/**
      * Adds a filled oval.
      * The oval is specified with the {@code (x,y)} coordinates
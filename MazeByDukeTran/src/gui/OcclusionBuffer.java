@@ -0,0 +1,172 @@
+/**
+ *
+ */
+package gui;
+
+import java.util.Arrays;
+
+/**
+ * Set of screen columns that are not covered by a wall yet, it replaces the RangeSet
+ * in the FirstPersonView. Its single current user is the FirstPersonView class.
+ *
+ * Columns are the integers of a fixed domain [0,width-1], the set is kept as a bitmap
+ * in an array of longs where a bit is one if its column is free. Since RangeSet only
+ * shrinks and splits intervals and never lets two of them touch, its intervals are
+ * exactly the maximal runs of free columns in the bitmap. So for columns within the domain
+ * set, remove, getIntersection and isEmpty behave exactly as for a RangeSet,
+ * columns outside of the domain are never in the set.
+ *
+ * Queries and updates work on whole words, i.e. 64 columns at a time, and do not allocate.
+ * Instead of getIntersection, which returns a new array like its RangeSet counterpart,
+ * clients use intersects, getFirst and getLast to find the runs in an interval.
+ *
+ * @author Duke Tran
+ */
+public class OcclusionBuffer {
+	// number of columns
+	private final int width;
+	// bit i of word i/64 is one if column i is in the set, bits beyond width are zero
+	private final long[] free;
+
+	/**
+	 * Constructor for an empty set
+	 * @param width is the number of columns, the domain is [0,width-1]
+	 */
+	public OcclusionBuffer(int width) {
+		assert width > 0 : "OcclusionBuffer: width must be positive";
+		this.width = width;
+		free = new long[(width + 63) >>> 6];
+	}
+
+	/**
+	 * Tells if the set is empty.
+	 * @return true if the set is empty, false otherwise
+	 */
+	public boolean isEmpty() {
+		for (long word : free) {
+			if (0 != word)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Clears the set and fills it with a single new interval as specified,
+	 * the interval is cut to the domain.
+	 * @param lowerBound minimum value for new element
+	 * @param upperBound maximum value for new element
+	 */
+	public void set(int lowerBound, int upperBound) {
+		Arrays.fill(free, 0);
+		assign(lowerBound, upperBound, true);
+	}
+
+	/**
+	 * Removes interval [lb,ub] from existing set
+	 * such that none of its elements intersects with it anymore.
+	 * @param lowerBound is the lower bound lb of the interval
+	 * @param upperBound is the upper bound ub of the interval
+	 */
+	public void remove(int lowerBound, int upperBound) {
+		// make sure lowerBound <= upperBound
+		if (upperBound < lowerBound) {
+			int tmp = upperBound;
+			upperBound = lowerBound;
+			lowerBound = tmp;
+		}
+		assign(lowerBound, upperBound, false);
+	}
+
+	/**
+	 * Tells if the given interval [lowerBound,upperBound] intersects with the set.
+	 * @param lowerBound gives the low end of the interval of interest
+	 * @param upperBound gives the high end of the interval of interest
+	 * @return true if some element of the interval is in the set
+	 */
+	public boolean intersects(int lowerBound, int upperBound) {
+		return getFirst(lowerBound, upperBound) >= 0;
+	}
+
+	/**
+	 * Finds the smallest element of the set in the given interval.
+	 * This is the lower bound of the intersection computed by getIntersection.
+	 * @param lowerBound gives the low end of the interval of interest
+	 * @param upperBound gives the high end of the interval of interest
+	 * @return the smallest element in [lowerBound,upperBound], -1 if there is none
+	 */
+	public int getFirst(int lowerBound, int upperBound) {
+		lowerBound = Math.max(0, lowerBound);
+		upperBound = Math.min(width - 1, upperBound);
+		if (lowerBound > upperBound)
+			return -1;
+		int index = lowerBound >>> 6;
+		long word = free[index] & (-1L << lowerBound);
+		final int last = upperBound >>> 6;
+		while (0 == word) {
+			if (++index > last)
+				return -1;
+			word = free[index];
+		}
+		final int result = (index << 6) + Long.numberOfTrailingZeros(word);
+		return (result <= upperBound) ? result : -1;
+	}
+
+	/**
+	 * Finds the end of the run of elements that starts at the given element.
+	 * This is the upper bound of the intersection computed by getIntersection.
+	 * @param first is an element of the set
+	 * @param upperBound gives the high end of the interval of interest, {@code first <= upperBound}
+	 * @return the largest value in [first,upperBound] such that all values from first are in the set
+	 */
+	public int getLast(int first, int upperBound) {
+		assert 0 <= first && first < width && 0 != (free[first >>> 6] & (1L << first)) :
+			"OcclusionBuffer.getLast: first must be in the set";
+		upperBound = Math.min(width - 1, upperBound);
+		int index = first >>> 6;
+		long word = ~free[index] & (-1L << first);
+		final int last = upperBound >>> 6;
+		while (0 == word) {
+			if (++index > last)
+				return upperBound;
+			word = ~free[index];
+		}
+		return Math.min(upperBound, (index << 6) + Long.numberOfTrailingZeros(word) - 1);
+	}
+
+	/**
+	 * Computes an intersection of the given interval [lowerBound,upperBound] with the
+	 * intervals in this set, just like RangeSet.getIntersection.
+	 * @param lowerBound gives the low end of the interval of interest
+	 * @param upperBound gives the high end of the interval of interest
+	 * @return [lb,ub] with lower and upper bound for the intersection, null if there is none
+	 */
+	public int[] getIntersection(int lowerBound, int upperBound) {
+		final int first = getFirst(lowerBound, upperBound);
+		if (first < 0)
+			return null;
+		return new int[] {first, getLast(first, upperBound)};
+	}
+
+	/**
+	 * Sets or clears all bits of the given interval within the domain.
+	 */
+	private void assign(int lowerBound, int upperBound, boolean value) {
+		lowerBound = Math.max(0, lowerBound);
+		upperBound = Math.min(width - 1, upperBound);
+		if (lowerBound > upperBound)
+			return;
+		final int first = lowerBound >>> 6;
+		final int last = upperBound >>> 6;
+		for (int index = first; index <= last; index++) {
+			long mask = -1L;
+			if (index == first)
+				mask &= -1L << lowerBound;
+			if (index == last)
+				mask &= -1L >>> (63 - (upperBound & 63));
+			if (value)
+				free[index] |= mask;
+			else
+				free[index] &= ~mask;
+		}
+	}
+}
@@ -0,0 +1,258 @@
+/**
+ *
+ */
+package gui;
+
+import generation.CompiledBSPTree;
+import generation.Floorplan;
+import generation.Maze;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * A potentially visible set (PVS) tells for each cell of a maze which nodes of its
+ * BSP tree contribute to the first person view from that cell.
+ * FirstPersonView skips all subtrees that do not contain such a node
+ * instead of testing their bounding boxes against the view.
+ *
+ * Nodes are identified by their number in the CompiledBSPTree, i.e. in preorder.
+ * The set needs the whole tree, it is not meant for trees that are loaded on demand
+ * as their nodes are numbered in the order they are compiled.
+ * A leaf is in the set of a cell if at least one of its walls is drawn for any view
+ * that the game shows at that cell: every angle of a rotation with the viewer at the
+ * center and every walk step towards the four neighbors, see {@link #covers(int, int, int, int) covers}.
+ * A branch is in the set if one of its descendants is.
+ * The set is computed by FirstPersonView itself, so skipping other nodes does not change
+ * what is drawn or which walls are marked as seen.
+ *
+ * For each cell, only the non-zero 64 bit words of its bitset are stored together
+ * with their index. As the nodes visible from a cell are close to each other in the maze
+ * and nodes that are close to each other have close numbers, few words are needed.
+ * Cells are processed in parallel, each with a FirstPersonView of its own.
+ *
+ * The set can be written to a file and read back for the same maze, files
+ * carry a key computed from the geometry of the BSP tree to recognize a different maze.
+ *
+ * @author Duke Tran
+ */
+public class PotentiallyVisibleSet {
+	/**
+	 * Magic number at the beginning of each file, reads as "MPVS".
+	 */
+	public static final int MAGIC = 0x4D505653;
+	/**
+	 * Version of the file layout, to be increased with each incompatible change.
+	 */
+	public static final short VERSION = 1;
+	// number of cells that are processed together by one FirstPersonView
+	private static final int CELLS_PER_TASK = 16;
+
+	private final int width;
+	private final int height;
+	private final int nodeCount;
+	// identifies the geometry of the tree, see CompiledBSPTree.getGeometryHash
+	private final long key;
+	// non-zero words of cell x*height+y are at index cellStart[cell] ... cellStart[cell+1]-1,
+	// wordIndex in ascending order, words[i] holds the bits of nodes 64*wordIndex[i] ... 64*wordIndex[i]+63
+	private int[] cellStart;
+	private int[] wordIndex;
+	private long[] words;
+
+	/**
+	 * Computes the set for all cells of the given maze.
+	 * @param maze provides dimensions and the BSP tree, not null
+	 */
+	public PotentiallyVisibleSet(Maze maze) {
+		this(maze.getWidth(), maze.getHeight(), new CompiledBSPTree(maze.getRootnode()), true);
+	}
+
+	/**
+	 * Constructor for an empty set or a set that is computed right away.
+	 * @param tree is the compiled BSP tree, it is shared by all views that compute the set
+	 * @param compute tells if the set is computed
+	 */
+	private PotentiallyVisibleSet(int width, int height, CompiledBSPTree tree, boolean compute) {
+		this.width = width;
+		this.height = height;
+		nodeCount = tree.getNodeCount();
+		key = tree.getGeometryHash();
+		if (compute)
+			compute(tree);
+	}
+
+	/**
+	 * Tells if FirstPersonView may use this set for the given view,
+	 * i.e. if the view is one of the views the set has been computed for.
+	 * @param x coordinate of the current cell
+	 * @param y coordinate of the current cell
+	 * @param walkStep is the number of intermediate steps towards the next cell
+	 * @param angle is the viewing angle in degrees
+	 * @return true if the view is covered
+	 */
+	public boolean covers(int x, int y, int walkStep, int angle) {
+		if (x < 0 || x >= width || y < 0 || y >= height || angle < 0 || angle >= 360)
+			return false;
+		// steps only happen in one of the four directions
+		return 0 == walkStep || (0 == angle % 90 && Math.abs(walkStep) < GameLoop.Motion.WALK_STEPS);
+	}
+
+	/**
+	 * Tells if a node is in the set of a cell.
+	 * @param x coordinate of the cell
+	 * @param y coordinate of the cell
+	 * @param node is the number of the node in preorder
+	 * @return true if the node contributes to some view from the cell
+	 */
+	public boolean contains(int x, int y, int node) {
+		final int cell = x*height + y;
+		final int i = Arrays.binarySearch(wordIndex, cellStart[cell], cellStart[cell + 1], node >>> 6);
+		return i >= 0 && 0 != (words[i] & (1L << node));
+	}
+
+	/**
+	 * @return the number of nodes in the BSP tree
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @return the number of 64 bit words that are stored for all cells
+	 */
+	public int getWordCount() {
+		return words.length;
+	}
+
+	/**
+	 * Collects the visible nodes for all cells, blocks of cells are processed in parallel.
+	 */
+	private void compute(CompiledBSPTree tree) {
+		final int cells = width*height;
+		final long[][] bits = new long[cells][];
+		IntStream.range(0, (cells + CELLS_PER_TASK - 1) / CELLS_PER_TASK).parallel().forEach(task -> {
+			// views keep state while drawing, so each task needs its own
+			FirstPersonView view = new FirstPersonView(null, Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT,
+					Constants.MAP_UNIT, Constants.STEP_SIZE, new Floorplan(width + 1, height + 1), tree);
+			BitSet nodes = new BitSet(nodeCount);
+			for (int cell = task*CELLS_PER_TASK; cell < Math.min(cells, (task + 1)*CELLS_PER_TASK); cell++) {
+				nodes.clear();
+				collect(view, cell / height, cell % height, nodes);
+				bits[cell] = nodes.toLongArray();
+			}
+		});
+		// keep non-zero words only
+		cellStart = new int[cells + 1];
+		for (int cell = 0; cell < cells; cell++) {
+			int count = 0;
+			for (long word : bits[cell]) {
+				if (0 != word)
+					count++;
+			}
+			cellStart[cell + 1] = cellStart[cell] + count;
+		}
+		wordIndex = new int[cellStart[cells]];
+		words = new long[cellStart[cells]];
+		for (int cell = 0; cell < cells; cell++) {
+			int i = cellStart[cell];
+			for (int w = 0; w < bits[cell].length; w++) {
+				if (0 != bits[cell][w]) {
+					wordIndex[i] = w;
+					words[i++] = bits[cell][w];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Collects the nodes for all views that are covered at the given cell.
+	 */
+	private void collect(FirstPersonView view, int x, int y, BitSet nodes) {
+		for (int angle = 0; angle < 360; angle++) {
+			view.collectVisibleNodes(x, y, 0, angle, nodes);
+		}
+		for (int angle = 0; angle < 360; angle += 90) {
+			for (int walkStep = 1; walkStep < GameLoop.Motion.WALK_STEPS; walkStep++) {
+				view.collectVisibleNodes(x, y, walkStep, angle, nodes);
+				view.collectVisibleNodes(x, y, -walkStep, angle, nodes);
+			}
+		}
+	}
+
+	/////////////////////// file operations ///////////////////////////////////
+	/**
+	 * Writes the set to a file.
+	 * @param filename is the name of the file
+	 */
+	public void store(String filename) {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeLong(key);
+			out.writeInt(width);
+			out.writeInt(height);
+			out.writeInt(words.length);
+			for (int cell = 0; cell < width*height; cell++) {
+				out.writeInt(cellStart[cell + 1] - cellStart[cell]);
+			}
+			for (int i = 0; i < words.length; i++) {
+				out.writeInt(wordIndex[i]);
+				out.writeLong(words[i]);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Reads a set from a file that has been written for the given maze.
+	 * @param filename is the name of the file
+	 * @param maze provides dimensions and the BSP tree, not null
+	 * @return the set, null if the file does not exist, can not be read or belongs to a different maze
+	 */
+	public static PotentiallyVisibleSet load(String filename, Maze maze) {
+		if (!new File(filename).exists())
+			return null;
+		PotentiallyVisibleSet result = new PotentiallyVisibleSet(maze.getWidth(), maze.getHeight(),
+				new CompiledBSPTree(maze.getRootnode()), false);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+			if (MAGIC != in.readInt() || VERSION != in.readShort()) {
+				System.out.println("PotentiallyVisibleSet.load: " + filename + " is not a file of this version");
+				return null;
+			}
+			if (result.key != in.readLong() || result.width != in.readInt() || result.height != in.readInt()) {
+				System.out.println("PotentiallyVisibleSet.load: " + filename + " belongs to a different maze");
+				return null;
+			}
+			final int count = in.readInt();
+			final int cells = result.width*result.height;
+			result.cellStart = new int[cells + 1];
+			for (int cell = 0; cell < cells; cell++) {
+				result.cellStart[cell + 1] = result.cellStart[cell] + in.readInt();
+			}
+			if (count != result.cellStart[cells]) {
+				System.out.println("PotentiallyVisibleSet.load: " + filename + " is inconsistent");
+				return null;
+			}
+			result.wordIndex = new int[count];
+			result.words = new long[count];
+			for (int i = 0; i < count; i++) {
+				result.wordIndex[i] = in.readInt();
+				result.words[i] = in.readLong();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,344 @@
+/**
+ *
+ */
+package gui;
+
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * A MazePanel that draws the first person view directly into the pixels
+ * of its buffer image instead of going through Graphics2D.
+ *
+ * The buffer image is an int RGB image whose pixels are accessed as an int array.
+ * Every wall drawn by FirstPersonView is a trapezoid with vertical left and right edges.
+ * It is converted column by column into a span from the top edge to the bottom edge
+ * of each column, no antialiasing or polygon scan conversion is involved.
+ * Pixels are covered if their center is inside the polygon, which is what
+ * Graphics.fillPolygon does without antialiasing and with pure stroke control.
+ *
+ * Background and spans are not written right away. As FirstPersonView draws
+ * each column at most once per frame, a single span per column suffices.
+ * Before anything else is drawn on top or the image is shown, the background
+ * and all spans are written to the pixel array in blocks of rows that fit into
+ * the processor cache, so the column spans do not cause a cache miss per pixel.
+ *
+ * All other drawing operations, i.e. lines and markers of the map and the compass rose,
+ * are passed on to the Graphics2D object of the same image.
+ * The image is copied to the screen once per frame in commit.
+ *
+ * The buffer image does not depend on the screen, so this panel is also
+ * operational if it is not displayable, e.g. for benchmarks.
+ * Its size may differ from the size of the screen for the same reason.
+ *
+ * Strips of a FirstPersonView draw concurrently with addFilledTrapezoid,
+ * which only touches the columns of the given trapezoid.
+ *
+ * @author Duke Tran
+ */
+public class RasterPanel extends MazePanel {
+	private static final long serialVersionUID = 6145326389870231876L;
+	// number of rows that are written together in flush
+	private static final int BLOCK_ROWS = 16;
+
+	// size of the buffer image
+	private final int bufferWidth;
+	private final int bufferHeight;
+	// pixels of the buffer image in row major order
+	private int[] pixels;
+	private int width;
+	private int height;
+	// current color, only passed on to the graphics object if needed
+	private int color;
+	private boolean colorPending;
+	// background colors above and below the horizon
+	private int skyColor;
+	private int floorColor;
+	// true if the background has been requested but not written yet
+	private boolean backgroundPending;
+	// true if some column has a span that has not been written yet
+	private boolean spansPending;
+	// span of each column from top (inclusive) to bottom (exclusive) and its color
+	private int[] spanTop;
+	private int[] spanBottom;
+	private int[] spanColor;
+	// columns that have a span, possibly an empty one
+	private boolean[] covered;
+
+	/**
+	 * Constructor for a panel with the size of the screen.
+	 */
+	public RasterPanel() {
+		this(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT);
+	}
+
+	/**
+	 * Constructor for a panel with a buffer image of the given size.
+	 * @param width of the buffer image
+	 * @param height of the buffer image
+	 */
+	public RasterPanel(int width, int height) {
+		assert width > 0 && height > 0 : "RasterPanel: size must be positive";
+		bufferWidth = width;
+		bufferHeight = height;
+	}
+
+	/**
+	 * Creates an int RGB image and keeps a reference to its pixels.
+	 */
+	@Override
+	protected Image createBufferImage() {
+		BufferedImage image = new BufferedImage(bufferWidth, bufferHeight, BufferedImage.TYPE_INT_RGB);
+		pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		width = image.getWidth();
+		height = image.getHeight();
+		spanTop = new int[width];
+		spanBottom = new int[width];
+		spanColor = new int[width];
+		covered = new boolean[width];
+		return image;
+	}
+
+	/**
+	 * Writes background and spans before the graphics object is used by clients.
+	 */
+	@Override
+	public Graphics getBufferGraphics() {
+		Graphics graphics = super.getBufferGraphics();
+		flush();
+		return graphics;
+	}
+
+	@Override
+	public void commit() {
+		flush();
+		super.commit();
+	}
+
+	/**
+	 * Provides the color of a pixel as it is shown with the next commit.
+	 * @param x coordinate of the pixel
+	 * @param y coordinate of the pixel
+	 * @return the RGB value of the pixel
+	 */
+	int getPixel(int x, int y) {
+		flush();
+		// Graphics2D may set the unused alpha bits
+		return pixels[y*width + x] & 0xFFFFFF;
+	}
+
+	@Override
+	public void setColor(int rgb) {
+		color = rgb;
+		colorPending = true;
+	}
+
+	@Override
+	public int getColor() {
+		return color;
+	}
+
+	/**
+	 * Requests the background, it is written together with the spans
+	 * of the walls that are drawn on top of it.
+	 */
+	@Override
+	public void addBackground(float percentToExit) {
+		// spans drawn before are overwritten by the background
+		spansPending = false;
+		Arrays.fill(covered, false);
+		skyColor = getBackgroundColor(percentToExit, true);
+		floorColor = getBackgroundColor(percentToExit, false);
+		backgroundPending = true;
+	}
+
+	/**
+	 * Fills the rectangle in the pixel array.
+	 */
+	@Override
+	public void addFilledRectangle(int x, int y, int width, int height) {
+		flush();
+		final int left = Math.max(0, x);
+		final int right = Math.min(this.width, x + width);
+		final int top = Math.max(0, y);
+		final int bottom = Math.min(this.height, y + height);
+		if (left >= right)
+			return;
+		for (int row = top; row < bottom; row++) {
+			Arrays.fill(pixels, row*this.width + left, row*this.width + right, color);
+		}
+	}
+
+	/**
+	 * Fills trapezoids with vertical left and right edges in the pixel array,
+	 * points are expected in the order used by FirstPersonView: top left, bottom left,
+	 * bottom right, top right. Other polygons are drawn with Graphics2D.
+	 */
+	@Override
+	public void addFilledPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+		if (4 == nPoints && xPoints[0] == xPoints[1] && xPoints[2] == xPoints[3] && xPoints[0] < xPoints[2]) {
+			fillTrapezoid(color, xPoints[0], xPoints[2], yPoints[0], yPoints[1], yPoints[3], yPoints[2]);
+			return;
+		}
+		prepareGraphics();
+		super.addFilledPolygon(xPoints, yPoints, nPoints);
+	}
+
+	/**
+	 * Fills a trapezoid as given to addFilledPolygon with the given color,
+	 * the current color is neither used nor changed.
+	 * Strips of a FirstPersonView call this method concurrently after the background
+	 * has been requested. This is safe as long as their columns are disjoint and 
+	 * each column is drawn at most once, as only the spans of the columns are written.
+	 * @param rgb is the color of the trapezoid
+	 * @param xPoints are the x coordinates of the points, with vertical left and right edges
+	 * @param yPoints are the y coordinates of the points
+	 */
+	void addFilledTrapezoid(int rgb, int[] xPoints, int[] yPoints) {
+		assert xPoints[0] == xPoints[1] && xPoints[2] == xPoints[3] && xPoints[0] < xPoints[2] :
+			"RasterPanel.addFilledTrapezoid: left and right edges must be vertical";
+		fillTrapezoid(rgb, xPoints[0], xPoints[2], yPoints[0], yPoints[1], yPoints[3], yPoints[2]);
+	}
+
+	/**
+	 * Records the spans of the trapezoid between the given left and right edges.
+	 * Column c is covered from the top to the bottom edge at its center c + 1/2,
+	 * rows are covered if their center is between both edges.
+	 * @param rgb is the color of the trapezoid
+	 * @param x1 is the left edge, first column to fill
+	 * @param x2 is the right edge, first column not to fill, {@code x1 < x2}
+	 * @param top1 is the top edge at x1
+	 * @param bottom1 is the bottom edge at x1
+	 * @param top2 is the top edge at x2
+	 * @param bottom2 is the bottom edge at x2
+	 */
+	private void fillTrapezoid(int rgb, int x1, int x2, int top1, int bottom1, int top2, int bottom2) {
+		final long w = 2L*(x2 - x1);
+		final int first = Math.max(0, x1);
+		final int last = Math.min(width, x2);
+		for (int column = first; column < last; column++) {
+			// twice the distance of the column center from the left edge
+			final long k = 2L*(column - x1) + 1;
+			int top = firstRowBelow(top1, top2, k, w);
+			int bottom = firstRowBelow(bottom1, bottom2, k, w);
+			if (top > bottom) {
+				// edges are given the other way round
+				final int swap = top;
+				top = bottom;
+				bottom = swap;
+			}
+			if (covered[column]) {
+				// a second span in this column, write the first one
+				flush();
+			}
+			covered[column] = true;
+			spanTop[column] = Math.max(0, Math.min(height, top));
+			spanBottom[column] = Math.max(0, Math.min(height, bottom));
+			spanColor[column] = rgb;
+			spansPending = true;
+		}
+	}
+
+	/**
+	 * Calculates the first row whose center is at or below the edge
+	 * from (0,y1) to (w,y2) at position k, i.e. ceil(y1 + (y2-y1)*k/w - 1/2).
+	 */
+	private static int firstRowBelow(int y1, int y2, long k, long w) {
+		// all values times 2w to stay with integers
+		final long scaled = 2*w*y1 + 2*(y2 - y1)*k - w;
+		return (int) Math.floorDiv(scaled + 2*w - 1, 2*w);
+	}
+
+	/**
+	 * Writes the pending background and spans to the pixel array.
+	 * Rows are processed in blocks that fit into the processor cache: the background
+	 * is written row by row, then the spans of all columns are written within the block.
+	 * Without a background, pixels outside of spans keep their values.
+	 */
+	private void flush() {
+		if (!backgroundPending && !spansPending)
+			return;
+		final int horizon = height/2;
+		for (int blockTop = 0; blockTop < height; blockTop += BLOCK_ROWS) {
+			final int blockBottom = Math.min(height, blockTop + BLOCK_ROWS);
+			if (backgroundPending) {
+				for (int row = blockTop; row < blockBottom; row++) {
+					Arrays.fill(pixels, row*width, (row + 1)*width, (row < horizon) ? skyColor : floorColor);
+				}
+			}
+			if (!spansPending)
+				continue;
+			for (int column = 0; column < width; column++) {
+				if (!covered[column])
+					continue;
+				final int top = Math.max(blockTop, spanTop[column]);
+				final int bottom = Math.min(blockBottom, spanBottom[column]);
+				final int c = spanColor[column];
+				for (int i = top*width + column, end = bottom*width; i < end; i += width) {
+					pixels[i] = c;
+				}
+			}
+		}
+		backgroundPending = false;
+		spansPending = false;
+		Arrays.fill(covered, false);
+	}
+
+	/////////////////// operations that are passed on to Graphics2D //////////////
+	/**
+	 * Writes the pending background and spans and passes the current color on to the
+	 * graphics object if it has changed.
+	 */
+	private void prepareGraphics() {
+		flush();
+		if (colorPending) {
+			super.setColor(color);
+			colorPending = false;
+		}
+	}
+
+	@Override
+	public void addPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+		prepareGraphics();
+		super.addPolygon(xPoints, yPoints, nPoints);
+	}
+
+	@Override
+	public void addLine(int startX, int startY, int endX, int endY) {
+		prepareGraphics();
+		super.addLine(startX, startY, endX, endY);
+	}
+
+	@Override
+	public void addImage(Image image, int x, int y) {
+		prepareGraphics();
+		super.addImage(image, x, y);
+	}
+
+	@Override
+	public void addImage(Image image, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2) {
+		prepareGraphics();
+		super.addImage(image, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2);
+	}
+
+	@Override
+	public void addFilledOval(int x, int y, int width, int height) {
+		prepareGraphics();
+		super.addFilledOval(x, y, width, height);
+	}
+
+	@Override
+	public void addArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+		prepareGraphics();
+		super.addArc(x, y, width, height, startAngle, arcAngle);
+	}
+
+	@Override
+	public void addMarker(float x, float y, String str) {
+		prepareGraphics();
+		super.addMarker(x, y, str);
+	}
+}
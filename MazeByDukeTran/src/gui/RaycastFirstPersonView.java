@@ -0,0 +1,294 @@
+/**
+ *
+ */
+package gui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import generation.BSPBranch;
+import generation.BSPLeaf;
+import generation.BSPNode;
+import generation.CardinalDirection;
+import generation.Floorplan;
+import generation.ListOfWallsBuilder;
+import generation.Maze;
+import generation.Wall;
+
+/**
+ * This class draws the first person view by casting a ray through the
+ * grid of cells for each column of the screen instead of traversing a BSP tree.
+ * As all walls of a maze are on the lines of the grid, the first wall a ray
+ * meets is found by stepping from cell to cell along the ray (a digital
+ * differential analyzer) and checking the side of the cell it leaves.
+ *
+ * Walls are the same Wall objects with the same colors the FirstPersonView draws:
+ * the walls of the BSP tree if the maze has one, otherwise the walls that the
+ * BSPBuilder would start with, which are recreated from the floorplan and the
+ * color change value of the maze. Hence a maze that is only drawn with this view
+ * does not need a BSP tree at all.
+ * A table gives for each side of each cell the wall that covers it.
+ *
+ * The projection is the same as for the FirstPersonView: the viewer is at the
+ * same position, the screen has the same field of view and walls have the same height.
+ * Consecutive columns that show the same wall are drawn as a single polygon,
+ * whose top and bottom edges are interpolated from the distances at the
+ * first and the last column. Pixels may differ from the FirstPersonView
+ * by rounding at the edges of walls.
+ * Walls are marked as seen whenever some column shows them.
+ *
+ * @author Duke Tran
+ */
+public class RaycastFirstPersonView implements FirstPersonDrawer {
+	// height of the eye above the floor and height of walls as in FirstPersonView
+	private static final int VIEW_Z = 50;
+	private static final int WALL_HEIGHT = 100;
+	// minimum distance of a wall as in the clipping of the FirstPersonView
+	private static final int NEAR = 4;
+	// sides of a cell, in the order of CardinalDirection
+	private static final int NORTH = CardinalDirection.North.ordinal();
+	private static final int EAST = CardinalDirection.East.ordinal();
+	private static final int SOUTH = CardinalDirection.South.ordinal();
+	private static final int WEST = CardinalDirection.West.ordinal();
+
+	final private int viewWidth;
+	final private int viewHeight;
+	final private int mapUnit;
+	final private int stepSize;
+	// the horizon, also scales distances into screen coordinates
+	final private int scaleZ;
+	final private int width;
+	final private int height;
+
+	/**
+	 * A data structure to store which wallboards have been visible during
+	 * the game, the Map can highlight them.
+	 */
+	final private Floorplan seenWalls;
+
+	// all walls of the maze
+	final private Wall[] walls;
+	// index of the wall on side s of cell (x,y) at index 4*(x*height+y)+s, -1 if there is none
+	final private int[] sides;
+
+	// current position of the viewer and viewing direction, set in draw
+	private int viewX;
+	private int viewY;
+	private double viewDX;
+	private double viewDY;
+	// for each column, the index of the wall it shows (-1 for none) and its inverse distance
+	final private int[] columnWall;
+	final private double[] columnInverseDistance;
+	// corner points of the polygon for a wall, reused for all walls
+	private final int[] xps = new int[4];
+	private final int[] yps = new int[4];
+
+	/**
+	 * Constructor
+	 * @param panel to draw on, may be null
+	 * @param width of display
+	 * @param height of display
+	 * @param mapUnit current scaling factor
+	 * @param stepSize
+	 * @param seenWalls to store which walls were put on display
+	 * @param maze provides the walls, either from its BSP tree or from its floorplan
+	 */
+	public RaycastFirstPersonView(MazePanel panel, int width, int height, int mapUnit, int stepSize, Floorplan seenWalls, Maze maze) {
+		viewWidth = width;
+		viewHeight = height;
+		if (null != panel)
+			panel.setViewDimensions(viewWidth, viewHeight);
+		this.mapUnit = mapUnit;
+		this.stepSize = stepSize;
+		this.seenWalls = seenWalls;
+		scaleZ = viewHeight/2;
+		this.width = maze.getWidth();
+		this.height = maze.getHeight();
+		walls = getWalls(maze);
+		sides = new int[4*this.width*this.height];
+		Arrays.fill(sides, -1);
+		for (int i = 0; i < walls.length; i++) {
+			addSides(walls[i], i);
+		}
+		columnWall = new int[viewWidth];
+		columnInverseDistance = new double[viewWidth];
+	}
+
+	/**
+	 * Provides the walls of the BSP tree if the maze has one, otherwise the walls
+	 * the BSPBuilder starts with.
+	 * Only the walls are kept, nodes of a tree that is loaded on demand
+	 * can be dropped again once their walls have been collected.
+	 */
+	private Wall[] getWalls(Maze maze) {
+		final BSPNode root = maze.getRootnode();
+		if (null != root) {
+			ArrayList<Wall> list = new ArrayList<Wall>();
+			collectWalls(root, list);
+			return list.toArray(new Wall[list.size()]);
+		}
+		if (maze.getColorChange() < 0)
+			System.out.println("RaycastFirstPersonView: color change unknown, colors of walls may differ");
+		ArrayList<Wall> list = new ListOfWallsBuilder(width, height, maze.getFloorplan(), maze.getMazedists(),
+				Math.max(0, maze.getColorChange())).generateWalls();
+		return list.toArray(new Wall[list.size()]);
+	}
+
+	/**
+	 * Adds the walls of all leaves of a subtree in preorder.
+	 */
+	private static void collectWalls(BSPNode node, ArrayList<Wall> walls) {
+		if (node.isIsleaf()) {
+			walls.addAll(((BSPLeaf) node).getSlist());
+			return;
+		}
+		BSPBranch branch = (BSPBranch) node;
+		collectWalls(branch.getLeftBranch(), walls);
+		collectWalls(branch.getRightBranch(), walls);
+	}
+
+	/**
+	 * Enters the wall for all sides of cells it covers.
+	 * The direction of a wall tells which side it is on: walls that extend
+	 * to the west are on the north side of the cells below them, walls that
+	 * extend to the east on the south side of the cells above them,
+	 * walls that extend to the south on the west side and walls that extend
+	 * to the north on the east side, see ListOfWallsBuilder.
+	 */
+	private void addSides(Wall wall, int index) {
+		final int x = wall.getStartPositionX()/mapUnit;
+		final int y = wall.getStartPositionY()/mapUnit;
+		final int dx = wall.getExtensionX()/mapUnit;
+		final int dy = wall.getExtensionY()/mapUnit;
+		if (dx < 0)
+			addSides(x + dx, x, y, y + 1, NORTH, index);
+		else if (dx > 0)
+			addSides(x, x + dx, y - 1, y, SOUTH, index);
+		else if (dy > 0)
+			addSides(x, x + 1, y, y + dy, WEST, index);
+		else
+			addSides(x - 1, x, y + dy, y, EAST, index);
+	}
+
+	/**
+	 * Enters the wall for the given side of cells [x1,x2) x [y1,y2).
+	 */
+	private void addSides(int x1, int x2, int y1, int y2, int side, int index) {
+		for (int x = x1; x < x2; x++) {
+			for (int y = y1; y < y2; y++) {
+				assert 0 <= x && x < width && 0 <= y && y < height : "RaycastFirstPersonView: wall outside of maze";
+				sides[4*(x*height + y) + side] = index;
+			}
+		}
+	}
+
+	@Override
+	public void draw(MazePanel mazePanel, int x, int y, int walkStep, int ang, float percentToExit) {
+		// viewers draw on the buffer graphics
+		if (!mazePanel.isOperational())
+			return;
+		setView(x, y, walkStep, ang);
+		mazePanel.addBackground(percentToExit);
+		for (int column = 0; column < viewWidth; column++) {
+			columnWall[column] = castRay(column);
+		}
+		// draw one polygon for each run of columns with the same wall
+		int first = 0;
+		while (first < viewWidth) {
+			int last = first;
+			while (last + 1 < viewWidth && columnWall[last + 1] == columnWall[first])
+				last++;
+			if (columnWall[first] >= 0)
+				drawWall(mazePanel, columnWall[first], first, last);
+			first = last + 1;
+		}
+	}
+
+	/**
+	 * Sets the position of the viewer and the viewing direction
+	 * with the same fixed point arithmetic as the FirstPersonView.
+	 */
+	private void setView(int x, int y, int walkStep, int ang) {
+		final int dx = (int) (Math.cos(ang*Math.PI/180)*(1<<16));
+		final int dy = (int) (Math.sin(ang*Math.PI/180)*(1<<16));
+		final int factor = stepSize*walkStep - Constants.VIEW_OFFSET;
+		viewX = (x*mapUnit + mapUnit/2) + ((dx*factor) >> 16);
+		viewY = (y*mapUnit + mapUnit/2) + ((dy*factor) >> 16);
+		viewDX = dx/(double) (1<<16);
+		viewDY = dy/(double) (1<<16);
+	}
+
+	/**
+	 * Follows the ray for the given column from cell to cell till it hits a wall.
+	 * The ray is parameterized such that its parameter is the distance in
+	 * viewing direction, the inverse of this distance is stored for the column.
+	 * @return the index of the wall, -1 if the ray leaves the maze through the exit
+	 */
+	private int castRay(int column) {
+		// ray through the center of the column, a point at distance t in viewing direction
+		// is t*(column-viewWidth/2)/scaleZ to the right, which is direction (viewDY,-viewDX)
+		final double u = (column + 0.5 - viewWidth/2)/scaleZ;
+		final double rayX = viewDX + u*viewDY;
+		final double rayY = viewDY - u*viewDX;
+		int x = Math.floorDiv(viewX, mapUnit);
+		int y = Math.floorDiv(viewY, mapUnit);
+		final int stepX = (rayX > 0) ? 1 : -1;
+		final int stepY = (rayY > 0) ? 1 : -1;
+		// parameter for the next vertical and horizontal line of the grid and for a whole cell
+		final double deltaX = (0 == rayX) ? Double.POSITIVE_INFINITY : mapUnit/Math.abs(rayX);
+		final double deltaY = (0 == rayY) ? Double.POSITIVE_INFINITY : mapUnit/Math.abs(rayY);
+		double nextX = (0 == rayX) ? Double.POSITIVE_INFINITY : ((x + (stepX > 0 ? 1 : 0))*mapUnit - viewX)/rayX;
+		double nextY = (0 == rayY) ? Double.POSITIVE_INFINITY : ((y + (stepY > 0 ? 1 : 0))*mapUnit - viewY)/rayY;
+		while (0 <= x && x < width && 0 <= y && y < height) {
+			final int cell = 4*(x*height + y);
+			if (nextX < nextY) {
+				final int wall = sides[cell + ((stepX > 0) ? EAST : WEST)];
+				if (wall >= 0) {
+					columnInverseDistance[column] = 1/Math.max(NEAR, nextX);
+					return wall;
+				}
+				x += stepX;
+				nextX += deltaX;
+			}
+			else {
+				final int wall = sides[cell + ((stepY > 0) ? SOUTH : NORTH)];
+				if (wall >= 0) {
+					columnInverseDistance[column] = 1/Math.max(NEAR, nextY);
+					return wall;
+				}
+				y += stepY;
+				nextY += deltaY;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Draws the polygon for a wall that is shown in columns [first,last]
+	 * and marks the wall as seen.
+	 * The inverse distance changes linearly along the screen for a plane wall,
+	 * so it is extrapolated from the column centers to the left and right edges.
+	 */
+	private void drawWall(MazePanel mazePanel, int wall, int first, int last) {
+		final double slope = (last > first) ?
+				(columnInverseDistance[last] - columnInverseDistance[first])/(last - first) : 0;
+		final double left = columnInverseDistance[first] - slope/2;
+		final double right = columnInverseDistance[last] + slope/2;
+		// same corner points as in FirstPersonView: top left, bottom left, bottom right, top right
+		xps[0] = first;
+		xps[1] = first;
+		xps[2] = last + 1;
+		xps[3] = last + 1;
+		yps[0] = viewHeight/2 - (int) (VIEW_Z*scaleZ*left);
+		yps[1] = viewHeight/2 + (int) ((WALL_HEIGHT - VIEW_Z)*scaleZ*left) + 1;
+		yps[2] = viewHeight/2 + (int) ((WALL_HEIGHT - VIEW_Z)*scaleZ*right) + 1;
+		yps[3] = viewHeight/2 - (int) (VIEW_Z*scaleZ*right);
+		final Wall w = walls[wall];
+		mazePanel.setColor(w.getColor());
+		mazePanel.addFilledPolygon(xps, yps, 4);
+		if (!w.isSeen()) {
+			w.setSeen(true);
+			seenWalls.addWall(w, mapUnit);
+		}
+	}
+}
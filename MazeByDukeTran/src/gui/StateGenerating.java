@@ -23,7 +23,7 @@ import gui.Constants.UserInput;
  * Responsibilities:
  * Show the generating screen and the progress during generation,
  * Accept input interrupt maze generation and return to title screen,  
- * Generate a maze with the maze factory.
+ * Generate a maze with the maze factory or load it from file in the background.
  *
  * This code is refactored code from Maze.java by 
  * Paul Falstad, www.falstad.com, Copyright (C) 1998, all rights reserved
@@ -50,6 +50,9 @@ public class StateGenerating extends DefaultState implements Order {
     // communication with the factory slightly more complicated.
     // Check the factory interface for details.
     protected Factory factory;
+    // The factory that is working on the current order,
+    // a MazeFileFactory if the maze is loaded from file
+    private Factory current;
     // The maze configuration produced by the factory
     //private MazeConfiguration mazeConfig; 
 
@@ -94,16 +97,6 @@ public class StateGenerating extends DefaultState implements Order {
 	public void setSeed(int seed) {
         this.seed = seed;  
     }
-    /**
-     * Loads maze from file and returns a corresponding maze configuration.
-     * @param filename, not null
-     */
-    private Maze loadMazeConfigurationFromFile(String filename) {
-        // load maze from file
-        MazeFileReader mfr = new MazeFileReader(filename);
-        // obtain MazeConfiguration
-        return mfr.getMazeConfiguration();
-    }
     /**
      * Start the maze generation.
      * @param controller needed to be able to switch states, not null
@@ -119,27 +112,31 @@ public class StateGenerating extends DefaultState implements Order {
         view = new SimpleScreens();
         // reset percentage for progress
         percentdone = 0;
-        // if given a filename, load maze from file
-        // otherwise, show view and order maze from factory
+        // if given a filename, load maze from file in the background
+        // otherwise, order maze from factory
+        // both look the same: progress is shown on the generating screen
+        // until the maze is delivered
         if (filename != null) {
-            // load maze from file
-            // push results into controller, imitating maze factory delivery
-            deliver(loadMazeConfigurationFromFile(filename));
+            // the file format is recognized by MazeFileFactory,
+            // binary files with a fixed layout are memory mapped,
+            // XML files are streamed without building a DOM tree
+            current = new MazeFileFactory(filename);
             // reset filename, next round will be generated again
             filename = null;  
         } else {
             // common case: generate maze with some algorithm
             assert null != factory : "Controller.init: factory must be present";
-        	// draw the initial screen
-            draw();
-            // make maze factory produce a maze 
-            // operates with background thread
-            // method returns immediately, 
-            // maze will be delivered later by calling this.deliver method
-            // this object implements Order, so it carries the spec for the maze
-            // to be generated
-            factory.order(this) ;
+            current = factory;
         }
+    	// draw the initial screen
+        draw();
+        // make factory produce a maze 
+        // operates with background thread
+        // method returns immediately, 
+        // maze will be delivered later by calling this.deliver method
+        // this object implements Order, so it carries the spec for the maze
+        // to be generated
+        current.order(this) ;
     }
     
     /**
@@ -156,7 +153,7 @@ public class StateGenerating extends DefaultState implements Order {
 
         // user could interrupt generation by pressing esc
         if (key == UserInput.ReturnToTitle) {
-            factory.cancel();
+            current.cancel();
             control.switchToTitle();
         }
         else {
@@ -180,6 +177,17 @@ public class StateGenerating extends DefaultState implements Order {
         }
         control.switchFromGeneratingToPlaying(mazeConfig);
     }
+    /**
+     * The fail method is the call back method for the background
+     * thread if it can not deliver a maze.
+     * The user is taken back to the title screen.
+     */
+    @Override
+    public void fail(String message) {
+        System.out.println("StateGenerating: maze could not be delivered: " + message);
+        if (null != control)
+            control.switchToTitle();
+    }
     //////////// set of trivial get methods ////////////////////////
     @Override
     public int getSkillLevel() {
@@ -197,6 +205,13 @@ public class StateGenerating extends DefaultState implements Order {
     public int getSeed() {
     	return seed;
     }
+    /**
+     * Skips the BSP tree if the first person view casts rays instead.
+     */
+    @Override
+    public boolean isBSPTreeNeeded() {
+    	return null == control || !control.isRaycasting();
+    }
     public int getPercentDone() {
         return percentdone;
     }
@@ -2,10 +2,14 @@ package gui;
 
 import gui.Constants.UserInput;
 
+import generation.BSPNode;
 import generation.CardinalDirection;
 import generation.Floorplan;
 import generation.Maze;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
 
 /**
  * Class handles the user interaction
@@ -26,22 +30,34 @@ import generation.Maze;
  * Accept input for manual operation (left, right, up, down etc),  
  * Update the graphics, recognize termination.
  *
+ * Input is handled right away: position and direction change
+ * as soon as keyDown returns, which is what robots rely on.
+ * The screen is drawn by a GameLoop on its own thread that shows
+ * rotations and steps as animations of fixed duration,
+ * so the input thread never waits for drawing.
+ * A frame is only drawn if the view differs from the frame on the panel,
+ * otherwise the panel shows the last frame again, e.g. after toggling
+ * the solution while the map is not on display.
+ *
  * This code is refactored code from Maze.java by Paul Falstad, 
  * www.falstad.com, Copyright (C) 1998, all rights reserved
  * Paul Falstad granted permission to modify and use code for teaching purposes.
  * Refactored by Peter Kemper
  */
-public class StatePlaying extends DefaultState {
-	FirstPersonView firstPersonView;
+public class StatePlaying extends DefaultState implements GameLoop.Scene {
+	FirstPersonDrawer firstPersonView;
 	Map mapView;
     MazePanel panel;
     Controller control;
     
     Maze mazeConfig; 
     
-    private boolean showMaze;           // toggle switch to show overall maze on screen
-    private boolean showSolution;       // toggle switch to show solution in overall maze on screen
-    private boolean mapMode; // true: display map of maze, false: do not display map of maze
+    // toggle switches are set by the input thread and read by the render thread
+    private volatile boolean showMaze;           // toggle switch to show overall maze on screen
+    private volatile boolean showSolution;       // toggle switch to show solution in overall maze on screen
+    private volatile boolean mapMode; // true: display map of maze, false: do not display map of maze
+    // zoom steps of the map that the render thread has not applied yet, positive to zoom in
+    private final AtomicInteger mapZoom = new AtomicInteger();
     // mapMode is toggled by user keyboard input, causes a call to drawMap during play mode
 
     // current position and direction with regard to MazeConfiguration
@@ -50,10 +66,27 @@ public class StatePlaying extends DefaultState {
     
     int distTraveled; // current distance traveled
     int angle; // current viewing angle, east == 0 degrees
-    int walkStep; // counter for intermediate steps within a single step forward or backward
     Floorplan seenCells; // a matrix with cells to memorize which cells are visible from the current point of view
     // the FirstPersonView obtains this information and the Map uses it for highlighting currently visible walls on the map
     private CompassRose cr; // compass rose to show current direction
+    private GameLoop loop; // draws the screen, null for a dry-run without graphics
+    
+    // the view of the frame on the panel, only accessed by the thread that draws
+    private boolean frameValid; // false if there is no frame or something was drawn on top of it
+    private int frameX, frameY, frameAngle, frameWalkStep;
+    private int frameMap; // map settings, see getMapKey
+    private long frameSeenWalls; // content hash of seen walls if the map is on display
+    private int frameTiles; // number of map tiles that were ready if the map is on display
+    private volatile int readyTiles; // counts map tiles that are ready, set by the tile listener
+    // frames that were drawn and frames where the last frame was shown again,
+    // written by the thread that draws and read by any thread
+    private volatile int framesDrawn;
+    private volatile int framesReused;
+    // potentially visible set of the last maze and tree it has been computed for,
+    // kept between games as computing it takes long, guarded by this
+    private Maze visibleSetMaze;
+    private BSPNode visibleSetRoot;
+    private PotentiallyVisibleSet visibleSet;
     
     // debug stuff
     //private boolean deepdebug = false;
@@ -93,7 +126,6 @@ public class StatePlaying extends DefaultState {
         seenCells = new Floorplan(mazeConfig.getWidth()+1,mazeConfig.getHeight()+1) ;
         // set the current position and direction consistently with the viewing direction
         setPositionDirectionViewingDirection();
-        walkStep = 0; // counts incremental steps during move/rotate operation
         
         // configure compass rose
         cr = new CompassRose(panel);
@@ -115,6 +147,7 @@ public class StatePlaying extends DefaultState {
         		control.getDriver().drive2Exit();
         	} catch (Exception e) {
         		System.out.println(e.toString());
+        		stopDrawer(false);
                 control.switchFromPlayingToWinning(0);
         	}
     }
@@ -124,12 +157,92 @@ public class StatePlaying extends DefaultState {
      * for this state.
      */
 	protected void startDrawer() {
-		firstPersonView = new FirstPersonView(panel, Constants.VIEW_WIDTH,
-				Constants.VIEW_HEIGHT, Constants.MAP_UNIT,
-				Constants.STEP_SIZE, seenCells, mazeConfig.getRootnode()) ;
+		if ((null != control && control.isRaycasting()) || null == mazeConfig.getRootnode()) {
+			// no BSP tree needed, the maze may not even have one
+			firstPersonView = new RaycastFirstPersonView(panel, Constants.VIEW_WIDTH,
+					Constants.VIEW_HEIGHT, Constants.MAP_UNIT,
+					Constants.STEP_SIZE, seenCells, mazeConfig) ;
+		}
+		else {
+			FirstPersonView view = new FirstPersonView(panel, Constants.VIEW_WIDTH,
+					Constants.VIEW_HEIGHT, Constants.MAP_UNIT,
+					Constants.STEP_SIZE, seenCells, mazeConfig.getRootnode()) ;
+			firstPersonView = view;
+			if (null != control && null != control.getVisibilityFile())
+				startVisibility(view, control.getVisibilityFile());
+			if (null != control && control.getStripCount() > 1)
+				view.setStrips(control.getStripCount(), ForkJoinPool.commonPool());
+		}
 		mapView = new Map(seenCells, 15, mazeConfig) ;
+		// show tiles of the map as soon as they are ready
+		mapView.setTileListener(() -> {
+			// only called on the single thread that draws tiles
+			readyTiles++;
+			GameLoop current = loop;
+			if (null != current)
+				current.redraw();
+		});
+		// a loop of a previous game may still be running
+		stopDrawer(false);
 		// draw the initial screen for this state
 		draw();
+		// all further drawing happens on the render thread
+		loop = new GameLoop(this, Constants.FRAME_RATE, px, py, angle);
+		loop.start();
+	}
+	/**
+	 * Provides the first person view with the potentially visible set of the maze.
+	 * The set of the last maze is kept with this state and cached in the given file.
+	 * If it is neither kept nor in the file, it is computed on a background thread
+	 * and the view traverses the whole maze until the set is available.
+	 * Mazes with a tree that is loaded on demand get no set as computing it
+	 * would load the whole tree, the view then tests bounding boxes only.
+	 * @param view is the first person view that uses the set
+	 * @param filename caches the set, not null
+	 */
+	private void startVisibility(final FirstPersonView view, String filename) {
+		final Maze maze = mazeConfig;
+		final BSPNode root = maze.getRootnode();
+		if (root.isLoadedOnDemand()) {
+			System.out.println("StatePlaying: no potentially visible set for a tree that is loaded on demand");
+			return;
+		}
+		synchronized (this) {
+			if (visibleSetMaze == maze && visibleSetRoot == root) {
+				view.setPotentiallyVisibleSet(visibleSet);
+				return;
+			}
+		}
+		Thread thread = new Thread(() -> {
+			PotentiallyVisibleSet result = PotentiallyVisibleSet.load(filename, maze);
+			if (null == result) {
+				result = new PotentiallyVisibleSet(maze);
+				result.store(filename);
+			}
+			synchronized (StatePlaying.this) {
+				visibleSetMaze = maze;
+				visibleSetRoot = root;
+				visibleSet = result;
+			}
+			view.setPotentiallyVisibleSet(result);
+		}, "Visibility");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	/**
+	 * Stops the render thread before the controller switches
+	 * to another state.
+	 * @param complete if true, all pending animations are shown
+	 * before the thread stops, otherwise they are dropped
+	 */
+	private void stopDrawer(boolean complete) {
+		if (null == loop)
+			return;
+		if (complete)
+			loop.finish();
+		else
+			loop.stop();
+		loop = null;
 	}
     /**
      * Internal method to set the current position, the direction
@@ -174,6 +287,7 @@ public class StatePlaying extends DefaultState {
             walk(1);
             // check termination, did we leave the maze?
             if (isOutside(px,py)) {
+            	stopDrawer(true);
                 control.switchFromPlayingToWinning(distTraveled);
             }
             break;
@@ -187,42 +301,42 @@ public class StatePlaying extends DefaultState {
             walk(-1);
             // check termination, did we leave the maze?
             if (isOutside(px,py)) {
+            	stopDrawer(true);
                 control.switchFromPlayingToWinning(distTraveled);
             }
             break;
         case ReturnToTitle: // escape to title screen
+        	stopDrawer(false);
             control.switchToTitle();
             break;
         case Jump: // make a step forward even through a wall
             // go to position if within maze
             if (mazeConfig.isValidPosition(px + dx, py + dy)) {
+            	post(GameLoop.Motion.jump(px, py, px + dx, py + dy, angle));
                 setCurrentPosition(px + dx, py + dy) ;
-                draw() ;
             }
             break;
         case ToggleLocalMap: // show local information: current position and visible walls
             // precondition for showMaze and showSolution to be effective
             // acts as a toggle switch
             mapMode = !mapMode;         
-            draw() ; 
+            redraw() ; 
             break;
         case ToggleFullMap: // show the whole maze
             // acts as a toggle switch
             showMaze = !showMaze;       
-            draw() ; 
+            redraw() ; 
             break;
         case ToggleSolution: // show the solution as a yellow line towards the exit
             // acts as a toggle switch
             showSolution = !showSolution;       
-            draw() ;
+            redraw() ;
             break;
         case ZoomIn: // zoom into map
-        	mapView.incrementMapScale(); 
-            draw() ;
+        	zoomMap(1);
             break ;
         case ZoomOut: // zoom out of map
-        	mapView.decrementMapScale(); 
-            draw() ; 
+        	zoomMap(-1);
             break ;
         } // end of internal switch statement for playing state
         return true;
@@ -235,15 +349,119 @@ public class StatePlaying extends DefaultState {
     		printWarning();
     		return;
     	}
+    	drawFrame(px, py, angle, 0);
+    }
+    /**
+     * Draws the given view on panel to show it on screen.
+     * Called by the render thread for each frame.
+     */
+    @Override
+    public void drawFrame(int x, int y, int angle, int walkStep) {
+    	// settings are read once as the input thread may change them any time
+    	final boolean map = isInMapMode();
+    	final boolean maze = isInShowMazeMode();
+    	final boolean solution = isInShowSolutionMode();
+    	applyMapZoom();
+    	final int mapKey = getMapKey(map, maze, solution);
+    	// seen walls and tiles only matter for the map
+    	final int tiles = map ? readyTiles : 0;
+    	if (frameValid && x == frameX && y == frameY && angle == frameAngle && walkStep == frameWalkStep &&
+    			mapKey == frameMap && tiles == frameTiles &&
+    			(map ? seenCells.getContentHash() : 0) == frameSeenWalls) {
+    		// same view as the frame on the panel
+    		framesReused++;
+    		panel.commit() ;
+    		return;
+    	}
     	// draw the first person view and the map view if wanted
-    	firstPersonView.draw(panel, px, py, walkStep, angle, 
-    			getPercentageForDistanceToExit()) ;
-        if (isInMapMode()) {
-			mapView.draw(panel, px, py, angle, walkStep,
-					isInShowMazeMode(),isInShowSolutionMode()) ;
+    	firstPersonView.draw(panel, x, y, walkStep, angle, 
+    			getPercentageForDistanceToExit(x, y)) ;
+        if (map) {
+			mapView.draw(panel, x, y, angle, walkStep, maze, solution) ;
 		}
 		// update the screen with the buffer graphics
         panel.commit() ;
+        framesDrawn++;
+        // the first person view marks seen walls, so they are taken after drawing
+        frameValid = true;
+        frameX = x;
+        frameY = y;
+        frameAngle = angle;
+        frameWalkStep = walkStep;
+        frameMap = mapKey;
+        frameSeenWalls = map ? seenCells.getContentHash() : 0;
+        frameTiles = tiles;
+    }
+    /**
+     * Combines all settings that change the map into a single value.
+     * Settings for the map do not matter if it is not on display.
+     */
+    private int getMapKey(boolean map, boolean maze, boolean solution) {
+    	if (!map)
+    		return 0;
+    	return 1 | (maze ? 2 : 0) | (solution ? 4 : 0) | (mapView.getMapScale() << 3);
+    }
+    /**
+     * Tells how many frames were drawn, for the frame rate.
+     * Counts all games played with this state.
+     * @return the number of frames that were drawn
+     */
+    public int getFramesDrawn() {
+    	return framesDrawn;
+    }
+    /**
+     * Tells how many frames showed the last frame again as the view did not change,
+     * i.e. how many renders were avoided.
+     * Counts all games played with this state.
+     * @return the number of frames that were not drawn again
+     */
+    public int getFramesReused() {
+    	return framesReused;
+    }
+    /**
+     * Changes the scale of the map with the next frame, the render thread
+     * reads the scale several times per frame, so only that thread changes it.
+     * @param steps is 1 to zoom in, -1 to zoom out
+     */
+    private void zoomMap(int steps) {
+    	mapZoom.addAndGet(steps);
+    	redraw();
+    }
+    /**
+     * Applies the zoom steps of the map that the input thread has requested.
+     * Called by the thread that draws.
+     */
+    private void applyMapZoom() {
+    	for (int steps = mapZoom.getAndSet(0); 0 != steps; steps -= Integer.signum(steps)) {
+    		if (steps > 0)
+    			mapView.incrementMapScale();
+    		else
+    			mapView.decrementMapScale();
+    	}
+    }
+    /**
+     * Requests the render thread to draw the current view again.
+     */
+    private void redraw() {
+    	if (loop == null) {
+    		printWarning();
+    		return;
+    	}
+    	loop.redraw();
+    }
+    /**
+     * Hands a rotation or a step over to the render thread.
+     * A robot driver waits until the motion has been shown as it would
+     * post its whole route at once otherwise, which shows no walk animation.
+     */
+    private void post(GameLoop.Motion motion) {
+    	if (loop == null) {
+    		printWarning();
+    		return;
+    	}
+    	loop.post(motion);
+    	if (null != control && null != control.getDriver())
+    		loop.awaitIdle();
     }
     /**
      * Calculates a distance to exit as a percentage. 
@@ -252,7 +470,10 @@ public class StatePlaying extends DefaultState {
      * @return a value between 0.0 and 1.0, the smaller the closer
      */
     float getPercentageForDistanceToExit() {
-    	return mazeConfig.getDistanceToExit(px, py) / 
+    	return getPercentageForDistanceToExit(px, py);
+    }
+    private float getPercentageForDistanceToExit(int x, int y) {
+    	return mazeConfig.getDistanceToExit(x, y) / 
     			((float) mazeConfig.getMazedists().getMaxDistance());
     }
     /**
@@ -329,65 +550,31 @@ public class StatePlaying extends DefaultState {
         return !mazeConfig.hasWall(px, py, cd);
     }
     /**
-     * Draws and waits. Used to obtain a smooth appearance for rotate and move operations
-     */
-    private void slowedDownRedraw() {
-        draw() ;
-        try {
-            Thread.sleep(25);
-        } catch (Exception e) { 
-        	// may happen if thread is interrupted
-        	// no reason to do anything about it, ignore exception
-        }
-    }
- 	
-    /**
-     * Performs a rotation with 4 intermediate views, 
-     * updates the screen and the internal direction
+     * Performs a rotation by 90 degrees, updates the internal
+     * direction right away and lets the render thread show
+     * the rotation with intermediate views
      * @param dir for current direction, values are either 1 or -1
      */
-    synchronized private void rotate(int dir) {
-        final int originalAngle = angle;
-        final int steps = 4;
-
-        for (int i = 0; i != steps; i++) {
-            // add 1/4 of 90 degrees per step 
-            // if dir is -1 then subtract instead of addition
-            angle = originalAngle + dir*(90*(i+1))/steps; 
-            angle = (angle+1800) % 360;
-            // draw method is called and uses angle field for direction
-            // information.
-			slowedDownRedraw();
-        }
-        // update maze direction only after intermediate steps are done
-        // because choice of direction values are more limited.
+    private void rotate(int dir) {
+    	post(GameLoop.Motion.rotate(px, py, angle, dir));
+        angle = (angle + dir*90 + 360) % 360;
         setDirectionToMatchCurrentAngle();
         //logPosition(); // debugging
-        drawHintIfNecessary(); 
     }
 	
     /**
-     * Moves in the given direction with 4 intermediate steps,
-     * updates the screen and the internal position
+     * Moves in the given direction, updates the internal position
+     * right away and lets the render thread show the step
+     * with intermediate views
      * @param dir, only possible values are 1 (forward) and -1 (backward)
      */
-    synchronized private void walk(int dir) {
+    private void walk(int dir) {
     	// check if there is a wall in the way
         if (!checkMove(dir))
             return;
-        // walkStep is a parameter of FirstPersonDrawer.draw()
-        // it is used there for scaling steps
-        // so walkStep is implicitly used in slowedDownRedraw
-        // which triggers the draw operation in 
-        // FirstPersonDrawer and MapDrawer
-        for (int step = 0; step != 4; step++) {
-            walkStep += dir;
-            slowedDownRedraw();
-        }
+        post(GameLoop.Motion.walk(px, py, px + dir*dx, py + dir*dy, angle, dir));
         setCurrentPosition(px + dir*dx, py + dir*dy) ;
-        walkStep = 0; // reset counter for next time
         //logPosition(); // debugging
-        drawHintIfNecessary();  
         distTraveled++;
     }
 
@@ -403,42 +590,42 @@ public class StatePlaying extends DefaultState {
     /**
      * Draw a visual cue to help the user unless the 
      * map is on display anyway. 
-     * This is the map if current position faces a dead end
+     * This is the map if the given position faces a dead end
      * otherwise it is a compass rose.
+     * Called by the render thread after a rotation or a step.
      */
-    private void drawHintIfNecessary() {
+    @Override
+    public void drawHint(int x, int y, int angle) {
     	if (isInMapMode())
     		return; // no need for help
-    	// in testing environments, there is sometimes no panel to draw on
-    	// check this and quietly move on if drawing is impossible
-    	if (panel == null) {
-    		printWarning();
-    		return;
-    	}
+    	CardinalDirection cd = CardinalDirection.getDirection(
+    			(int) Math.cos(radify(angle)), (int) Math.sin(radify(angle)));
     	// if current position faces a dead end, show map with solution
     	// for guidance
-    	if (isFacingDeadEnd()) {
+    	if (isFacingDeadEnd(x, y, cd)) {
         	//System.out.println("Facing deadend, help by showing solution");
-        	mapView.draw(panel, px, py, angle, walkStep, true, true) ;
+        	mapView.draw(panel, x, y, angle, 0, true, true) ;
         }
     	else {
     		// draw compass rose
-    		cr.setCurrentDirection(getCurrentDirection());
+    		cr.setCurrentDirection(cd);
     		cr.paintComponent(panel);
     	}
     	panel.commit();
+    	// the next frame needs to be drawn to remove the hint
+    	frameValid = false;
     }
     /**
-     * Checks if the current position and direction
+     * Checks if the given position and direction
      * faces a dead end
-     * @return true if at the current position there is
+     * @return true if at the given position there is
      * a wall to the left, right and front, false otherwise
      */
-    private boolean isFacingDeadEnd() {
-    	return (!isOutside(px,py) &&
-    			mazeConfig.hasWall(px, py, getCurrentDirection()) &&
-    			mazeConfig.hasWall(px, py, getCurrentDirection().oppositeDirection().rotateClockwise()) &&
-    			mazeConfig.hasWall(px, py, getCurrentDirection().rotateClockwise()));
+    private boolean isFacingDeadEnd(int x, int y, CardinalDirection cd) {
+    	return (!isOutside(x,y) &&
+    			mazeConfig.hasWall(x, y, cd) &&
+    			mazeConfig.hasWall(x, y, cd.oppositeDirection().rotateClockwise()) &&
+    			mazeConfig.hasWall(x, y, cd.rotateClockwise()));
     }
     /////////////////////// Methods for debugging ////////////////////////////////
     /*
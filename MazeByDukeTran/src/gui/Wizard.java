@@ -77,10 +77,10 @@ public class Wizard implements RobotDriver {
 	public boolean drive1Step2Exit() throws Exception {
 		// get the next neighbor closest to the exit
 		int[] currPos = robot.getCurrentPosition();
-		int[] neighbor = maze.getNeighborCloserToExit(currPos[0], currPos[1]);
+		CardinalDirection nextDir = maze.getDirectionCloserToExit(currPos[0], currPos[1]);
 		// rotate robot in that direction
 		CardinalDirection currDir = robot.getCurrentDirection();
-		int[] changeDir = {neighbor[0]-currPos[0], neighbor[1]-currPos[1]};
+		int[] changeDir = nextDir.getDirection();
 		switch (currDir) {
 		case North:
 			if (changeDir[0] == -1) robot.rotate(Turn.RIGHT);
@@ -0,0 +1,101 @@
+package generation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompiledBSPTreeTest {
+
+	private BSPNode root;
+	private CompiledBSPTree tree;
+	// next node and wall expected while walking the tree of objects
+	private int nextNode;
+	private int nextWall;
+
+	/**
+	 * Build a maze with rooms and compile its BSP tree
+	 */
+	@Before
+	public void setUp() {
+		MazeFactory mazeFactory = new MazeFactory();
+		StubOrder order = new StubOrder(3, false);
+		mazeFactory.order(order);
+		mazeFactory.waitTillDelivered();
+		root = order.getMaze().getRootnode();
+		tree = new CompiledBSPTree(root);
+	}
+
+	/**
+	 * Test case: Compiled tree against the tree of BSPNodes
+	 * <p>
+	 * Method under test: CompiledBSPTree(BSPNode root) and all getters
+	 * <p>
+	 * Correct behavior:
+	 * nodes are numbered in preorder with the left child following its parent,
+	 * bounds, splitters and walls are the same as in the tree of objects
+	 */
+	@Test
+	public final void testSameAsTree() {
+		nextNode = 0;
+		nextWall = 0;
+		check(root);
+		assertEquals(nextNode, tree.getNodeCount());
+		assertEquals(nextWall, tree.getWallCount());
+	}
+
+	/**
+	 * Walks the tree of objects in preorder and compares each node with its compiled counterpart.
+	 */
+	private void check(BSPNode node) {
+		final int n = nextNode++;
+		assertEquals(node.getLowerBoundX(), tree.getLowerBoundX(n));
+		assertEquals(node.getLowerBoundY(), tree.getLowerBoundY(n));
+		assertEquals(node.getUpperBoundX(), tree.getUpperBoundX(n));
+		assertEquals(node.getUpperBoundY(), tree.getUpperBoundY(n));
+		assertEquals(node.isIsleaf(), tree.isLeaf(n));
+		if (node.isIsleaf()) {
+			List<Wall> walls = ((BSPLeaf) node).getSlist();
+			assertEquals(nextWall, tree.getFirstWall(n));
+			assertEquals(walls.size(), tree.getWallCount(n));
+			for (Wall wall : walls) {
+				final int w = nextWall++;
+				assertSame(wall, tree.getWall(w));
+				assertEquals(wall.getStartPositionX(), tree.getStartPositionX(w));
+				assertEquals(wall.getStartPositionY(), tree.getStartPositionY(w));
+				assertEquals(wall.getEndPositionX(), tree.getEndPositionX(w));
+				assertEquals(wall.getEndPositionY(), tree.getEndPositionY(w));
+				assertEquals(wall.getColor(), tree.getColor(w));
+			}
+			return;
+		}
+		BSPBranch branch = (BSPBranch) node;
+		assertEquals(branch.getX(), tree.getX(n));
+		assertEquals(branch.getY(), tree.getY(n));
+		assertEquals(branch.getDx(), tree.getDx(n));
+		assertEquals(branch.getDy(), tree.getDy(n));
+		assertEquals(n + 1, tree.getLeftChild(n));
+		check(branch.getLeftBranch());
+		assertEquals(nextNode, tree.getRightChild(n));
+		check(branch.getRightBranch());
+	}
+
+	/**
+	 * Test case: Root and leaves
+	 * <p>
+	 * Method under test: isLeaf(int node)
+	 * <p>
+	 * Correct behavior:
+	 * the root of a maze with walls is a branch, the last node in preorder is a leaf
+	 */
+	@Test
+	public final void testRootAndLast() {
+		assertFalse(tree.isLeaf(0));
+		assertTrue(tree.isLeaf(tree.getNodeCount() - 1));
+	}
+}
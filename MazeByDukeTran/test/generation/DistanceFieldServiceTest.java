@@ -0,0 +1,211 @@
+package generation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DistanceFieldServiceTest {
+
+	// private variables
+	private StubOrder order; // setup makes this a StubOrder object
+	private Maze maze;
+	private Floorplan floorplan;
+	private int mazeWidth;
+	private int mazeHeight;
+	private DistanceFieldService service;
+
+	private final int INFINITY = Integer.MAX_VALUE;
+
+	/**
+	 * Build a maze with rooms and a service with a small cache
+	 */
+	@Before
+	public void setUp() {
+		MazeFactory mazeFactory = new MazeFactory();
+		order = new StubOrder(2, false, Order.Builder.DFS);
+		mazeFactory.order(order);
+		mazeFactory.waitTillDelivered();
+		maze = order.getMaze();
+		floorplan = maze.getFloorplan();
+		mazeWidth = maze.getWidth();
+		mazeHeight = maze.getHeight();
+		service = new DistanceFieldService(floorplan, 3);
+	}
+
+	/**
+	 * Test case: Distances to the exit
+	 * <p>
+	 * Method under test: getDistanceField(int goalX, int goalY)
+	 * <p>
+	 * Correct behavior:
+	 * with the exit as the goal, each cell is one step less away than
+	 * the Distance of the maze tells, as the exit has distance 1 there
+	 */
+	@Test
+	public final void testExitGoal() {
+		int[] exit = getExitPosition();
+		DistanceField field = service.getDistanceField(exit[0], exit[1]);
+		assertEquals(exit[0], field.getGoalX());
+		assertEquals(exit[1], field.getGoalY());
+		assertEquals(mazeWidth, field.getWidth());
+		assertEquals(mazeHeight, field.getHeight());
+		assertTrue(field.isCompact());
+		for (int x = 0; x < mazeWidth; x++) {
+			for (int y = 0; y < mazeHeight; y++) {
+				assertEquals(maze.getDistanceToExit(x, y) - 1, field.getDistance(x, y));
+				assertEquals(field.getDistance(x, y), service.getDistance(x, y, exit[0], exit[1]));
+			}
+		}
+	}
+
+	/**
+	 * Test case: Cells that can not reach the goal
+	 * <p>
+	 * Method under test: getDistanceField(int goalX, int goalY), computeDistanceField(...)
+	 * <p>
+	 * Correct behavior:
+	 * in a floorplan where only two cells are connected, all other cells
+	 * have distance INFINITY, with and without the service
+	 */
+	@Test
+	public final void testUnreachable() {
+		Floorplan closed = new Floorplan(4, 4);
+		closed.initialize();
+		closed.deleteWallboard(new Wallboard(0, 0, CardinalDirection.East));
+		DistanceField field = new DistanceFieldService(closed).getDistanceField(0, 0);
+		DistanceField single = DistanceFieldService.computeDistanceField(closed, 0, 0);
+		for (int x = 0; x < 4; x++) {
+			for (int y = 0; y < 4; y++) {
+				if (0 == y && x < 2)
+					assertEquals(x, field.getDistance(x, y));
+				else
+					assertEquals(INFINITY, field.getDistance(x, y));
+				assertEquals(field.getDistance(x, y), single.getDistance(x, y));
+			}
+		}
+	}
+
+	/**
+	 * Test case: Cache hits and eviction
+	 * <p>
+	 * Method under test: getDistanceField(int goalX, int goalY) with a capacity of 3
+	 * <p>
+	 * Correct behavior:
+	 * a cached field is returned as the same instance, the cache never holds
+	 * more fields than its capacity and drops the least recently used one
+	 */
+	@Test
+	public final void testCache() {
+		assertEquals(3, service.getCapacity());
+		DistanceField a = service.getDistanceField(0, 0);
+		DistanceField b = service.getDistanceField(1, 0);
+		DistanceField c = service.getDistanceField(2, 0);
+		assertEquals(3, service.size());
+		assertEquals(0, service.getHits());
+		assertEquals(3, service.getMisses());
+		// using a makes b the least recently used field
+		assertSame(a, service.getDistanceField(0, 0));
+		assertEquals(1, service.getHits());
+		service.getDistanceField(3, 0);
+		assertEquals(3, service.size());
+		assertSame(a, service.getDistanceField(0, 0));
+		assertSame(c, service.getDistanceField(2, 0));
+		assertEquals(3, service.getHits());
+		DistanceField other = service.getDistanceField(1, 0);
+		assertNotSame(b, other);
+		assertEquals(5, service.getMisses());
+		assertEquals(3, service.size());
+		// a new computation delivers the same values
+		for (int x = 0; x < mazeWidth; x++) {
+			for (int y = 0; y < mazeHeight; y++) {
+				assertEquals(b.getDistance(x, y), other.getDistance(x, y));
+			}
+		}
+		service.clear();
+		assertEquals(0, service.size());
+	}
+
+	/**
+	 * Test case: Representation of large distances
+	 * <p>
+	 * Method under test: DistanceField constructor
+	 * <p>
+	 * Correct behavior:
+	 * distances below 65535 are held in 16 bits, larger ones fall back
+	 * to an int array, unreachable cells are INFINITY in both cases
+	 */
+	@Test
+	public final void testCompact() {
+		int[] values = { 0, 1, 65534, INFINITY };
+		DistanceField field = new DistanceField(0, 0, 2, 2, values.clone());
+		assertTrue(field.isCompact());
+		for (int i = 0; i < values.length; i++)
+			assertEquals(values[i], field.getDistance(i / 2, i % 2));
+		values[2] = 65535;
+		field = new DistanceField(0, 0, 2, 2, values.clone());
+		assertFalse(field.isCompact());
+		for (int i = 0; i < values.length; i++)
+			assertEquals(values[i], field.getDistance(i / 2, i % 2));
+		values[2] = 1000000;
+		field = new DistanceField(0, 0, 2, 2, values.clone());
+		assertFalse(field.isCompact());
+		assertEquals(1000000, field.getDistance(1, 0));
+		assertEquals(INFINITY, field.getDistance(1, 1));
+	}
+
+	/**
+	 * Test case: Fields for a batch of goals
+	 * <p>
+	 * Method under test: getDistanceFields(int[][] goals)
+	 * <p>
+	 * Correct behavior:
+	 * the parallel batch delivers fields in the order of goals with the same
+	 * values as fields that are computed one by one, also for repeated goals
+	 * and for more goals than the capacity
+	 */
+	@Test
+	public final void testBatch() {
+		int[][] goals = new int[10][];
+		for (int i = 0; i < goals.length; i++) {
+			goals[i] = new int[] { (7*i) % mazeWidth, (3*i) % mazeHeight };
+		}
+		goals[9] = goals[0].clone();
+		DistanceField[] fields = service.getDistanceFields(goals);
+		assertEquals(goals.length, fields.length);
+		assertTrue(service.size() <= service.getCapacity());
+		DistanceFieldService single = new DistanceFieldService(floorplan, 1);
+		for (int i = 0; i < goals.length; i++) {
+			DistanceField expected = single.getDistanceField(goals[i][0], goals[i][1]);
+			assertEquals(goals[i][0], fields[i].getGoalX());
+			assertEquals(goals[i][1], fields[i].getGoalY());
+			for (int x = 0; x < mazeWidth; x++) {
+				for (int y = 0; y < mazeHeight; y++) {
+					assertEquals(expected.getDistance(x, y), fields[i].getDistance(x, y));
+				}
+			}
+		}
+		assertTrue(Arrays.stream(fields).allMatch(DistanceField::isCompact));
+	}
+
+	// private methods
+
+	/**
+	 * Locates the exit position of the maze
+	 */
+	private int[] getExitPosition() {
+		for (int x = 0; x < mazeWidth; x++) {
+			for (int y = 0; y < mazeHeight; y++) {
+				if (floorplan.isExitPosition(x, y))
+					return new int[] {x, y};
+			}
+		}
+		return null;
+	}
+}
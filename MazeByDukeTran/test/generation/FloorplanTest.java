@@ -2,6 +2,7 @@ package generation;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -362,6 +363,11 @@ public class FloorplanTest{
 		floorplan.deleteWallboard(wallboard);
 		assertTrue(floorplan.hasMaskedBitsFalse(0,0,Floorplan.CW_RIGHT));
 		assertTrue(floorplan.hasMaskedBitsFalse(1,0,Floorplan.CW_LEFT));
+		// (0,0) and (1,0) are now connected, all other cells are still on their own
+		MazeValidator validator = new MazeValidator(floorplan).validate();
+		assertEquals(1, validator.getOpenEdgeCount());
+		assertEquals(width*height-1, validator.getComponentCount());
+		assertEquals(0, validator.getCycleCount());
 		
 		// addWall as internal wallboard adds it to both cells (0,0) and (1,0)
 		floorplan.addWallboard(wallboard, true);
@@ -411,6 +417,12 @@ public class FloorplanTest{
 		assertFalse(C.areaOverlapsWithRoom(6,6,8,8));
 		assertTrue(C.isInRoom(3, 3));
 		assertFalse(C.isInRoom(4, 8));
+		// the 4x4 cells of the room are connected with each other but with
+		// no other cell yet, all walls inside the room are gone which gives loops
+		MazeValidator validator = new MazeValidator(C).validate();
+		assertEquals(100-16+1, validator.getComponentCount());
+		assertEquals(2*4*3-16+1, validator.getCycleCount());
+		assertEquals(100-16, validator.getIsolatedRegions().length);
 
 		Floorplan cell1 = new Floorplan(10, 10);
 		cell1.markAreaAsRoom(5, 5, 2, 2, 7, 7);
@@ -543,5 +555,75 @@ public class FloorplanTest{
 		assertEquals(cell1.getCWConstantForDirection(CardinalDirection.South),Floorplan.CW_BOT);
 		assertEquals(cell1.getCWConstantForDirection(CardinalDirection.North),Floorplan.CW_TOP);
 	}
+	/**
+	 * Test case: Incremental maintenance of the content hash
+	 * <p>
+	 * Method under test: getContentHash(), hashCode()
+	 * <p>
+	 * Correct behavior:
+	 * the hash after a sequence of modifications is the same as the one 
+	 * computed from scratch for a copy of the floorplan, 
+	 * undoing a modification restores the hash
+	 */
+	@Test
+	public final void testContentHash() {
+		floorplan.initialize();
+		long initial = floorplan.getContentHash();
+		assertEquals(initial, copy(floorplan).getContentHash());
+		floorplan.setCellAsVisited(2, 3);
+		long visited = floorplan.getContentHash();
+		assertNotEquals(initial, visited);
+		Wallboard wallboard = new Wallboard(1, 1, CardinalDirection.East);
+		floorplan.deleteWallboard(wallboard);
+		long deleted = floorplan.getContentHash();
+		assertNotEquals(visited, deleted);
+		Floorplan copy = copy(floorplan);
+		assertEquals(deleted, copy.getContentHash());
+		assertEquals(floorplan.hashCode(), copy.hashCode());
+		floorplan.addWallboard(wallboard, true);
+		assertEquals(visited, floorplan.getContentHash());
+		// same content but different dimensions
+		assertNotEquals(new Floorplan(1, 2).getContentHash(), new Floorplan(2, 1).getContentHash());
+	}
+	/**
+	 * Test case: Log of changed cells
+	 * <p>
+	 * Method under test: setChangeTracking(boolean on), takeChangedCells()
+	 * <p>
+	 * Correct behavior:
+	 * only modifications that change a cell while tracking is on are logged,
+	 * taking the log clears it
+	 */
+	@Test
+	public final void testChangeTracking() {
+		floorplan.initialize();
+		assertEquals(0, floorplan.takeChangedCells().length);
+		floorplan.setChangeTracking(true);
+		// wallboard is already up, nothing changes
+		Wallboard wallboard = new Wallboard(1, 1, CardinalDirection.East);
+		floorplan.addWallboard(wallboard, true);
+		assertEquals(0, floorplan.takeChangedCells().length);
+		floorplan.deleteWallboard(wallboard);
+		int[] changed = floorplan.takeChangedCells();
+		assertEquals(2, changed.length);
+		assertEquals(1*height+1, changed[0]);
+		assertEquals(2*height+1, changed[1]);
+		assertEquals(0, floorplan.takeChangedCells().length);
+		floorplan.setChangeTracking(false);
+		floorplan.addWallboard(wallboard, true);
+		assertEquals(0, floorplan.takeChangedCells().length);
+	}
+	/**
+	 * Provides a floorplan with the same content that computes its hash from scratch
+	 */
+	private Floorplan copy(Floorplan original) {
+		int[][] values = new int[original.getWidth()][original.getHeight()];
+		for (int x = 0; x < values.length; x++) {
+			for (int y = 0; y < values[x].length; y++) {
+				values[x][y] = original.getValueOfCell(x, y);
+			}
+		}
+		return new Floorplan(values);
+	}
 
 }
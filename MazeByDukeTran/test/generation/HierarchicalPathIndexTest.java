@@ -0,0 +1,169 @@
+package generation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class HierarchicalPathIndexTest {
+
+	// private variables
+	private StubOrder order; // setup makes this a StubOrder object
+	private Maze maze;
+	private Floorplan floorplan;
+	private int mazeWidth;
+	private int mazeHeight;
+
+	private final int INFINITY = Integer.MAX_VALUE;
+
+	/**
+	 * Build a maze with rooms such that shortest paths are not unique
+	 */
+	@Before
+	public void setUp() {
+		MazeFactory mazeFactory = new MazeFactory();
+		order = new StubOrder(3, false, Order.Builder.DFS);
+		mazeFactory.order(order);
+		mazeFactory.waitTillDelivered();
+		maze = order.getMaze();
+		floorplan = maze.getFloorplan();
+		mazeWidth = maze.getWidth();
+		mazeHeight = maze.getHeight();
+	}
+
+	/**
+	 * Test case: Correctness of point-to-point distances
+	 * <p>
+	 * Method under test: getDistance(int fromX, int fromY, int toX, int toY)
+	 * <p>
+	 * Correct behavior:
+	 * for various cluster sizes, the distance from a cell to any other cell
+	 * matches a breadth-first search on the complete floorplan
+	 */
+	@Test
+	public final void testGetDistance() {
+		int[][] sources = { {0, 0}, {mazeWidth-1, mazeHeight-1}, {mazeWidth/2, mazeHeight/2}, maze.getStartingPosition() };
+		for (int clusterSize : new int[] {1, 3, HierarchicalPathIndex.DEFAULT_CLUSTER_SIZE}) {
+			HierarchicalPathIndex index = new HierarchicalPathIndex(floorplan, clusterSize);
+			assertEquals(clusterSize, index.getClusterSize());
+			for (int[] source : sources) {
+				int[][] dists = breadthFirstSearch(source[0], source[1]);
+				for (int x = 0; x < mazeWidth; x++) {
+					for (int y = 0; y < mazeHeight; y++) {
+						assertEquals(dists[x][y], index.getDistance(source[0], source[1], x, y));
+						// distances are symmetric
+						assertEquals(dists[x][y], index.getDistance(x, y, source[0], source[1]));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test case: Consistency with the distance to the exit
+	 * <p>
+	 * Method under test: Maze.getPathQuery()
+	 * <p>
+	 * Correct behavior:
+	 * the query object is cached and for each cell, its distance to the exit
+	 * is one less than getDistanceToExit as the exit has distance 1 there
+	 */
+	@Test
+	public final void testGetPathQuery() {
+		PathQuery query = maze.getPathQuery();
+		assertNotNull(query);
+		assertSame(query, maze.getPathQuery());
+		int[] exit = getExitPosition();
+		for (int x = 0; x < mazeWidth; x++) {
+			for (int y = 0; y < mazeHeight; y++) {
+				assertEquals(maze.getDistanceToExit(x, y) - 1, query.getDistance(x, y, exit[0], exit[1]));
+				assertTrue(query.isReachable(exit[0], exit[1], x, y));
+			}
+		}
+	}
+
+	/**
+	 * Test case: Queries and index creation from several threads
+	 * <p>
+	 * Method under test: Maze.getPathQuery() and getDistance(int fromX, int fromY, int toX, int toY)
+	 * <p>
+	 * Correct behavior:
+	 * all threads get the same index and distances match a breadth-first search,
+	 * work arrays of one query do not leak into the next one
+	 */
+	@Test
+	public final void testConcurrentQueries() throws InterruptedException {
+		final int[][] dists = breadthFirstSearch(0, 0);
+		final Thread[] threads = new Thread[4];
+		final PathQuery[] queries = new PathQuery[threads.length];
+		final int[] errors = new int[threads.length];
+		for (int i = 0; i < threads.length; i++) {
+			final int t = i;
+			threads[i] = new Thread(() -> {
+				queries[t] = maze.getPathQuery();
+				for (int x = 0; x < mazeWidth; x++) {
+					for (int y = 0; y < mazeHeight; y++) {
+						if (dists[x][y] != queries[t].getDistance(0, 0, x, y) ||
+								dists[x][y] != queries[t].getDistance(x, y, 0, 0))
+							errors[t]++;
+					}
+				}
+			});
+		}
+		for (Thread thread : threads)
+			thread.start();
+		for (Thread thread : threads)
+			thread.join();
+		for (int i = 0; i < threads.length; i++) {
+			assertSame(queries[0], queries[i]);
+			assertEquals(0, errors[i]);
+		}
+	}
+
+	// private methods
+
+	/**
+	 * Computes distances from (sx,sy) to all cells with a plain breadth-first search
+	 */
+	private int[][] breadthFirstSearch(int sx, int sy) {
+		int[][] dists = new int[mazeWidth][mazeHeight];
+		for (int[] column : dists)
+			Arrays.fill(column, INFINITY);
+		int[] queue = new int[mazeWidth*mazeHeight];
+		int head = 0, tail = 0;
+		dists[sx][sy] = 0;
+		queue[tail++] = sx*mazeHeight+sy;
+		while (head < tail) {
+			int x = queue[head]/mazeHeight;
+			int y = queue[head++]%mazeHeight;
+			for (CardinalDirection cd : CardinalDirection.values()) {
+				int[] dir = cd.getDirection();
+				int nx = x+dir[0];
+				int ny = y+dir[1];
+				if (maze.isValidPosition(nx, ny) && floorplan.hasNoWall(x, y, cd) && dists[nx][ny] == INFINITY) {
+					dists[nx][ny] = dists[x][y]+1;
+					queue[tail++] = nx*mazeHeight+ny;
+				}
+			}
+		}
+		return dists;
+	}
+
+	/**
+	 * Locates the exit position of the maze
+	 */
+	private int[] getExitPosition() {
+		for (int x = 0; x < mazeWidth; x++) {
+			for (int y = 0; y < mazeHeight; y++) {
+				if (floorplan.isExitPosition(x, y))
+					return new int[] {x, y};
+			}
+		}
+		return null;
+	}
+}
@@ -120,17 +120,10 @@ public class MazeBuilderEllerTest extends MazeBuilderEller {
 			}
 		}
 		
-		// check that every row has at least 1 vertical connection (since all cells are
-		// in one set, we only need to show that there are vertical connections between each row) 
-		for (int y = 0; y < mazeHeight-1; y++) {
-			boolean verticalConnection = false;
-			for (int x = 0; x < mazeWidth; x++) {
-				if (mazeBuilder.floorplan.hasNoWall(x, y, CardinalDirection.South)) {
-					verticalConnection = true;
-				}
-			}
-			assertTrue(verticalConnection);
-		}
+		// check that all cells are reachable and there are no loops
+		MazeValidator validator = new MazeValidator(mazeBuilder.floorplan).validate();
+		assertTrue(validator.isConnected());
+		assertTrue(validator.isPerfect());
 		
 		// repeat the above tests for a maze with rooms
 		order = new StubOrder(2, false, Order.Builder.Eller);
@@ -165,17 +158,9 @@ public class MazeBuilderEllerTest extends MazeBuilderEller {
 			}
 		}
 		
-		// check that every row has at least 1 vertical connection (since all cells are
-		// in one set, we only need to show that there are vertical connections between each row) 
-		for (int y = 0; y < mazeHeight-1; y++) {
-			boolean verticalConnection = false;
-			for (int x = 0; x < mazeWidth; x++) {
-				if (mazeBuilder.floorplan.hasNoWall(x, y, CardinalDirection.South)) {
-					verticalConnection = true;
-				}
-			}
-			assertTrue(verticalConnection);
-		}
+		// check that all cells are reachable, rooms may introduce loops
+		validator = new MazeValidator(mazeBuilder.floorplan).validate();
+		assertTrue(validator.isConnected());
 		
 	}
 
@@ -5,6 +5,7 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 
 import org.junit.Before;
@@ -94,22 +95,21 @@ public class MazeFactoryTest {
 	public final void testNoEnclosedAreas() {		
 		// iterate through the cells of the maze and ensure that no
 		// cell has walls in all 4 directions
-		computeDists();
 		for (int x = 0; x < mazeWidth; x++) {
 			for (int y = 0; y < mazeHeight; y++) {
 				assertFalse(cellHas4Walls(x, y));
-				assertNotEquals(mazeDists.getDistanceValue(x, y), INFINITY);
 			}
 		}	
+		// all cells are reachable from the exit
+		assertEquals(0, new MazeValidator(floorplan).validate().getIsolatedRegions().length);
 		
 		newMazeWithRooms();
-		computeDists();
 		for (int x = 0; x < mazeWidth; x++) {
 			for (int y = 0; y < mazeHeight; y++) {
 				assertFalse(cellHas4Walls(x, y));
-				assertNotEquals(mazeDists.getDistanceValue(x, y), INFINITY);
 			}
 		}
+		assertEquals(0, new MazeValidator(floorplan).validate().getIsolatedRegions().length);
 	}
 	
 	/**
@@ -272,8 +272,195 @@ public class MazeFactoryTest {
 		assertTrue(doorExists);
 	}
 	
+	/**
+	 * Test case: Correctness of the next hop lookup towards the exit
+	 * <p>
+	 * Method under test: getNeighborCloserToExit(int x, int y, int[] neighbor)
+	 * <p>
+	 * Correct behavior:
+	 * every cell but the exit has an adjacent neighbor without a wallboard in between
+	 * that is closer to the exit, and the result matches the allocating variant
+	 */
+	@Test
+	public final void testNeighborCloserToExit() {
+		Maze maze = order.getMaze();
+		int[] neighbor = new int[2];
+		for (int x = 0; x < mazeWidth; x++) {
+			for (int y = 0; y < mazeHeight; y++) {
+				if (floorplan.isExitPosition(x, y)) {
+					assertFalse(maze.getNeighborCloserToExit(x, y, neighbor));
+					assertEquals(null, maze.getDirectionCloserToExit(x, y));
+					continue;
+				}
+				assertTrue(maze.getNeighborCloserToExit(x, y, neighbor));
+				assertTrue(maze.getDistanceToExit(neighbor[0], neighbor[1]) < maze.getDistanceToExit(x, y));
+				// the neighbor must be reachable in the given direction
+				CardinalDirection cd = maze.getDirectionCloserToExit(x, y);
+				assertFalse(maze.hasWall(x, y, cd));
+				int[] d = cd.getDirection();
+				assertEquals(x+d[0], neighbor[0]);
+				assertEquals(y+d[1], neighbor[1]);
+				// allocating variant delivers the same neighbor
+				int[] other = maze.getNeighborCloserToExit(x, y);
+				assertEquals(neighbor[0], other[0]);
+				assertEquals(neighbor[1], other[1]);
+			}
+		}
+	}
+	
+	/**
+	 * Test case: Correctness of the run-length encoded solution path
+	 * <p>
+	 * Method under test: getSolutionPath(int x, int y)
+	 * <p>
+	 * Correct behavior:
+	 * following the segments from any cell leads to the exit in as many steps
+	 * as the distance tells, consecutive segments change direction, 
+	 * and repeated queries for the same cell are served from the cache
+	 */
+	@Test
+	public final void testSolutionPath() {
+		Maze maze = order.getMaze();
+		for (int x = 0; x < mazeWidth; x++) {
+			for (int y = 0; y < mazeHeight; y++) {
+				SolutionPath path = maze.getSolutionPath(x, y);
+				assertEquals(x, path.getStartX());
+				assertEquals(y, path.getStartY());
+				assertEquals(maze.getDistanceToExit(x, y)-1, path.getTotalLength());
+				int px = x;
+				int py = y;
+				for (int i = 0; i < path.getSegmentCount(); i++) {
+					assertTrue(path.getLength(i) > 0);
+					if (i > 0)
+						assertNotEquals(path.getDirection(i-1), path.getDirection(i));
+					int[] d = path.getDirection(i).getDirection();
+					for (int step = 0; step < path.getLength(i); step++) {
+						assertFalse(maze.hasWall(px, py, path.getDirection(i)));
+						px += d[0];
+						py += d[1];
+					}
+				}
+				assertTrue(floorplan.isExitPosition(px, py));
+				assertTrue(path == maze.getSolutionPath(x, y));
+			}
+		}
+		// after invalidation, a new but equivalent path is computed
+		SolutionPath path = maze.getSolutionPath(0, 0);
+		maze.invalidateSolutionPaths();
+		SolutionPath other = maze.getSolutionPath(0, 0);
+		assertFalse(path == other);
+		assertEquals(path.getTotalLength(), other.getTotalLength());
+		assertEquals(path.getTurnCount(), other.getTurnCount());
+		// only the path for the last position is kept
+		maze.getSolutionPath(mazeWidth-1, mazeHeight-1);
+		assertFalse(other == maze.getSolutionPath(0, 0));
+	}
+	
+	/**
+	 * Test case: Correctness of the generated maze based on connectivity and loops
+	 * <p>
+	 * Method under test: MazeValidator.validate()
+	 * <p>
+	 * Correct behavior:
+	 * a perfect maze is connected and has no loops, a maze with rooms
+	 * is connected but rooms introduce loops
+	 */
+	@Test
+	public final void testValidator() {
+		MazeValidator validator = new MazeValidator(floorplan).validate();
+		assertTrue(validator.isConnected());
+		assertTrue(validator.isPerfect());
+		assertEquals(0, validator.getIsolatedRegions().length);
+		// a spanning tree over all cells has one edge less than cells
+		assertEquals(mazeWidth*mazeHeight-1, validator.getOpenEdgeCount());
+		
+		newMazeWithRooms();
+		validator = new MazeValidator(floorplan, 1).validate();
+		assertTrue(validator.isConnected());
+		assertFalse(validator.isPerfect());
+		assertTrue(validator.getCycleCount() > 0);
+		// a sequential pass gives the same result as a parallel one
+		MazeValidator parallel = new MazeValidator(floorplan, 4).validate();
+		assertEquals(validator.getCycleCount(), parallel.getCycleCount());
+		assertEquals(validator.getComponentCount(), parallel.getComponentCount());
+	}
+	
+	/**
+	 * Test case: Acceptance check on every generated maze
+	 * <p>
+	 * Method under test: MazeBuilder.run()
+	 * <p>
+	 * Correct behavior:
+	 * a maze with an isolated cell is replaced by a new one, 
+	 * if no acceptable maze comes up, the order fails and nothing is delivered
+	 */
+	@Test
+	public final void testAcceptance() {
+		final String[] failure = new String[1];
+		StubOrder stubOrder = new StubOrder(1, true) {
+			@Override
+			public boolean isBSPTreeNeeded() {
+				return false;
+			}
+			@Override
+			public void fail(String message) {
+				failure[0] = message;
+			}
+		};
+		// the first maze gets a cell that is walled in
+		final int[] attempts = new int[1];
+		MazeBuilder builder = new MazeBuilder() {
+			@Override
+			protected void generate() {
+				super.generate();
+				if (0 == attempts[0]++)
+					encloseCell(floorplan, 1, 1);
+			}
+		};
+		builder.buildOrder(stubOrder);
+		builder.run();
+		assertEquals(2, attempts[0]);
+		assertNull(failure[0]);
+		assertNotNull(stubOrder.getMaze());
+		assertTrue(new MazeValidator(stubOrder.getMaze().getFloorplan()).validate().isPerfect());
+		// all mazes get a cell that is walled in
+		stubOrder = new StubOrder(1, true) {
+			@Override
+			public boolean isBSPTreeNeeded() {
+				return false;
+			}
+			@Override
+			public void fail(String message) {
+				failure[0] = message;
+			}
+		};
+		builder = new MazeBuilder() {
+			@Override
+			protected void generate() {
+				super.generate();
+				attempts[0]++;
+				encloseCell(floorplan, 1, 1);
+			}
+		};
+		attempts[0] = 0;
+		builder.buildOrder(stubOrder);
+		builder.run();
+		assertEquals(MazeBuilder.MAX_ATTEMPTS, attempts[0]);
+		assertNotNull(failure[0]);
+		assertNull(stubOrder.getMaze());
+	}
+	
 	// private methods
 	
+	/*
+	 * put up wallboards on all sides of the given cell
+	 */
+	private static void encloseCell(Floorplan floorplan, int x, int y) {
+		for (CardinalDirection cd : CardinalDirection.values()) {
+			floorplan.addWallboard(new Wallboard(x, y, cd), true);
+		}
+	}
+	
 	/*
 	 * make a new maze with a skill level of 2 so that it will
 	 * have rooms
@@ -0,0 +1,154 @@
+package gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import generation.BSPNode;
+import generation.Floorplan;
+import generation.Maze;
+
+public class FirstPersonViewTest {
+
+	private static final String XML_FILE = "test/data/input.xml";
+	// larger than the screen to have strips with several walls each
+	private static final int WIDTH = 2*Constants.VIEW_WIDTH;
+	private static final int HEIGHT = Constants.VIEW_HEIGHT;
+	// walls carry a seen flag, so each view needs a maze of its own
+	private Maze expectedMaze;
+	private Maze actualMaze;
+	private RasterPanel expectedPanel;
+	private RasterPanel actualPanel;
+	private Floorplan expectedSeen;
+	private Floorplan actualSeen;
+	private FirstPersonView expected;
+	private FirstPersonView actual;
+
+	/**
+	 * Load the test maze twice and create a view for each
+	 */
+	@Before
+	public final void setUp() {
+		expectedMaze = new MazeFileReader(XML_FILE).getMazeConfiguration();
+		actualMaze = new MazeFileReader(XML_FILE).getMazeConfiguration();
+		expectedPanel = new RasterPanel(WIDTH, HEIGHT);
+		actualPanel = new RasterPanel(WIDTH, HEIGHT);
+		expectedSeen = new Floorplan(expectedMaze.getWidth()+1, expectedMaze.getHeight()+1);
+		actualSeen = new Floorplan(actualMaze.getWidth()+1, actualMaze.getHeight()+1);
+		expected = new FirstPersonView(expectedPanel, WIDTH, HEIGHT,
+				Constants.MAP_UNIT, Constants.STEP_SIZE, expectedSeen, expectedMaze.getRootnode());
+		actual = new FirstPersonView(actualPanel, WIDTH, HEIGHT,
+				Constants.MAP_UNIT, Constants.STEP_SIZE, actualSeen, actualMaze.getRootnode());
+	}
+
+	/**
+	 * Test case: Views drawn in parallel strips
+	 * <p>
+	 * Method under test: draw with setStrips(int count, ForkJoinPool pool)
+	 * <p>
+	 * Correct behavior:
+	 * every column shows the same wall at the horizon as without strips,
+	 * top and bottom edges differ by at most two pixels, the same walls are seen
+	 */
+	@Test
+	public final void testStrips() {
+		actual.setStrips(7, new ForkJoinPool(3));
+		Random random = new Random(11);
+		for (int x = 0; x < expectedMaze.getWidth(); x++) {
+			for (int y = 0; y < expectedMaze.getHeight(); y++) {
+				draw(x, y, 0, random.nextInt(360), 4);
+				draw(x, y, random.nextInt(7) - 3, 90*random.nextInt(4), 4);
+			}
+		}
+		assertEquals(expectedSeen, actualSeen);
+	}
+
+	/**
+	 * Test case: A single strip
+	 * <p>
+	 * Method under test: draw with setStrips(int count, ForkJoinPool pool)
+	 * <p>
+	 * Correct behavior:
+	 * the view is drawn on the calling thread with the same pixels as before
+	 */
+	@Test
+	public final void testSingleStrip() {
+		actual.setStrips(4, new ForkJoinPool(2));
+		actual.setStrips(1, null);
+		draw(expectedMaze.getStartingPosition()[0], expectedMaze.getStartingPosition()[1], 0, 45, 0);
+		draw(0, 0, 2, 90, 0);
+		assertEquals(expectedSeen, actualSeen);
+	}
+
+	/**
+	 * Test case: View of a tree that is loaded on demand
+	 * <p>
+	 * Method under test: FirstPersonView(MazePanel panel, int width, int height, int mapUnit,
+	 * int stepSize, Floorplan seenWalls, BSPNode bspRoot) and draw
+	 * <p>
+	 * Correct behavior:
+	 * the first frame leaves subtrees of the file unloaded,
+	 * all frames show the same pixels and walls as for the tree of the XML file
+	 */
+	@Test
+	public final void testLazyTree() throws IOException {
+		File indexedFile = File.createTempFile("maze", ".mazb");
+		indexedFile.deleteOnExit();
+		MazeBinaryFileWriter.convert(XML_FILE, indexedFile.getPath(), true, true);
+		BSPNode root = new MazeMappedFileReader(indexedFile.getPath()).getRootNode();
+		assertTrue(root.isLoadedOnDemand());
+		actual = new FirstPersonView(actualPanel, WIDTH, HEIGHT,
+				Constants.MAP_UNIT, Constants.STEP_SIZE, actualSeen, root);
+
+		draw(expectedMaze.getStartingPosition()[0], expectedMaze.getStartingPosition()[1], 0, 0, 0);
+		assertFalse(isLoaded(root));
+
+		actual.setStrips(7, new ForkJoinPool(3));
+		Random random = new Random(5);
+		for (int x = 0; x < expectedMaze.getWidth(); x++) {
+			for (int y = 0; y < expectedMaze.getHeight(); y++) {
+				draw(x, y, 0, random.nextInt(360), 4);
+			}
+		}
+		assertEquals(expectedSeen, actualSeen);
+	}
+
+	/**
+	 * Tells if all nodes of a subtree are in memory, without loading any of them.
+	 */
+	private static boolean isLoaded(BSPNode node) {
+		if (node instanceof LazyBSPLeaf)
+			return ((LazyBSPLeaf) node).isLoaded();
+		if (!(node instanceof LazyBSPBranch))
+			return true;
+		LazyBSPBranch branch = (LazyBSPBranch) node;
+		// children of a loaded branch are in memory, getting them reads nothing
+		return branch.isLoaded() && isLoaded(branch.getLeftBranch()) && isLoaded(branch.getRightBranch());
+	}
+
+	/**
+	 * Draws both views and compares them column by column.
+	 * @param tolerance is the maximum number of pixels that may differ in a column
+	 */
+	private void draw(int x, int y, int walkStep, int angle, int tolerance) {
+		expected.draw(expectedPanel, x, y, walkStep, angle, 0.5f);
+		actual.draw(actualPanel, x, y, walkStep, angle, 0.5f);
+		for (int i = 0; i < WIDTH; i++) {
+			assertEquals(expectedPanel.getPixel(i, HEIGHT/2), actualPanel.getPixel(i, HEIGHT/2));
+			int count = 0;
+			for (int j = 0; j < HEIGHT; j++) {
+				if (expectedPanel.getPixel(i, j) != actualPanel.getPixel(i, j))
+					count++;
+			}
+			assertTrue(count <= tolerance);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class GameLoopTest {
+
+	/**
+	 * Test case: Motions are shown in the order they are posted
+	 * <p>
+	 * Method under test: post(Motion motion), finish()
+	 * <p>
+	 * Correct behavior:
+	 * finish returns once all motions are shown, the last frame shows the
+	 * final view and hints are drawn after rotations and steps only
+	 */
+	@Test
+	public final void testOrder() {
+		RecordingScene scene = new RecordingScene();
+		GameLoop loop = new GameLoop(scene, Constants.FRAME_RATE, 0, 0, 0);
+		loop.start();
+		loop.post(GameLoop.Motion.rotate(0, 0, 0, 1));
+		loop.post(GameLoop.Motion.walk(0, 0, 0, 1, 90, 1));
+		loop.post(GameLoop.Motion.jump(0, 1, 0, 2, 90));
+		loop.finish();
+		assertEquals(2, scene.hints);
+		assertEquals("(0,2,90,0)", scene.frames.get(scene.frames.size() - 1));
+		// the rotation comes before the step and ends at 90 degrees
+		int turned = scene.frames.indexOf("(0,0,90,0)");
+		assertTrue(turned > 0);
+		assertTrue(turned < scene.frames.indexOf("(0,1,90,0)"));
+	}
+
+	/**
+	 * Test case: Duration of a motion does not depend on the frame rate
+	 * <p>
+	 * Method under test: post(Motion motion), finish()
+	 * <p>
+	 * Correct behavior:
+	 * a rotation takes at least MOTION_TIME milliseconds at a low and a high frame rate,
+	 * intermediate angles are interpolated from the elapsed time
+	 */
+	@Test
+	public final void testFrameRate() {
+		RecordingScene slow = rotate(10);
+		RecordingScene fast = rotate(200);
+		assertTrue(slow.elapsed >= Constants.MOTION_TIME);
+		assertTrue(fast.elapsed >= Constants.MOTION_TIME);
+		assertTrue(fast.frames.size() > slow.frames.size());
+	}
+
+	/**
+	 * Test case: A driver that waits for each motion
+	 * <p>
+	 * Method under test: post(Motion motion), awaitIdle()
+	 * <p>
+	 * Correct behavior:
+	 * each step is shown at normal speed with intermediate frames
+	 * although the next step is posted right away
+	 */
+	@Test
+	public final void testAwaitIdle() {
+		RecordingScene scene = new RecordingScene();
+		GameLoop loop = new GameLoop(scene, Constants.FRAME_RATE, 0, 0, 90);
+		loop.start();
+		long start = System.nanoTime();
+		final int steps = 10;
+		for (int i = 0; i < steps; i++) {
+			loop.post(GameLoop.Motion.walk(0, i, 0, i + 1, 90, 1));
+			loop.awaitIdle();
+		}
+		long elapsed = (System.nanoTime() - start) / 1000000;
+		loop.finish();
+		assertTrue(elapsed >= steps * Constants.MOTION_TIME);
+		assertEquals("(0," + steps + ",90,0)", scene.frames.get(scene.frames.size() - 1));
+		for (int i = 0; i < steps; i++) {
+			// a frame between cell i and cell i+1
+			boolean between = false;
+			for (int walkStep = 1; walkStep < GameLoop.Motion.WALK_STEPS; walkStep++) {
+				between |= scene.frames.contains("(0," + i + ",90," + walkStep + ")");
+			}
+			assertTrue(between);
+		}
+	}
+
+	private RecordingScene rotate(int framesPerSecond) {
+		RecordingScene scene = new RecordingScene();
+		GameLoop loop = new GameLoop(scene, framesPerSecond, 0, 0, 0);
+		loop.start();
+		long start = System.nanoTime();
+		loop.post(GameLoop.Motion.rotate(0, 0, 0, -1));
+		loop.finish();
+		scene.elapsed = (System.nanoTime() - start) / 1000000;
+		assertEquals("(0,0,270,0)", scene.frames.get(scene.frames.size() - 1));
+		return scene;
+	}
+
+	/**
+	 * Scene that records frames as strings
+	 */
+	private static class RecordingScene implements GameLoop.Scene {
+		final ArrayList<String> frames = new ArrayList<String>();
+		int hints;
+		long elapsed;
+
+		@Override
+		public void drawFrame(int x, int y, int angle, int walkStep) {
+			frames.add("(" + x + "," + y + "," + angle + "," + walkStep + ")");
+		}
+		@Override
+		public void drawHint(int x, int y, int angle) {
+			hints++;
+		}
+	}
+}
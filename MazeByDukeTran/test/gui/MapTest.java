@@ -0,0 +1,226 @@
+package gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import generation.CardinalDirection;
+import generation.Floorplan;
+import generation.Maze;
+import generation.Wallboard;
+
+public class MapTest {
+
+	private static final String XML_FILE = "test/data/input.xml";
+	private static final int WIDTH = Constants.VIEW_WIDTH;
+	private static final int HEIGHT = Constants.VIEW_HEIGHT;
+	private Maze maze;
+	private Floorplan expectedSeen;
+	private Floorplan actualSeen;
+	private RasterPanel expectedPanel;
+	private RasterPanel actualPanel;
+	// draws walls directly on the panel
+	private Map expected;
+	// draws walls with tiles
+	private Map actual;
+	private Random random;
+
+	/**
+	 * Load the test maze and create a map without tiles and one with tiles
+	 * that are drawn on the calling thread
+	 */
+	@Before
+	public final void setUp() {
+		maze = new MazeFileReader(XML_FILE).getMazeConfiguration();
+		expectedSeen = new Floorplan(maze.getWidth()+1, maze.getHeight()+1);
+		actualSeen = new Floorplan(maze.getWidth()+1, maze.getHeight()+1);
+		expectedPanel = new RasterPanel(WIDTH, HEIGHT);
+		actualPanel = new RasterPanel(WIDTH, HEIGHT);
+		assertTrue(expectedPanel.isOperational() && actualPanel.isOperational());
+		expected = new Map(expectedSeen, 15, maze);
+		expected.maxTiles = 0;
+		actual = new Map(actualSeen, 15, maze);
+		actual.tileExecutor = Runnable::run;
+		random = new Random(5);
+	}
+
+	/**
+	 * Test case: Walls become visible while the map is shown
+	 * <p>
+	 * Method under test: draw(MazePanel mazePanel, int x, int y, int angle, int walkStep, boolean showMaze, boolean showSolution)
+	 * <p>
+	 * Correct behavior:
+	 * the map looks the same as if all walls were drawn directly
+	 */
+	@Test
+	public final void testSeenWalls() {
+		for (int i = 0; i < 200; i++) {
+			seeRandomWalls(3);
+			draw(random.nextBoolean(), random.nextBoolean());
+		}
+	}
+
+	/**
+	 * Test case: Zooming in and out
+	 * <p>
+	 * Method under test: incrementMapScale(), decrementMapScale() and draw
+	 * <p>
+	 * Correct behavior:
+	 * tiles are drawn for the new scale, also when walls are seen
+	 * in between, and the map looks the same as if all walls were drawn directly
+	 */
+	@Test
+	public final void testMapScale() {
+		for (int i = 0; i < 40; i++) {
+			if (random.nextBoolean()) {
+				expected.incrementMapScale();
+				actual.incrementMapScale();
+			}
+			else {
+				expected.decrementMapScale();
+				actual.decrementMapScale();
+			}
+			seeRandomWalls(10);
+			draw(true, false);
+			seeRandomWalls(10);
+			draw(false, true);
+		}
+	}
+
+	/**
+	 * Test case: Few tiles
+	 * <p>
+	 * Method under test: draw with a limit for the number of tiles
+	 * <p>
+	 * Correct behavior:
+	 * tiles that have not been used for the longest time are dropped
+	 * and drawn again when needed, walls are drawn directly when a frame
+	 * needs more tiles than the limit
+	 */
+	@Test
+	public final void testFewTiles() {
+		// the whole maze fits on 3x2 tiles up to scale 17
+		actual.maxTiles = 6;
+		for (int i = 0; i < 40; i++) {
+			if (0 == i % 10) {
+				expected.incrementMapScale();
+				actual.incrementMapScale();
+			}
+			seeRandomWalls(10);
+			draw(random.nextBoolean(), false);
+		}
+	}
+
+	/**
+	 * Test case: Tiles that are drawn in the background
+	 * <p>
+	 * Method under test: draw while tiles are not ready
+	 * <p>
+	 * Correct behavior:
+	 * while tiles for a new scale are missing, the map is filled in
+	 * with stretched tiles of the last scale, once the tiles are ready
+	 * the map looks the same as if all walls were drawn directly,
+	 * including walls that were seen in the meantime
+	 */
+	@Test
+	public final void testBackground() {
+		ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+		actual.tileExecutor = tasks::add;
+		seeRandomWalls(50);
+		// nothing to fill in with, walls are drawn directly
+		draw(true, false);
+		runAll(tasks);
+		draw(true, false, 3, 4);
+		assertTrue(tasks.isEmpty());
+		// walls of the last scale are stretched
+		expected.incrementMapScale();
+		actual.incrementMapScale();
+		expected.draw(expectedPanel, 3, 4, 0, 0, true, false);
+		actual.draw(actualPanel, 3, 4, 0, 0, true, false);
+		assertTrue(!tasks.isEmpty());
+		assertTrue(countDifferences() > 0);
+		assertTrue(countMapPixels(actualPanel) > countMapPixels(expectedPanel)/2);
+		seeRandomWalls(50);
+		runAll(tasks);
+		// tiles are done but not shown yet, walls must still make it onto them
+		seeRandomWalls(50);
+		draw(true, false, 3, 4);
+	}
+
+	/**
+	 * Runs all tasks that have been handed to the executor.
+	 */
+	private void runAll(ArrayDeque<Runnable> tasks) {
+		while (!tasks.isEmpty())
+			tasks.poll().run();
+	}
+
+	/**
+	 * Counts the pixels that show walls in white or gray.
+	 */
+	private int countMapPixels(RasterPanel panel) {
+		int count = 0;
+		for (int i = 0; i < WIDTH; i++) {
+			for (int j = 0; j < HEIGHT; j++) {
+				if (MazePanel.WHITE == panel.getPixel(i, j) || MazePanel.GRAY == panel.getPixel(i, j))
+					count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Marks the given number of random wallboards as seen in both floorplans.
+	 */
+	private void seeRandomWalls(int count) {
+		for (int i = 0; i < count; i++) {
+			Wallboard wallboard = new Wallboard(random.nextInt(maze.getWidth()+1), random.nextInt(maze.getHeight()+1),
+					random.nextBoolean() ? CardinalDirection.North : CardinalDirection.West);
+			expectedSeen.addWallboard(wallboard, false);
+			actualSeen.addWallboard(wallboard, false);
+		}
+	}
+
+	/**
+	 * Draws both maps at a random position and compares them.
+	 * Walls of cells that are just outside of the screen may reach into the first
+	 * column or the last row where only the layer shows them, so these are skipped.
+	 */
+	private void draw(boolean showMaze, boolean showSolution) {
+		draw(showMaze, showSolution, random.nextInt(maze.getWidth()), random.nextInt(maze.getHeight()));
+	}
+
+	/**
+	 * Draws both maps at the given position and compares them.
+	 */
+	private void draw(boolean showMaze, boolean showSolution, int x, int y) {
+		final int angle = 90*random.nextInt(4);
+		final int walkStep = random.nextInt(4);
+		expectedPanel.addBackground(0.5f);
+		actualPanel.addBackground(0.5f);
+		expected.draw(expectedPanel, x, y, angle, walkStep, showMaze, showSolution);
+		actual.draw(actualPanel, x, y, angle, walkStep, showMaze, showSolution);
+		assertEquals(0, countDifferences());
+		assertTrue(expectedSeen.equals(actualSeen));
+	}
+
+	/**
+	 * Counts the pixels that differ between both panels, 
+	 * except for the first column and the last row.
+	 */
+	private int countDifferences() {
+		int differences = 0;
+		for (int i = 1; i < WIDTH; i++) {
+			for (int j = 0; j < HEIGHT-1; j++) {
+				if (expectedPanel.getPixel(i, j) != actualPanel.getPixel(i, j))
+					differences++;
+			}
+		}
+		return differences;
+	}
+}
@@ -0,0 +1,133 @@
+package gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import generation.Maze;
+import generation.Order;
+
+public class MazeArchiveTest {
+
+	private static final String XML_FILE = "test/data/input.xml";
+	private File archiveFile;
+	private Maze maze;
+
+	/**
+	 * Provide a maze and the name of an archive that does not exist yet
+	 */
+	@Before
+	public final void setUp() throws IOException {
+		archiveFile = File.createTempFile("mazes", ".mza");
+		archiveFile.delete();
+		maze = new MazeFileReader(XML_FILE).getMazeConfiguration();
+	}
+
+	@After
+	public final void tearDown() {
+		archiveFile.delete();
+	}
+
+	/**
+	 * Test case: Random access by key after a batch append
+	 * <p>
+	 * Method under test: append(Map mazes), get(Key key)
+	 * <p>
+	 * Correct behavior:
+	 * all appended mazes can be read back after reopening the archive,
+	 * unknown keys give null, a second append with the same key replaces the entry
+	 */
+	@Test
+	public final void testAppendAndGet() throws IOException {
+		TreeMap<MazeArchive.Key, Maze> batch = new TreeMap<MazeArchive.Key, Maze>();
+		for (int seed = 0; seed < 20; seed++) {
+			batch.put(new MazeArchive.Key(Order.Builder.DFS, 4, false, seed), maze);
+		}
+		try (MazeArchive archive = new MazeArchive(archiveFile.getPath())) {
+			archive.append(batch);
+			archive.append(new MazeArchive.Key(Order.Builder.DFS, 4, false, 7), maze);
+		}
+		try (MazeArchive archive = new MazeArchive(archiveFile.getPath())) {
+			assertEquals(20, archive.size());
+			Maze loaded = archive.get(new MazeArchive.Key(Order.Builder.DFS, 4, false, 13));
+			assertEquals(maze.getFloorplan(), loaded.getFloorplan());
+			assertEquals(maze.getStartingPosition()[0], loaded.getStartingPosition()[0]);
+			assertEquals(maze.getStartingPosition()[1], loaded.getStartingPosition()[1]);
+			assertEquals(maze.getMazedists().getMaxDistance(), loaded.getMazedists().getMaxDistance());
+			assertTrue(archive.contains(new MazeArchive.Key(Order.Builder.DFS, 4, false, 7)));
+			assertFalse(archive.contains(new MazeArchive.Key(Order.Builder.DFS, 4, true, 7)));
+			assertNull(archive.get(new MazeArchive.Key(Order.Builder.Prim, 4, false, 7)));
+		}
+		// entries are compressed
+		assertTrue(archiveFile.length() < 20 * new File(XML_FILE).length() / 10);
+	}
+
+	/**
+	 * Test case: Iteration over all entries
+	 * <p>
+	 * Method under test: iterator()
+	 * <p>
+	 * Correct behavior:
+	 * entries are delivered once each in ascending order of keys
+	 */
+	@Test
+	public final void testIterator() throws IOException {
+		TreeMap<MazeArchive.Key, Maze> batch = new TreeMap<MazeArchive.Key, Maze>();
+		batch.put(new MazeArchive.Key(Order.Builder.Eller, 1, true, 3), maze);
+		batch.put(new MazeArchive.Key(Order.Builder.DFS, 2, false, 9), maze);
+		batch.put(new MazeArchive.Key(Order.Builder.DFS, 1, false, 5), maze);
+		try (MazeArchive archive = new MazeArchive(archiveFile.getPath())) {
+			archive.append(batch);
+			Iterator<MazeArchive.Entry> it = archive.iterator();
+			for (MazeArchive.Key key : batch.keySet()) {
+				assertTrue(it.hasNext());
+				MazeArchive.Entry entry = it.next();
+				assertEquals(key, entry.getKey());
+				assertEquals(maze.getFloorplan(), entry.getMaze().getFloorplan());
+			}
+			assertFalse(it.hasNext());
+		}
+	}
+
+	/**
+	 * Test case: Unused space after many appends of single mazes
+	 * <p>
+	 * Method under test: append(Key key, Maze maze), compact()
+	 * <p>
+	 * Correct behavior:
+	 * replaced entries and old indices never take more space than the content,
+	 * a compaction removes all unused space and keeps all entries
+	 */
+	@Test
+	public final void testCompact() throws IOException {
+		try (MazeArchive archive = new MazeArchive(archiveFile.getPath())) {
+			for (int i = 0; i < 30; i++) {
+				archive.append(new MazeArchive.Key(Order.Builder.DFS, 4, false, i % 5), maze);
+				assertTrue(archive.getUnusedSize() <= archiveFile.length() - archive.getUnusedSize());
+			}
+			assertEquals(5, archive.size());
+			archive.compact();
+			assertEquals(0, archive.getUnusedSize());
+			assertEquals(5, archive.size());
+		}
+		try (MazeArchive archive = new MazeArchive(archiveFile.getPath())) {
+			assertEquals(5, archive.size());
+			for (int seed = 0; seed < 5; seed++) {
+				Maze loaded = archive.get(new MazeArchive.Key(Order.Builder.DFS, 4, false, seed));
+				assertEquals(maze.getFloorplan(), loaded.getFloorplan());
+			}
+		}
+		assertEquals(1, archiveFile.getParentFile().listFiles((dir, name) ->
+				name.startsWith(archiveFile.getName())).length);
+	}
+}
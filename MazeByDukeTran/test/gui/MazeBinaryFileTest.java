@@ -0,0 +1,488 @@
+package gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import generation.BSPBranch;
+import generation.BSPLeaf;
+import generation.BSPNode;
+import generation.CardinalDirection;
+import generation.Floorplan;
+import generation.Maze;
+import generation.MazeFactory;
+import generation.StubOrder;
+import generation.Wall;
+import generation.Wallboard;
+
+public class MazeBinaryFileTest {
+
+	private static final String XML_FILE = "test/data/input.xml";
+	private MazeFileReader xml;
+	private MazeBinaryFileReader binary;
+	private File binaryFile;
+
+	/**
+	 * Convert the XML test maze into a temporary binary file and read both
+	 */
+	@Before
+	public final void setUp() throws IOException {
+		binaryFile = File.createTempFile("maze", ".mazb");
+		binaryFile.deleteOnExit();
+		MazeBinaryFileWriter.convert(XML_FILE, binaryFile.getPath());
+		xml = new MazeFileReader(XML_FILE);
+		binary = new MazeBinaryFileReader(binaryFile.getPath());
+	}
+
+	/**
+	 * Test case: Detection of the file format
+	 * <p>
+	 * Method under test: isBinaryFile(String filename)
+	 * <p>
+	 * Correct behavior:
+	 * binary files are recognized, XML files and missing files are not
+	 */
+	@Test
+	public final void testIsBinaryFile() {
+		assertTrue(MazeBinaryFileReader.isBinaryFile(binaryFile.getPath()));
+		assertFalse(MazeBinaryFileReader.isBinaryFile(XML_FILE));
+		assertFalse(MazeBinaryFileReader.isBinaryFile("test/data/missing.mazb"));
+	}
+
+	/**
+	 * Test case: Content of a converted file
+	 * <p>
+	 * Method under test: convert(String xmlFilename, String binaryFilename)
+	 * <p>
+	 * Correct behavior:
+	 * the binary file holds the same dimensions, cells, distances,
+	 * starting position and BSP tree as the XML file
+	 */
+	@Test
+	public final void testConvert() {
+		assertEquals(xml.getWidth(), binary.getWidth());
+		assertEquals(xml.getHeight(), binary.getHeight());
+		assertEquals(xml.getRooms(), binary.getRooms());
+		assertEquals(xml.getExpectedPartiters(), binary.getExpectedPartiters());
+		assertEquals(xml.getStartX(), binary.getStartX());
+		assertEquals(xml.getStartY(), binary.getStartY());
+		assertEquals(xml.getCells(), binary.getCells());
+		for (int x = 0; x < xml.getWidth(); x++) {
+			for (int y = 0; y < xml.getHeight(); y++) {
+				assertEquals(xml.getDistances()[x][y], binary.getDistances()[x][y]);
+			}
+		}
+		assertSameTree(xml.getRootNode(), binary.getRootNode());
+		// binary format is much smaller than XML
+		assertTrue(binaryFile.length() * 10 < new File(XML_FILE).length());
+	}
+
+	/**
+	 * Test case: Loading a file with a fixed layout through a memory mapping
+	 * <p>
+	 * Method under test: MazeMappedFileReader(String filename)
+	 * <p>
+	 * Correct behavior:
+	 * cells and distances are views on the file with the same content as the XML file,
+	 * directions to the exit and storing the distances keep them as views,
+	 * the first modification of the floorplan copies its content
+	 */
+	@Test
+	public final void testMappedFile() throws IOException {
+		File fixedFile = File.createTempFile("maze", ".mazb");
+		fixedFile.deleteOnExit();
+		MazeBinaryFileWriter.convert(XML_FILE, fixedFile.getPath(), true);
+		assertTrue(MazeMappedFileReader.isMappable(fixedFile.getPath()));
+		assertFalse(MazeMappedFileReader.isMappable(binaryFile.getPath()));
+		
+		MazeMappedFileReader mapped = new MazeMappedFileReader(fixedFile.getPath());
+		assertTrue(mapped.getCells().isMapped());
+		assertTrue(mapped.getDistances().isMapped());
+		assertEquals(xml.getCells(), mapped.getCells());
+		for (int x = 0; x < xml.getWidth(); x++) {
+			for (int y = 0; y < xml.getHeight(); y++) {
+				assertEquals(xml.getDistances()[x][y], mapped.getDistances().getDistanceValue(x, y));
+			}
+		}
+		assertSameTree(xml.getRootNode(), mapped.getRootNode());
+		// directions to the exit are found without copying the distances
+		Maze expected = xml.getMazeConfiguration();
+		Maze maze = new MazeMappedFileReader(fixedFile.getPath()).getMazeConfiguration();
+		for (int x = 0; x < xml.getWidth(); x++) {
+			for (int y = 0; y < xml.getHeight(); y++) {
+				assertEquals(expected.getDirectionCloserToExit(x, y), maze.getDirectionCloserToExit(x, y));
+			}
+		}
+		int[] start = maze.getStartingPosition();
+		assertEquals(expected.getSolutionPath(start[0], start[1]).getTotalLength(), maze.getSolutionPath(start[0], start[1]).getTotalLength());
+		assertEquals(xml.getDistances()[3][4], maze.getMazedists().readAllDistanceValues()[3][4]);
+		assertTrue(maze.getMazedists().isMapped());
+		assertTrue(maze.getFloorplan().isMapped());
+		// copy on write
+		mapped.getCells().setCellAsVisited(0, 0);
+		assertFalse(mapped.getCells().isMapped());
+		assertEquals(xml.getCells().getValueOfCell(1, 1), mapped.getCells().getValueOfCell(1, 1));
+		// the packed reader also understands the fixed layout
+		assertEquals(xml.getCells(), new MazeBinaryFileReader(fixedFile.getPath()).getCells());
+	}
+
+	/**
+	 * Test case: Loading a file with an indexed tree on demand
+	 * <p>
+	 * Method under test: LazyBSPBranch.load(ByteBuffer buffer, int position)
+	 * <p>
+	 * Correct behavior:
+	 * the root is loaded without its children, traversal gives the same tree as the XML file,
+	 * an evicted subtree is read again with the same content
+	 */
+	@Test
+	public final void testIndexedTree() throws IOException {
+		File indexedFile = File.createTempFile("maze", ".mazb");
+		indexedFile.deleteOnExit();
+		MazeBinaryFileWriter.convert(XML_FILE, indexedFile.getPath(), true, true);
+
+		LazyBSPBranch root = (LazyBSPBranch) new MazeMappedFileReader(indexedFile.getPath()).getRootNode();
+		assertFalse(root.isLoaded());
+		assertEquals(xml.getRootNode().getLowerBoundX(), root.getLowerBoundX());
+		assertEquals(xml.getRootNode().getUpperBoundY(), root.getUpperBoundY());
+		assertSameTree(xml.getRootNode(), root);
+		assertTrue(root.isLoaded());
+		root.evict();
+		assertFalse(root.isLoaded());
+		assertSameTree(xml.getRootNode(), root);
+		// the eager reader also understands the indexed tree
+		assertSameTree(xml.getRootNode(), new MazeBinaryFileReader(indexedFile.getPath()).getRootNode());
+	}
+
+	/**
+	 * Test case: Seen walls of a tree that is loaded on demand
+	 * <p>
+	 * Method under test: LazyBSPBranch.evict()
+	 * <p>
+	 * Correct behavior:
+	 * a wall that has been marked as seen is still seen after its
+	 * subtree has been evicted and read again from the file
+	 */
+	@Test
+	public final void testIndexedTreeSeen() throws IOException {
+		File indexedFile = File.createTempFile("maze", ".mazb");
+		indexedFile.deleteOnExit();
+		MazeBinaryFileWriter.convert(XML_FILE, indexedFile.getPath(), true, true);
+
+		LazyBSPBranch root = (LazyBSPBranch) new MazeMappedFileReader(indexedFile.getPath()).getRootNode();
+		BSPNode node = root;
+		while (!node.isIsleaf())
+			node = ((BSPBranch) node).getRightBranch();
+		ArrayList<Wall> walls = ((BSPLeaf) node).getSlist();
+		assertFalse(walls.isEmpty());
+		Wall wall = walls.get(walls.size() - 1);
+		boolean seen = wall.isSeen();
+		wall.setSeen(!seen);
+		root.evict();
+		assertFalse(root.isLoaded());
+		node = root;
+		while (!node.isIsleaf())
+			node = ((BSPBranch) node).getRightBranch();
+		ArrayList<Wall> loaded = ((BSPLeaf) node).getSlist();
+		assertNotSame(walls, loaded);
+		assertEquals(!seen, loaded.get(loaded.size() - 1).isSeen());
+		assertEquals(wall, loaded.get(loaded.size() - 1));
+	}
+
+	/**
+	 * Test case: Loading a file in the minimal format
+	 * <p>
+	 * Method under test: load(ByteBuffer buffer)
+	 * <p>
+	 * Correct behavior:
+	 * the file is much smaller than the full format, distances and
+	 * BSP tree are rebuilt on load exactly as they were generated
+	 */
+	@Test
+	public final void testMinimalFormat() throws IOException {
+		StubOrder order = new StubOrder(4, false);
+		MazeFactory factory = new MazeFactory();
+		factory.order(order);
+		factory.waitTillDelivered();
+		Maze maze = order.getMaze();
+		int[] start = maze.getStartingPosition();
+		int[][] dists = maze.getMazedists().getAllDistanceValues();
+		ByteBuffer full = MazeBinaryFileWriter.storeMaze(maze.getWidth(), maze.getHeight(), 0, 100,
+				maze.getRootnode(), maze.getFloorplan(), dists, start[0], start[1], false, false);
+		ByteBuffer minimal = MazeBinaryFileWriter.storeMinimalMaze(maze.getWidth(), maze.getHeight(), 0, 100,
+				maze.getColorChange(), maze.getFloorplan(), dists, start[0], start[1]);
+		assertTrue(minimal.remaining() * 10 < full.remaining());
+
+		MazeBinaryFileReader loaded = new MazeBinaryFileReader();
+		loaded.load(minimal);
+		assertEquals(maze.getFloorplan(), loaded.getCells());
+		assertEquals(start[0], loaded.getStartX());
+		assertEquals(start[1], loaded.getStartY());
+		for (int x = 0; x < maze.getWidth(); x++) {
+			for (int y = 0; y < maze.getHeight(); y++) {
+				assertEquals(dists[x][y], loaded.getDistances()[x][y]);
+			}
+		}
+		assertSameTree(maze.getRootnode(), loaded.getRootNode());
+		assertEquals(maze.getColorChange(), loaded.getMazeConfiguration().getColorChange());
+	}
+
+	/**
+	 * Test case: Loading a file in the minimal format with a cell that can not reach the exit
+	 * <p>
+	 * Method under test: load(ByteBuffer buffer)
+	 * <p>
+	 * Correct behavior:
+	 * the rebuilt distance of the enclosed cell is infinite, it does not overflow
+	 */
+	@Test
+	public final void testMinimalFormatUnreachable() throws IOException {
+		StubOrder order = new StubOrder(0, true);
+		MazeFactory factory = new MazeFactory();
+		factory.order(order);
+		factory.waitTillDelivered();
+		Maze maze = order.getMaze();
+		int[] start = maze.getStartingPosition();
+		int x = maze.getWidth() / 2;
+		int y = (start[0] == x && start[1] == maze.getHeight() / 2) ? 1 : maze.getHeight() / 2;
+		int[][] dists = maze.getMazedists().getAllDistanceValues();
+		Floorplan floorplan = maze.getFloorplan();
+		for (CardinalDirection cd : CardinalDirection.values()) {
+			floorplan.addWallboard(new Wallboard(x, y, cd), true);
+		}
+		ByteBuffer minimal = MazeBinaryFileWriter.storeMinimalMaze(maze.getWidth(), maze.getHeight(), 0, 100,
+				maze.getColorChange(), floorplan, dists, start[0], start[1]);
+		MazeBinaryFileReader loaded = new MazeBinaryFileReader();
+		loaded.load(minimal);
+		assertEquals(Integer.MAX_VALUE, loaded.getDistances()[x][y]);
+	}
+
+	/**
+	 * Test case: Loading a file in the compressed format
+	 * <p>
+	 * Method under test: load(ByteBuffer buffer)
+	 * <p>
+	 * Correct behavior:
+	 * the file is much smaller than the full format, a file with several blocks
+	 * has the same content as the XML file, a corrupted block is reported
+	 */
+	@Test
+	public final void testCompressedFormat() {
+		ByteBuffer full = MazeBinaryFileWriter.storeMaze(xml.getWidth(), xml.getHeight(), xml.getRooms(), xml.getExpectedPartiters(),
+				xml.getRootNode(), xml.getCells(), xml.getDistances(), xml.getStartX(), xml.getStartY(), false, false);
+		ByteBuffer compressed = MazeBinaryFileWriter.storeCompressedMaze(xml.getWidth(), xml.getHeight(), xml.getRooms(), xml.getExpectedPartiters(),
+				xml.getRootNode(), xml.getCells(), xml.getDistances(), xml.getStartX(), xml.getStartY(), MazeBinaryFileWriter.BLOCK_SIZE);
+		assertTrue(compressed.remaining() * 3 < full.remaining());
+		// small blocks to have more than one
+		ByteBuffer blocks = MazeBinaryFileWriter.storeCompressedMaze(xml.getWidth(), xml.getHeight(), xml.getRooms(), xml.getExpectedPartiters(),
+				xml.getRootNode(), xml.getCells(), xml.getDistances(), xml.getStartX(), xml.getStartY(), 1024);
+		assertTrue(blocks.getInt(MazeBinaryFileWriter.HEADER_SIZE + 8) > 1);
+		MazeBinaryFileReader loaded = new MazeBinaryFileReader();
+		try {
+			loaded.load(blocks.duplicate());
+		} catch (IOException e) {
+			fail("intact file reported as corrupted: " + e.getMessage());
+		}
+		assertTrue(MazeDiff.diff(xml.getMazeConfiguration(), loaded.getMazeConfiguration()).isEqual());
+		assertEquals(xml.getRooms(), loaded.getRooms());
+		// flip a bit in the last block
+		final int last = blocks.limit() - 1;
+		blocks.put(last, (byte) (blocks.get(last) ^ 1));
+		IOException corrupted = null;
+		try {
+			new MazeBinaryFileReader().load(blocks);
+		} catch (IOException e) {
+			corrupted = e;
+		}
+		assertNotNull(corrupted);
+	}
+
+	/**
+	 * Test case: Loading a compressed file with a corrupted block table
+	 * <p>
+	 * Method under test: load(ByteBuffer buffer)
+	 * <p>
+	 * Correct behavior:
+	 * values in the table that do not fit the file are reported with an IOException
+	 * before any block is decompressed, a wrong block is named in the message
+	 */
+	@Test
+	public final void testCorruptedBlockTable() {
+		ByteBuffer blocks = MazeBinaryFileWriter.storeCompressedMaze(xml.getWidth(), xml.getHeight(), xml.getRooms(), xml.getExpectedPartiters(),
+				xml.getRootNode(), xml.getCells(), xml.getDistances(), xml.getStartX(), xml.getStartY(), 1024);
+		final int table = MazeBinaryFileWriter.HEADER_SIZE;
+		assertTrue(blocks.getInt(table + 8) > 1);
+		// block size, length and number of blocks
+		assertCorrupted(blocks, table, 0, null);
+		assertCorrupted(blocks, table + 4, Integer.MAX_VALUE, null);
+		assertCorrupted(blocks, table + 8, blocks.getInt(table + 8) + 1, null);
+		assertCorrupted(blocks, table + 8, 100000000, null);
+		// sizes of the first and second block
+		assertCorrupted(blocks, table + 12, -1, "block 0");
+		assertCorrupted(blocks, table + 12 + 8, blocks.limit(), "block 1");
+	}
+
+	/**
+	 * Test case: Files that can not be loaded
+	 * <p>
+	 * Method under test: MazeBinaryFileReader(String filename), MazeMappedFileReader(String filename)
+	 * <p>
+	 * Correct behavior:
+	 * a missing file and a file that is not a binary maze are reported
+	 * with an exception that names the file instead of leaving an empty reader
+	 */
+	@Test
+	public final void testLoadFailure() {
+		for (String filename : new String[] {"test/data/missing.mazb", XML_FILE}) {
+			UncheckedIOException failure = null;
+			try {
+				new MazeBinaryFileReader(filename);
+			} catch (UncheckedIOException e) {
+				failure = e;
+			}
+			assertNotNull(failure);
+			assertTrue(failure.getMessage().contains(filename));
+			failure = null;
+			try {
+				new MazeMappedFileReader(filename);
+			} catch (UncheckedIOException e) {
+				failure = e;
+			}
+			assertNotNull(failure);
+			assertTrue(failure.getMessage().contains(filename));
+		}
+	}
+
+	/**
+	 * Test case: Files with a damaged header or a truncated content
+	 * <p>
+	 * Method under test: MazeBinaryFileReader(String filename)
+	 * <p>
+	 * Correct behavior:
+	 * dimensions and a starting position out of range and files that are
+	 * shorter than the header tells are reported with an UncheckedIOException,
+	 * nothing is allocated for a damaged header
+	 */
+	@Test
+	public final void testDamagedFile() throws IOException {
+		byte[] content = Files.readAllBytes(binaryFile.toPath());
+		assertTrue(content.length > 3000);
+		assertDamaged(Arrays.copyOf(content, 3000), false);
+		assertDamaged(Arrays.copyOf(content, MazeBinaryFileWriter.HEADER_SIZE), false);
+		assertDamaged(Arrays.copyOf(content, 20), false);
+		// width, height and starting position
+		for (int[] change : new int[][] {{8, -16}, {8, 0x40000000}, {12, 0}, {24, xml.getWidth()}, {28, -1}}) {
+			ByteBuffer copy = ByteBuffer.wrap(content.clone());
+			copy.putInt(change[0], change[1]);
+			assertDamaged(copy.array(), false);
+		}
+	}
+
+	/**
+	 * Test case: Files with a fixed layout that are shorter than the header tells
+	 * <p>
+	 * Method under test: MazeMappedFileReader(String filename)
+	 * <p>
+	 * Correct behavior:
+	 * a cut file and a file with dimensions or a starting position out of range
+	 * are reported with an UncheckedIOException before cells are mapped
+	 */
+	@Test
+	public final void testDamagedMappedFile() throws IOException {
+		File fixedFile = File.createTempFile("maze", ".mazb");
+		fixedFile.deleteOnExit();
+		MazeBinaryFileWriter.convert(XML_FILE, fixedFile.getPath(), true);
+		byte[] content = Files.readAllBytes(fixedFile.toPath());
+		assertTrue(content.length > 2000);
+		assertDamaged(Arrays.copyOf(content, 2000), true);
+		assertDamaged(Arrays.copyOf(content, content.length - 1), true);
+		assertDamaged(Arrays.copyOf(content, 20), true);
+		for (int[] change : new int[][] {{8, -16}, {8, 0x40000000}, {12, 0}, {24, xml.getWidth()}}) {
+			ByteBuffer copy = ByteBuffer.wrap(content.clone());
+			copy.putInt(change[0], change[1]);
+			assertDamaged(copy.array(), true);
+		}
+	}
+
+	/**
+	 * Writes the given content to a file and checks that loading it
+	 * gives an UncheckedIOException that names the file.
+	 * @param mapped tells if the file is loaded with MazeMappedFileReader
+	 */
+	private void assertDamaged(byte[] content, boolean mapped) throws IOException {
+		File damaged = File.createTempFile("maze", ".mazb");
+		damaged.deleteOnExit();
+		Files.write(damaged.toPath(), content);
+		try {
+			if (mapped)
+				new MazeMappedFileReader(damaged.getPath());
+			else
+				new MazeBinaryFileReader(damaged.getPath());
+			fail("damaged file not detected");
+		} catch (UncheckedIOException e) {
+			assertTrue(e.getMessage().contains(damaged.getPath()));
+		}
+	}
+
+	/**
+	 * Loads a copy of the given compressed file with an int replaced
+	 * and checks that it is reported as corrupted.
+	 * @param message is expected in the message of the exception, null for any message
+	 */
+	private void assertCorrupted(ByteBuffer file, int position, int value, String message) {
+		ByteBuffer copy = ByteBuffer.allocate(file.limit());
+		copy.put(file.duplicate()).flip();
+		copy.putInt(position, value);
+		try {
+			new MazeBinaryFileReader().load(copy);
+			fail("corrupted block table at " + position + " not detected");
+		} catch (IOException e) {
+			if (null != message)
+				assertTrue(e.getMessage(), e.getMessage().contains(message));
+		}
+	}
+
+	/**
+	 * Compares two BSP trees node by node
+	 */
+	private void assertSameTree(BSPNode expected, BSPNode actual) {
+		assertEquals(expected.isIsleaf(), actual.isIsleaf());
+		assertEquals(expected.getLowerBoundX(), actual.getLowerBoundX());
+		assertEquals(expected.getLowerBoundY(), actual.getLowerBoundY());
+		assertEquals(expected.getUpperBoundX(), actual.getUpperBoundX());
+		assertEquals(expected.getUpperBoundY(), actual.getUpperBoundY());
+		if (expected.isIsleaf()) {
+			ArrayList<Wall> walls = ((BSPLeaf) expected).getSlist();
+			ArrayList<Wall> other = ((BSPLeaf) actual).getSlist();
+			assertEquals(walls, other);
+			for (int i = 0; i < walls.size(); i++) {
+				assertEquals(walls.get(i).isSeen(), other.get(i).isSeen());
+				assertEquals(walls.get(i).isPartition(), other.get(i).isPartition());
+			}
+		}
+		else {
+			BSPBranch b = (BSPBranch) expected;
+			BSPBranch b2 = (BSPBranch) actual;
+			assertEquals(b.getX(), b2.getX());
+			assertEquals(b.getY(), b2.getY());
+			assertEquals(b.getDx(), b2.getDx());
+			assertEquals(b.getDy(), b2.getDy());
+			assertSameTree(b.getLeftBranch(), b2.getLeftBranch());
+			assertSameTree(b.getRightBranch(), b2.getRightBranch());
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import generation.BSPBranch;
+import generation.BSPLeaf;
+import generation.BSPNode;
+import generation.Maze;
+
+public class MazeDiffTest {
+
+	private static final String XML_FILE = "test/data/input.xml";
+	private Maze expected;
+	private Maze actual;
+
+	/**
+	 * Load the test maze twice, such that both mazes are equal but share no objects
+	 */
+	@Before
+	public final void setUp() {
+		expected = new MazeFileReader(XML_FILE).getMazeConfiguration();
+		actual = new MazeFileStreamReader(XML_FILE).getMazeConfiguration();
+	}
+
+	/**
+	 * Test case: Comparison of equal mazes
+	 * <p>
+	 * Method under test: diff(Maze expected, Maze actual), fingerprint(Maze maze)
+	 * <p>
+	 * Correct behavior:
+	 * fingerprints are equal and no difference is reported
+	 */
+	@Test
+	public final void testEqual() {
+		assertEquals(MazeDiff.fingerprint(expected), MazeDiff.fingerprint(actual));
+		MazeDiff diff = MazeDiff.diff(expected, actual);
+		assertTrue(diff.isEqual());
+		assertEquals("component=NONE", diff.toString());
+	}
+
+	/**
+	 * Test case: Mazes that differ in a cell
+	 * <p>
+	 * Method under test: diff(Maze expected, Maze actual)
+	 * <p>
+	 * Correct behavior:
+	 * the first divergent cell is reported with both values
+	 */
+	@Test
+	public final void testCells() {
+		// both cells are outside of rooms in the test maze
+		int before = actual.getFloorplan().getValueOfCell(4, 0);
+		actual.getFloorplan().setInRoomToOne(9, 1);
+		actual.getFloorplan().setInRoomToOne(4, 0);
+		assertNotEquals(MazeDiff.fingerprint(expected), MazeDiff.fingerprint(actual));
+		MazeDiff diff = MazeDiff.diff(expected, actual);
+		assertEquals(MazeDiff.Component.CELLS, diff.getComponent());
+		assertEquals(4, diff.getX());
+		assertEquals(0, diff.getY());
+		assertEquals(before, diff.getExpected());
+		assertEquals(actual.getFloorplan().getValueOfCell(4, 0), diff.getActual());
+		assertEquals("component=CELLS x=4 y=0 field=value expected=" + diff.getExpected()
+				+ " actual=" + diff.getActual(), diff.toString());
+	}
+
+	/**
+	 * Test case: Mazes that differ in a wall of the BSP tree
+	 * <p>
+	 * Method under test: diff(Maze expected, Maze actual)
+	 * <p>
+	 * Correct behavior:
+	 * the number of the first divergent node in preorder is reported
+	 */
+	@Test
+	public final void testTree() {
+		// follow the left branches to the first leaf, it has node number = depth
+		BSPNode node = actual.getRootnode();
+		int depth = 0;
+		while (!node.isIsleaf()) {
+			node = ((BSPBranch) node).getLeftBranch();
+			depth++;
+		}
+		((BSPLeaf) node).getSlist().get(0).setColor(12345);
+		MazeDiff diff = MazeDiff.diff(expected, MazeDiff.fingerprint(expected), actual);
+		assertFalse(diff.isEqual());
+		assertEquals(MazeDiff.Component.BSP, diff.getComponent());
+		assertEquals(depth, diff.getNode());
+		assertEquals("wall_0", diff.getField());
+	}
+}
@@ -0,0 +1,228 @@
+package gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import generation.Maze;
+import generation.StubOrder;
+
+public class MazeFileFactoryTest {
+
+	private static final String XML_FILE = "test/data/input.xml";
+	private MazeFileReader xml;
+
+	/**
+	 * Read the XML test maze synchronously for comparison
+	 */
+	@Before
+	public final void setUp() {
+		xml = new MazeFileReader(XML_FILE);
+	}
+
+	/**
+	 * Test case: Loading a maze as an order
+	 * <p>
+	 * Method under test: order(Order order), waitTillDelivered()
+	 * <p>
+	 * Correct behavior:
+	 * progress increases up to 100 and the delivered maze
+	 * has the same content as the file
+	 */
+	@Test
+	public final void testOrder() {
+		ProgressOrder order = new ProgressOrder();
+		MazeFileFactory factory = new MazeFileFactory(XML_FILE);
+		assertTrue(factory.order(order));
+		factory.waitTillDelivered();
+		Maze maze = order.getMaze();
+		assertEquals(xml.getCells(), maze.getFloorplan());
+		assertEquals(xml.getStartX(), maze.getStartingPosition()[0]);
+		assertEquals(xml.getStartY(), maze.getStartingPosition()[1]);
+		assertTrue(order.updates > 2);
+		assertEquals(100, order.percentage);
+	}
+
+	/**
+	 * Test case: Cancelling a load while the file is read
+	 * <p>
+	 * Method under test: load(String filename, Order order)
+	 * <p>
+	 * Correct behavior:
+	 * the Future is cancelled and the maze is never delivered
+	 */
+	@Test
+	public final void testCancel() throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch cancelled = new CountDownLatch(1);
+		ProgressOrder order = new ProgressOrder() {
+			@Override
+			public void updateProgress(int percentage) {
+				super.updateProgress(percentage);
+				started.countDown();
+				try {
+					cancelled.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		Future<Maze> future = MazeFileFactory.load(XML_FILE, order);
+		started.await();
+		assertTrue(future.cancel(true));
+		cancelled.countDown();
+		assertTrue(future.isCancelled());
+		// give the worker time to finish, it must not deliver
+		Thread.sleep(500);
+		assertNull(order.getMaze());
+		assertNull(order.failure);
+		assertTrue(order.percentage < 100);
+	}
+
+	/**
+	 * Test case: Loading a minimal file, which rebuilds the BSP tree
+	 * <p>
+	 * Method under test: order(Order order), waitTillDelivered()
+	 * <p>
+	 * Correct behavior:
+	 * progress continues after the file has been read while the tree is built
+	 */
+	@Test
+	public final void testMinimalProgress() throws IOException {
+		File minimal = File.createTempFile("maze", ".mazb");
+		minimal.deleteOnExit();
+		MazeBinaryFileWriter.convertMinimal(XML_FILE, minimal.getPath());
+		ProgressOrder order = new ProgressOrder();
+		MazeFileFactory factory = new MazeFileFactory(minimal.getPath());
+		assertTrue(factory.order(order));
+		factory.waitTillDelivered();
+		assertNotNull(order.getMaze());
+		assertEquals(100, order.percentage);
+		// reading the file takes up to 90 percent
+		assertTrue(order.building > 90);
+	}
+
+	/**
+	 * Test case: Cancelling the load of a minimal file while the tree is built
+	 * <p>
+	 * Method under test: load(String filename, Order order)
+	 * <p>
+	 * Correct behavior:
+	 * the Future is cancelled, the maze is never delivered and the order
+	 * is not told of a failure as it may already be busy with another maze
+	 */
+	@Test
+	public final void testCancelBuilding() throws Exception {
+		File minimal = File.createTempFile("maze", ".mazb");
+		minimal.deleteOnExit();
+		MazeBinaryFileWriter.convertMinimal(XML_FILE, minimal.getPath());
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch cancelled = new CountDownLatch(1);
+		ProgressOrder order = new ProgressOrder() {
+			@Override
+			public void updateProgress(int percentage) {
+				super.updateProgress(percentage);
+				if (percentage <= 90)
+					return;
+				started.countDown();
+				try {
+					cancelled.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		Future<Maze> future = MazeFileFactory.load(minimal.getPath(), order);
+		started.await();
+		assertTrue(future.cancel(true));
+		cancelled.countDown();
+		// give the worker time to finish, it must neither deliver nor fail
+		Thread.sleep(500);
+		assertNull(order.getMaze());
+		assertNull(order.failure);
+	}
+
+	/**
+	 * Test case: Storing a maze and loading it again
+	 * <p>
+	 * Method under test: store(String filename, Maze maze, Order order)
+	 * <p>
+	 * Correct behavior:
+	 * the file is written with progress updates and has the same content
+	 * as the file it was loaded from
+	 */
+	@Test
+	public final void testStore() throws Exception {
+		File file = File.createTempFile("maze", ".xml");
+		file.deleteOnExit();
+		ProgressOrder order = new ProgressOrder();
+		MazeFileFactory.store(file.getPath(), xml.getMazeConfiguration(), order).get();
+		assertEquals(100, order.percentage);
+		assertTrue(order.updates > 2);
+		MazeFileReader stored = new MazeFileReader(file.getPath());
+		assertEquals(xml.getCells(), stored.getCells());
+		assertEquals(xml.getDistances()[1][1], stored.getDistances()[1][1]);
+		assertFalse(0 == file.length());
+	}
+
+	/**
+	 * Test case: Loading a file that is missing or does not hold a maze
+	 * <p>
+	 * Method under test: order(Order order), waitTillDelivered()
+	 * <p>
+	 * Correct behavior:
+	 * nothing is delivered, the order fails with a message that names the file
+	 */
+	@Test
+	public final void testLoadFailure() throws IOException {
+		File corrupt = File.createTempFile("maze", ".xml");
+		corrupt.deleteOnExit();
+		Files.write(corrupt.toPath(), "<?xml version=\"1.0\"?><maze><width>".getBytes(StandardCharsets.UTF_8));
+		for (String filename : new String[] { "test/data/no-such-maze.xml", corrupt.getPath() }) {
+			ProgressOrder order = new ProgressOrder();
+			MazeFileFactory factory = new MazeFileFactory(filename);
+			assertTrue(factory.order(order));
+			factory.waitTillDelivered();
+			assertNull(order.getMaze());
+			assertNotNull(order.failure);
+			assertTrue(order.failure.contains(filename));
+		}
+	}
+
+	/**
+	 * Order that records progress updates and failures
+	 */
+	private static class ProgressOrder extends StubOrder {
+		volatile int percentage;
+		volatile int updates;
+		// largest percentage below 100
+		volatile int building;
+		volatile String failure;
+
+		@Override
+		public void fail(String message) {
+			failure = message;
+		}
+
+		@Override
+		public void updateProgress(int percentage) {
+			super.updateProgress(percentage);
+			this.percentage = percentage;
+			if (percentage < 100)
+				building = Math.max(building, percentage);
+			updates++;
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package gui;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MazeFileStreamTest {
+
+	private static final String XML_FILE = "test/data/input.xml";
+	private MazeFileReader dom;
+	private MazeFileStreamReader stream;
+
+	/**
+	 * Read the XML test maze with both readers
+	 */
+	@Before
+	public final void setUp() {
+		dom = new MazeFileReader(XML_FILE);
+		stream = new MazeFileStreamReader(XML_FILE);
+	}
+
+	/**
+	 * Test case: Content read by the streaming reader
+	 * <p>
+	 * Method under test: MazeFileStreamReader(String filename)
+	 * <p>
+	 * Correct behavior:
+	 * all fields agree with those of the DOM based MazeFileReader
+	 */
+	@Test
+	public final void testRead() {
+		assertEquals(dom.getWidth(), stream.getWidth());
+		assertEquals(dom.getHeight(), stream.getHeight());
+		assertEquals(dom.getRooms(), stream.getRooms());
+		assertEquals(dom.getExpectedPartiters(), stream.getExpectedPartiters());
+		assertEquals(dom.getStartX(), stream.getStartX());
+		assertEquals(dom.getStartY(), stream.getStartY());
+		assertEquals(dom.getCells(), stream.getCells());
+		for (int x = 0; x < dom.getWidth(); x++) {
+			assertArrayEquals(dom.getDistances()[x], stream.getDistances()[x]);
+		}
+	}
+
+	/**
+	 * Test case: Output of the streaming writer
+	 * <p>
+	 * Method under test: MazeFileStreamWriter.store(...)
+	 * <p>
+	 * Correct behavior:
+	 * the file is byte for byte identical to the one written by MazeFileWriter,
+	 * since the tree of the streaming reader is written, this also covers the BSP nodes
+	 */
+	@Test
+	public final void testWrite() throws IOException {
+		File domFile = File.createTempFile("maze", ".xml");
+		domFile.deleteOnExit();
+		File streamFile = File.createTempFile("maze", ".xml");
+		streamFile.deleteOnExit();
+		MazeFileWriter.store(domFile.getPath(), dom.getWidth(), dom.getHeight(), dom.getRooms(), dom.getExpectedPartiters(),
+				dom.getRootNode(), dom.getCells(), dom.getDistances(), dom.getStartX(), dom.getStartY());
+		MazeFileStreamWriter.store(streamFile.getPath(), stream.getWidth(), stream.getHeight(), stream.getRooms(), stream.getExpectedPartiters(),
+				stream.getRootNode(), stream.getCells(), stream.getDistances(), stream.getStartX(), stream.getStartY());
+		assertArrayEquals(Files.readAllBytes(domFile.toPath()), Files.readAllBytes(streamFile.toPath()));
+	}
+
+	/**
+	 * Test case: Files that can not be read
+	 * <p>
+	 * Method under test: MazeFileStreamReader(String filename)
+	 * <p>
+	 * Correct behavior:
+	 * a missing file and a file that is not XML are reported with an
+	 * UncheckedIOException that names the file
+	 */
+	@Test
+	public final void testLoadFailure() throws IOException {
+		String missing = "test/data/no-such-maze.xml";
+		try {
+			new MazeFileStreamReader(missing);
+			fail("missing file must not load");
+		} catch (UncheckedIOException e) {
+			assertTrue(e.getMessage().contains(missing));
+		}
+		File corrupt = File.createTempFile("maze", ".xml");
+		corrupt.deleteOnExit();
+		Files.write(corrupt.toPath(), new byte[] { 0, 1, 2, 3 });
+		try {
+			new MazeFileStreamReader(corrupt.getPath());
+			fail("corrupt file must not load");
+		} catch (UncheckedIOException e) {
+			assertTrue(e.getMessage().contains(corrupt.getPath()));
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package gui;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The OcclusionBuffer replaces the RangeSet in the first person view,
+ * so besides a few border cases it is tested against a RangeSet for
+ * random sequences of operations.
+ *
+ * @author Duke Tran
+ */
+public class OcclusionBufferTest {
+	private static final int WIDTH = Constants.VIEW_WIDTH;
+
+	/**
+	 * Test case: Set and remove intervals at word boundaries and at the borders of the domain
+	 * <p>
+	 * Method under test: set(int lb, int ub), remove(int lb, int ub), isEmpty(), getIntersection(int lb, int ub)
+	 * <p>
+	 * Correct behavior:
+	 * intervals are cut to the domain, reversed bounds are accepted by remove,
+	 * runs that span several words are reported as a single intersection
+	 */
+	@Test
+	public final void testBorders() {
+		OcclusionBuffer sut = new OcclusionBuffer(WIDTH);
+		assertTrue(sut.isEmpty());
+		sut.set(-10, WIDTH + 10);
+		assertFalse(sut.isEmpty());
+		assertArrayEquals(new int[] {0, WIDTH - 1}, sut.getIntersection(-100, 1000));
+		// split at word boundaries
+		sut.remove(128, 63);
+		assertArrayEquals(new int[] {0, 62}, sut.getIntersection(0, WIDTH));
+		assertArrayEquals(new int[] {129, WIDTH - 1}, sut.getIntersection(63, WIDTH));
+		assertNull(sut.getIntersection(63, 128));
+		assertFalse(sut.intersects(63, 128));
+		assertEquals(62, sut.getFirst(62, 200));
+		assertEquals(62, sut.getLast(62, 200));
+		sut.remove(0, 62);
+		sut.remove(129, WIDTH);
+		assertTrue(sut.isEmpty());
+		// set clears what was in the set before
+		sut.set(WIDTH - 1, WIDTH - 1);
+		assertArrayEquals(new int[] {WIDTH - 1, WIDTH - 1}, sut.getIntersection(0, WIDTH - 1));
+		sut.set(5, 3);
+		assertTrue(sut.isEmpty());
+	}
+
+	/**
+	 * Test case: Random sequences of operations as performed by the first person view
+	 * <p>
+	 * Method under test: all
+	 * <p>
+	 * Correct behavior:
+	 * results are the same as for a RangeSet that is initialized to the domain
+	 */
+	@Test
+	public final void testSameAsRangeSet() {
+		Random random = new Random(42);
+		for (int round = 0; round < 200; round++) {
+			OcclusionBuffer sut = new OcclusionBuffer(WIDTH);
+			RangeSet expected = new RangeSet();
+			int lb = random.nextInt(WIDTH);
+			int ub = lb + random.nextInt(WIDTH - lb);
+			sut.set(lb, ub);
+			expected.set(lb, ub);
+			while (!expected.isEmpty()) {
+				assertFalse(sut.isEmpty());
+				int a = random.nextInt(WIDTH + 40) - 20;
+				int b = a + random.nextInt(80);
+				assertArrayEquals(expected.getIntersection(a, b), sut.getIntersection(a, b));
+				assertEquals(null != expected.getIntersection(a, b), sut.intersects(a, b));
+				if (random.nextBoolean())
+					sut.remove(a, b);
+				else
+					sut.remove(b, a);
+				expected.remove(a, b);
+			}
+			assertTrue(sut.isEmpty());
+		}
+	}
+}
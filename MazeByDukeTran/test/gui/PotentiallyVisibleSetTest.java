@@ -0,0 +1,131 @@
+package gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import generation.Floorplan;
+import generation.Maze;
+import generation.MazeFactory;
+import generation.StubOrder;
+
+public class PotentiallyVisibleSetTest {
+
+	private static final String XML_FILE = "test/data/input.xml";
+	private Maze maze;
+	private PotentiallyVisibleSet visibleSet;
+
+	/**
+	 * Load the test maze and compute its set
+	 */
+	@Before
+	public final void setUp() {
+		maze = new MazeFileReader(XML_FILE).getMazeConfiguration();
+		visibleSet = new PotentiallyVisibleSet(maze);
+	}
+
+	/**
+	 * Test case: Views drawn with and without the set
+	 * <p>
+	 * Method under test: FirstPersonView.draw with setPotentiallyVisibleSet(PotentiallyVisibleSet visibleSet)
+	 * <p>
+	 * Correct behavior:
+	 * for rotations and steps at every cell, the set leads to the same pixels and
+	 * the same seen walls, the root is in the set of every cell
+	 */
+	@Test
+	public final void testSameView() {
+		// walls carry a seen flag, so each view needs a maze of its own
+		Maze other = new MazeFileReader(XML_FILE).getMazeConfiguration();
+		RasterPanel expectedPanel = new RasterPanel();
+		RasterPanel actualPanel = new RasterPanel();
+		Floorplan expectedSeen = new Floorplan(maze.getWidth()+1, maze.getHeight()+1);
+		Floorplan actualSeen = new Floorplan(maze.getWidth()+1, maze.getHeight()+1);
+		FirstPersonView expected = new FirstPersonView(expectedPanel, Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT,
+				Constants.MAP_UNIT, Constants.STEP_SIZE, expectedSeen, other.getRootnode());
+		FirstPersonView actual = new FirstPersonView(actualPanel, Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT,
+				Constants.MAP_UNIT, Constants.STEP_SIZE, actualSeen, maze.getRootnode());
+		actual.setPotentiallyVisibleSet(visibleSet);
+		Random random = new Random(7);
+		for (int x = 0; x < maze.getWidth(); x++) {
+			for (int y = 0; y < maze.getHeight(); y++) {
+				assertTrue(visibleSet.contains(x, y, 0));
+				int angle = random.nextInt(360);
+				draw(expected, expectedPanel, actual, actualPanel, x, y, 0, angle);
+				draw(expected, expectedPanel, actual, actualPanel, x, y, random.nextInt(7) - 3, 90*random.nextInt(4));
+			}
+		}
+		assertEquals(expectedSeen, actualSeen);
+	}
+
+	private void draw(FirstPersonView expected, RasterPanel expectedPanel, FirstPersonView actual, RasterPanel actualPanel,
+			int x, int y, int walkStep, int angle) {
+		assertTrue(visibleSet.covers(x, y, walkStep, angle));
+		expected.draw(expectedPanel, x, y, walkStep, angle, 0.5f);
+		actual.draw(actualPanel, x, y, walkStep, angle, 0.5f);
+		for (int i = 0; i < Constants.VIEW_WIDTH; i++) {
+			for (int j = 0; j < Constants.VIEW_HEIGHT; j++) {
+				assertEquals(expectedPanel.getPixel(i, j), actualPanel.getPixel(i, j));
+			}
+		}
+	}
+
+	/**
+	 * Test case: Views that are not covered by the set
+	 * <p>
+	 * Method under test: covers(int x, int y, int walkStep, int angle)
+	 * <p>
+	 * Correct behavior:
+	 * positions outside of the maze and steps at angles other than
+	 * multiples of 90 degrees are not covered
+	 */
+	@Test
+	public final void testCovers() {
+		assertTrue(visibleSet.covers(0, 0, 0, 359));
+		assertTrue(visibleSet.covers(maze.getWidth()-1, maze.getHeight()-1, -3, 270));
+		assertFalse(visibleSet.covers(-1, 0, 0, 0));
+		assertFalse(visibleSet.covers(0, maze.getHeight(), 0, 0));
+		assertFalse(visibleSet.covers(0, 0, 1, 45));
+		assertFalse(visibleSet.covers(0, 0, GameLoop.Motion.WALK_STEPS, 0));
+	}
+
+	/**
+	 * Test case: Storing and loading the set
+	 * <p>
+	 * Method under test: store(String filename), load(String filename, Maze maze)
+	 * <p>
+	 * Correct behavior:
+	 * the loaded set contains the same nodes, a file for a different maze is rejected
+	 */
+	@Test
+	public final void testStoreLoad() throws IOException {
+		File file = File.createTempFile("maze", ".pvs");
+		file.deleteOnExit();
+		visibleSet.store(file.getPath());
+		PotentiallyVisibleSet loaded = PotentiallyVisibleSet.load(file.getPath(), maze);
+		assertNotNull(loaded);
+		assertEquals(visibleSet.getNodeCount(), loaded.getNodeCount());
+		assertEquals(visibleSet.getWordCount(), loaded.getWordCount());
+		for (int x = 0; x < maze.getWidth(); x++) {
+			for (int y = 0; y < maze.getHeight(); y++) {
+				for (int node = 0; node < visibleSet.getNodeCount(); node++) {
+					assertEquals(visibleSet.contains(x, y, node), loaded.contains(x, y, node));
+				}
+			}
+		}
+		StubOrder order = new StubOrder(1, false);
+		MazeFactory factory = new MazeFactory();
+		factory.order(order);
+		factory.waitTillDelivered();
+		assertNull(PotentiallyVisibleSet.load(file.getPath(), order.getMaze()));
+	}
+}
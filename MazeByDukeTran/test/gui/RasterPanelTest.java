@@ -0,0 +1,114 @@
+package gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RasterPanelTest {
+
+	private RasterPanel panel;
+
+	/**
+	 * Create a panel, it is operational without a screen
+	 */
+	@Before
+	public final void setUp() {
+		panel = new RasterPanel();
+		panel.setViewDimensions(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT);
+		assertTrue(panel.isOperational());
+	}
+
+	/**
+	 * Test case: A wall in front of the background
+	 * <p>
+	 * Method under test: addBackground(float percentToExit), addFilledPolygon(int[] xPoints, int[] yPoints, int nPoints)
+	 * <p>
+	 * Correct behavior:
+	 * pixels inside the trapezoid have the wall color, pixels above and below
+	 * have the background colors of the upper and the lower half
+	 */
+	@Test
+	public final void testBackgroundAndWall() {
+		panel.addBackground(0.5f);
+		panel.setColor(0x123456);
+		panel.addFilledPolygon(new int[] {100, 100, 300, 300}, new int[] {100, 300, 250, 150}, 4);
+		assertEquals(0x123456, panel.getPixel(100, 100));
+		assertEquals(0x123456, panel.getPixel(299, 200));
+		assertEquals(panel.getBackgroundColor(0.5f, true), panel.getPixel(100, 99));
+		assertEquals(panel.getBackgroundColor(0.5f, false), panel.getPixel(100, 300));
+		assertEquals(panel.getBackgroundColor(0.5f, true), panel.getPixel(299, 149));
+		assertEquals(panel.getBackgroundColor(0.5f, false), panel.getPixel(300, 200));
+		assertEquals(panel.getBackgroundColor(0.5f, true), panel.getPixel(0, 0));
+		assertEquals(panel.getBackgroundColor(0.5f, false), panel.getPixel(399, 399));
+	}
+
+	/**
+	 * Test case: Trapezoids cover the same pixels as with Graphics2D
+	 * <p>
+	 * Method under test: addFilledPolygon(int[] xPoints, int[] yPoints, int nPoints)
+	 * <p>
+	 * Correct behavior:
+	 * pixels only differ from fillPolygon without antialiasing where an edge
+	 * passes exactly through a pixel center, i.e. at most at both ends of a column
+	 */
+	@Test
+	public final void testFillPolygon() {
+		BufferedImage reference = new BufferedImage(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = reference.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+		g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+		Random random = new Random(13);
+		for (int n = 0; n < 50; n++) {
+			int x1 = random.nextInt(450) - 25;
+			int x2 = x1 + 1 + random.nextInt(200);
+			int y1 = random.nextInt(300) - 50;
+			int y2 = random.nextInt(300) - 50;
+			int[] xs = {x1, x1, x2, x2};
+			int[] ys = {y1, y1 + random.nextInt(300), y2 + random.nextInt(300), y2};
+			panel.setColor(0);
+			panel.addFilledRectangle(0, 0, Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT);
+			panel.setColor(0xFFFFFF);
+			panel.addFilledPolygon(xs, ys, 4);
+			g.setColor(Color.BLACK);
+			g.fillRect(0, 0, Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT);
+			g.setColor(Color.WHITE);
+			g.fillPolygon(xs, ys, 4);
+			int differences = 0;
+			for (int x = 0; x < Constants.VIEW_WIDTH; x++) {
+				for (int y = 0; y < Constants.VIEW_HEIGHT; y++) {
+					if (panel.getPixel(x, y) != (reference.getRGB(x, y) & 0xFFFFFF))
+						differences++;
+				}
+			}
+			assertTrue(differences <= 2*(x2 - x1));
+		}
+	}
+
+	/**
+	 * Test case: Lines are drawn on top of walls
+	 * <p>
+	 * Method under test: addLine(int startX, int startY, int endX, int endY)
+	 * <p>
+	 * Correct behavior:
+	 * pending walls are written before the line such that the line stays visible
+	 */
+	@Test
+	public final void testOverlay() {
+		panel.addBackground(1.0f);
+		panel.setColor(0x123456);
+		panel.addFilledPolygon(new int[] {0, 0, 400, 400}, new int[] {0, 400, 400, 0}, 4);
+		panel.setColor(0xFF0000);
+		panel.addLine(0, 200, 399, 200);
+		assertEquals(0xFF0000, panel.getPixel(50, 200));
+		assertEquals(0x123456, panel.getPixel(50, 100));
+		assertEquals(0xFF0000, panel.getColor());
+	}
+}
@@ -0,0 +1,143 @@
+package gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import generation.Floorplan;
+import generation.Maze;
+import generation.MazeFactory;
+import generation.StubOrder;
+
+public class RaycastFirstPersonViewTest {
+
+	private static final String XML_FILE = "test/data/input.xml";
+	private static final int WIDTH = Constants.VIEW_WIDTH;
+	private static final int HEIGHT = Constants.VIEW_HEIGHT;
+	// walls carry a seen flag, so each view needs a maze of its own
+	private Maze expectedMaze;
+	private Maze actualMaze;
+	private RasterPanel expectedPanel;
+	private RasterPanel actualPanel;
+	private Floorplan expectedSeen;
+	private Floorplan actualSeen;
+	private FirstPersonView expected;
+	private RaycastFirstPersonView actual;
+
+	/**
+	 * Load the test maze twice, draw one with the BSP tree and one by casting rays
+	 */
+	@Before
+	public final void setUp() {
+		expectedMaze = new MazeFileReader(XML_FILE).getMazeConfiguration();
+		actualMaze = new MazeFileReader(XML_FILE).getMazeConfiguration();
+		expectedPanel = new RasterPanel(WIDTH, HEIGHT);
+		actualPanel = new RasterPanel(WIDTH, HEIGHT);
+		expectedSeen = new Floorplan(expectedMaze.getWidth()+1, expectedMaze.getHeight()+1);
+		actualSeen = new Floorplan(actualMaze.getWidth()+1, actualMaze.getHeight()+1);
+		expected = new FirstPersonView(expectedPanel, WIDTH, HEIGHT,
+				Constants.MAP_UNIT, Constants.STEP_SIZE, expectedSeen, expectedMaze.getRootnode());
+		actual = new RaycastFirstPersonView(actualPanel, WIDTH, HEIGHT,
+				Constants.MAP_UNIT, Constants.STEP_SIZE, actualSeen, actualMaze);
+	}
+
+	/**
+	 * Test case: Rays against the BSP tree
+	 * <p>
+	 * Method under test: draw(MazePanel mazePanel, int x, int y, int walkStep, int ang, float percentToExit)
+	 * <p>
+	 * Correct behavior:
+	 * nearly all columns show the same wall at the horizon as the FirstPersonView,
+	 * only columns at the edges of walls may differ by rounding
+	 */
+	@Test
+	public final void testSameAsFirstPersonView() {
+		Random random = new Random(7);
+		int columns = 0;
+		int differences = 0;
+		for (int x = 0; x < expectedMaze.getWidth(); x++) {
+			for (int y = 0; y < expectedMaze.getHeight(); y++) {
+				differences += draw(x, y, 0, random.nextInt(360));
+				differences += draw(x, y, random.nextInt(7) - 3, 90*random.nextInt(4));
+				columns += 2*WIDTH;
+			}
+		}
+		assertTrue(differences*100 < columns);
+	}
+
+	/**
+	 * Test case: Seen walls
+	 * <p>
+	 * Method under test: draw(MazePanel mazePanel, int x, int y, int walkStep, int ang, float percentToExit)
+	 * <p>
+	 * Correct behavior:
+	 * the view marks walls as seen for the map like the FirstPersonView
+	 * when it looks in all directions from every cell
+	 */
+	@Test
+	public final void testSeenWalls() {
+		for (int x = 0; x < expectedMaze.getWidth(); x++) {
+			for (int y = 0; y < expectedMaze.getHeight(); y++) {
+				for (int angle = 0; angle < 360; angle += 90) {
+					draw(x, y, 0, angle);
+				}
+			}
+		}
+		assertEquals(expectedSeen, actualSeen);
+	}
+
+	/**
+	 * Test case: A maze without a BSP tree
+	 * <p>
+	 * Method under test: constructor and draw with a maze from an order that needs no tree
+	 * <p>
+	 * Correct behavior:
+	 * the maze comes without a tree, knows its color change and the view draws walls
+	 */
+	@Test
+	public final void testWithoutTree() {
+		StubOrder order = new StubOrder(1, false) {
+			@Override
+			public boolean isBSPTreeNeeded() {
+				return false;
+			}
+		};
+		MazeFactory factory = new MazeFactory();
+		assertTrue(factory.order(order));
+		factory.waitTillDelivered();
+		Maze maze = order.getMaze();
+		assertNotNull(maze);
+		assertNull(maze.getRootnode());
+		assertTrue(0 <= maze.getColorChange() && maze.getColorChange() < 256);
+		Floorplan seen = new Floorplan(maze.getWidth()+1, maze.getHeight()+1);
+		RaycastFirstPersonView view = new RaycastFirstPersonView(actualPanel, WIDTH, HEIGHT,
+				Constants.MAP_UNIT, Constants.STEP_SIZE, seen, maze);
+		int[] start = maze.getStartingPosition();
+		for (int angle = 0; angle < 360; angle += 90) {
+			view.draw(actualPanel, start[0], start[1], 0, angle, 0.5f);
+		}
+		assertNotEquals(new Floorplan(maze.getWidth()+1, maze.getHeight()+1), seen);
+	}
+
+	/**
+	 * Draws both views and compares them at the horizon.
+	 * @return the number of columns with a different pixel at the horizon
+	 */
+	private int draw(int x, int y, int walkStep, int angle) {
+		expected.draw(expectedPanel, x, y, walkStep, angle, 0.5f);
+		actual.draw(actualPanel, x, y, walkStep, angle, 0.5f);
+		int count = 0;
+		for (int i = 0; i < WIDTH; i++) {
+			if (expectedPanel.getPixel(i, HEIGHT/2) != actualPanel.getPixel(i, HEIGHT/2))
+				count++;
+		}
+		return count;
+	}
+}
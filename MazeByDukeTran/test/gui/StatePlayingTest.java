@@ -0,0 +1,161 @@
+package gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import generation.CardinalDirection;
+import generation.Floorplan;
+import generation.Maze;
+import gui.Constants.UserInput;
+
+public class StatePlayingTest {
+
+	private static final String XML_FILE = "test/data/input.xml";
+	private Maze maze;
+	private StatePlaying state;
+	private RasterPanel panel;
+
+	/**
+	 * Set up a playing state that draws on a raster panel without a render thread
+	 */
+	@Before
+	public final void setUp() {
+		maze = new MazeFileReader(XML_FILE).getMazeConfiguration();
+		panel = new RasterPanel();
+		assertTrue(panel.isOperational());
+		state = new StatePlaying();
+		state.setMazeConfiguration(maze);
+		state.panel = panel;
+		state.seenCells = new Floorplan(maze.getWidth()+1, maze.getHeight()+1);
+		state.firstPersonView = new FirstPersonView(panel, Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT,
+				Constants.MAP_UNIT, Constants.STEP_SIZE, state.seenCells, maze.getRootnode());
+		state.mapView = new Map(state.seenCells, 15, maze);
+		state.mapView.tileExecutor = Runnable::run;
+		// frames are drawn by calling drawFrame directly
+		state.started = true;
+	}
+
+	/**
+	 * Test case: Frames for the same view
+	 * <p>
+	 * Method under test: drawFrame(int x, int y, int angle, int walkStep)
+	 * <p>
+	 * Correct behavior:
+	 * a frame is only drawn if the view differs from the last one,
+	 * otherwise the panel keeps its pixels
+	 */
+	@Test
+	public final void testSameView() {
+		state.drawFrame(1, 1, 0, 0);
+		assertEquals(1, state.getFramesDrawn());
+		int[] pixels = getPixels();
+		state.drawFrame(1, 1, 0, 0);
+		assertEquals(1, state.getFramesDrawn());
+		assertEquals(1, state.getFramesReused());
+		assertTrue(Arrays.equals(pixels, getPixels()));
+		state.drawFrame(1, 1, 90, 0);
+		state.drawFrame(1, 1, 90, 1);
+		state.drawFrame(2, 1, 90, 1);
+		assertEquals(4, state.getFramesDrawn());
+		assertEquals(1, state.getFramesReused());
+	}
+
+	/**
+	 * Test case: Map settings
+	 * <p>
+	 * Method under test: drawFrame after keyDown with toggles and zoom
+	 * <p>
+	 * Correct behavior:
+	 * settings of the map only cause a new frame if the map is on display
+	 */
+	@Test
+	public final void testMapSettings() {
+		state.drawFrame(1, 1, 0, 0);
+		state.keyDown(UserInput.ToggleFullMap, 0);
+		state.keyDown(UserInput.ToggleSolution, 0);
+		state.keyDown(UserInput.ZoomIn, 0);
+		state.drawFrame(1, 1, 0, 0);
+		assertEquals(1, state.getFramesDrawn());
+		state.keyDown(UserInput.ToggleLocalMap, 0);
+		state.drawFrame(1, 1, 0, 0);
+		state.drawFrame(1, 1, 0, 0);
+		assertEquals(2, state.getFramesDrawn());
+		state.keyDown(UserInput.ZoomOut, 0);
+		state.drawFrame(1, 1, 0, 0);
+		state.keyDown(UserInput.ToggleFullMap, 0);
+		state.drawFrame(1, 1, 0, 0);
+		assertEquals(4, state.getFramesDrawn());
+		assertEquals(2, state.getFramesReused());
+	}
+
+	/**
+	 * Test case: Zooming the map while frames are drawn on another thread
+	 * <p>
+	 * Method under test: keyDown(UserInput key, int value) with ZoomIn and ZoomOut
+	 * <p>
+	 * Correct behavior:
+	 * the scale of the map only changes with the next frame,
+	 * it does not go below 1
+	 */
+	@Test
+	public final void testZoom() {
+		final int scale = state.mapView.getMapScale();
+		state.keyDown(UserInput.ZoomIn, 0);
+		state.keyDown(UserInput.ZoomIn, 0);
+		assertEquals(scale, state.mapView.getMapScale());
+		state.drawFrame(1, 1, 0, 0);
+		assertEquals(scale + 2, state.mapView.getMapScale());
+		for (int i = 0; i < scale + 5; i++) {
+			state.keyDown(UserInput.ZoomOut, 0);
+		}
+		state.drawFrame(1, 1, 0, 0);
+		assertEquals(1, state.mapView.getMapScale());
+	}
+
+	/**
+	 * Test case: A hint on top of the frame
+	 * <p>
+	 * Method under test: drawFrame after drawHint(int x, int y, int angle)
+	 * <p>
+	 * Correct behavior:
+	 * the next frame for the same view is drawn to remove the hint
+	 */
+	@Test
+	public final void testHint() {
+		// the hint for a dead end is the map, which needs no compass rose
+		for (int x = 0; x < maze.getWidth(); x++) {
+			for (int y = 0; y < maze.getHeight(); y++) {
+				CardinalDirection cd = CardinalDirection.East;
+				if (maze.hasWall(x, y, cd) && maze.hasWall(x, y, cd.rotateClockwise()) &&
+						maze.hasWall(x, y, cd.oppositeDirection().rotateClockwise())) {
+					state.drawFrame(x, y, 0, 0);
+					state.drawHint(x, y, 0);
+					state.drawFrame(x, y, 0, 0);
+					assertEquals(2, state.getFramesDrawn());
+					assertEquals(0, state.getFramesReused());
+					return;
+				}
+			}
+		}
+		fail("no dead end facing east");
+	}
+
+	/**
+	 * Provides a copy of all pixels of the panel.
+	 */
+	private int[] getPixels() {
+		int[] result = new int[Constants.VIEW_WIDTH*Constants.VIEW_HEIGHT];
+		for (int i = 0; i < Constants.VIEW_WIDTH; i++) {
+			for (int j = 0; j < Constants.VIEW_HEIGHT; j++) {
+				result[j*Constants.VIEW_WIDTH + i] = panel.getPixel(i, j);
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,91 @@
+package gui;
+
+import java.util.concurrent.ForkJoinPool;
+
+import generation.Floorplan;
+import generation.Maze;
+
+/**
+ * Measures how drawing the first person view in parallel strips scales
+ * with the number of threads at resolutions beyond the size of the screen.
+ * This is not a test case but a program that prints a table of frame times.
+ *
+ * For each resolution, the same sequence of views is drawn on a RasterPanel:
+ * a full rotation in steps of 30 degrees at every cell of the maze.
+ * The first row draws on the calling thread without strips, the following rows
+ * use a ForkJoinPool with the given number of threads and twice as many strips.
+ * Times include writing the pixels, which happens on the calling thread.
+ *
+ * Usage: StripRenderingBenchmark [file [threads ...]]
+ * with a maze file, default test/data/input.xml, and the numbers of threads, default 1 2 4 8 16.
+ * Speedups are limited by the number of processors of the machine.
+ *
+ * @author Duke Tran
+ */
+public class StripRenderingBenchmark {
+	// resolutions as width and height
+	private static final int[][] SIZES = { {400, 400}, {1600, 1200}, {3200, 2400} };
+	// rounds to warm up before measuring and rounds that are measured
+	private static final int WARMUP = 2;
+	private static final int ROUNDS = 3;
+
+	public static void main(String[] args) {
+		String filename = (args.length > 0) ? args[0] : "test/data/input.xml";
+		int[] threads = {1, 2, 4, 8, 16};
+		if (args.length > 1) {
+			threads = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++) {
+				threads[i - 1] = Integer.parseInt(args[i]);
+			}
+		}
+		Maze maze = new MazeFileReader(filename).getMazeConfiguration();
+		System.out.println("StripRenderingBenchmark: " + filename + ", " + maze.getWidth() + "x" + maze.getHeight() +
+				" cells, " + Runtime.getRuntime().availableProcessors() + " processors");
+		// let the compiler optimize both ways of drawing before measuring
+		ForkJoinPool warmup = new ForkJoinPool(2);
+		measure(maze, SIZES[0][0], SIZES[0][1], 1, null);
+		measure(maze, SIZES[0][0], SIZES[0][1], 4, warmup);
+		warmup.shutdown();
+		for (int[] size : SIZES) {
+			System.out.println(size[0] + "x" + size[1] + ":");
+			final double sequential = measure(maze, size[0], size[1], 1, null);
+			System.out.println(String.format("  sequential          %8.3f ms/frame", sequential));
+			for (int count : threads) {
+				ForkJoinPool pool = new ForkJoinPool(count);
+				final double time = measure(maze, size[0], size[1], 2*count, pool);
+				pool.shutdown();
+				System.out.println(String.format("  %2d threads %3d strips %8.3f ms/frame, speedup %5.2f",
+						count, 2*count, time, sequential/time));
+			}
+		}
+	}
+
+	/**
+	 * Draws all views repeatedly and returns the average time per frame.
+	 */
+	private static double measure(Maze maze, int width, int height, int strips, ForkJoinPool pool) {
+		RasterPanel panel = new RasterPanel(width, height);
+		FirstPersonView view = new FirstPersonView(panel, width, height, Constants.MAP_UNIT, Constants.STEP_SIZE,
+				new Floorplan(maze.getWidth()+1, maze.getHeight()+1), maze.getRootnode());
+		view.setStrips(strips, pool);
+		long start = 0;
+		int frames = 0;
+		for (int round = 0; round < WARMUP + ROUNDS; round++) {
+			if (WARMUP == round) {
+				start = System.nanoTime();
+				frames = 0;
+			}
+			for (int x = 0; x < maze.getWidth(); x++) {
+				for (int y = 0; y < maze.getHeight(); y++) {
+					for (int angle = 0; angle < 360; angle += 30) {
+						view.draw(panel, x, y, 0, angle, 0.5f);
+						// writes the pixels
+						panel.getBufferGraphics();
+						frames++;
+					}
+				}
+			}
+		}
+		return (System.nanoTime() - start)/1e6/frames;
+	}
+}